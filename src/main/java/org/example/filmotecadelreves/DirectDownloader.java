@@ -1,6 +1,7 @@
 package org.example.filmotecadelreves;
 
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.downloaders.DirectLink;
 
 /**
  * Interfaz para los descargadores directos de diferentes servidores
@@ -38,4 +39,27 @@ public interface DirectDownloader {
      * @return true si la URL está disponible, false en caso contrario
      */
     boolean isAvailable(String url);
+
+    /**
+     * Resuelve de nuevo el enlace directo de una descarga cuyo enlace ha caducado
+     * (los servidores con enlaces firmados responden 403/410). Se invoca desde el hilo
+     * de la descarga y puede bloquear mientras se resuelve; no debe pedir intervención
+     * del usuario.
+     * @param download Descarga cuyo enlace ha caducado
+     * @return el nuevo enlace, o null si el servidor no permite renovarlo
+     */
+    default String refreshDownloadUrl(DescargasUI.DirectDownload download) {
+        return null;
+    }
+
+    /**
+     * Resuelve el enlace directo de la página de un vídeo sin intervención del usuario
+     * (sin captchas ni navegador visible), para comparar servidores espejo antes de
+     * descargar o cambiar a uno de ellos. Puede bloquear mientras se resuelve.
+     * @param pageUrl Página del vídeo en este servidor
+     * @return el enlace directo con sus cabeceras, o null si este servidor no lo permite
+     */
+    default DirectLink resolveDirectLink(String pageUrl) {
+        return null;
+    }
 }
\ No newline at end of file
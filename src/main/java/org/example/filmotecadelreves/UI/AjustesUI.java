@@ -4,6 +4,9 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
+import org.example.filmotecadelreves.downloaders.BandwidthCaps;
+import org.example.filmotecadelreves.downloaders.BandwidthSchedule;
+import org.example.filmotecadelreves.downloaders.SeedingPolicy;
 import org.example.filmotecadelreves.downloaders.TorrentDownloader;
 import org.example.filmotecadelreves.scrapers.ScraperProgressTracker;
 
@@ -25,6 +28,10 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.awt.Desktop;
 import java.net.URI;
 
@@ -61,10 +68,17 @@ public class AjustesUI {
     private CheckBox extractArchivesCheckbox;
     private Slider maxConcurrentTorrentDownloadsSlider; // Nuevo slider para descargas simultáneas de torrent
     private Label maxConcurrentTorrentDownloadsValueLabel; // Etiqueta para mostrar el valor actual
+    private Spinner<Double> seedRatioSpinner;
+    private Spinner<Integer> seedTimeSpinner;
+    private CheckBox seedOnlyWhileIdleCheckbox;
+    private ComboBox<String> seedGoalActionComboBox;
+    private Spinner<Integer> downloadUploadReserveSpinner;
 
     // Configuración de descargas directas
     private Slider maxConcurrentDirectDownloadsSlider;
     private Slider directDownloadSpeedLimitSlider;
+    private final Map<String, Spinner<Integer>> serverSpeedLimitSpinners = new LinkedHashMap<>();
+    private Spinner<Integer> totalDownloadCeilingSpinner;
     private CheckBox autoStartDirectDownloadsCheckbox;
     private CheckBox streamplayHeadlessCheckbox;
     private CheckBox powvideoHeadlessCheckbox;
@@ -105,6 +119,10 @@ public class AjustesUI {
 
     // Referencia al TorrentDownloader
     private TorrentDownloader torrentDownloader;
+    // El horario de ancho de banda se edita en config.json; se conserva al guardar
+    private BandwidthSchedule bandwidthSchedule = BandwidthSchedule.disabled();
+    private static final String SEED_GOAL_PAUSE = "Pausar al cumplir el objetivo";
+    private static final String SEED_GOAL_REMOVE = "Retirar conservando los archivos";
 
     public AjustesUI(Stage primaryStage, MainUI mainUI, ScraperProgressTracker scraperProgressTracker) {
         this.mainUI = mainUI;
@@ -349,6 +367,29 @@ public class AjustesUI {
         );
         extractArchivesCheckbox.setTooltip(extractTooltip);
 
+// Objetivos de compartición de los torrents completados
+        Label seedRatioLabel = new Label("Ratio de compartición objetivo (0 = sin límite):");
+        seedRatioSpinner = new Spinner<>(0.0, 50.0, 0.0, 0.1);
+        seedRatioSpinner.setEditable(true);
+        Label seedTimeLabel = new Label("Tiempo máximo compartiendo (minutos, 0 = sin límite):");
+        seedTimeSpinner = new Spinner<>(0, 100_000, 0, 30);
+        seedTimeSpinner.setEditable(true);
+        seedOnlyWhileIdleCheckbox = new CheckBox("Compartir solo cuando no haya descargas activas");
+        seedGoalActionComboBox = new ComboBox<>();
+        seedGoalActionComboBox.getItems().addAll(SEED_GOAL_PAUSE, SEED_GOAL_REMOVE);
+        seedGoalActionComboBox.setValue(SEED_GOAL_PAUSE);
+        Label downloadUploadReserveLabel = new Label("Subida reservada para torrents en descarga (%):");
+        downloadUploadReserveSpinner = new Spinner<>(0, 90, SeedingPolicy.unlimited().getDownloadUploadReservePercent(), 5);
+        downloadUploadReserveSpinner.setEditable(true);
+
+        Tooltip seedingTooltip = new Tooltip(
+                "Los torrents completados dejan de compartirse al alcanzar el ratio o el tiempo indicados. " +
+                        "La reserva de subida se aplica cuando hay un límite de subida global (por ejemplo, desde el horario)."
+        );
+        seedRatioLabel.setTooltip(seedingTooltip);
+        seedTimeLabel.setTooltip(seedingTooltip);
+        downloadUploadReserveLabel.setTooltip(seedingTooltip);
+
 // Información sobre la configuración
         Label infoLabel = new Label("Configura el número de descargas simultáneas según los recursos de tu sistema. " +
                 "Un valor más alto puede mejorar la velocidad pero consumir más recursos.");
@@ -362,7 +403,15 @@ public class AjustesUI {
         grid.add(autoStartTorrentDownloadsCheckbox, 0, 2);
         grid.add(createSubfoldersCheckbox, 0, 3);
         grid.add(extractArchivesCheckbox, 0, 4);
-        grid.add(infoLabel, 0, 5, 2, 1);
+        grid.add(seedRatioLabel, 0, 5);
+        grid.add(seedRatioSpinner, 1, 5);
+        grid.add(seedTimeLabel, 0, 6);
+        grid.add(seedTimeSpinner, 1, 6);
+        grid.add(seedOnlyWhileIdleCheckbox, 0, 7);
+        grid.add(seedGoalActionComboBox, 1, 7);
+        grid.add(downloadUploadReserveLabel, 0, 8);
+        grid.add(downloadUploadReserveSpinner, 1, 8);
+        grid.add(infoLabel, 0, 9, 2, 1);
 
         TitledPane downloadsPane = new TitledPane("Configuración de Descargas Torrent", grid);
         downloadsPane.setExpanded(true);
@@ -401,6 +450,29 @@ public class AjustesUI {
             directDownloadSpeedLimitValueLabel.setText(String.valueOf(newVal.intValue()));
         });
 
+// Límites por servidor y techo combinado con los torrents
+        Tooltip capsTooltip = new Tooltip(
+                "Los límites se aplican en vivo a las descargas en curso. El techo total se reparte " +
+                        "automáticamente entre torrents y descargas directas según lo que use cada uno."
+        );
+        int row = 4;
+        for (String server : BandwidthCaps.SERVERS) {
+            Label serverLabel = new Label("Límite para " + server.substring(0, 1).toUpperCase(Locale.ROOT)
+                    + server.substring(1) + " (KB/s, 0 = sin límite):");
+            serverLabel.setTooltip(capsTooltip);
+            Spinner<Integer> serverSpinner = new Spinner<>(0, 100_000, 0, 100);
+            serverSpinner.setEditable(true);
+            serverSpeedLimitSpinners.put(server, serverSpinner);
+            grid.add(serverLabel, 0, row);
+            grid.add(serverSpinner, 1, row++);
+        }
+        Label totalDownloadCeilingLabel = new Label("Techo total de bajada, torrents + directas (KB/s, 0 = sin techo):");
+        totalDownloadCeilingLabel.setTooltip(capsTooltip);
+        totalDownloadCeilingSpinner = new Spinner<>(0, 1_000_000, 0, 500);
+        totalDownloadCeilingSpinner.setEditable(true);
+        grid.add(totalDownloadCeilingLabel, 0, row);
+        grid.add(totalDownloadCeilingSpinner, 1, row++);
+
 // Opciones adicionales
         autoStartDirectDownloadsCheckbox = new CheckBox("Iniciar descargas directas automáticamente");
         autoStartDirectDownloadsCheckbox.setSelected(true);
@@ -425,9 +497,9 @@ public class AjustesUI {
         grid.add(directDownloadSpeedLimitLabel, 0, 2);
         grid.add(directDownloadSpeedLimitSlider, 0, 3);
         grid.add(directDownloadSpeedLimitValueLabel, 1, 3);
-        grid.add(autoStartDirectDownloadsCheckbox, 0, 4);
-        grid.add(streamplayHeadlessCheckbox, 0, 5, 2, 1);
-        grid.add(powvideoHeadlessCheckbox, 0, 6, 2, 1);
+        grid.add(autoStartDirectDownloadsCheckbox, 0, row++);
+        grid.add(streamplayHeadlessCheckbox, 0, row++, 2, 1);
+        grid.add(powvideoHeadlessCheckbox, 0, row, 2, 1);
 
         TitledPane directDownloadsPane = new TitledPane("Configuración de Descargas Directas", grid);
         directDownloadsPane.setExpanded(true);
@@ -978,15 +1050,18 @@ public class AjustesUI {
         config.put("createSubfolders", createSubfoldersCheckbox.isSelected());
         config.put("extractArchives", extractArchivesCheckbox.isSelected());
         config.put("maxConcurrentTorrentDownloads", (int) maxConcurrentTorrentDownloadsSlider.getValue());
+        config.put(SeedingPolicy.CONFIG_KEY, getSeedingPolicy().toJson());
 
 // Configuración de descargas directas
         config.put("maxConcurrentDirectDownloads", (int) maxConcurrentDirectDownloadsSlider.getValue());
         config.put("directDownloadSpeedLimit", (int) directDownloadSpeedLimitSlider.getValue());
+        config.put(BandwidthCaps.CONFIG_KEY, getBandwidthCaps().toJson());
         config.put("autoStartDirectDownloads", autoStartDirectDownloadsCheckbox.isSelected());
         config.put("streamplayHeadless", streamplayHeadlessCheckbox.isSelected());
         config.put("powvideoHeadless", powvideoHeadlessCheckbox.isSelected());
         config.put("apiKeyCaptcha", apiKeyCaptchaField.getText());
         config.put("nopechaTimeoutSeconds", nopechaTimeoutSpinner.getValue());
+        config.put(BandwidthSchedule.CONFIG_KEY, bandwidthSchedule.toJson());
 
 // Configuración de interfaz
         config.put("theme", themeComboBox.getValue());
@@ -1046,6 +1121,8 @@ public class AjustesUI {
                         0, // Sin límite de velocidad de subida
                         autoStartTorrentDownloadsCheckbox.isSelected()
                 );
+                torrentDownloader.setLibraryDestinations(getTorrentMovieDestination(), getTorrentSeriesDestination());
+                torrentDownloader.setSeedingPolicy(getSeedingPolicy());
                 System.out.println("Configuración del TorrentDownloader actualizada");
             } else {
                 System.out.println("TorrentDownloader no disponible, la configuración se aplicará en el próximo reinicio");
@@ -1144,6 +1221,9 @@ public class AjustesUI {
                 if (config.containsKey("directDownloadSpeedLimit")) {
                     directDownloadSpeedLimitSlider.setValue(((Number) config.get("directDownloadSpeedLimit")).intValue());
                 }
+                bandwidthSchedule = BandwidthSchedule.fromJson(config.get(BandwidthSchedule.CONFIG_KEY));
+                showBandwidthCaps(BandwidthCaps.fromJson(config.get(BandwidthCaps.CONFIG_KEY)));
+                showSeedingPolicy(SeedingPolicy.fromJson(config.get(SeedingPolicy.CONFIG_KEY)));
                 if (config.containsKey("autoStartDirectDownloads")) {
                     autoStartDirectDownloadsCheckbox.setSelected((Boolean) config.get("autoStartDirectDownloads"));
                 }
@@ -1284,10 +1364,12 @@ public class AjustesUI {
         createSubfoldersCheckbox.setSelected(true);
         extractArchivesCheckbox.setSelected(true);
         maxConcurrentTorrentDownloadsSlider.setValue(1); // Valor predeterminado: 1
+        showSeedingPolicy(SeedingPolicy.unlimited());
 
 // Configuración de descargas directas
         maxConcurrentDirectDownloadsSlider.setValue(5);
         directDownloadSpeedLimitSlider.setValue(0);
+        showBandwidthCaps(BandwidthCaps.none());
         autoStartDirectDownloadsCheckbox.setSelected(true);
         streamplayHeadlessCheckbox.setSelected(true);
         powvideoHeadlessCheckbox.setSelected(true);
@@ -1322,6 +1404,7 @@ public class AjustesUI {
                     0, // uploadSpeedLimit
                     true // autoStartDownloads
             );
+            torrentDownloader.setSeedingPolicy(SeedingPolicy.unlimited());
             System.out.println("Configuración del TorrentDownloader restaurada a valores predeterminados");
         }
 
@@ -1405,6 +1488,19 @@ public class AjustesUI {
         return (int) directDownloadSpeedLimitSlider.getValue();
     }
 
+    /** Límites por servidor y techo combinado según los controles de descargas directas. */
+    public BandwidthCaps getBandwidthCaps() {
+        Map<String, Integer> serverLimits = new LinkedHashMap<>();
+        serverSpeedLimitSpinners.forEach((server, spinner) -> serverLimits.put(server, spinner.getValue()));
+        return new BandwidthCaps(totalDownloadCeilingSpinner.getValue(), serverLimits);
+    }
+
+    private void showBandwidthCaps(BandwidthCaps caps) {
+        serverSpeedLimitSpinners.forEach((server, spinner) ->
+                spinner.getValueFactory().setValue(Math.min(100_000, caps.getServerLimitKiB(server))));
+        totalDownloadCeilingSpinner.getValueFactory().setValue(Math.min(1_000_000, caps.getTotalCeilingKiB()));
+    }
+
     public boolean isAutoStartDirectDownloads() {
         return autoStartDirectDownloadsCheckbox.isSelected();
     }
@@ -1478,6 +1574,8 @@ public class AjustesUI {
                 0, // Sin límite de velocidad de subida
                 autoStartTorrentDownloadsCheckbox.isSelected()
             );
+            this.torrentDownloader.setLibraryDestinations(getTorrentMovieDestination(), getTorrentSeriesDestination());
+            this.torrentDownloader.setSeedingPolicy(getSeedingPolicy());
         }
     }
 
@@ -1514,6 +1612,30 @@ public class AjustesUI {
                 0  // Sin límite de velocidad de subida
         );
         downloader.setAutoStartDownloads(isAutoStartTorrentDownloads());
+        downloader.setLibraryDestinations(getTorrentMovieDestination(), getTorrentSeriesDestination());
+        downloader.setSeedingPolicy(getSeedingPolicy());
         return downloader;
     }
+
+    /** Objetivos de compartición según los controles de la sección de torrents. */
+    public SeedingPolicy getSeedingPolicy() {
+        return new SeedingPolicy(
+                seedRatioSpinner.getValue(),
+                Duration.ofMinutes(seedTimeSpinner.getValue()),
+                seedOnlyWhileIdleCheckbox.isSelected(),
+                SEED_GOAL_REMOVE.equals(seedGoalActionComboBox.getValue())
+                        ? SeedingPolicy.GoalAction.REMOVE_KEEP_FILES
+                        : SeedingPolicy.GoalAction.PAUSE,
+                downloadUploadReserveSpinner.getValue());
+    }
+
+    private void showSeedingPolicy(SeedingPolicy policy) {
+        seedRatioSpinner.getValueFactory().setValue(policy.getTargetRatio());
+        seedTimeSpinner.getValueFactory().setValue((int) Math.min(100_000L, policy.getSeedTime().toMinutes()));
+        seedOnlyWhileIdleCheckbox.setSelected(policy.isSeedOnlyWhileIdle());
+        seedGoalActionComboBox.setValue(policy.getGoalAction() == SeedingPolicy.GoalAction.REMOVE_KEEP_FILES
+                ? SEED_GOAL_REMOVE
+                : SEED_GOAL_PAUSE);
+        downloadUploadReserveSpinner.getValueFactory().setValue(policy.getDownloadUploadReservePercent());
+    }
 }
@@ -1,8 +1,12 @@
 package org.example.filmotecadelreves.UI;
 //ver1.3
 
+import org.example.filmotecadelreves.downloaders.BandwidthLimiter;
+import org.example.filmotecadelreves.downloaders.SwarmHealthEntry;
+import org.example.filmotecadelreves.downloaders.SwarmHealthSummary;
 import org.example.filmotecadelreves.downloaders.TorrentHealthReport;
 import org.example.filmotecadelreves.downloaders.TorrentLogEntry;
+import org.example.filmotecadelreves.downloaders.TorrentLogPage;
 import org.example.filmotecadelreves.downloaders.TorrentStats;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
@@ -45,7 +49,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,7 +58,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -63,12 +65,20 @@ import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * DescargasUI - Interfaz de usuario para gestionar descargas de torrents y directas
  */
 public class DescargasUI implements TorrentDownloader.TorrentNotificationListener {
 
+    private static final int TORRENT_LOG_PAGE_SIZE = 200;
+    /**
+     * Descargas directas de la cola que pueden tener el enlace resuelto (o resolviéndose)
+     * a la espera de un hueco de transferencia. Más enlaces por delante solo caducarían.
+     */
+    private static final int DIRECT_RESOLVE_AHEAD = 3;
+
     //==========================================================================
     // SECCIONES DE LA INTERFAZ
     //==========================================================================
@@ -91,6 +101,7 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
 
     /** Sección: Gestión de descargas */
     private TorrentDownloader torrentDownloader;
+    private Label swarmHealthLabel;
 
     /** Sección: Contador de descargas para PowVideo y StreamPlay */
     private Label downloadCounterLabel;
@@ -110,19 +121,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
     /** Persistencia */
     private final DownloadPersistenceManager persistenceManager = DownloadPersistenceManager.getInstance();
     private final Set<String> pendingTorrentAutoResume = new HashSet<>();
-    private final Queue<QueuedDirectDownload> pendingDirectDownloadQueue = new ArrayDeque<>();
     private final Map<String, ChangeListener<String>> directDownloadStatusListeners = new HashMap<>();
-    private DirectDownload activeQueuedDirectDownload;
-
-    private static class QueuedDirectDownload {
-        private final DirectDownload download;
-        private final Runnable startAction;
-
-        private QueuedDirectDownload(DirectDownload download, Runnable startAction) {
-            this.download = download;
-            this.startAction = startAction;
-        }
-    }
+    private final DirectDownloadQueue<DirectDownload> directDownloadQueue =
+            new DirectDownloadQueue<>(DIRECT_RESOLVE_AHEAD, DirectDownload::getServer, this::startQueuedDirectDownload);
 
     //==========================================================================
     // CONSTRUCTOR
@@ -152,9 +153,13 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         HBox directFiltersBox = createDirectFilters();
 
         // Organizar layout para la pestaña de torrents
+        swarmHealthLabel = new Label();
+        swarmHealthLabel.setVisible(false);
+        swarmHealthLabel.managedProperty().bind(swarmHealthLabel.visibleProperty());
+
         VBox torrentsLayout = new VBox(10);
         torrentsLayout.setPadding(new Insets(10));
-        torrentsLayout.getChildren().addAll(searchPanel, torrentFiltersBox, torrentsTable);
+        torrentsLayout.getChildren().addAll(searchPanel, torrentFiltersBox, swarmHealthLabel, torrentsTable);
         VBox.setVgrow(torrentsTable, Priority.ALWAYS);
         tabTorrents.setContent(torrentsLayout);
 
@@ -420,6 +425,8 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
             return;
         }
 
+        // Se reanudan como un lote para no abrir una conexión por torrent al arrancar
+        List<TorrentState> restored = new ArrayList<>();
         Iterator<String> iterator = pendingTorrentAutoResume.iterator();
         while (iterator.hasNext()) {
             String torrentId = iterator.next();
@@ -427,10 +434,13 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
             if (state != null) {
                 state.setStatus("En espera");
                 state.setUserPaused(false);
-                torrentDownloader.addTorrent(state);
+                restored.add(state);
             }
             iterator.remove();
         }
+        if (!restored.isEmpty()) {
+            torrentDownloader.addTorrents(restored);
+        }
     }
 
     private TorrentState findTorrentStateById(String instanceId) {
@@ -563,10 +573,12 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
 
         // Columna de nombre de archivo
         TableColumn<TorrentState, String> fileNameCol = new TableColumn<>("Archivo");
+        // setFileName también cambia el nombre, así que la celda sigue a esa propiedad.
         fileNameCol.setCellValueFactory(cellData -> {
             TorrentState state = cellData.getValue();
-            String fileName = state.getFileName();
-            return new SimpleStringProperty(fileName != null ? fileName : "Desconocido");
+            return Bindings.createStringBinding(
+                    () -> state.getFileName() != null ? state.getFileName() : "Desconocido",
+                    state.nameProperty());
         });
         fileNameCol.setPrefWidth(200);
 
@@ -1077,7 +1089,15 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
                 }
             });
 
-            contextMenu.getItems().addAll(new SeparatorMenuItem(), pauseItem, resumeItem, removeItem);
+            MenuItem limitItem = new MenuItem("Límite de velocidad...");
+            limitItem.setOnAction(event -> {
+                DirectDownload download = row.getItem();
+                if (download != null) {
+                    showDirectRateLimitDialog(download);
+                }
+            });
+
+            contextMenu.getItems().addAll(new SeparatorMenuItem(), pauseItem, resumeItem, removeItem, limitItem);
 
             row.itemProperty().addListener((obs, oldItem, newItem) ->
                     updateDirectContextMenuItems(pauseItem, resumeItem, removeItem, newItem));
@@ -1686,7 +1706,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
 
                             // Configurar visibilidad de botones según el estado
                             pauseButton.setVisible(!"Pausado".equals(status) && !"Completado".equals(status) && !"Error".equals(status));
-                            resumeButton.setVisible("Pausado".equals(status));
+                            resumeButton.setVisible("Pausado".equals(status)
+                                    || "Completado (compartición finalizada)".equals(status)
+                                    || "Completado (compartición en espera)".equals(status));
                             retryButton.setVisible("Error".equals(status));
 
                             // El botón de abrir ubicación siempre visible pero habilitado solo si hay un destino válido
@@ -1923,7 +1945,7 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
             String status = download.getStatus();
             if (status != null && status.equalsIgnoreCase("Completed")) {
                 iterator.remove();
-                persistenceManager.deleteDirectDownload(download.getId());
+                persist(() -> persistenceManager.deleteDirectDownload(download.getId()));
             }
         }
     }
@@ -1974,6 +1996,7 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         System.out.println("Guardando estado de descargas directas antes de cerrar la aplicación...");
+        ProgressEventBus.shared().flush();
         for (DirectDownload download : directDownloads) {
             if (download == null) {
                 continue;
@@ -2321,7 +2344,12 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
                     "Inicializa el cliente de torrents desde los ajustes antes de revisar el registro.");
             return;
         }
-        List<TorrentLogEntry> entries = torrentDownloader.getTorrentLog(torrentState);
+        TorrentLogPage page = torrentDownloader.getTorrentLogPage(torrentState, null, TORRENT_LOG_PAGE_SIZE);
+        List<TorrentLogEntry> entries = page.entries();
+        if (entries.isEmpty()) {
+            // The archive could not be written: fall back to the entries kept in memory.
+            entries = torrentDownloader.getTorrentLog(torrentState);
+        }
         if (entries.isEmpty()) {
             showInfoAlert("Registro vacío",
                     "Todavía no hay eventos registrados para esta descarga.");
@@ -2335,7 +2363,8 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
 
         TableView<TorrentLogEntry> tableView = new TableView<>();
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
-        tableView.setItems(FXCollections.observableArrayList(entries));
+        ObservableList<TorrentLogEntry> items = FXCollections.observableArrayList(entries);
+        tableView.setItems(items);
 
         TableUtils.enableCopyPasteSupport(tableView, null);
 
@@ -2366,7 +2395,19 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         tableView.getColumns().setAll(timeColumn, stepColumn, levelColumn, messageColumn);
         tableView.setPrefSize(720, 360);
 
-        dialog.getDialogPane().setContent(tableView);
+        TorrentLogPage.Cursor[] olderCursor = {page.olderCursor()};
+        Button olderButton = new Button("Cargar anteriores");
+        olderButton.setDisable(olderCursor[0] == null);
+        olderButton.setOnAction(event -> {
+            TorrentLogPage older = torrentDownloader.getTorrentLogPage(torrentState, olderCursor[0], TORRENT_LOG_PAGE_SIZE);
+            items.addAll(0, older.entries());
+            olderCursor[0] = older.olderCursor();
+            olderButton.setDisable(olderCursor[0] == null);
+        });
+
+        VBox content = new VBox(8, olderButton, tableView);
+        VBox.setVgrow(tableView, Priority.ALWAYS);
+        dialog.getDialogPane().setContent(content);
         dialog.showAndWait();
     }
 
@@ -2432,6 +2473,15 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         alert.showAndWait();
     }
 
+    /**
+     * Todas las escrituras en SQLite pasan por el hilo de persistencia, sea
+     * cual sea el hilo que las pide: así se aplican en el orden en que se
+     * pidieron y un borrado no puede adelantarse a una actualización anterior.
+     */
+    private static void persist(Runnable write) {
+        DownloadPersistenceManager.getInstance().submit(write);
+    }
+
     private void runOnFxThread(Runnable action) {
         if (action == null) {
             return;
@@ -2531,7 +2581,29 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         directDownloads.remove(download);
-        persistenceManager.deleteDirectDownload(download.getId());
+        persist(() -> persistenceManager.deleteDirectDownload(download.getId()));
+        BandwidthLimiter.releaseDownload(download.getId());
+    }
+
+    /**
+     * Límite propio de una descarga directa, aplicado en vivo por debajo de
+     * los límites del servidor y global.  No se guarda entre sesiones.
+     */
+    private void showDirectRateLimitDialog(DirectDownload download) {
+        BandwidthLimiter limiter = BandwidthLimiter.forDownload(download.getId(), download.getServer());
+
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Límite de velocidad");
+        dialog.setHeaderText("Límite de descarga de " + download.getName() + " en KiB/s (deja en blanco para ilimitado)");
+        dialog.setContentText("Descarga (KiB/s):");
+        long currentLimit = limiter.getRateLimit() / 1024;
+        if (currentLimit > 0) {
+            dialog.getEditor().setText(String.valueOf(currentLimit));
+        }
+        dialog.getEditor().setPromptText("Ilimitado");
+        restrictToNumericInput(dialog.getEditor());
+
+        dialog.showAndWait().ifPresent(value -> limiter.setRateLimit(Math.max(0, parseLimitValue(value)) * 1024L));
     }
 
     /**
@@ -2546,6 +2618,21 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         torrentState.markPersistenceSynced();
     }
 
+    /**
+     * Añade varias descargas de torrent a la vez y las guarda en una única
+     * transacción, de modo que un lote nunca queda guardado a medias.
+     */
+    public void addTorrentDownloads(List<TorrentState> torrentStates) {
+        if (torrentStates == null || torrentStates.isEmpty()) {
+            return;
+        }
+        System.out.println("Añadiendo lote de " + torrentStates.size() + " descargas de torrent");
+        torrentDownloads.addAll(torrentStates);
+        if (persistenceManager.upsertTorrents(torrentStates)) {
+            torrentStates.forEach(TorrentState::markPersistenceSynced);
+        }
+    }
+
     /**
      * Añade una descarga directa a la lista de descargas
      *
@@ -2569,8 +2656,7 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
             System.out.println("Cola descarga directa: " + download.getName());
             addDirectDownloadInternal(download);
             attachQueueListener(download);
-            pendingDirectDownloadQueue.offer(new QueuedDirectDownload(download, startAction));
-            processPendingDirectDownloads();
+            directDownloadQueue.enqueue(download, startAction);
         });
     }
 
@@ -2580,7 +2666,7 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         if (!alreadyPresent) {
             directDownloads.add(download);
         }
-        persistenceManager.upsertDirectDownload(download);
+        persist(() -> persistenceManager.upsertDirectDownload(download));
         download.markPersistenceSynced();
     }
 
@@ -2595,18 +2681,19 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
                 runOnFxThread(() -> handleQueuedDownloadStatusChange(download, newStatus));
         download.statusProperty().addListener(listener);
         directDownloadStatusListeners.put(download.getId(), listener);
+        // Enlace resuelto: el servidor queda libre para resolver el siguiente.
+        download.setOnLinkResolved(() -> runOnFxThread(() -> directDownloadQueue.markResolved(download)));
     }
 
     private void handleQueuedDownloadStatusChange(DirectDownload download, String newStatus) {
-        if (download == null || download != activeQueuedDirectDownload) {
+        if (newStatus == null) {
             return;
         }
-        if (!shouldAdvanceQueue(newStatus)) {
-            return;
+        boolean leaves = shouldAdvanceQueue(newStatus)
+                || (directDownloadQueue.isResolved(download) && "paused".equalsIgnoreCase(newStatus));
+        if (leaves && directDownloadQueue.release(download)) {
+            detachQueueListener(download);
         }
-        detachQueueListener(download);
-        activeQueuedDirectDownload = null;
-        processPendingDirectDownloads();
     }
 
     private boolean shouldAdvanceQueue(String status) {
@@ -2624,29 +2711,25 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         if (listener != null) {
             download.statusProperty().removeListener(listener);
         }
+        download.setOnLinkResolved(null);
     }
 
-    private void processPendingDirectDownloads() {
-        if (activeQueuedDirectDownload != null) {
-            return;
-        }
-        QueuedDirectDownload next = pendingDirectDownloadQueue.poll();
-        if (next == null) {
-            return;
-        }
-        activeQueuedDirectDownload = next.download;
+    /**
+     * Arranca una descarga que sale de la cola para resolver su enlace. El número de
+     * transferencias simultáneas lo limita el motor de descargas directas; ver
+     * {@link DirectDownloadQueue}.
+     */
+    private void startQueuedDirectDownload(DirectDownload download, Runnable startAction) {
         CompletableFuture.runAsync(() -> {
             try {
-                next.startAction.run();
+                startAction.run();
             } catch (Exception e) {
                 Logger.getLogger(DescargasUI.class.getName()).log(Level.SEVERE,
-                        "Error iniciando descarga directa: " + next.download.getName(), e);
+                        "Error iniciando descarga directa: " + download.getName(), e);
                 runOnFxThread(() -> {
-                    if (activeQueuedDirectDownload == next.download) {
-                        detachQueueListener(next.download);
-                        activeQueuedDirectDownload = null;
-                        next.download.setStatus("Error");
-                        processPendingDirectDownloads();
+                    if (directDownloadQueue.release(download)) {
+                        detachQueueListener(download);
+                        download.setStatus("Error");
                     }
                 });
             }
@@ -2721,7 +2804,25 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
 
     @Override
     public void onTorrentStatusUpdate(TorrentState torrentState, TorrentStats stats) {
-        Platform.runLater(() -> torrentsTable.refresh());
+        // TorrentDownloader publica el progreso en ProgressEventBus y las celdas siguen a sus propiedades.
+    }
+
+    @Override
+    public void onSwarmHealthUpdate(SwarmHealthSummary summary) {
+        StringBuilder details = new StringBuilder();
+        for (SwarmHealthEntry entry : summary.entries()) {
+            if (entry.verdict() != SwarmHealthEntry.Verdict.HEALTHY) {
+                details.append(entry.state().getName()).append(" — ").append(entry.describe()).append('\n');
+            }
+        }
+        Platform.runLater(() -> {
+            if (swarmHealthLabel == null) {
+                return;
+            }
+            swarmHealthLabel.setText("Salud de los torrents: " + summary.summary());
+            swarmHealthLabel.setTooltip(details.length() > 0 ? new Tooltip(details.toString().trim()) : null);
+            swarmHealthLabel.setVisible(!summary.entries().isEmpty());
+        });
     }
 
     //==========================================================================
@@ -2755,6 +2856,8 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         private transient long lastPersistedBytes = -1;
         private transient String lastPersistedStatus = null;
         private transient long lastPersistedTimestamp = 0L;
+        private transient Function<String, CompletableFuture<Boolean>> restartDecision;
+        private transient volatile Runnable onLinkResolved;
 
         public DirectDownload(String name, double progress, String status, String server, String url) {
             this(null, name, progress, status, server, url, "", null, false);
@@ -2807,7 +2910,31 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
             }
         }
 
+        /**
+         * Sustituye el diálogo de confirmación por una decisión programática, por
+         * ejemplo cuando no hay interfaz gráfica disponible.
+         */
+        public void setRestartDecision(Function<String, CompletableFuture<Boolean>> restartDecision) {
+            this.restartDecision = restartDecision;
+        }
+
+        /** Se ejecuta cada vez que un descargador tiene el enlace directo y la descarga pasa a esperar hueco. */
+        public void setOnLinkResolved(Runnable onLinkResolved) {
+            this.onLinkResolved = onLinkResolved;
+        }
+
+        public void linkResolved() {
+            Runnable hook = onLinkResolved;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+
         public CompletableFuture<Boolean> askToRestartDownload(String reasonMessage) {
+            Function<String, CompletableFuture<Boolean>> customDecision = restartDecision;
+            if (customDecision != null) {
+                return customDecision.apply(reasonMessage);
+            }
             CompletableFuture<Boolean> decision = new CompletableFuture<>();
             Platform.runLater(() -> {
                 try {
@@ -2899,24 +3026,36 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
                 }
             }
 
-            DownloadPersistenceManager.getInstance().upsertDirectDownload(
+            String currentName = getName();
+            String currentUrl = getUrl();
+            String currentServer = getServer();
+            String currentDestination = getDestinationPath();
+            String currentActualPath = getActualFilePath();
+            long currentSize = getFileSize();
+            double currentSpeed = getDownloadSpeed();
+            long currentRemaining = getRemainingTime();
+            boolean currentUserPaused = userPaused;
+            String currentEtag = getEtag();
+            String currentLastModified = getLastModified();
+            boolean currentResumeSupported = isResumeSupported();
+            persist(() -> DownloadPersistenceManager.getInstance().upsertDirectDownload(
                     id,
-                    getName(),
-                    getUrl(),
-                    getServer(),
-                    getDestinationPath(),
-                    getActualFilePath(),
+                    currentName,
+                    currentUrl,
+                    currentServer,
+                    currentDestination,
+                    currentActualPath,
                     currentStatus,
                     currentProgress,
-                    getFileSize(),
+                    currentSize,
                     currentBytes,
-                    getDownloadSpeed(),
-                    getRemainingTime(),
-                    userPaused,
-                    getEtag(),
-                    getLastModified(),
-                    isResumeSupported()
-            );
+                    currentSpeed,
+                    currentRemaining,
+                    currentUserPaused,
+                    currentEtag,
+                    currentLastModified,
+                    currentResumeSupported
+            ));
 
             lastPersistedProgress = currentProgress;
             lastPersistedBytes = currentBytes;
@@ -2943,6 +3082,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         public void setProgress(double progress) {
+            if (this.progress.get() == progress) {
+                return;
+            }
             this.progress.set(progress);
             persistSnapshot(false);
         }
@@ -2996,6 +3138,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         public void setFileSize(long fileSize) {
+            if (this.fileSize.get() == fileSize) {
+                return;
+            }
             this.fileSize.set(fileSize);
             persistSnapshot(false);
         }
@@ -3009,6 +3154,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         public void setDownloadSpeed(double downloadSpeed) {
+            if (this.downloadSpeed.get() == downloadSpeed) {
+                return;
+            }
             this.downloadSpeed.set(downloadSpeed);
             persistSnapshot(false);
         }
@@ -3022,6 +3170,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         public void setRemainingTime(long remainingTime) {
+            if (this.remainingTime.get() == remainingTime) {
+                return;
+            }
             this.remainingTime.set(remainingTime);
             persistSnapshot(false);
         }
@@ -3035,6 +3186,9 @@ public class DescargasUI implements TorrentDownloader.TorrentNotificationListene
         }
 
         public void setDownloadedBytes(long downloadedBytes) {
+            if (this.downloadedBytes.get() == downloadedBytes) {
+                return;
+            }
             this.downloadedBytes.set(downloadedBytes);
             persistSnapshot(false);
         }
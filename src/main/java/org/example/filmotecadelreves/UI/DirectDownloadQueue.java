@@ -0,0 +1,133 @@
+package org.example.filmotecadelreves.UI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Bookkeeping of the queued direct downloads, kept apart from JavaFX so it
+ * can be tested on its own.
+ * <p>
+ * Downloads leave the pending queue in order to have their link resolved
+ * while others transfer.  At most {@code resolveAhead} downloads are out at
+ * once, either resolving or holding a resolved link until the download engine
+ * grants them a slot.  Each server resolves one link at a time, because its
+ * downloader shares a browser and state between downloads; pending downloads
+ * of a busy server are skipped so those of other servers move ahead.
+ * <p>
+ * Not thread-safe: {@link DescargasUI} only calls it on the JavaFX thread.
+ */
+final class DirectDownloadQueue<T> {
+
+    private static final class Entry<T> {
+        private final T item;
+        private final Runnable startAction;
+        private boolean resolved;
+
+        private Entry(T item, Runnable startAction) {
+            this.item = item;
+            this.startAction = startAction;
+        }
+    }
+
+    private final int resolveAhead;
+    private final Function<? super T, String> serverOf;
+    private final BiConsumer<? super T, Runnable> starter;
+    private final List<Entry<T>> pending = new ArrayList<>();
+    private final List<Entry<T>> ahead = new ArrayList<>();
+
+    /**
+     * @param serverOf the server whose downloader resolves the link of an item
+     * @param starter  runs the start action of an item that leaves the queue
+     */
+    DirectDownloadQueue(int resolveAhead, Function<? super T, String> serverOf,
+                        BiConsumer<? super T, Runnable> starter) {
+        this.resolveAhead = Math.max(1, resolveAhead);
+        this.serverOf = serverOf;
+        this.starter = starter;
+    }
+
+    /** Queues {@code item} and starts whatever now fits. */
+    void enqueue(T item, Runnable startAction) {
+        pending.add(new Entry<>(item, startAction));
+        advance();
+    }
+
+    /** The link of {@code item} is resolved: its server may resolve the next one. */
+    void markResolved(T item) {
+        Entry<T> entry = find(ahead, item);
+        if (entry != null && !entry.resolved) {
+            entry.resolved = true;
+            advance();
+        }
+    }
+
+    boolean isResolved(T item) {
+        Entry<T> entry = find(ahead, item);
+        return entry != null && entry.resolved;
+    }
+
+    /**
+     * Takes {@code item} out of the queue, because its transfer started or it
+     * finished, failed or was cancelled, and hands its place to the next one.
+     *
+     * @return whether the item was still queued
+     */
+    boolean release(T item) {
+        Entry<T> entry = find(ahead, item);
+        if (entry != null) {
+            ahead.remove(entry);
+            advance();
+            return true;
+        }
+        entry = find(pending, item);
+        return entry != null && pending.remove(entry);
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    int aheadCount() {
+        return ahead.size();
+    }
+
+    private void advance() {
+        // The starter may call back into the queue, so nothing is iterated across it.
+        Entry<T> next;
+        while (ahead.size() < resolveAhead && (next = nextStartable()) != null) {
+            pending.remove(next);
+            ahead.add(next);
+            starter.accept(next.item, next.startAction);
+        }
+    }
+
+    private Entry<T> nextStartable() {
+        for (Entry<T> entry : pending) {
+            if (!isResolving(serverOf.apply(entry.item))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private boolean isResolving(String server) {
+        for (Entry<T> entry : ahead) {
+            if (!entry.resolved && Objects.equals(serverOf.apply(entry.item), server)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> Entry<T> find(List<Entry<T>> entries, T item) {
+        for (Entry<T> entry : entries) {
+            if (entry.item == item) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -604,6 +604,7 @@ public class DirectDownloadUI {
                             ));
 
                             // Usar el DownloadManager para iniciar la descarga
+                            movie.setMirrors(findMirrors(movie));
                             boolean success = DownloadManager.startMovieDownload(movie, ajustesUI, descargasUI);
 
                             if (!success) {
@@ -661,6 +662,7 @@ public class DirectDownloadUI {
                             }
 
                             // Usar el DownloadManager para iniciar la descarga
+                            episode.setMirrors(findMirrors(episode));
                             boolean success = DownloadManager.startEpisodeDownload(episode, ajustesUI, descargasUI);
 
                             if (!success) {
@@ -1112,6 +1114,38 @@ public class DirectDownloadUI {
         }
     }
 
+    /**
+     * Busca en links_files_download los demás servidores que ofrecen el mismo archivo que el
+     * elemento de la cesta (misma calidad y, si se conoce, mismo idioma), para que la descarga
+     * pueda usar el más rápido.
+     */
+    private List<DownloadBasketItem.Mirror> findMirrors(DownloadBasketItem item) {
+        List<DirectFile> files = "movie".equals(item.getType())
+                ? connectDataBase.getMovieDirectFiles(item.getId())
+                : connectDataBase.getDirectFiles(item.getEpisodeId());
+        String chosenLink = item.getLink();
+        DirectFile chosen = files.stream()
+                .filter(file -> Objects.equals(chosenLink, UrlNormalizer.normalizeMediaUrl(file.getLink())))
+                .findFirst()
+                .orElse(null);
+
+        List<DownloadBasketItem.Mirror> mirrors = new ArrayList<>();
+        for (DirectFile file : files) {
+            String link = UrlNormalizer.normalizeMediaUrl(file.getLink());
+            if (link == null || link.isEmpty() || link.equals(chosenLink)) {
+                continue;
+            }
+            if (item.getQuality() != null && !item.getQuality().equalsIgnoreCase(file.getQuality())) {
+                continue;
+            }
+            if (chosen != null && !Objects.equals(chosen.getLanguage(), file.getLanguage())) {
+                continue;
+            }
+            mirrors.add(new DownloadBasketItem.Mirror(file.getServer(), link));
+        }
+        return mirrors;
+    }
+
     private void handleManualDownload(Movie movie) {
         if (movie == null) {
             return;
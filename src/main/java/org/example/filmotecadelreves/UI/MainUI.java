@@ -1,5 +1,10 @@
 package org.example.filmotecadelreves.UI;
 
+import org.example.filmotecadelreves.downloaders.BandwidthCaps;
+import org.example.filmotecadelreves.downloaders.BandwidthSchedule;
+import org.example.filmotecadelreves.downloaders.BandwidthScheduler;
+import org.example.filmotecadelreves.downloaders.BrowserSessionPool;
+import org.example.filmotecadelreves.downloaders.DirectDownloadEngine;
 import org.example.filmotecadelreves.downloaders.TorrentDownloader;
 import org.example.filmotecadelreves.moviesad.ConnectDataBase;
 import org.example.filmotecadelreves.moviesad.DatabaseStatusPanel;
@@ -61,6 +66,7 @@ public class MainUI extends Application {
     private ConnectDataBase torrentDB;
     private ConnectDataBase directDB;
     private TorrentDownloader torrentDownloader;
+    private BandwidthScheduler bandwidthScheduler;
     private Scene scene;
     private DatabaseStatusPanel statusPanel;
     private DescargasUI descargasUI;
@@ -89,6 +95,13 @@ public class MainUI extends Application {
         // Crear directorios necesarios
         createRequiredDirectories();
 
+        // Horario de ancho de banda para torrents y descargas directas
+        bandwidthScheduler = new BandwidthScheduler(
+                BandwidthSchedule.fromJson(configJson.get(BandwidthSchedule.CONFIG_KEY)),
+                readDirectDownloadSpeedLimit(configJson),
+                BandwidthCaps.fromJson(configJson.get(BandwidthCaps.CONFIG_KEY)));
+        DirectDownloadEngine.shared().setMaxConcurrent(readMaxConcurrentDirectDownloads(configJson));
+
         primaryStage.setTitle("MovieDownloader");
         primaryStage.initStyle(StageStyle.DECORATED);
         primaryStage.setResizable(true);
@@ -228,6 +241,26 @@ public class MainUI extends Application {
         }
 
         this.configJson.putAll(updatedConfig);
+
+        if (bandwidthScheduler != null) {
+            bandwidthScheduler.updateConfiguration(
+                    BandwidthSchedule.fromJson(configJson.get(BandwidthSchedule.CONFIG_KEY)),
+                    readDirectDownloadSpeedLimit(configJson),
+                    BandwidthCaps.fromJson(configJson.get(BandwidthCaps.CONFIG_KEY)));
+        }
+        DirectDownloadEngine.shared().setMaxConcurrent(readMaxConcurrentDirectDownloads(configJson));
+    }
+
+    private static int readDirectDownloadSpeedLimit(JSONObject config) {
+        Object value = config != null ? config.get("directDownloadSpeedLimit") : null;
+        return value instanceof Number number ? Math.max(0, number.intValue()) : 0;
+    }
+
+    private static int readMaxConcurrentDirectDownloads(JSONObject config) {
+        Object value = config != null ? config.get("maxConcurrentDirectDownloads") : null;
+        return value instanceof Number number
+                ? Math.max(1, number.intValue())
+                : DirectDownloadEngine.DEFAULT_MAX_CONCURRENT;
     }
 
     public void applyStreamplayHeadlessPreference(boolean runHeadless) {
@@ -345,15 +378,11 @@ public class MainUI extends Application {
                 configJson.put("directColumnsVisibility", directColumnsConfig);
             }
 
-            // Guardar el estado de la sesión de torrent si está disponible
+            // El estado de la sesión de torrent se guarda en su propio archivo binario
             if (torrentDownloader != null) {
-                byte[] sessionState = torrentDownloader.saveSessionState();
-                if (sessionState != null) {
-                    // Convertir el array de bytes a una cadena Base64 para almacenarlo en JSON
-                    String base64SessionState = Base64.getEncoder().encodeToString(sessionState);
-                    configJson.put("torrentSessionState", base64SessionState);
-                }
+                torrentDownloader.persistSessionState();
             }
+            configJson.remove("torrentSessionState");
 
             // Guardar el progreso actual de los scrapers
             configJson.put("directScraperMoviesLastPage", scraperProgressTracker.getDirectMoviesLastPage());
@@ -421,13 +450,14 @@ public class MainUI extends Application {
                 descargasUI.setDirectColumnsVisibility(directColumnsConfig);
             }
 
-            // Restaurar el estado de la sesión de torrent si está disponible
+            // Migrar el estado de sesión que versiones anteriores guardaban en config.json;
+            // el TorrentDownloader ya restaura el suyo al arrancar.
             if (torrentDownloader != null) {
-                String base64SessionState = (String) configJson.get("torrentSessionState");
-                if (base64SessionState != null && !base64SessionState.isEmpty()) {
+                Object legacySessionState = configJson.remove("torrentSessionState");
+                if (legacySessionState instanceof String base64SessionState && !base64SessionState.isEmpty()) {
                     try {
                         byte[] sessionState = Base64.getDecoder().decode(base64SessionState);
-                        torrentDownloader.restoreSessionState(sessionState);
+                        torrentDownloader.importLegacySessionState(sessionState);
                     } catch (Exception e) {
                         System.err.println("Error al restaurar el estado de la sesión de torrent: " + e.getMessage());
                         e.printStackTrace();
@@ -491,6 +521,15 @@ public class MainUI extends Application {
             }
         }
 
+        if (!DirectDownloadEngine.shared().shutdown(java.time.Duration.ofSeconds(5))) {
+            System.err.println("Algunas descargas directas no terminaron a tiempo al cerrar.");
+        }
+        BrowserSessionPool.shared().shutdown();
+
+        if (bandwidthScheduler != null) {
+            bandwidthScheduler.shutdown();
+        }
+
         if (torrentDownloader != null) {
             System.out.println("Deteniendo TorrentDownloader...");
             try {
@@ -882,6 +921,9 @@ public class MainUI extends Application {
 
         // Asignar el nuevo downloader
         this.torrentDownloader = torrentDownloader;
+        if (bandwidthScheduler != null) {
+            bandwidthScheduler.setTorrentDownloader(torrentDownloader);
+        }
 
         // Actualizar todas las dependencias que usan TorrentDownloader
         updateDependencies();
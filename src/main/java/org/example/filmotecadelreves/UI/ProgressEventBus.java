@@ -0,0 +1,181 @@
+package org.example.filmotecadelreves.UI;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the progress updates of every download engine and applies them on
+ * the JavaFX thread once per animation pulse, instead of one
+ * {@code Platform.runLater} per update.
+ * <p>
+ * An update posted under a topic replaces the pending update of the same
+ * download and topic, so a download that reports progress every few
+ * milliseconds costs one set of property changes per frame.  Updates without
+ * a topic are all applied, in the order they were posted.  After applying a
+ * batch, the flush listeners receive the set of downloads that changed (the
+ * "dirty" set) to refresh what is on screen.
+ * <p>
+ * Without a running JavaFX toolkit (headless mode, tests) updates are applied
+ * straight away on the thread that posts them.
+ */
+public final class ProgressEventBus {
+
+    /** Topic of the periodic progress snapshot (bytes, percentage, speed, time left). */
+    public static final String PROGRESS = "progress";
+
+    private static final Logger LOGGER = Logger.getLogger(ProgressEventBus.class.getName());
+    private static final ProgressEventBus SHARED = new ProgressEventBus();
+
+    private record Key(Object source, Object topic) {
+    }
+
+    private final Object lock = new Object();
+    private final List<Consumer<Set<Object>>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /** Asks for a flush; by default starts the pulse timer on the JavaFX thread. */
+    private final Runnable wakeUp;
+    private Map<Key, Runnable> pending = new LinkedHashMap<>();
+    private Set<Object> dirty = new LinkedHashSet<>();
+    private volatile boolean headless;
+    /** Created on the JavaFX thread the first time it is needed. */
+    private AnimationTimer pulse;
+
+    private ProgressEventBus() {
+        this.wakeUp = this::requestPulse;
+    }
+
+    /** For tests: {@code wakeUp} runs whenever the bus goes from idle to having work. */
+    ProgressEventBus(Runnable wakeUp) {
+        this.wakeUp = wakeUp;
+    }
+
+    public static ProgressEventBus shared() {
+        return SHARED;
+    }
+
+    /** Queues an update that is applied after every update posted before it. */
+    public <T> void post(T source, Consumer<? super T> update) {
+        enqueue(new Key(source, new Object()), source, update);
+    }
+
+    /**
+     * Queues an update that replaces the pending one of the same source and
+     * topic.  It must set every property the replaced update would have set.
+     */
+    public <T> void post(T source, String topic, Consumer<? super T> update) {
+        enqueue(new Key(source, topic), source, update);
+    }
+
+    /** Marks a source whose properties changed elsewhere so the listeners refresh it. */
+    public void markDirty(Object source) {
+        synchronized (lock) {
+            dirty.add(source);
+        }
+        schedule();
+    }
+
+    /** The listener runs on the JavaFX thread with the sources changed since the last flush. */
+    public void addFlushListener(Consumer<Set<Object>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeFlushListener(Consumer<Set<Object>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Applies every pending update now.  Call it on the JavaFX thread, e.g.
+     * before saving the state of the downloads on exit.
+     */
+    public void flush() {
+        List<Runnable> updates;
+        Set<Object> changed;
+        synchronized (lock) {
+            if (pending.isEmpty() && dirty.isEmpty()) {
+                return;
+            }
+            updates = new ArrayList<>(pending.values());
+            changed = dirty;
+            pending = new LinkedHashMap<>();
+            dirty = new LinkedHashSet<>();
+        }
+        for (Runnable update : updates) {
+            try {
+                update.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "No se pudo aplicar una actualización de progreso", e);
+            }
+        }
+        Set<Object> view = Collections.unmodifiableSet(changed);
+        for (Consumer<Set<Object>> listener : listeners) {
+            try {
+                listener.accept(view);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error al refrescar las descargas", e);
+            }
+        }
+    }
+
+    private <T> void enqueue(Key key, T source, Consumer<? super T> update) {
+        Runnable apply = () -> update.accept(source);
+        synchronized (lock) {
+            // Re-inserting moves the update behind the ones posted since the replaced one.
+            pending.remove(key);
+            pending.put(key, apply);
+            dirty.add(source);
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (headless) {
+            flush();
+            return;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            wakeUp.run();
+        }
+    }
+
+    private void requestPulse() {
+        try {
+            Platform.runLater(this::startPulse);
+        } catch (IllegalStateException toolkitNotRunning) {
+            headless = true;
+            scheduled.set(false);
+            flush();
+        }
+    }
+
+    private void startPulse() {
+        if (pulse == null) {
+            pulse = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    onPulse();
+                }
+            };
+        }
+        pulse.start();
+    }
+
+    private void onPulse() {
+        // A post arriving from here on schedules a new start, which runs after this pulse.
+        scheduled.set(false);
+        pulse.stop();
+        flush();
+    }
+}
@@ -384,183 +384,91 @@ public class TorrentDownloadUI {
         ProgressDialog progressDialog = new ProgressDialog("Procesando descargas", "Preparando archivos torrent...");
         progressDialog.show();
 
-        // Agrupar episodios por serie para crear la estructura de carpetas
-        Map<String, List<DownloadBasketItem>> episodesBySeries = downloadBasket.stream()
-                .filter(item -> "episode".equals(item.getType()))
-                .collect(Collectors.groupingBy(DownloadBasketItem::getSeriesName));
-
-        // Contador para seguir el progreso final
-        int[] processedCount = {0};
-        final int totalItems = downloadBasket.size();
-
-        // Lista para almacenar las tareas de descarga
-        List<CompletableFuture<Void>> downloadTasks = new ArrayList<>();
-
-        // Procesar películas
-        downloadBasket.stream()
-                .filter(item -> "movie".equals(item.getType()))
-                .forEach(movie -> {
-                    CompletableFuture<Void> task = CompletableFuture.runAsync(() -> {
-                        try {
-                            System.out.println("Procesando película para descarga: " + movie.getName());
-                            System.out.println("Enlace torrent: " + movie.getTorrentLink());
-
-                            // Actualizar diálogo de progreso
-                            Platform.runLater(() -> progressDialog.updateProgress(
-                                    "Descargando torrent para: " + movie.getName(),
-                                    (double) ++processedCount[0] / totalItems
-                            ));
-
-                            // Descargar el archivo torrent desde la URL
-                            String torrentFilePath = downloadTorrentFile(movie.getTorrentLink(), movie.getName());
-
-                            if (torrentFilePath != null) {
-                                TorrentState torrentState = new TorrentState(
-                                        movie.getName(),
-                                        ajustesUI.getTorrentMovieDestination(),
-                                        0,
-                                        0,
-                                        100
-                                );
-                                torrentState.setStatus("En espera");
-
-                                // Establecer el nombre de la película en la propiedad name
-                                torrentState.setName(movie.getName());
-
-                                // Establecer el tamaño del archivo si está disponible
-                                // Esto se actualizará durante la descarga
-                                torrentState.setFileSize(0);
-
-                                // Añadir a la lista de descargas
-                                Platform.runLater(() -> descargasUI.addTorrentDownload(torrentState));
-
-                                // Iniciar la descarga con el archivo torrent descargado
-                                torrentDownloader.downloadTorrent(
-                                        torrentFilePath,
-                                        torrentState
-                                );
-
-                                System.out.println("Descarga iniciada para: " + movie.getName());
-                            } else {
-                                System.err.println("Error al descargar el archivo torrent para: " + movie.getName());
-                                Platform.runLater(() -> showAlert(
-                                        Alert.AlertType.ERROR,
-                                        "Error de descarga",
-                                        "No se pudo descargar el archivo torrent para: " + movie.getName()
-                                ));
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error al procesar película: " + e.getMessage());
-                            e.printStackTrace();
-                            Platform.runLater(() -> showAlert(
-                                    Alert.AlertType.ERROR,
-                                    "Error",
-                                    "Error al procesar película " + movie.getName() + ": " + e.getMessage()
-                            ));
-                        }
-                    });
-
-                    downloadTasks.add(task);
-                });
+        // Crear todas las descargas de la cesta: primero películas y después los episodios agrupados por serie
+        List<TorrentState> batch = new ArrayList<>();
+        try {
+            for (DownloadBasketItem movie : downloadBasket) {
+                if ("movie".equals(movie.getType())) {
+                    batch.add(createBasketTorrentState(movie, ajustesUI.getTorrentMovieDestination()));
+                }
+            }
+            Map<String, List<DownloadBasketItem>> episodesBySeries = downloadBasket.stream()
+                    .filter(item -> "episode".equals(item.getType()))
+                    .collect(Collectors.groupingBy(DownloadBasketItem::getSeriesName, LinkedHashMap::new,
+                            Collectors.toList()));
+            for (Map.Entry<String, List<DownloadBasketItem>> series : episodesBySeries.entrySet()) {
+                for (DownloadBasketItem episode : series.getValue()) {
+                    batch.add(createBasketTorrentState(episode, resolveEpisodeDestination(series.getKey(), episode)));
+                }
+            }
+        } catch (IOException e) {
+            progressDialog.close();
+            showAlert(Alert.AlertType.ERROR, "Error", e.getMessage());
+            return;
+        }
 
-        // Procesar episodios agrupados por serie
-        episodesBySeries.forEach((seriesName, episodes) -> {
-            episodes.forEach(episode -> {
-                CompletableFuture<Void> task = CompletableFuture.runAsync(() -> {
-                    try {
-                        System.out.println("Procesando episodio para descarga: " + episode.getName());
-                        System.out.println("Enlace torrent: " + episode.getTorrentLink());
-
-                        // Actualizar diálogo de progreso
-                        Platform.runLater(() -> progressDialog.updateProgress(
-                                "Descargando torrent para: " + episode.getName(),
-                                (double) ++processedCount[0] / totalItems
-                        ));
-
-                        // Descargar el archivo torrent desde la URL
-                        String torrentFilePath = downloadTorrentFile(episode.getTorrentLink(), episode.getName());
-
-                        if (torrentFilePath != null) {
-                            // Crear la estructura de carpetas: SeriesDestination/NombreSerie/Temporada X/
-                            String destinationPath;
-
-                            if (ajustesUI.isCreateSubfolders()) {
-                                destinationPath = ajustesUI.getTorrentSeriesDestination() + File.separator + seriesName + File.separator + "Temporada " + episode.getSeasonNumber();
-                            } else {
-                                destinationPath = ajustesUI.getTorrentSeriesDestination() + File.separator + seriesName;
-                            }
+        // Se guardan todas juntas antes de resolver nada: si la aplicación se cierra, el lote se reanuda entero
+        descargasUI.addTorrentDownloads(batch);
 
-                            // Asegurar que el directorio de destino existe
-                            File destDir = new File(destinationPath);
-                            if (!destDir.exists() && !destDir.mkdirs()) {
-                                throw new IOException("No se pudo crear el directorio de destino: " + destinationPath);
+        // Los archivos .torrent se obtienen con un número limitado de descargas simultáneas
+        torrentDownloader.addTorrents(batch,
+                        (url, name) -> {
+                            String torrentFilePath = downloadTorrentFile(url, name);
+                            if (torrentFilePath == null) {
+                                throw new IOException("No se pudo descargar el archivo torrent desde " + url);
                             }
-
-                            TorrentState torrentState = new TorrentState(
-                                    episode.getName(),
-                                    destinationPath,
-                                    0,
-                                    0,
-                                    100
-                            );
-                            torrentState.setStatus("En espera");
-
-                            // Establecer el nombre del episodio en la propiedad name
-                            torrentState.setName(episode.getName());
-
-                            // Establecer el tamaño del archivo si está disponible
-                            // Esto se actualizará durante la descarga
-                            torrentState.setFileSize(0);
-
-                            // Añadir a la lista de descargas
-                            Platform.runLater(() -> descargasUI.addTorrentDownload(torrentState));
-
-                            // Iniciar la descarga con el archivo torrent descargado
-                            torrentDownloader.downloadTorrent(
-                                    torrentFilePath,
-                                    torrentState
-                            );
-
-                            System.out.println("Descarga iniciada para: " + episode.getName());
-                        } else {
-                            System.err.println("Error al descargar el archivo torrent para: " + episode.getName());
-                            Platform.runLater(() -> showAlert(
-                                    Alert.AlertType.ERROR,
-                                    "Error de descarga",
-                                    "No se pudo descargar el archivo torrent para: " + episode.getName()
-                            ));
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error al procesar episodio: " + e.getMessage());
-                        e.printStackTrace();
-                        Platform.runLater(() -> showAlert(
-                                Alert.AlertType.ERROR,
-                                "Error",
-                                "Error al procesar episodio " + episode.getName() + ": " + e.getMessage()
-                        ));
+                            return Paths.get(torrentFilePath);
+                        },
+                        (torrentState, done, total) -> Platform.runLater(() -> progressDialog.updateProgress(
+                                "Torrent preparado: " + torrentState.getName(),
+                                (double) done / total
+                        )))
+                .whenComplete((report, ex) -> Platform.runLater(() -> {
+                    progressDialog.close();
+
+                    if (ex != null) {
+                        showAlert(Alert.AlertType.ERROR, "Error", "Se produjeron errores al procesar algunas descargas. Revise el registro para más detalles.");
+                    } else if (!report.failures().isEmpty()) {
+                        showAlert(Alert.AlertType.WARNING, "Descargas añadidas con errores",
+                                report.summary() + " Revise el registro para más detalles.");
+                    } else {
+                        showAlert(Alert.AlertType.INFORMATION, "Descargas añadidas", report.summary());
                     }
-                });
 
-                downloadTasks.add(task);
-            });
-        });
+                    // Limpiar la cesta después de añadir a descargas
+                    downloadBasket.clear();
+                }));
+    }
 
-        // Esperar a que todas las tareas terminen y luego cerrar el diálogo de progreso
-        CompletableFuture.allOf(downloadTasks.toArray(new CompletableFuture[0]))
-                .whenComplete((result, ex) -> {
-                    Platform.runLater(() -> {
-                        progressDialog.close();
+    private TorrentState createBasketTorrentState(DownloadBasketItem item, String destinationPath) {
+        TorrentState torrentState = new TorrentState(
+                item.getTorrentLink(),
+                destinationPath,
+                0,
+                0,
+                100
+        );
+        torrentState.setStatus("En espera");
+        torrentState.setName(item.getName());
+        // El tamaño se actualizará al obtener los metadatos
+        torrentState.setFileSize(0);
+        return torrentState;
+    }
 
-                        if (ex != null) {
-                            showAlert(Alert.AlertType.ERROR, "Error", "Se produjeron errores al procesar algunas descargas. Revise el registro para más detalles.");
-                        } else {
-                            showAlert(Alert.AlertType.INFORMATION, "Descargas añadidas", "Los elementos se han añadido a la cola de descargas.");
-                        }
+    /** Estructura de carpetas: SeriesDestination/NombreSerie[/Temporada X]/ */
+    private String resolveEpisodeDestination(String seriesName, DownloadBasketItem episode) throws IOException {
+        String destinationPath;
+        if (ajustesUI.isCreateSubfolders()) {
+            destinationPath = ajustesUI.getTorrentSeriesDestination() + File.separator + seriesName + File.separator + "Temporada " + episode.getSeasonNumber();
+        } else {
+            destinationPath = ajustesUI.getTorrentSeriesDestination() + File.separator + seriesName;
+        }
 
-                        // Limpiar la cesta después de añadir a descargas
-                        downloadBasket.clear();
-                    });
-                });
+        File destDir = new File(destinationPath);
+        if (!destDir.exists() && !destDir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio de destino: " + destinationPath);
+        }
+        return destinationPath;
     }
 
     /**
@@ -0,0 +1,91 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bandwidth caps stored in {@code config.json} under {@link #CONFIG_KEY}, on
+ * top of the global direct download limit: one cap per streaming server and
+ * a ceiling for torrents and direct downloads combined.  Values are KiB/s
+ * and {@code 0} means unlimited.  The ceiling is split between both sides by
+ * {@link BandwidthCeiling}.
+ */
+public final class BandwidthCaps {
+
+    public static final String CONFIG_KEY = "bandwidthCaps";
+    /** Servers offered in the settings screen, as matched by {@link BandwidthLimiter#forServer}. */
+    public static final List<String> SERVERS = List.of("streamtape", "powvideo", "streamplay", "mixdrop");
+
+    private final int totalCeilingKiB;
+    private final Map<String, Integer> serverLimitsKiB;
+
+    public BandwidthCaps(int totalCeilingKiB, Map<String, Integer> serverLimitsKiB) {
+        this.totalCeilingKiB = Math.max(0, totalCeilingKiB);
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        if (serverLimitsKiB != null) {
+            serverLimitsKiB.forEach((server, limit) -> {
+                String key = BandwidthLimiter.normalize(server);
+                if (!key.isEmpty() && limit != null && limit > 0) {
+                    limits.put(key, limit);
+                }
+            });
+        }
+        this.serverLimitsKiB = Map.copyOf(limits);
+    }
+
+    public static BandwidthCaps none() {
+        return new BandwidthCaps(0, Map.of());
+    }
+
+    public int getTotalCeilingKiB() {
+        return totalCeilingKiB;
+    }
+
+    public int getServerLimitKiB(String server) {
+        return serverLimitsKiB.getOrDefault(BandwidthLimiter.normalize(server), 0);
+    }
+
+    public Map<String, Integer> getServerLimitsKiB() {
+        return serverLimitsKiB;
+    }
+
+    /** Parses the value stored in config.json; anything malformed means no caps. */
+    public static BandwidthCaps fromJson(Object value) {
+        if (!(value instanceof JSONObject json)) {
+            return none();
+        }
+        int ceiling = json.get("totalCeilingKiB") instanceof Number number ? number.intValue() : 0;
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        if (json.get("servers") instanceof JSONObject servers) {
+            for (Object entry : servers.entrySet()) {
+                Map.Entry<?, ?> server = (Map.Entry<?, ?>) entry;
+                if (server.getKey() instanceof String name && server.getValue() instanceof Number number) {
+                    limits.put(name, number.intValue());
+                }
+            }
+        }
+        return new BandwidthCaps(ceiling, limits);
+    }
+
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("totalCeilingKiB", totalCeilingKiB);
+        JSONObject servers = new JSONObject();
+        servers.putAll(serverLimitsKiB);
+        json.put("servers", servers);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(totalCeilingKiB > 0 ? "techo total " + totalCeilingKiB + " KiB/s" : "sin techo total");
+        serverLimitsKiB.forEach((server, limit) -> text.append(", ").append(server).append(' ')
+                .append(limit).append(" KiB/s"));
+        return text.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.filmotecadelreves.downloaders;
+
+/**
+ * Splits a combined download ceiling between the torrent session and direct
+ * downloads.  Each call to {@link #rebalance} looks at the measured rates:
+ * a side that uses less than its share keeps what it uses plus some headroom
+ * and the rest goes to the other side; when both sides fill their shares the
+ * split moves gradually towards half and half.  A side that is idle keeps a
+ * small floor so it can ramp up again, and the shares always add up to the
+ * ceiling.  Not thread-safe; {@link BandwidthScheduler} calls it from its own
+ * thread.
+ */
+final class BandwidthCeiling {
+
+    /** A side counts as saturated when it uses at least this part of its share. */
+    static final double SATURATION = 0.85;
+    /** Extra room given to a side on top of what it is using. */
+    static final double HEADROOM = 1.25;
+    /** Fraction of the distance to an even split covered per round. */
+    static final double CONVERGENCE = 0.25;
+    static final long MIN_FLOOR_BYTES = 32 * 1024L;
+    static final int FLOOR_PERCENT = 10;
+
+    record Split(long directBytesPerSecond, long torrentBytesPerSecond) {
+        static final Split UNLIMITED = new Split(0L, 0L);
+    }
+
+    private long ceiling;
+    private long directShare;
+
+    /**
+     * @param ceilingBytes  combined cap in bytes/s, {@code 0} to disable it
+     * @param directRate    bytes/s measured for direct downloads since the last round
+     * @param directActive  whether any direct download is transferring
+     * @param torrentRate   bytes/s measured for the torrent session
+     * @param torrentActive whether any torrent is downloading
+     */
+    Split rebalance(long ceilingBytes, long directRate, boolean directActive,
+                    long torrentRate, boolean torrentActive) {
+        if (ceilingBytes <= 0) {
+            ceiling = 0L;
+            directShare = 0L;
+            return Split.UNLIMITED;
+        }
+        if (ceiling != ceilingBytes) {
+            directShare = ceiling > 0
+                    ? (long) ((double) directShare * ceilingBytes / ceiling)
+                    : ceilingBytes / 2;
+            ceiling = ceilingBytes;
+        }
+        long floor = Math.min(ceiling / 2, Math.max(MIN_FLOOR_BYTES, ceiling * FLOOR_PERCENT / 100));
+        long torrentShare = ceiling - directShare;
+        long target;
+        if (!directActive && !torrentActive) {
+            target = ceiling / 2;
+        } else if (!torrentActive) {
+            target = ceiling - floor;
+        } else if (!directActive) {
+            target = floor;
+        } else {
+            boolean directSaturated = directRate >= directShare * SATURATION;
+            boolean torrentSaturated = torrentRate >= torrentShare * SATURATION;
+            if (directSaturated && torrentSaturated) {
+                target = directShare + (long) ((ceiling / 2 - directShare) * CONVERGENCE);
+            } else if (directSaturated) {
+                target = ceiling - (long) (torrentRate * HEADROOM);
+            } else if (torrentSaturated) {
+                target = (long) (directRate * HEADROOM);
+            } else {
+                target = directShare;
+            }
+        }
+        directShare = Math.max(floor, Math.min(ceiling - floor, target));
+        return new Split(directShare, ceiling - directShare);
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket used by every {@link ResumableHttpDownloadTask}.  Limiters
+ * form a tree: the {@linkplain #directDownloads() global} bucket is the
+ * parent of one bucket per server, which in turn is the parent of one bucket
+ * per download.  Readers call {@link #acquire(int)} on the bucket of their
+ * download after each chunk; the bytes are debited from every level and the
+ * caller sleeps for the longest wait, so the tightest cap along the chain
+ * wins.  A rate of {@code 0} disables throttling at that level.
+ */
+public final class BandwidthLimiter {
+
+    private static final BandwidthLimiter DIRECT_DOWNLOADS = new BandwidthLimiter(null);
+    private static final Map<String, BandwidthLimiter> SERVERS = new ConcurrentHashMap<>();
+    private static final Map<String, BandwidthLimiter> DOWNLOADS = new ConcurrentHashMap<>();
+    private static final long MIN_BURST_BYTES = 64 * 1024L;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final BandwidthLimiter parent;
+    private final LongAdder transferred = new LongAdder();
+    private volatile long bytesPerSecond;
+    private long availableBytes;
+    private long lastRefillNanos;
+
+    private BandwidthLimiter(BandwidthLimiter parent) {
+        this.parent = parent;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /** Limiter applied to the aggregated traffic of all direct downloads. */
+    public static BandwidthLimiter directDownloads() {
+        return DIRECT_DOWNLOADS;
+    }
+
+    /**
+     * Limiter shared by every download from {@code server}, child of the
+     * global one.  Unknown or blank servers get the global limiter itself.
+     */
+    public static BandwidthLimiter forServer(String server) {
+        String key = normalize(server);
+        if (key.isEmpty()) {
+            return DIRECT_DOWNLOADS;
+        }
+        return SERVERS.computeIfAbsent(key, ignored -> new BandwidthLimiter(DIRECT_DOWNLOADS));
+    }
+
+    /**
+     * Limiter of one download, child of its server limiter.  It survives
+     * pauses and retries so a per-download cap set from the UI is kept until
+     * {@link #releaseDownload(String)} is called.
+     */
+    public static BandwidthLimiter forDownload(String downloadId, String server) {
+        BandwidthLimiter serverLimiter = forServer(server);
+        if (downloadId == null) {
+            return new BandwidthLimiter(serverLimiter);
+        }
+        return DOWNLOADS.compute(downloadId, (id, existing) -> {
+            if (existing != null && existing.parent == serverLimiter) {
+                return existing;
+            }
+            BandwidthLimiter limiter = new BandwidthLimiter(serverLimiter);
+            if (existing != null) {
+                limiter.setRateLimit(existing.getRateLimit());
+            }
+            return limiter;
+        });
+    }
+
+    /** Forgets the limiter and the cap of a download that left the list. */
+    public static void releaseDownload(String downloadId) {
+        if (downloadId != null) {
+            DOWNLOADS.remove(downloadId);
+        }
+    }
+
+    public synchronized void setRateLimit(long bytesPerSecond) {
+        long sanitized = Math.max(0L, bytesPerSecond);
+        if (sanitized == this.bytesPerSecond) {
+            return;
+        }
+        this.bytesPerSecond = sanitized;
+        this.availableBytes = Math.min(availableBytes, burstSize(sanitized));
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public long getRateLimit() {
+        return bytesPerSecond;
+    }
+
+    /** Bytes that went through this limiter since it was created. */
+    public long getTransferredBytes() {
+        return transferred.sum();
+    }
+
+    /**
+     * Consumes {@code bytes} from this bucket and its ancestors, blocking
+     * while any of them is exhausted.  Deficits are carried over so
+     * concurrent callers queue behind each other instead of bursting
+     * together.
+     */
+    public void acquire(int bytes) throws InterruptedException {
+        if (bytes <= 0) {
+            return;
+        }
+        long waitNanos = 0L;
+        for (BandwidthLimiter level = this; level != null; level = level.parent) {
+            level.transferred.add(bytes);
+            waitNanos = Math.max(waitNanos, level.debit(bytes));
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /** Takes {@code bytes} from the bucket and returns how long the caller must wait. */
+    private long debit(int bytes) {
+        if (bytesPerSecond <= 0) {
+            return 0L;
+        }
+        synchronized (this) {
+            long rate = bytesPerSecond;
+            if (rate <= 0) {
+                return 0L;
+            }
+            long now = System.nanoTime();
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                long refill = (long) ((double) elapsed * rate / NANOS_PER_SECOND);
+                if (refill > 0) {
+                    availableBytes = Math.min(burstSize(rate), availableBytes + refill);
+                    lastRefillNanos = now;
+                }
+            }
+            availableBytes -= bytes;
+            if (availableBytes >= 0) {
+                return 0L;
+            }
+            return (long) ((double) -availableBytes * NANOS_PER_SECOND / rate);
+        }
+    }
+
+    /** "Streamtape 2" and "streamtape" share the same server bucket. */
+    static String normalize(String server) {
+        if (server == null || server.isBlank()) {
+            return "";
+        }
+        return server.trim().split("\\s+")[0].toLowerCase(Locale.ROOT);
+    }
+
+    private static long burstSize(long rate) {
+        return Math.max(MIN_BURST_BYTES, rate / 4);
+    }
+}
@@ -0,0 +1,238 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Weekly bandwidth schedule persisted in {@code config.json} under
+ * {@link #CONFIG_KEY}.  Each slot covers a set of week days and a time range
+ * (which may cross midnight) and defines the caps that apply while it is
+ * active.  The first slot matching the current time wins; outside every slot
+ * the limits configured in the settings view are used unchanged.
+ */
+public final class BandwidthSchedule {
+
+    public static final String CONFIG_KEY = "bandwidthSchedule";
+
+    private final boolean enabled;
+    private final List<Slot> slots;
+
+    public BandwidthSchedule(boolean enabled, List<Slot> slots) {
+        this.enabled = enabled;
+        this.slots = slots != null
+                ? Collections.unmodifiableList(new ArrayList<>(slots))
+                : Collections.emptyList();
+    }
+
+    public static BandwidthSchedule disabled() {
+        return new BandwidthSchedule(false, Collections.emptyList());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    /**
+     * Returns the slot active at the given moment or {@code null} when the
+     * schedule is disabled or no slot covers it.
+     */
+    public Slot resolve(LocalDateTime moment) {
+        if (!enabled || moment == null) {
+            return null;
+        }
+        for (Slot slot : slots) {
+            if (slot.covers(moment)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /** Parses the value stored in config.json; malformed slots are ignored. */
+    public static BandwidthSchedule fromJson(Object value) {
+        if (!(value instanceof JSONObject json)) {
+            return disabled();
+        }
+        boolean enabled = Boolean.TRUE.equals(json.get("enabled"));
+        List<Slot> slots = new ArrayList<>();
+        Object rawSlots = json.get("slots");
+        if (rawSlots instanceof JSONArray array) {
+            for (Object rawSlot : array) {
+                if (rawSlot instanceof JSONObject slotJson) {
+                    Slot slot = Slot.fromJson(slotJson);
+                    if (slot != null) {
+                        slots.add(slot);
+                    }
+                }
+            }
+        }
+        return new BandwidthSchedule(enabled, slots);
+    }
+
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("enabled", enabled);
+        JSONArray array = new JSONArray();
+        for (Slot slot : slots) {
+            array.add(slot.toJson());
+        }
+        json.put("slots", array);
+        return json;
+    }
+
+    /**
+     * One time range of the schedule.  Limits are expressed in KiB/s and a
+     * value of {@code 0} means "no cap" for that dimension.
+     */
+    public static final class Slot {
+        private final Set<DayOfWeek> days;
+        private final LocalTime start;
+        private final LocalTime end;
+        private final int downloadLimitKiB;
+        private final int uploadLimitKiB;
+        private final int directLimitKiB;
+        private final int maxActiveTorrents;
+
+        public Slot(Set<DayOfWeek> days,
+                    LocalTime start,
+                    LocalTime end,
+                    int downloadLimitKiB,
+                    int uploadLimitKiB,
+                    int directLimitKiB,
+                    int maxActiveTorrents) {
+            this.days = (days == null || days.isEmpty())
+                    ? EnumSet.allOf(DayOfWeek.class)
+                    : EnumSet.copyOf(days);
+            this.start = start != null ? start : LocalTime.MIDNIGHT;
+            this.end = end != null ? end : LocalTime.MIDNIGHT;
+            this.downloadLimitKiB = Math.max(0, downloadLimitKiB);
+            this.uploadLimitKiB = Math.max(0, uploadLimitKiB);
+            this.directLimitKiB = Math.max(0, directLimitKiB);
+            this.maxActiveTorrents = Math.max(0, maxActiveTorrents);
+        }
+
+        public Set<DayOfWeek> getDays() {
+            return Collections.unmodifiableSet(days);
+        }
+
+        public LocalTime getStart() {
+            return start;
+        }
+
+        public LocalTime getEnd() {
+            return end;
+        }
+
+        public int getDownloadLimitKiB() {
+            return downloadLimitKiB;
+        }
+
+        public int getUploadLimitKiB() {
+            return uploadLimitKiB;
+        }
+
+        public int getDirectLimitKiB() {
+            return directLimitKiB;
+        }
+
+        public int getMaxActiveTorrents() {
+            return maxActiveTorrents;
+        }
+
+        boolean covers(LocalDateTime moment) {
+            LocalTime time = moment.toLocalTime();
+            DayOfWeek day = moment.getDayOfWeek();
+            if (start.equals(end)) {
+                return days.contains(day);
+            }
+            if (start.isBefore(end)) {
+                return days.contains(day) && !time.isBefore(start) && time.isBefore(end);
+            }
+            // Franja que cruza la medianoche: la parte tardía pertenece al día
+            // de inicio y la temprana al día anterior.
+            if (!time.isBefore(start)) {
+                return days.contains(day);
+            }
+            return time.isBefore(end) && days.contains(day.minus(1));
+        }
+
+        @SuppressWarnings("unchecked")
+        static Slot fromJson(JSONObject json) {
+            try {
+                Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+                Object rawDays = json.get("days");
+                if (rawDays instanceof JSONArray array) {
+                    for (Object rawDay : array) {
+                        if (rawDay != null) {
+                            days.add(DayOfWeek.valueOf(rawDay.toString().trim().toUpperCase(Locale.ROOT)));
+                        }
+                    }
+                }
+                LocalTime start = LocalTime.parse(String.valueOf(json.getOrDefault("start", "00:00")));
+                LocalTime end = LocalTime.parse(String.valueOf(json.getOrDefault("end", "00:00")));
+                int download = asInt(json.get("downloadLimit"));
+                int upload = asInt(json.get("uploadLimit"));
+                int direct = json.containsKey("directLimit") ? asInt(json.get("directLimit")) : download;
+                int maxActive = asInt(json.get("maxActiveTorrents"));
+                return new Slot(days, start, end, download, upload, direct, maxActive);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            JSONArray dayArray = new JSONArray();
+            for (DayOfWeek day : days) {
+                dayArray.add(day.name());
+            }
+            json.put("days", dayArray);
+            json.put("start", start.toString());
+            json.put("end", end.toString());
+            json.put("downloadLimit", downloadLimitKiB);
+            json.put("uploadLimit", uploadLimitKiB);
+            json.put("directLimit", directLimitKiB);
+            json.put("maxActiveTorrents", maxActiveTorrents);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return days + " " + start + "-" + end
+                    + " (bajada " + downloadLimitKiB + " KiB/s, subida " + uploadLimitKiB
+                    + " KiB/s, directas " + directLimitKiB + " KiB/s, torrents activos "
+                    + (maxActiveTorrents > 0 ? maxActiveTorrents : "sin límite") + ")";
+        }
+
+        private static int asInt(Object value) {
+            if (value instanceof Number number) {
+                return number.intValue();
+            }
+            if (value == null) {
+                return 0;
+            }
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates the {@link BandwidthSchedule} periodically and pushes the
+ * resulting caps to the torrent session and to the shared
+ * {@link BandwidthLimiter} used by direct downloads, together with the
+ * per-server caps of {@link BandwidthCaps}.  When a combined ceiling is
+ * configured it is split between both sides every few seconds by a
+ * {@link BandwidthCeiling}.  Changes are applied live, without restarting the
+ * session or the running transfers.
+ */
+public final class BandwidthScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(BandwidthScheduler.class.getName());
+    private static final long EVALUATION_PERIOD_SECONDS = 30L;
+    private static final long CEILING_PERIOD_SECONDS = 2L;
+
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+    private final Object lock = new Object();
+
+    private BandwidthSchedule schedule;
+    private int baseDirectLimitKiB;
+    private BandwidthCaps caps;
+    private TorrentDownloader torrentDownloader;
+    private BandwidthSchedule.Slot appliedSlot;
+    private boolean initialized;
+    private volatile int scheduledDirectLimitKiB;
+
+    // Only touched from the executor thread.
+    private final BandwidthCeiling ceiling = new BandwidthCeiling();
+    private BandwidthCeiling.Split ceilingSplit = BandwidthCeiling.Split.UNLIMITED;
+    private long lastDirectBytes;
+    private long lastSampleNanos;
+
+    public BandwidthScheduler(BandwidthSchedule schedule, int baseDirectLimitKiB) {
+        this(schedule, baseDirectLimitKiB, BandwidthCaps.none());
+    }
+
+    public BandwidthScheduler(BandwidthSchedule schedule, int baseDirectLimitKiB, BandwidthCaps caps) {
+        this(schedule, baseDirectLimitKiB, caps, Clock.systemDefaultZone());
+    }
+
+    BandwidthScheduler(BandwidthSchedule schedule, int baseDirectLimitKiB, BandwidthCaps caps, Clock clock) {
+        this.schedule = schedule != null ? schedule : BandwidthSchedule.disabled();
+        this.baseDirectLimitKiB = Math.max(0, baseDirectLimitKiB);
+        this.caps = caps != null ? caps : BandwidthCaps.none();
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bandwidth-schedule");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::evaluate, 0L, EVALUATION_PERIOD_SECONDS, TimeUnit.SECONDS);
+        executor.scheduleAtFixedRate(this::rebalanceCeiling, CEILING_PERIOD_SECONDS,
+                CEILING_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Replaces the schedule and the base direct download limit (KiB/s). */
+    public void updateConfiguration(BandwidthSchedule schedule, int baseDirectLimitKiB) {
+        updateConfiguration(schedule, baseDirectLimitKiB, getCaps());
+    }
+
+    /** Replaces the schedule, the base direct download limit (KiB/s) and the extra caps. */
+    public void updateConfiguration(BandwidthSchedule schedule, int baseDirectLimitKiB, BandwidthCaps caps) {
+        synchronized (lock) {
+            this.schedule = schedule != null ? schedule : BandwidthSchedule.disabled();
+            this.baseDirectLimitKiB = Math.max(0, baseDirectLimitKiB);
+            this.caps = caps != null ? caps : BandwidthCaps.none();
+            this.initialized = false;
+        }
+        executor.execute(this::evaluate);
+        executor.execute(this::rebalanceCeiling);
+    }
+
+    /** Registers the torrent downloader once it has been lazily created. */
+    public void setTorrentDownloader(TorrentDownloader torrentDownloader) {
+        synchronized (lock) {
+            this.torrentDownloader = torrentDownloader;
+            this.initialized = false;
+        }
+        executor.execute(this::evaluate);
+    }
+
+    public BandwidthSchedule getSchedule() {
+        synchronized (lock) {
+            return schedule;
+        }
+    }
+
+    public BandwidthCaps getCaps() {
+        synchronized (lock) {
+            return caps;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void evaluate() {
+        try {
+            BandwidthSchedule.Slot slot;
+            TorrentDownloader downloader;
+            int baseDirect;
+            BandwidthCaps currentCaps;
+            synchronized (lock) {
+                slot = schedule.resolve(LocalDateTime.now(clock));
+                if (initialized && Objects.equals(slot, appliedSlot)) {
+                    return;
+                }
+                appliedSlot = slot;
+                initialized = true;
+                downloader = torrentDownloader;
+                baseDirect = baseDirectLimitKiB;
+                currentCaps = caps;
+            }
+
+            scheduledDirectLimitKiB = combineLimits(baseDirect, slot != null ? slot.getDirectLimitKiB() : 0);
+            applyDirectLimit();
+            applyServerLimits(currentCaps);
+
+            if (downloader != null) {
+                if (slot != null) {
+                    downloader.applyScheduledLimits(slot.getDownloadLimitKiB(),
+                            slot.getUploadLimitKiB(),
+                            slot.getMaxActiveTorrents());
+                } else {
+                    downloader.applyScheduledLimits(0, 0, 0);
+                }
+            }
+
+            if (slot != null) {
+                LOGGER.info("Franja de ancho de banda activa: " + slot);
+            } else {
+                LOGGER.info("Sin franja de ancho de banda activa; se aplican los límites configurados.");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudo aplicar el horario de ancho de banda: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Measures how much torrents and direct downloads are moving and splits
+     * the combined ceiling between them.  Without a ceiling it only undoes a
+     * previous split.
+     */
+    void rebalanceCeiling() {
+        try {
+            BandwidthCaps currentCaps;
+            TorrentDownloader downloader;
+            synchronized (lock) {
+                currentCaps = caps;
+                downloader = torrentDownloader;
+            }
+            long now = System.nanoTime();
+            long directBytes = BandwidthLimiter.directDownloads().getTransferredBytes();
+            long directRate = 0L;
+            if (lastSampleNanos > 0 && now > lastSampleNanos) {
+                directRate = (long) ((directBytes - lastDirectBytes) * 1_000_000_000.0 / (now - lastSampleNanos));
+            }
+            lastDirectBytes = directBytes;
+            lastSampleNanos = now;
+
+            long ceilingBytes = currentCaps.getTotalCeilingKiB() * 1024L;
+            if (ceilingBytes <= 0 && ceilingSplit == BandwidthCeiling.Split.UNLIMITED) {
+                return;
+            }
+            long torrentRate = downloader != null ? downloader.getSessionDownloadRate() : 0L;
+            boolean torrentActive = downloader != null && downloader.hasDownloadingTorrents();
+            ceilingSplit = ceiling.rebalance(ceilingBytes, directRate, directRate > 0, torrentRate, torrentActive);
+            applyDirectLimit();
+            if (downloader != null) {
+                downloader.applyCeilingLimit(toKiB(ceilingSplit.torrentBytesPerSecond()));
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudo repartir el techo de ancho de banda: " + e.getMessage(), e);
+        }
+    }
+
+    private void applyDirectLimit() {
+        int directLimit = combineLimits(scheduledDirectLimitKiB, toKiB(ceilingSplit.directBytesPerSecond()));
+        BandwidthLimiter.directDownloads().setRateLimit(directLimit * 1024L);
+    }
+
+    private static void applyServerLimits(BandwidthCaps caps) {
+        Set<String> servers = new LinkedHashSet<>(BandwidthCaps.SERVERS);
+        servers.addAll(caps.getServerLimitsKiB().keySet());
+        for (String server : servers) {
+            BandwidthLimiter.forServer(server).setRateLimit(caps.getServerLimitKiB(server) * 1024L);
+        }
+    }
+
+    /** Rounds a positive bytes/s share up to KiB/s so it never turns into "unlimited". */
+    private static int toKiB(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (bytesPerSecond + 1023) / 1024);
+    }
+
+    /** Combines two KiB/s caps where {@code 0} means unlimited. */
+    static int combineLimits(int first, int second) {
+        if (first <= 0) {
+            return Math.max(0, second);
+        }
+        if (second <= 0) {
+            return first;
+        }
+        return Math.min(first, second);
+    }
+}
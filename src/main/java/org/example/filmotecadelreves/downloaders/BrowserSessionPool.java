@@ -0,0 +1,500 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.HasDevTools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps warm Chrome sessions for the Selenium link resolvers, so a link does
+ * not pay for starting Chrome, ChromeDriver and the extensions every time.
+ * <p>
+ * Sessions are grouped by {@link Profile}.  Headless profiles keep up to
+ * {@code warmSessions} idle sessions, launched in the background after the
+ * profile is first used; a returned session gets its extra tabs closed, loses
+ * the cookies of every site if the profile asks for it, and goes back to
+ * {@code about:blank}.  A session is quit instead of kept after {@code maxUses} leases,
+ * when it stops answering, or when it sat idle for too long.  Visible
+ * sessions, which the user interacts with, are never kept.
+ * <p>
+ * {@link #stats()} reports the pool size and how long resolvers waited for a
+ * session.
+ */
+public final class BrowserSessionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(BrowserSessionPool.class.getName());
+
+    /** Idle sessions kept per headless profile. */
+    static final String WARM_SESSIONS_PROPERTY = "filmoteca.browser.warmSessions";
+    static final int DEFAULT_WARM_SESSIONS = 2;
+    /** Leases after which a session is replaced by a fresh one. */
+    static final String MAX_USES_PROPERTY = "filmoteca.browser.maxUses";
+    static final int DEFAULT_MAX_USES = 20;
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final String BLANK_PAGE = "about:blank";
+
+    private static final BrowserSessionPool SHARED = new BrowserSessionPool(
+            Integer.getInteger(WARM_SESSIONS_PROPERTY, DEFAULT_WARM_SESSIONS),
+            Integer.getInteger(MAX_USES_PROPERTY, DEFAULT_MAX_USES),
+            ChromeDriver::new,
+            null);
+
+    /**
+     * How the sessions of one resolver are launched.  {@code options} is
+     * called for every new session and must already include
+     * {@code --headless=new} when {@code headless} is set.
+     *
+     * @param name         groups the sessions; one name per resolver
+     * @param clearCookies whether a returned session loses its cookies
+     */
+    public record Profile(String name, boolean headless, boolean clearCookies, Supplier<ChromeOptions> options) {
+
+        private String key() {
+            return name + (headless ? "/headless" : "/visible");
+        }
+    }
+
+    public record Stats(int idle,
+                        int leased,
+                        long launched,
+                        long reused,
+                        long recycled,
+                        long crashed,
+                        double averageAcquireMillis,
+                        long maxAcquireMillis) {
+
+        @SuppressWarnings("unchecked")
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("idle", idle);
+            json.put("leased", leased);
+            json.put("launched", launched);
+            json.put("reused", reused);
+            json.put("recycled", recycled);
+            json.put("crashed", crashed);
+            json.put("averageAcquireMillis", averageAcquireMillis);
+            json.put("maxAcquireMillis", maxAcquireMillis);
+            return json;
+        }
+    }
+
+    private static final class Session {
+        private final WebDriver driver;
+        private int uses;
+        private long idleSince;
+
+        private Session(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    private static final class Group {
+        private final Deque<Session> idle = new ArrayDeque<>();
+        private int launching;
+    }
+
+    private final int warmSessions;
+    private final int maxUses;
+    private final Function<ChromeOptions, WebDriver> launcher;
+    /** Launches the warm sessions. */
+    private final Executor warmer;
+    /** Guards the groups and counters; a lock rather than a monitor so leases do not pin a carrier thread. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Group> groups = new HashMap<>();
+    private ScheduledExecutorService background;
+    private int leased;
+    private long launched;
+    private long reused;
+    private long recycled;
+    private long crashed;
+    private long acquisitions;
+    private long totalAcquireNanos;
+    private long maxAcquireNanos;
+    private boolean closed;
+
+    /**
+     * @param warmer launches the warm sessions; {@code null} for the pool's
+     *               background thread
+     */
+    BrowserSessionPool(int warmSessions, int maxUses, Function<ChromeOptions, WebDriver> launcher, Executor warmer) {
+        this.warmSessions = Math.max(0, warmSessions);
+        this.maxUses = Math.max(1, maxUses);
+        this.launcher = launcher;
+        this.warmer = warmer != null ? warmer : command -> background().execute(command);
+    }
+
+    public static BrowserSessionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Hands out a session of {@code profile}, launching one if none is idle.
+     * Close the lease to give the session back.
+     *
+     * @throws WebDriverException    if Chrome could not be started
+     * @throws IllegalStateException if the pool has been shut down
+     */
+    public Lease lease(Profile profile) {
+        long start = System.nanoTime();
+        Session session;
+        boolean warm;
+        while (true) {
+            session = takeIdle(profile);
+            warm = session != null;
+            if (session == null) {
+                session = launch(profile);
+                break;
+            }
+            if (isAlive(session)) {
+                break;
+            }
+            quit(session, true);
+        }
+        session.uses++;
+        long waited = System.nanoTime() - start;
+        lock.lock();
+        try {
+            leased++;
+            acquisitions++;
+            if (warm) {
+                reused++;
+            }
+            totalAcquireNanos += waited;
+            maxAcquireNanos = Math.max(maxAcquireNanos, waited);
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.log(Level.FINE, "Navegador " + profile.key() + (warm ? " reutilizado" : " nuevo") + " en "
+                + TimeUnit.NANOSECONDS.toMillis(waited) + " ms.");
+        warmUp(profile);
+        return new Lease(profile, session);
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            int idle = 0;
+            for (Group group : groups.values()) {
+                idle += group.idle.size();
+            }
+            double average = acquisitions == 0 ? 0.0 : totalAcquireNanos / 1e6 / acquisitions;
+            return new Stats(idle, leased, launched, reused, recycled, crashed, average,
+                    TimeUnit.NANOSECONDS.toMillis(maxAcquireNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Quits every idle session; sessions still leased are quit when they come back. */
+    public void shutdown() {
+        List<Session> idle = new ArrayList<>();
+        ScheduledExecutorService executor;
+        lock.lock();
+        try {
+            closed = true;
+            for (Group group : groups.values()) {
+                idle.addAll(group.idle);
+                group.idle.clear();
+            }
+            executor = background;
+            background = null;
+        } finally {
+            lock.unlock();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (Session session : idle) {
+            quit(session, false);
+        }
+    }
+
+    private Session takeIdle(Profile profile) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("El grupo de navegadores está detenido.");
+            }
+            return groups.computeIfAbsent(profile.key(), key -> new Group()).idle.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Session launch(Profile profile) {
+        WebDriver driver = launcher.apply(profile.options().get());
+        lock.lock();
+        try {
+            launched++;
+        } finally {
+            lock.unlock();
+        }
+        return new Session(driver);
+    }
+
+    /** Tops up the idle sessions of a headless profile in the background. */
+    private void warmUp(Profile profile) {
+        if (!profile.headless()) {
+            return;
+        }
+        int missing;
+        lock.lock();
+        try {
+            Group group = groups.get(profile.key());
+            if (closed || group == null) {
+                return;
+            }
+            missing = warmSessions - group.idle.size() - group.launching;
+            if (missing <= 0) {
+                return;
+            }
+            group.launching += missing;
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < missing; i++) {
+            try {
+                warmer.execute(() -> launchWarm(profile));
+            } catch (RejectedExecutionException closing) {
+                lock.lock();
+                try {
+                    groups.get(profile.key()).launching--;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void launchWarm(Profile profile) {
+        Session session = null;
+        try {
+            session = launch(profile);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se pudo preparar un navegador para " + profile.name() + ": " + e.getMessage());
+        } finally {
+            boolean kept = false;
+            lock.lock();
+            try {
+                Group group = groups.get(profile.key());
+                if (group != null) {
+                    group.launching--;
+                    if (session != null && !closed) {
+                        session.idleSince = System.currentTimeMillis();
+                        group.idle.addLast(session);
+                        kept = true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (session != null && !kept) {
+                quit(session, false);
+            }
+        }
+    }
+
+    private void giveBack(Profile profile, Session session) {
+        lock.lock();
+        try {
+            leased--;
+        } finally {
+            lock.unlock();
+        }
+        if (!profile.headless() || session.uses >= maxUses) {
+            quit(session, profile.headless());
+            return;
+        }
+        if (!reset(profile, session)) {
+            quit(session, true);
+            return;
+        }
+        Session surplus = session;
+        lock.lock();
+        try {
+            Group group = groups.get(profile.key());
+            if (!closed && group != null) {
+                session.idleSince = System.currentTimeMillis();
+                // Most recently used first: it is handed out next, and the oldest idle one is the spare.
+                group.idle.addFirst(session);
+                surplus = group.idle.size() > warmSessions ? group.idle.pollLast() : null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (surplus != null) {
+            quit(surplus, false);
+        }
+    }
+
+    /** Leaves the session as a new one would be: a single blank tab, without cookies if asked. */
+    private boolean reset(Profile profile, Session session) {
+        try {
+            WebDriver driver = session.driver;
+            Set<String> handles = driver.getWindowHandles();
+            if (handles.isEmpty()) {
+                return false;
+            }
+            Iterator<String> windows = handles.iterator();
+            String kept = windows.next();
+            while (windows.hasNext()) {
+                driver.switchTo().window(windows.next());
+                driver.close();
+            }
+            driver.switchTo().window(kept);
+            if (profile.clearCookies()) {
+                clearCookies(driver);
+            }
+            driver.get(BLANK_PAGE);
+            return true;
+        } catch (WebDriverException e) {
+            LOGGER.log(Level.FINE, "Navegador de " + profile.name() + " descartado al devolverlo: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * WebDriver only deletes the cookies of the current page, so the whole
+     * cookie jar is cleared through DevTools when the session has it.
+     * Otherwise at least the site the resolver left open is cleared, before
+     * navigating away from it.
+     */
+    private static void clearCookies(WebDriver driver) {
+        if (driver instanceof HasDevTools hasDevTools) {
+            try {
+                DevTools devTools = hasDevTools.getDevTools();
+                devTools.createSessionIfThereIsNotOne();
+                devTools.send(new Command<Void>("Network.clearBrowserCookies", Map.of()));
+                return;
+            } catch (WebDriverException e) {
+                LOGGER.log(Level.FINE, "DevTools no disponible para borrar las cookies: " + e.getMessage());
+            }
+        }
+        driver.manage().deleteAllCookies();
+    }
+
+    private boolean isAlive(Session session) {
+        try {
+            return !session.driver.getWindowHandles().isEmpty();
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param replaced whether the session is dropped before its time (crash or
+     *                 use limit) rather than because the pool is full or closing
+     */
+    private void quit(Session session, boolean replaced) {
+        lock.lock();
+        try {
+            if (replaced) {
+                if (session.uses >= maxUses) {
+                    recycled++;
+                } else {
+                    crashed++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            session.driver.quit();
+        } catch (WebDriverException e) {
+            LOGGER.log(Level.FINE, "Error cerrando el navegador: " + e.getMessage());
+        }
+    }
+
+    /** Quits the sessions that have been idle for too long.  Runs on the background thread. */
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+        List<Session> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Group group : groups.values()) {
+                while (!group.idle.isEmpty() && group.idle.peekLast().idleSince < cutoff) {
+                    expired.add(group.idle.pollLast());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Session session : expired) {
+            quit(session, false);
+        }
+    }
+
+    private ScheduledExecutorService background() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("El grupo de navegadores está detenido.");
+            }
+            if (background == null) {
+                background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "browser-session-pool");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                background.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+            return background;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A session handed to one resolver until it is closed. */
+    public final class Lease implements AutoCloseable {
+        private final Profile profile;
+        private final Session session;
+        private boolean returned;
+
+        private Lease(Profile profile, Session session) {
+            this.profile = profile;
+            this.session = session;
+        }
+
+        public WebDriver driver() {
+            return session.driver;
+        }
+
+        public boolean isHeadless() {
+            return profile.headless();
+        }
+
+        /** Gives the session back to the pool, or quits it if it is not worth keeping. */
+        @Override
+        public void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            giveBack(profile, session);
+        }
+    }
+}
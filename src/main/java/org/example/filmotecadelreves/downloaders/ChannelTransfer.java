@@ -0,0 +1,132 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Copies a response body into a file with positional {@link FileChannel}
+ * writes from a pooled direct buffer.  Each {@link #transfer} call keeps
+ * reading while the source has data ready, up to the buffer size, and then
+ * writes the batch in one go, so a fast connection costs one write per
+ * buffer instead of one per 8 KB read; a slow one is still written as soon
+ * as its data arrives.  Sources that are file channels themselves are
+ * copied with {@link FileChannel#transferFrom}.
+ */
+final class ChannelTransfer implements AutoCloseable {
+
+    /** Bytes the source can deliver without blocking. */
+    @FunctionalInterface
+    interface Readiness {
+        int available() throws IOException;
+    }
+
+    /** Sees each batch right before it is written; it must not move the buffer. */
+    @FunctionalInterface
+    interface Observer {
+        void beforeWrite(long position, ByteBuffer data);
+    }
+
+    private final ReadableByteChannel source;
+    private final Readiness readiness;
+    private final FileChannel target;
+    private final DirectBufferPool pool;
+    private ByteBuffer buffer;
+
+    ChannelTransfer(InputStream stream, FileChannel target) {
+        this(Channels.newChannel(stream), stream::available, target, DirectBufferPool.shared());
+    }
+
+    ChannelTransfer(InputStream stream, FileChannel target, DirectBufferPool pool) {
+        this(Channels.newChannel(stream), stream::available, target, pool);
+    }
+
+    ChannelTransfer(ResponseBodyChannel body, FileChannel target) {
+        this(body, body::available, target, DirectBufferPool.shared());
+    }
+
+    ChannelTransfer(ReadableByteChannel source, Readiness readiness, FileChannel target, DirectBufferPool pool) {
+        this.source = source;
+        this.readiness = readiness;
+        this.target = target;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    /** Largest amount a single {@link #transfer} call may write. */
+    int batchSize() {
+        return pool.bufferSize();
+    }
+
+    /**
+     * Reads at most {@code limit} bytes and writes them at {@code position}.
+     *
+     * @return bytes written, or {@code -1} once the source is exhausted
+     */
+    int transfer(long position, int limit) throws IOException {
+        return transfer(position, limit, null);
+    }
+
+    /**
+     * Same as {@link #transfer(long, int)}, showing the bytes to
+     * {@code observer} first; file sources bypass the buffer and are not
+     * observed.
+     */
+    int transfer(long position, int limit, Observer observer) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Transferencia cerrada");
+        }
+        int max = Math.min(limit, buffer.capacity());
+        if (max <= 0) {
+            return 0;
+        }
+        if (source instanceof FileChannel file) {
+            long copied = target.transferFrom(file, position, max);
+            return copied > 0 ? (int) copied : (file.position() >= file.size() ? -1 : 0);
+        }
+        buffer.clear().limit(max);
+        while (buffer.hasRemaining()) {
+            if (buffer.position() > 0 && readiness.available() <= 0) {
+                break;
+            }
+            if (source.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return -1;
+                }
+                break;
+            }
+        }
+        buffer.flip();
+        if (observer != null) {
+            observer.beforeWrite(position, buffer);
+        }
+        int length = buffer.remaining();
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += target.write(buffer, offset);
+        }
+        return length;
+    }
+
+    /** Returns the buffer to the pool; the source is left to its owner. */
+    @Override
+    public void close() {
+        ByteBuffer borrowed = buffer;
+        buffer = null;
+        pool.release(borrowed);
+    }
+
+    /**
+     * Extends {@code channel} to {@code size} bytes by writing its last byte,
+     * so the file system reserves the length up front; most file systems
+     * keep the unwritten gap sparse.
+     */
+    static void preallocate(FileChannel channel, long size) throws IOException {
+        if (size > 0 && channel.size() < size) {
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.List;
+
+/**
+ * Heuristics historically embedded in {@link TorrentDownloader}: connection
+ * budgets grow with the observed throughput, torrents are sized from the
+ * speed of their current peers and the bandwidth budget is split by demand
+ * (remaining bytes plus live rate).
+ */
+public class DefaultSwarmTuningPolicy implements SwarmTuningPolicy {
+
+    static final int MIN_SESSION_CONNECTIONS = 150;
+    static final int MAX_DYNAMIC_CONNECTIONS = 2500;
+    static final int MIN_DYNAMIC_REQUEST_QUEUE = 512;
+    static final int MAX_DYNAMIC_REQUEST_QUEUE = 4000;
+    private static final int MIN_TORRENT_CONNECTIONS = 80;
+    private static final int MINIMUM_ACTIVE_PEERS = 6;
+    private static final int MINIMUM_ACTIVE_SEEDS = 1;
+    private static final int MAX_TORRENT_UPLOADS = 128;
+    private static final int STALLED_CONNECTION_BOOST = 80;
+    private static final long STALLED_DOWNLOAD_RATE_BYTES = 64L * 1024L;
+    private static final int MIN_PEER_SAMPLE_SPEED_BYTES = 8 * 1024;
+    private static final int MIN_PEER_SAMPLE_COUNT = 2;
+
+    @Override
+    public String getName() {
+        return "default";
+    }
+
+    @Override
+    public int baseConnectionsLimit(int maxConcurrentDownloads, int downloadLimitKiB) {
+        int active = Math.max(1, maxConcurrentDownloads);
+        int base = active * 80;
+        if (downloadLimitKiB > 0) {
+            base = Math.max(base, (downloadLimitKiB / 64) * 40);
+        } else {
+            base = Math.max(base, 600);
+        }
+        return clamp(base, MIN_SESSION_CONNECTIONS, 2000);
+    }
+
+    @Override
+    public int baseConnectionSpeed(int maxConcurrentDownloads, int downloadLimitKiB) {
+        int active = Math.max(1, maxConcurrentDownloads);
+        int base = active * 30;
+        if (downloadLimitKiB > 0) {
+            base = Math.max(base, Math.min(400, downloadLimitKiB / 16));
+        } else {
+            base = Math.max(base, 80);
+        }
+        return clamp(base, 30, 400);
+    }
+
+    @Override
+    public int dynamicConnectionsFromRate(long downloadRate, long uploadRate,
+                                          int maxConcurrentDownloads, int downloadLimitKiB) {
+        long basis = Math.max(downloadRate, uploadRate);
+        if (downloadLimitKiB > 0) {
+            basis = Math.max(basis, downloadLimitKiB * 1024L);
+        }
+        if (basis <= 0) {
+            return baseConnectionsLimit(maxConcurrentDownloads, downloadLimitKiB);
+        }
+        long scaled = basis / (64L * 1024L);
+        int dynamic = (int) (300 + scaled * 4);
+        return clamp(dynamic, MIN_SESSION_CONNECTIONS, MAX_DYNAMIC_CONNECTIONS);
+    }
+
+    @Override
+    public SessionTuning tuneSession(SessionSample sample) {
+        int maxConcurrent = sample.maxConcurrentDownloads();
+        int limitKiB = sample.downloadLimitKiB();
+        long effectiveRate = Math.max(sample.expectedRate(), sample.smoothedDownloadRate());
+
+        int connections = clamp(Math.max(baseConnectionsLimit(maxConcurrent, limitKiB),
+                dynamicConnectionsFromRate(effectiveRate, sample.smoothedUploadRate(), maxConcurrent, limitKiB)),
+                MIN_SESSION_CONNECTIONS, MAX_DYNAMIC_CONNECTIONS);
+        int connectionSpeed = clamp(Math.max(baseConnectionSpeed(maxConcurrent, limitKiB),
+                dynamicConnectionSpeed(effectiveRate, maxConcurrent, limitKiB)), 30, 500);
+        int requestQueue = clamp(dynamicRequestQueue(effectiveRate, limitKiB),
+                MIN_DYNAMIC_REQUEST_QUEUE, MAX_DYNAMIC_REQUEST_QUEUE);
+        return new SessionTuning(connections, connectionSpeed, requestQueue);
+    }
+
+    @Override
+    public TorrentTuning tuneTorrent(TorrentSample sample) {
+        int globalConnections = clamp(sample.sessionConnectionsLimit(), MIN_SESSION_CONNECTIONS, MAX_DYNAMIC_CONNECTIONS);
+
+        int baseline = globalConnections / Math.max(1, sample.activeTorrents());
+        baseline = clamp(baseline, MIN_TORRENT_CONNECTIONS, globalConnections);
+
+        int peerCandidates = Math.max(sample.listPeers(), sample.numPeers());
+        int desiredConnections = Math.max(baseline, peerCandidates + MINIMUM_ACTIVE_PEERS);
+        desiredConnections = clamp(desiredConnections, baseline, globalConnections);
+
+        int sampleSuggestedSlots = estimateSlotsForTargetRate(sample.peers(), sample.sessionTargetRate());
+        if (sampleSuggestedSlots > 0) {
+            desiredConnections = clamp(Math.max(desiredConnections, sampleSuggestedSlots + MINIMUM_ACTIVE_PEERS),
+                    baseline, globalConnections);
+        }
+
+        if (sample.downloadRate() < STALLED_DOWNLOAD_RATE_BYTES && sample.numPeers() < MINIMUM_ACTIVE_PEERS) {
+            desiredConnections = clamp(desiredConnections + STALLED_CONNECTION_BOOST, baseline, globalConnections);
+        }
+
+        int desiredUploads = Math.max(MINIMUM_ACTIVE_SEEDS + 4, desiredConnections / 4);
+        desiredUploads = clamp(desiredUploads, MINIMUM_ACTIVE_SEEDS + 4, MAX_TORRENT_UPLOADS);
+        return new TorrentTuning(desiredConnections, desiredUploads);
+    }
+
+    @Override
+    public int estimateSlotsForTargetRate(List<PeerRate> peers, long targetRate) {
+        if (peers == null || peers.isEmpty() || targetRate <= 0) {
+            return 0;
+        }
+        long aggregate = 0;
+        int counted = 0;
+        for (PeerRate sample : peers) {
+            if (sample == null) {
+                continue;
+            }
+            if (sample.progress() >= 0.999f) {
+                continue;
+            }
+            int observed = Math.max(sample.downSpeed(), sample.upSpeed());
+            if (observed <= MIN_PEER_SAMPLE_SPEED_BYTES) {
+                continue;
+            }
+            aggregate += observed;
+            counted++;
+        }
+        if (counted < MIN_PEER_SAMPLE_COUNT) {
+            return 0;
+        }
+        long average = Math.max(MIN_PEER_SAMPLE_SPEED_BYTES, aggregate / counted);
+        return (int) Math.ceil(targetRate / (double) average);
+    }
+
+    @Override
+    public double downloadDemand(long remainingBytes, long downloadRate) {
+        long remaining = Math.max(1L, remainingBytes);
+        double backlog = Math.log1p(remaining / (1024.0 * 1024.0));
+        double liveRate = Math.log1p(Math.max(0, downloadRate) / 1024.0);
+        return Math.max(1.0, backlog + liveRate);
+    }
+
+    @Override
+    public double uploadDemand(long uploadRate, int numPeers) {
+        double liveRate = Math.log1p(Math.max(0, uploadRate) / 1024.0);
+        double peers = Math.log1p(Math.max(1, numPeers));
+        return Math.max(1.0, liveRate + (peers * 0.5));
+    }
+
+    @Override
+    public int[] allocateShares(int budget, double[] demands, int participants, int minimumShare) {
+        if (budget <= 0 || demands == null || demands.length == 0) {
+            return new int[0];
+        }
+        double totalDemand = 0.0;
+        for (double demand : demands) {
+            totalDemand += demand;
+        }
+        if (totalDemand <= 0.0) {
+            return new int[0];
+        }
+        int minShare = Math.min(minimumShare, Math.max(1, budget / Math.max(1, participants)));
+        int[] shares = new int[demands.length];
+        for (int i = 0; i < demands.length; i++) {
+            int share = (int) Math.round(budget * (demands[i] / totalDemand));
+            shares[i] = Math.min(budget, Math.max(minShare, share));
+        }
+        return shares;
+    }
+
+    protected int dynamicConnectionSpeed(long downloadRate, int maxConcurrentDownloads, int downloadLimitKiB) {
+        long basis = downloadRate;
+        if (downloadLimitKiB > 0) {
+            basis = Math.max(basis, downloadLimitKiB * 1024L);
+        }
+        if (basis <= 0) {
+            return baseConnectionSpeed(maxConcurrentDownloads, downloadLimitKiB);
+        }
+        long scaled = Math.max(1, basis / (128L * 1024L));
+        int dynamic = (int) Math.min(500, 30 + scaled * 5);
+        return clamp(dynamic, 30, 500);
+    }
+
+    protected int dynamicRequestQueue(long downloadRate, int downloadLimitKiB) {
+        long basis = downloadRate;
+        if (downloadLimitKiB > 0) {
+            basis = Math.max(basis, downloadLimitKiB * 1024L);
+        }
+        basis = Math.max(basis, 512L * 1024L);
+        int queue = (int) (basis / 1024L);
+        return clamp(queue, MIN_DYNAMIC_REQUEST_QUEUE, MAX_DYNAMIC_REQUEST_QUEUE);
+    }
+
+    static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
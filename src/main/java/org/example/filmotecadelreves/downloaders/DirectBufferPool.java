@@ -0,0 +1,69 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps a few large direct buffers around for the download write path.
+ * Direct buffers are expensive to allocate and are only released by the GC,
+ * so each transfer borrows one and gives it back when it finishes instead of
+ * allocating its own.  When the pool is empty a new buffer is handed out;
+ * at most {@code maxPooled} are kept on release.
+ */
+final class DirectBufferPool {
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int DEFAULT_MAX_POOLED = 16;
+    private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+
+    DirectBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = Math.max(0, maxPooled);
+    }
+
+    static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /** A cleared buffer of {@link #bufferSize()} bytes. */
+    ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (free) {
+            buffer = free.pollFirst();
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer.clear();
+    }
+
+    void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        buffer.clear();
+        synchronized (free) {
+            if (free.size() < maxPooled) {
+                free.addFirst(buffer);
+            }
+        }
+    }
+
+    int pooled() {
+        synchronized (free) {
+            return free.size();
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs every direct download on virtual threads with one global view of
+ * what is going on.  Transfers wait for a slot before running: at most
+ * {@code maxConcurrent} at once and at most {@code maxPerHost} against the
+ * same host.  Slots are granted in submission order, skipping entries whose
+ * host is full, so one busy host does not hold back the rest of the queue.
+ * Link resolutions (scraping, Selenium) run at once and only show up in the
+ * {@link #snapshot()}.
+ * <p>
+ * A running transfer can {@linkplain Ticket#suspend give its slot back}
+ * while it is paused or waiting for disk space and ask for one again when
+ * it can continue.  {@link #shutdown(Duration)} stops handing out slots,
+ * interrupts the running work and waits for it to wind down.
+ */
+public final class DirectDownloadEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectDownloadEngine.class.getName());
+
+    public static final int DEFAULT_MAX_CONCURRENT = 5;
+    /** Maximum number of transfers against the same host, overridable for tests or slow servers. */
+    static final String MAX_PER_HOST_PROPERTY = "filmoteca.direct.maxDownloadsPerHost";
+    static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private static final DirectDownloadEngine SHARED = new DirectDownloadEngine(DEFAULT_MAX_CONCURRENT,
+            Integer.getInteger(MAX_PER_HOST_PROPERTY, DEFAULT_MAX_PER_HOST));
+
+    /** Work run once a slot has been granted. */
+    @FunctionalInterface
+    public interface Job {
+        void run(Ticket ticket) throws Exception;
+
+        /** Called instead of {@link #run} when the engine shuts down before a slot was granted. */
+        default void skipped() {
+        }
+    }
+
+    public enum State {
+        RUNNING,
+        RESOLVING,
+        /** Waiting for a global slot. */
+        QUEUED,
+        /** Waiting for its host, or suspended by the job itself. */
+        BLOCKED
+    }
+
+    public record TaskInfo(String id, String label, String host, State state, String detail, long sinceMillis) {
+    }
+
+    public record Snapshot(List<TaskInfo> running,
+                           List<TaskInfo> queued,
+                           List<TaskInfo> blocked,
+                           int maxConcurrent,
+                           int maxPerHost) {
+
+        public Snapshot {
+            running = List.copyOf(running);
+            queued = List.copyOf(queued);
+            blocked = List.copyOf(blocked);
+        }
+
+        @SuppressWarnings("unchecked")
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("maxConcurrent", maxConcurrent);
+            json.put("maxPerHost", maxPerHost);
+            json.put("running", toJson(running));
+            json.put("queued", toJson(queued));
+            json.put("blocked", toJson(blocked));
+            return json;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static JSONArray toJson(List<TaskInfo> tasks) {
+            JSONArray array = new JSONArray();
+            for (TaskInfo task : tasks) {
+                JSONObject json = new JSONObject();
+                json.put("id", task.id());
+                json.put("name", task.label());
+                json.put("host", task.host());
+                json.put("state", task.state().name());
+                json.put("detail", task.detail());
+                json.put("since", task.sinceMillis());
+                array.add(json);
+            }
+            return array;
+        }
+    }
+
+    private enum Phase { WAITING, RUNNING, SUSPENDED, RESOLVING }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("direct-download-", 1).factory());
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotsChanged = lock.newCondition();
+    private final Set<Ticket> tickets = new LinkedHashSet<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private int maxConcurrent;
+    private int maxPerHost;
+    private int running;
+    private long arrivals;
+    private boolean shutdown;
+
+    DirectDownloadEngine(int maxConcurrent, int maxPerHost) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerHost = Math.max(1, maxPerHost);
+    }
+
+    public static DirectDownloadEngine shared() {
+        return SHARED;
+    }
+
+    /** Changes the limits live; running transfers are never stopped to honour a lower value. */
+    public void setLimits(int maxConcurrent, int maxPerHost) {
+        lock.lock();
+        try {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            this.maxPerHost = Math.max(1, maxPerHost);
+            slotsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        setLimits(maxConcurrent, getMaxPerHost());
+    }
+
+    public int getMaxPerHost() {
+        lock.lock();
+        try {
+            return maxPerHost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a transfer.  {@code url} only provides the host used for the
+     * per-host limit.
+     *
+     * @throws RejectedExecutionException if the engine has been shut down
+     */
+    public Ticket submit(String id, String label, String url, Job job) {
+        Ticket ticket = new Ticket(id, label, hostOf(url));
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("El motor de descargas directas está detenido.");
+            }
+            ticket.arrival = ++arrivals;
+            tickets.add(ticket);
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(() -> runTransfer(ticket, job));
+        return ticket;
+    }
+
+    /**
+     * Runs a link resolution right away.  Cancelling the returned future
+     * interrupts it.
+     *
+     * @throws RejectedExecutionException if the engine has been shut down
+     */
+    public Future<?> resolve(String id, String label, Runnable work) {
+        Ticket ticket = new Ticket(id, label, "");
+        ticket.phase = Phase.RESOLVING;
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            ticket.thread = Thread.currentThread();
+            work.run();
+        }, null) {
+            @Override
+            protected void done() {
+                forget(ticket);
+            }
+        };
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("El motor de descargas directas está detenido.");
+            }
+            tickets.add(ticket);
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            List<TaskInfo> active = new ArrayList<>();
+            List<TaskInfo> queued = new ArrayList<>();
+            List<TaskInfo> blocked = new ArrayList<>();
+            for (Ticket ticket : tickets) {
+                switch (ticket.phase) {
+                    case RUNNING -> active.add(ticket.info(State.RUNNING, null));
+                    case RESOLVING -> active.add(ticket.info(State.RESOLVING, null));
+                    case SUSPENDED -> blocked.add(ticket.info(State.BLOCKED, ticket.detail));
+                    case WAITING -> {
+                        if (hostFull(ticket.host)) {
+                            blocked.add(ticket.info(State.BLOCKED, "Servidor ocupado"));
+                        } else {
+                            queued.add(ticket.info(State.QUEUED, null));
+                        }
+                    }
+                }
+            }
+            return new Snapshot(active, queued, blocked, maxConcurrent, maxPerHost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops granting slots, interrupts queued and running work and waits up
+     * to {@code timeout} for it to finish.
+     *
+     * @return whether everything finished in time
+     */
+    public boolean shutdown(Duration timeout) {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (Ticket ticket : tickets) {
+                Thread thread = ticket.thread;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            slotsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(Math.max(0L, timeout.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runTransfer(Ticket ticket, Job job) {
+        ticket.thread = Thread.currentThread();
+        try {
+            try {
+                admit(ticket);
+            } catch (InterruptedException e) {
+                job.skipped();
+                return;
+            }
+            job.run(ticket);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Descarga directa " + ticket.id + " terminó con error: " + e.getMessage(), e);
+        } finally {
+            forget(ticket);
+        }
+    }
+
+    private void admit(Ticket ticket) throws InterruptedException {
+        lock.lock();
+        try {
+            if (ticket.phase != Phase.WAITING) {
+                // Back from a suspension: queue behind the jobs already waiting.
+                ticket.phase = Phase.WAITING;
+                ticket.detail = null;
+                ticket.arrival = ++arrivals;
+                ticket.sinceMillis = System.currentTimeMillis();
+            }
+            while (!shutdown && !isNext(ticket)) {
+                slotsChanged.await();
+            }
+            if (shutdown) {
+                throw new InterruptedException("El motor de descargas directas se está deteniendo.");
+            }
+            ticket.phase = Phase.RUNNING;
+            ticket.sinceMillis = System.currentTimeMillis();
+            running++;
+            runningPerHost.merge(ticket.host, 1, Integer::sum);
+            // The next ticket in line may fit in a remaining slot.
+            slotsChanged.signalAll();
+        } catch (InterruptedException e) {
+            ticket.phase = Phase.SUSPENDED;
+            ticket.detail = "Detenida";
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether {@code ticket} is the oldest waiting ticket whose host has room.  Caller holds the lock. */
+    private boolean isNext(Ticket ticket) {
+        if (running >= maxConcurrent) {
+            return false;
+        }
+        Ticket next = null;
+        for (Ticket candidate : tickets) {
+            if (candidate.phase == Phase.WAITING && !hostFull(candidate.host)
+                    && (next == null || candidate.arrival < next.arrival)) {
+                next = candidate;
+            }
+        }
+        return next == ticket;
+    }
+
+    private boolean hostFull(String host) {
+        return runningPerHost.getOrDefault(host, 0) >= maxPerHost;
+    }
+
+    private void releaseSlot(Ticket ticket) {
+        running--;
+        runningPerHost.computeIfPresent(ticket.host, (host, count) -> count > 1 ? count - 1 : null);
+        slotsChanged.signalAll();
+    }
+
+    private void forget(Ticket ticket) {
+        lock.lock();
+        try {
+            if (ticket.phase == Phase.RUNNING) {
+                releaseSlot(ticket);
+            }
+            tickets.remove(ticket);
+            ticket.thread = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String hostOf(String url) {
+        if (url == null || url.isBlank()) {
+            return "";
+        }
+        try {
+            String host = URI.create(url.trim()).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : "";
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /** Handle of one queued or running job. */
+    public final class Ticket {
+        private final String id;
+        private final String label;
+        private final String host;
+        private volatile Thread thread;
+        private Phase phase = Phase.WAITING;
+        private String detail;
+        private long arrival;
+        private long sinceMillis = System.currentTimeMillis();
+
+        private Ticket(String id, String label, String host) {
+            this.id = id;
+            this.label = label;
+            this.host = host;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Gives the slot back while the job waits for something else, e.g. a
+         * pause or free disk space.  {@code reason} is shown in the snapshot.
+         */
+        public void suspend(String reason) {
+            lock.lock();
+            try {
+                if (phase == Phase.RUNNING) {
+                    releaseSlot(this);
+                }
+                phase = Phase.SUSPENDED;
+                detail = reason;
+                sinceMillis = System.currentTimeMillis();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Takes a slot back after {@link #suspend} without waiting; returns whether it got one. */
+        public boolean tryResume() {
+            lock.lock();
+            try {
+                if (phase == Phase.RUNNING) {
+                    return true;
+                }
+                if (shutdown || running >= maxConcurrent || hostFull(host) || hasOlderWaiting()) {
+                    return false;
+                }
+                phase = Phase.RUNNING;
+                detail = null;
+                sinceMillis = System.currentTimeMillis();
+                running++;
+                runningPerHost.merge(host, 1, Integer::sum);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Waits for a slot after {@link #suspend}, queueing behind the jobs already waiting. */
+        public void resume() throws InterruptedException {
+            if (!tryResume()) {
+                admit(this);
+            }
+        }
+
+        /** Interrupts the job, or drops it from the queue if it has not started yet. */
+        public void cancel() {
+            Thread current = thread;
+            if (current != null) {
+                current.interrupt();
+            }
+        }
+
+        private boolean hasOlderWaiting() {
+            for (Ticket candidate : tickets) {
+                if (candidate.phase == Phase.WAITING && !hostFull(candidate.host)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private TaskInfo info(State state, String detail) {
+            return new TaskInfo(id, label, host, state, detail, sinceMillis);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared HTTP transport of the direct downloads.  A single
+ * {@link HttpClient} keeps connections alive between the HEAD probe, the
+ * GET, retries and the ranged connections of a segmented download, and
+ * negotiates HTTP/2 on HTTPS hosts that offer it, so those requests no
+ * longer pay a TCP and TLS handshake each.  Plain HTTP stays on HTTP/1.1
+ * because some file hosts mishandle the h2c upgrade.
+ * <p>
+ * At most {@link #DEFAULT_MAX_PER_HOST} exchanges (property
+ * {@value #MAX_PER_HOST_PROPERTY}) are open against the same host; further
+ * requests wait for one to be closed.
+ */
+public final class DirectHttpTransport {
+
+    /** Adds the headers a host needs (Referer, User-Agent, cookies...) to every request of a download. */
+    @FunctionalInterface
+    public interface RequestCustomizer {
+        RequestCustomizer NONE = builder -> { };
+
+        void customize(HttpRequest.Builder builder);
+    }
+
+    static final String MAX_PER_HOST_PROPERTY = "filmoteca.direct.maxConnectionsPerHost";
+    static final int DEFAULT_MAX_PER_HOST = 8;
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+    static final Duration READ_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final DirectHttpTransport SHARED = new DirectHttpTransport(
+            Integer.getInteger(MAX_PER_HOST_PROPERTY, DEFAULT_MAX_PER_HOST), READ_TIMEOUT);
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final int maxPerHost;
+    private final Duration readTimeout;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    DirectHttpTransport(int maxPerHost, Duration readTimeout) {
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.readTimeout = readTimeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "direct-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    public static DirectHttpTransport shared() {
+        return SHARED;
+    }
+
+    /** Request builder for {@code url} with the timeouts and the host's headers already applied. */
+    HttpRequest.Builder request(String url, RequestCustomizer customizer) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("URL no válida: " + url, e);
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(readTimeout);
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        (customizer != null ? customizer : RequestCustomizer.NONE).customize(builder);
+        return builder;
+    }
+
+    /**
+     * Sends {@code request} once a connection slot for its host is free and
+     * returns as soon as the headers arrive; the body is read from
+     * {@link Exchange#body()}.  The exchange must be closed.
+     */
+    Exchange send(HttpRequest request) throws IOException, InterruptedException {
+        Semaphore permits = hostPermits.computeIfAbsent(hostKey(request.uri()), host -> new Semaphore(maxPerHost, true));
+        permits.acquire();
+        try {
+            if ("HEAD".equals(request.method())) {
+                // Nothing to stream: waiting for the (empty) body keeps the connection reusable.
+                return new Exchange(client.send(request, HttpResponse.BodyHandlers.discarding()), null, permits);
+            }
+            ResponseBodyChannel body = new ResponseBodyChannel(readTimeout.toMillis());
+            try {
+                return new Exchange(client.send(request, info -> body), body, permits);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                body.close();
+                throw e;
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Status code of a HEAD request to {@code url}, waiting at most {@code timeout} for the answer. */
+    int headStatus(String url, RequestCustomizer customizer, Duration timeout) throws IOException, InterruptedException {
+        HttpRequest request = request(url, customizer)
+                .timeout(timeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        try (Exchange exchange = send(request)) {
+            return exchange.statusCode();
+        }
+    }
+
+    int availableSlots(String host) {
+        Semaphore permits = hostPermits.get(host.toLowerCase(Locale.ROOT));
+        return permits != null ? permits.availablePermits() : maxPerHost;
+    }
+
+    private static String hostKey(URI uri) {
+        String host = uri.getHost();
+        return host != null ? host.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /** One request/response; closing it releases the host slot and cancels an unread body. */
+    static final class Exchange implements AutoCloseable {
+        private final HttpResponse<?> response;
+        private final ResponseBodyChannel body;
+        private final Semaphore permits;
+        private boolean closed;
+
+        private Exchange(HttpResponse<?> response, ResponseBodyChannel body, Semaphore permits) {
+            this.response = Objects.requireNonNull(response);
+            this.body = body;
+            this.permits = permits;
+        }
+
+        int statusCode() {
+            return response.statusCode();
+        }
+
+        String header(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        long contentLength() {
+            return response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        }
+
+        ResponseBodyChannel body() {
+            if (body == null) {
+                throw new IllegalStateException("La respuesta a HEAD no tiene cuerpo");
+            }
+            return body;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (body != null) {
+                body.close();
+            }
+            permits.release();
+        }
+    }
+}
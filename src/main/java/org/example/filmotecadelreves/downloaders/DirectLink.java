@@ -0,0 +1,15 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.Objects;
+
+/**
+ * Direct file URL resolved from a video page, with the headers the host
+ * expects on every request for it.
+ */
+public record DirectLink(String url, DirectHttpTransport.RequestCustomizer headers) {
+
+    public DirectLink {
+        Objects.requireNonNull(url, "url");
+        headers = headers != null ? headers : DirectHttpTransport.RequestCustomizer.NONE;
+    }
+}
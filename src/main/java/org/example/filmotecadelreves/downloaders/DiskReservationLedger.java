@@ -0,0 +1,346 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process wide bookkeeping of the disk space that running and queued
+ * downloads still need, grouped by volume.  The free space reported by the
+ * filesystem only reflects bytes already written, so admitting a download by
+ * comparing its size with the free space lets several downloads "fit"
+ * individually and then fill the disk together.  Every download instead
+ * declares the bytes it still has to write; a start is granted only if it
+ * fits next to everything already committed on the same volume.
+ * <p>
+ * Forecasts are recomputed as downloads report progress and listeners are
+ * warned once per episode when a volume is predicted to run out of space,
+ * either because the committed downloads will not fit or because the current
+ * write rate reaches the reserve within {@link #getWarningHorizon()}.
+ */
+public final class DiskReservationLedger {
+
+    private static final Logger LOGGER = Logger.getLogger(DiskReservationLedger.class.getName());
+    /** Space left untouched on every volume; matches the old per-torrent minimum. */
+    static final long DEFAULT_HEADROOM_BYTES = 500L * 1024L * 1024L;
+    static final Duration DEFAULT_WARNING_HORIZON = Duration.ofMinutes(15);
+    private static final long MIN_EVALUATION_INTERVAL_MS = 5_000L;
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private static volatile DiskReservationLedger instance;
+
+    /** Outcome of {@link #tryReserve}. */
+    public enum Decision {
+        /** The space is reserved; the download may start. */
+        GRANTED,
+        /**
+         * It fits the free space but not next to what other downloads still
+         * have to write; retry once space is freed or other reservations end.
+         */
+        DEFERRED,
+        /** The volume is too small for this download even if it were alone. */
+        REFUSED
+    }
+
+    /** Snapshot of one volume. Byte counts are outstanding bytes still to be written. */
+    public record VolumeForecast(String volume,
+                                 long usableBytes,
+                                 long committedBytes,
+                                 long queuedBytes,
+                                 long headroomBytes,
+                                 long writeBytesPerSecond,
+                                 long secondsUntilReserve) {
+        /** Running downloads alone will eat into the reserve. */
+        public boolean overcommitted() {
+            return usableBytes - committedBytes < headroomBytes;
+        }
+
+        /** Space left after every committed and queued download has finished. */
+        public long projectedFreeBytes() {
+            return usableBytes - committedBytes - queuedBytes;
+        }
+    }
+
+    @FunctionalInterface
+    public interface LowSpaceListener {
+        void onLowSpace(VolumeForecast forecast);
+    }
+
+    /** Resolves volumes and their free space; replaceable in tests. */
+    interface SpaceProbe {
+        Object volumeOf(Path path) throws IOException;
+
+        long usableSpace(Path path) throws IOException;
+    }
+
+    private final long headroomBytes;
+    private final Duration warningHorizon;
+    private final SpaceProbe probe;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<Object, VolumeState> volumes = new HashMap<>();
+    private final List<LowSpaceListener> listeners = new CopyOnWriteArrayList<>();
+    private long lastEvaluationMs;
+
+    DiskReservationLedger(long headroomBytes, Duration warningHorizon, SpaceProbe probe, LongSupplier clock) {
+        this.headroomBytes = Math.max(0L, headroomBytes);
+        this.warningHorizon = warningHorizon;
+        this.probe = probe;
+        this.clock = clock;
+    }
+
+    public static DiskReservationLedger getInstance() {
+        DiskReservationLedger local = instance;
+        if (local == null) {
+            synchronized (DiskReservationLedger.class) {
+                local = instance;
+                if (local == null) {
+                    local = new DiskReservationLedger(DEFAULT_HEADROOM_BYTES, DEFAULT_WARNING_HORIZON,
+                            new FileStoreProbe(), System::currentTimeMillis);
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public void addListener(LowSpaceListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(LowSpaceListener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getHeadroomBytes() {
+        return headroomBytes;
+    }
+
+    public Duration getWarningHorizon() {
+        return warningHorizon;
+    }
+
+    /**
+     * Commits {@code remainingBytes} for {@code owner} on the volume holding
+     * {@code destination} if they fit next to the other commitments.  Calling
+     * it again for the same owner replaces its previous reservation.  When the
+     * volume cannot be inspected the start is granted, as before.
+     */
+    public Decision tryReserve(String owner, Path destination, long remainingBytes) {
+        List<Runnable> notifications;
+        Decision decision;
+        synchronized (this) {
+            Object volume;
+            long usable;
+            try {
+                volume = probe.volumeOf(destination);
+                usable = probe.usableSpace(destination);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "No se pudo comprobar el espacio en disco: " + e.getMessage());
+                entries.remove(owner);
+                return Decision.GRANTED;
+            }
+            long needed = Math.max(0L, remainingBytes);
+            long committedByOthers = 0L;
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.committed && entry.volume.equals(volume) && !item.getKey().equals(owner)) {
+                    committedByOthers += entry.remainingBytes;
+                }
+            }
+            // Bytes the owner already wrote under an earlier reservation are part of "usable" already.
+            if (usable - committedByOthers - needed >= headroomBytes) {
+                decision = Decision.GRANTED;
+                entries.put(owner, new Entry(volume, destination, needed, true));
+            } else {
+                decision = usable - needed >= headroomBytes ? Decision.DEFERRED : Decision.REFUSED;
+                if (decision == Decision.DEFERRED) {
+                    entries.put(owner, new Entry(volume, destination, needed, false));
+                } else {
+                    entries.remove(owner);
+                }
+            }
+            notifications = evaluateLocked(true);
+        }
+        notifications.forEach(Runnable::run);
+        return decision;
+    }
+
+    /**
+     * Records a download that is waiting in a queue so that forecasts include
+     * it; it does not hold space against starts.
+     */
+    public void declareQueued(String owner, Path destination, long remainingBytes) {
+        List<Runnable> notifications;
+        synchronized (this) {
+            Entry existing = entries.get(owner);
+            if (existing != null && existing.committed) {
+                return;
+            }
+            try {
+                entries.put(owner, new Entry(probe.volumeOf(destination), destination,
+                        Math.max(0L, remainingBytes), false));
+            } catch (IOException e) {
+                return;
+            }
+            notifications = evaluateLocked(false);
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    /** Updates the bytes {@code owner} still has to write. Unknown owners are ignored. */
+    public void update(String owner, long remainingBytes) {
+        List<Runnable> notifications;
+        synchronized (this) {
+            Entry entry = entries.get(owner);
+            if (entry == null) {
+                return;
+            }
+            entry.remainingBytes = Math.max(0L, remainingBytes);
+            notifications = evaluateLocked(false);
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    public void release(String owner) {
+        synchronized (this) {
+            entries.remove(owner);
+        }
+    }
+
+    public synchronized boolean isReserved(String owner) {
+        Entry entry = entries.get(owner);
+        return entry != null && entry.committed;
+    }
+
+    /** Forces a fresh forecast of every volume in use. */
+    public List<VolumeForecast> forecast() {
+        List<Runnable> notifications;
+        List<VolumeForecast> result = new ArrayList<>();
+        synchronized (this) {
+            notifications = evaluateLocked(true);
+            for (VolumeState state : volumes.values()) {
+                if (state.lastForecast != null) {
+                    result.add(state.lastForecast);
+                }
+            }
+        }
+        notifications.forEach(Runnable::run);
+        return result;
+    }
+
+    private List<Runnable> evaluateLocked(boolean force) {
+        long now = clock.getAsLong();
+        if (!force && now - lastEvaluationMs < MIN_EVALUATION_INTERVAL_MS) {
+            return List.of();
+        }
+        lastEvaluationMs = now;
+
+        Map<Object, long[]> totals = new LinkedHashMap<>();
+        Map<Object, Path> samplePaths = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            long[] sums = totals.computeIfAbsent(entry.volume, key -> new long[2]);
+            sums[entry.committed ? 0 : 1] += entry.remainingBytes;
+            samplePaths.putIfAbsent(entry.volume, entry.destination);
+        }
+        volumes.keySet().retainAll(totals.keySet());
+
+        List<Runnable> notifications = new ArrayList<>();
+        for (Map.Entry<Object, long[]> item : totals.entrySet()) {
+            Object volume = item.getKey();
+            long usable;
+            try {
+                usable = probe.usableSpace(samplePaths.get(volume));
+            } catch (IOException e) {
+                continue;
+            }
+            VolumeState state = volumes.computeIfAbsent(volume, key -> new VolumeState());
+            long committed = item.getValue()[0];
+            long queued = item.getValue()[1];
+            if (state.lastSampleMs > 0 && now > state.lastSampleMs) {
+                long written = Math.max(0L, state.lastUsable - usable);
+                double instantRate = written * 1000.0 / (now - state.lastSampleMs);
+                state.rate = state.rate <= 0 ? instantRate : state.rate + RATE_SMOOTHING * (instantRate - state.rate);
+            }
+            state.lastUsable = usable;
+            state.lastSampleMs = now;
+            long rate = Math.round(state.rate);
+            long untilReserve = rate > 0 ? Math.max(0L, (usable - headroomBytes) / rate) : -1L;
+            VolumeForecast forecast = new VolumeForecast(String.valueOf(volume), usable, committed, queued,
+                    headroomBytes, rate, untilReserve);
+            state.lastForecast = forecast;
+
+            boolean low = forecast.overcommitted()
+                    || forecast.projectedFreeBytes() < headroomBytes
+                    || (untilReserve >= 0 && untilReserve < warningHorizon.toSeconds());
+            if (low && !state.warned) {
+                state.warned = true;
+                for (LowSpaceListener listener : listeners) {
+                    notifications.add(() -> listener.onLowSpace(forecast));
+                }
+            } else if (!low) {
+                state.warned = false;
+            }
+        }
+        return notifications;
+    }
+
+    private static final class Entry {
+        private final Object volume;
+        private final Path destination;
+        private final boolean committed;
+        private long remainingBytes;
+
+        private Entry(Object volume, Path destination, long remainingBytes, boolean committed) {
+            this.volume = volume;
+            this.destination = destination;
+            this.remainingBytes = remainingBytes;
+            this.committed = committed;
+        }
+    }
+
+    private static final class VolumeState {
+        private long lastUsable;
+        private long lastSampleMs;
+        private double rate;
+        private boolean warned;
+        private VolumeForecast lastForecast;
+    }
+
+    private static final class FileStoreProbe implements SpaceProbe {
+        @Override
+        public Object volumeOf(Path path) throws IOException {
+            return Files.getFileStore(existingAncestor(path));
+        }
+
+        @Override
+        public long usableSpace(Path path) throws IOException {
+            FileStore store = Files.getFileStore(existingAncestor(path));
+            return store.getUsableSpace();
+        }
+
+        private static Path existingAncestor(Path path) throws IOException {
+            Path current = path.toAbsolutePath();
+            while (current != null && !Files.exists(current)) {
+                current = current.getParent();
+            }
+            if (current == null) {
+                throw new IOException("Ruta inexistente: " + path);
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only checkpoint file of one direct download, kept next to its
+ * {@code .part} file.  A header identifies the remote resource (URL, ETag,
+ * Last-Modified and length) and is followed by fixed-size records with the
+ * progress: downloaded bytes, flags, up to {@link #MAX_SEGMENTS} segment
+ * triples and as many {@link DownloadIntegrity} block checksums, each record
+ * with its own CRC32.  Appending never rewrites earlier
+ * records, so a crash in the middle of a write only leaves a torn tail that
+ * {@link #recover()} skips, going back to the previous checkpoint.
+ * <p>
+ * Records are forced to disk in batches ({@link #FORCE_EVERY_RECORDS} records
+ * or {@link #FORCE_INTERVAL_MS}, whichever comes first) and on
+ * {@link #sync()}.  Callers force the {@code .part} data before appending, so
+ * a record never claims bytes that are not on disk.  When the file reaches
+ * {@link #COMPACT_RECORDS} records, or the identity changes, it is replaced
+ * atomically by the header and the latest record.
+ */
+final class DownloadCheckpointJournal implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(DownloadCheckpointJournal.class.getName());
+    static final String EXTENSION = ".journal";
+    static final int MAX_SEGMENTS = 16;
+    static final int FORCE_EVERY_RECORDS = 4;
+    static final long FORCE_INTERVAL_MS = 5_000L;
+    static final int COMPACT_RECORDS = 256;
+    private static final int MAGIC = 0x4644434A; // "FDCJ"
+    private static final int VERSION = 2;
+    private static final int HEADER_PREFIX_BYTES = 4 + 4 + 4 + 8;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int FLAG_PREALLOCATED = 1;
+    private static final int FLAG_SEGMENTED = 2;
+    private static final int TAILS_OFFSET = 8 + 8 + 8 + 4 + 4 + MAX_SEGMENTS * 3 * 8;
+    static final int RECORD_BYTES = TAILS_OFFSET + 4 + MAX_SEGMENTS * 8 + 8;
+
+    /** Resume state of a download as stored in the journal. */
+    static final class Checkpoint {
+        String url;
+        String etag;
+        String lastModified;
+        long totalLength = -1;
+        long downloadedBytes;
+        long updatedAt;
+        /** {@link SegmentedDownloadPlan#toOffsets()} of a segmented download, or {@code null}. */
+        long[] segments;
+        /** The .part file was extended to {@code totalLength}; its size is not the progress. */
+        boolean preallocated;
+        /** {@link DownloadIntegrity.TailChecksum#entry()} of the blocks right below the resume points. */
+        long[] tailChecksums;
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long totalLength;
+    private long headerBytes;
+    private int records;
+    private long sequence;
+    private int unforced;
+    private long lastForceMillis;
+
+    DownloadCheckpointJournal(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the last record whose checksum is valid.  Returns {@code null}
+     * when there is no journal or its header is damaged; the next
+     * {@link #append} starts a fresh file either way.
+     */
+    synchronized Checkpoint recover() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < HEADER_PREFIX_BYTES || buffer.getInt() != MAGIC) {
+                LOGGER.log(Level.WARNING, "El diario de la descarga " + file.getFileName() + " no tiene un formato reconocido.");
+                return null;
+            }
+            int version = buffer.getInt();
+            int length = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (version != VERSION || length < 0 || length > MAX_HEADER_BYTES || length > buffer.remaining()) {
+                LOGGER.log(Level.WARNING, "Cabecera no válida en el diario de la descarga " + file.getFileName() + ".");
+                return null;
+            }
+            ByteBuffer header = buffer.slice(buffer.position(), length);
+            if (checksum(header.duplicate(), length) != checksum) {
+                LOGGER.log(Level.WARNING, "La cabecera del diario de la descarga " + file.getFileName() + " está dañada; se ignora.");
+                return null;
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.url = readString(header);
+            checkpoint.etag = readString(header);
+            checkpoint.lastModified = readString(header);
+            checkpoint.totalLength = header.getLong();
+            buffer.position(buffer.position() + length);
+
+            long lastSequence = -1L;
+            boolean torn = false;
+            while (buffer.hasRemaining()) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    torn = true;
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), RECORD_BYTES);
+                buffer.position(buffer.position() + RECORD_BYTES);
+                long recordSequence = record.getLong(0);
+                if (checksum(record.duplicate(), RECORD_BYTES - 8) != record.getLong(RECORD_BYTES - 8)
+                        || recordSequence <= lastSequence) {
+                    torn = true;
+                    break;
+                }
+                readRecord(record, checkpoint);
+                lastSequence = recordSequence;
+            }
+            if (lastSequence < 0) {
+                LOGGER.log(Level.WARNING, "El diario de la descarga " + file.getFileName() + " no tiene ningún punto de control válido.");
+                return null;
+            }
+            if (torn) {
+                LOGGER.log(Level.INFO, "Se descarta el final incompleto del diario de " + file.getFileName()
+                        + "; se reanuda desde el registro " + lastSequence + ".");
+            }
+            sequence = lastSequence;
+            return checkpoint;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            LOGGER.log(Level.WARNING, "No se pudo leer el diario de la descarga " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends {@code checkpoint}, compacting the file first when needed.
+     *
+     * @return {@code true} if the record was written
+     */
+    synchronized boolean append(Checkpoint checkpoint) {
+        if (checkpoint == null) {
+            return false;
+        }
+        try {
+            sequence++;
+            ByteBuffer record = encodeRecord(checkpoint, sequence);
+            if (channel == null || records >= COMPACT_RECORDS || !sameIdentity(checkpoint)) {
+                rewrite(checkpoint, record);
+                return true;
+            }
+            long position = headerBytes + (long) records * RECORD_BYTES;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            records++;
+            unforced++;
+            long now = System.currentTimeMillis();
+            if (unforced >= FORCE_EVERY_RECORDS || now - lastForceMillis >= FORCE_INTERVAL_MS) {
+                force();
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo actualizar el diario de la descarga " + file.getFileName() + ": " + e.getMessage());
+            closeChannel();
+            return false;
+        }
+    }
+
+    /** Forces the records written since the last batch. */
+    synchronized void sync() {
+        if (channel == null || unforced == 0) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo sincronizar el diario de la descarga " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Deletes the journal, e.g. once the download is complete or its .part file is gone. */
+    synchronized void discard() {
+        closeChannel();
+        records = 0;
+        unforced = 0;
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(tempFile());
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        closeChannel();
+    }
+
+    /**
+     * Merges neighbouring segments until at most {@code maxSegments} remain.
+     * A finished segment is folded into the next one for free; otherwise the
+     * pair that forgets the fewest written bytes is merged, which only means
+     * fetching those bytes again.
+     */
+    static long[] fit(long[] offsets, int maxSegments) {
+        long[] fitted = offsets.clone();
+        int count = fitted.length / 3;
+        while (count > Math.max(1, maxSegments)) {
+            int best = 0;
+            long bestCost = Long.MAX_VALUE;
+            for (int i = 0; i < count - 1; i++) {
+                long cost = fitted[i * 3 + 1] >= fitted[i * 3 + 2]
+                        ? 0L
+                        : fitted[i * 3 + 4] - fitted[i * 3 + 3];
+                if (cost < bestCost) {
+                    best = i;
+                    bestCost = cost;
+                }
+            }
+            int left = best * 3;
+            if (fitted[left + 1] >= fitted[left + 2]) {
+                fitted[left + 1] = fitted[left + 4];
+            }
+            fitted[left + 2] = fitted[left + 5];
+            System.arraycopy(fitted, left + 6, fitted, left + 3, fitted.length - left - 6);
+            count--;
+            fitted = Arrays.copyOf(fitted, count * 3);
+        }
+        return fitted;
+    }
+
+    private void rewrite(Checkpoint checkpoint, ByteBuffer record) throws IOException {
+        closeChannel();
+        byte[] header = encodeHeader(checkpoint);
+        ByteBuffer prefix = ByteBuffer.allocate(HEADER_PREFIX_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(header.length)
+                .putLong(checksum(ByteBuffer.wrap(header), header.length))
+                .flip();
+        Path tmp = tempFile();
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer body = ByteBuffer.wrap(header);
+                while (prefix.hasRemaining() || body.hasRemaining() || record.hasRemaining()) {
+                    out.write(new ByteBuffer[]{prefix, body, record});
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        url = checkpoint.url;
+        etag = checkpoint.etag;
+        lastModified = checkpoint.lastModified;
+        totalLength = checkpoint.totalLength;
+        headerBytes = HEADER_PREFIX_BYTES + header.length;
+        records = 1;
+        unforced = 0;
+        lastForceMillis = System.currentTimeMillis();
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        unforced = 0;
+        lastForceMillis = System.currentTimeMillis();
+    }
+
+    private boolean sameIdentity(Checkpoint checkpoint) {
+        return Objects.equals(url, checkpoint.url)
+                && Objects.equals(etag, checkpoint.etag)
+                && Objects.equals(lastModified, checkpoint.lastModified)
+                && totalLength == checkpoint.totalLength;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // best effort
+        }
+        channel = null;
+    }
+
+    private Path tempFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static byte[] encodeHeader(Checkpoint checkpoint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, checkpoint.url);
+            writeString(out, checkpoint.etag);
+            writeString(out, checkpoint.lastModified);
+            out.writeLong(checkpoint.totalLength);
+        }
+        if (bytes.size() > MAX_HEADER_BYTES) {
+            throw new IOException("Cabecera demasiado grande (" + bytes.size() + " bytes)");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer encodeRecord(Checkpoint checkpoint, long sequence) {
+        long[] segments = checkpoint.segments != null ? fit(checkpoint.segments, MAX_SEGMENTS) : new long[0];
+        int flags = (checkpoint.preallocated ? FLAG_PREALLOCATED : 0)
+                | (checkpoint.segments != null ? FLAG_SEGMENTED : 0);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES)
+                .putLong(sequence)
+                .putLong(checkpoint.updatedAt)
+                .putLong(checkpoint.downloadedBytes)
+                .putInt(flags)
+                .putInt(segments.length / 3);
+        for (long offset : segments) {
+            record.putLong(offset);
+        }
+        long[] tails = checkpoint.tailChecksums != null ? checkpoint.tailChecksums : new long[0];
+        int tailCount = Math.min(tails.length, MAX_SEGMENTS);
+        record.position(TAILS_OFFSET).putInt(tailCount);
+        for (int i = 0; i < tailCount; i++) {
+            record.putLong(tails[i]);
+        }
+        record.putLong(RECORD_BYTES - 8, checksum(record.duplicate().clear(), RECORD_BYTES - 8));
+        return record.clear();
+    }
+
+    private static void readRecord(ByteBuffer record, Checkpoint checkpoint) throws IOException {
+        record.position(8);
+        checkpoint.updatedAt = record.getLong();
+        checkpoint.downloadedBytes = record.getLong();
+        int flags = record.getInt();
+        int count = record.getInt();
+        if (count < 0 || count > MAX_SEGMENTS) {
+            throw new IOException("Número de segmentos no válido: " + count);
+        }
+        checkpoint.preallocated = (flags & FLAG_PREALLOCATED) != 0;
+        if ((flags & FLAG_SEGMENTED) != 0) {
+            long[] segments = new long[count * 3];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = record.getLong();
+            }
+            checkpoint.segments = segments;
+        } else {
+            checkpoint.segments = null;
+        }
+        record.position(TAILS_OFFSET);
+        int tailCount = record.getInt();
+        if (tailCount < 0 || tailCount > MAX_SEGMENTS) {
+            throw new IOException("Número de sumas de bloque no válido: " + tailCount);
+        }
+        long[] tails = new long[tailCount];
+        for (int i = 0; i < tailCount; i++) {
+            tails[i] = record.getLong();
+        }
+        checkpoint.tailChecksums = tailCount > 0 ? tails : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Cadena no válida en la cabecera");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(ByteBuffer data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data.limit(data.position() + length));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,342 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Integrity checks for direct downloads that never read the whole file a
+ * second time.  While the data is written, {@link TailChecksum} hashes every
+ * {@link #BLOCK_BYTES} block with CRC32C straight from the write buffer; the
+ * checksum of the last block before each resume point goes into the
+ * checkpoint journal and is checked again when the download resumes, which
+ * catches data lost between the checkpoint and a crash.  Once the transfer
+ * ends, {@link #checkContainer} walks the top-level structure of MP4 and
+ * Matroska files (a few header reads) to spot truncated or overwritten
+ * regions.  Problems are reported as a byte offset so only a window starting
+ * there has to be fetched again, see {@link #refetch}.
+ */
+final class DownloadIntegrity {
+
+    static final int BLOCK_BYTES = 256 * 1024;
+    /** Entries of {@link TailChecksum#entry()} with no complete block yet. */
+    static final long NO_ENTRY = -1L;
+    private static final int MKV_EBML_ID = 0x1A45DFA3;
+    private static final int MKV_SEGMENT_ID = 0x18538067;
+    private static final int MAX_ELEMENTS = 1_000_000;
+
+    /** Outcome of a verification; {@code offset} is {@code -1} when the problem cannot be located. */
+    record Result(boolean valid, long offset, String problem) {
+        static final Result OK = new Result(true, -1L, null);
+
+        static Result corrupt(long offset, String problem) {
+            return new Result(false, offset, problem);
+        }
+    }
+
+    private DownloadIntegrity() {
+    }
+
+    /**
+     * Running CRC32C of one writer.  Blocks are hashed only when the writer
+     * covered them from their first byte, so a writer that starts in the
+     * middle of a block skips that one.  {@link #entry()} only reports blocks
+     * that end at or below the last {@linkplain #commit committed} offset.
+     */
+    static final class TailChecksum {
+        private final CRC32C crc = new CRC32C();
+        private long next;
+        private boolean aligned;
+        private long latest = NO_ENTRY;
+        private long previous = NO_ENTRY;
+        private long committed;
+
+        TailChecksum(long position) {
+            this.next = position;
+            this.committed = position;
+            this.aligned = position % BLOCK_BYTES == 0;
+        }
+
+        /** Folds the remaining bytes of {@code data}, about to be written at {@code position}. */
+        synchronized void update(long position, ByteBuffer data) {
+            if (position != next) {
+                crc.reset();
+                next = position;
+                aligned = position % BLOCK_BYTES == 0;
+            }
+            int offset = data.position();
+            int end = data.limit();
+            while (offset < end) {
+                long blockEnd = (next / BLOCK_BYTES + 1) * BLOCK_BYTES;
+                int take = (int) Math.min(end - offset, blockEnd - next);
+                if (aligned) {
+                    crc.update(data.slice(offset, take));
+                }
+                offset += take;
+                next += take;
+                if (next == blockEnd) {
+                    if (aligned) {
+                        previous = latest;
+                        latest = pack(next / BLOCK_BYTES - 1, crc.getValue());
+                    }
+                    crc.reset();
+                    aligned = true;
+                }
+            }
+        }
+
+        synchronized void commit(long position) {
+            committed = position;
+        }
+
+        /** Block index and checksum of the last complete block below the committed offset. */
+        synchronized long entry() {
+            if (latest != NO_ENTRY && (blockOf(latest) + 1) * BLOCK_BYTES <= committed) {
+                return latest;
+            }
+            if (previous != NO_ENTRY && (blockOf(previous) + 1) * BLOCK_BYTES <= committed) {
+                return previous;
+            }
+            return NO_ENTRY;
+        }
+    }
+
+    static long pack(long block, long crc) {
+        return (block << 32) | (crc & 0xFFFFFFFFL);
+    }
+
+    static long blockOf(long entry) {
+        return entry >>> 32;
+    }
+
+    static long crcOf(long entry) {
+        return entry & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads back the blocks named by {@code entries} and returns the start
+     * offsets of those whose checksum no longer matches, lowest first.
+     */
+    static long[] mismatchedBlocks(Path file, long[] entries) throws IOException {
+        if (entries == null || entries.length == 0) {
+            return new long[0];
+        }
+        List<Long> bad = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long entry : entries) {
+                long start = blockOf(entry) * BLOCK_BYTES;
+                if (start + BLOCK_BYTES > size || !readFully(channel, buffer.clear(), start)) {
+                    bad.add(start);
+                    continue;
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(buffer.flip());
+                if (crc.getValue() != crcOf(entry)) {
+                    bad.add(start);
+                }
+            }
+        }
+        return bad.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    /**
+     * Marks {@code [from, from + length)} as pending again in flat
+     * {@code start, position, end} segment triples, splitting the segment
+     * that holds {@code from} so the bytes it had after the window stay done.
+     */
+    static long[] refetch(long[] offsets, long from, long length) {
+        List<Long> result = new ArrayList<>(offsets.length + 3);
+        for (int i = 0; i < offsets.length; i += 3) {
+            long start = offsets[i];
+            long position = offsets[i + 1];
+            long end = offsets[i + 2];
+            if (from < start || from >= position) {
+                result.addAll(List.of(start, position, end));
+                continue;
+            }
+            long windowEnd = length >= position - from ? position : from + length;
+            if (windowEnd >= position) {
+                result.addAll(List.of(start, from, end));
+            } else {
+                result.addAll(List.of(start, from, windowEnd, windowEnd, position, end));
+            }
+        }
+        return result.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /** Bytes recorded as written by flat segment triples. */
+    static long downloadedBytes(long[] offsets) {
+        long done = 0L;
+        for (int i = 0; i < offsets.length; i += 3) {
+            done += offsets[i + 1] - offsets[i];
+        }
+        return done;
+    }
+
+    /**
+     * Checks the top-level layout of MP4 and Matroska files; other formats
+     * pass unchecked except for HTML pages served instead of the video.
+     */
+    static Result checkContainer(FileChannel channel, long size) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(16, size));
+        if (size < 8 || !readFully(channel, head, 0L)) {
+            return size == 0 ? Result.corrupt(0L, "archivo vacío") : Result.OK;
+        }
+        head.flip();
+        String text = new String(head.array(), 0, head.limit(), StandardCharsets.ISO_8859_1).trim().toLowerCase();
+        if (text.startsWith("<!doctype") || text.startsWith("<html")) {
+            return Result.corrupt(0L, "el servidor devolvió una página HTML");
+        }
+        if (head.getInt(0) == MKV_EBML_ID) {
+            return checkMatroska(channel, size);
+        }
+        if ("ftyp".equals(fourCc(head, 4))) {
+            return checkMp4(channel, size);
+        }
+        return Result.OK;
+    }
+
+    private static Result checkMp4(FileChannel channel, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0L;
+        boolean moov = false;
+        for (int boxes = 0; position < size && boxes < MAX_ELEMENTS; boxes++) {
+            int length = (int) Math.min(16, size - position);
+            if (length < 8 && moov) {
+                // A few padding bytes after the last box.
+                break;
+            }
+            if (length < 8 || !readFully(channel, header.clear().limit(length), position)) {
+                return Result.corrupt(position, "caja MP4 incompleta");
+            }
+            String type = fourCc(header, 4);
+            if (type == null) {
+                return Result.corrupt(position, "cabecera de caja MP4 no válida");
+            }
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            if (boxSize == 1) {
+                if (header.position() < 16) {
+                    return Result.corrupt(position, "caja MP4 incompleta");
+                }
+                boxSize = header.getLong(8);
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+            if (boxSize < 8) {
+                return Result.corrupt(position, "tamaño de caja MP4 no válido");
+            }
+            if (position + boxSize > size) {
+                return Result.corrupt(position, "la caja '" + type + "' sobrepasa el final del archivo");
+            }
+            moov |= "moov".equals(type);
+            position += boxSize;
+        }
+        return moov ? Result.OK : Result.corrupt(-1L, "falta la caja 'moov'");
+    }
+
+    private static Result checkMatroska(FileChannel channel, long size) throws IOException {
+        ByteBuffer element = ByteBuffer.allocate(12);
+        long[] header = readElement(channel, element, 0L, size);
+        if (header == null) {
+            return Result.corrupt(0L, "cabecera EBML no válida");
+        }
+        long position = header[1] + header[2];
+        long[] segment = readElement(channel, element, position, size);
+        if (segment == null || segment[0] != MKV_SEGMENT_ID) {
+            return Result.corrupt(position, "falta el segmento Matroska");
+        }
+        long dataStart = segment[1];
+        long dataEnd = segment[2] < 0 ? size : dataStart + segment[2];
+        if (dataEnd > size) {
+            return Result.corrupt(-1L, "el segmento Matroska ocupa más que el archivo");
+        }
+        position = dataStart;
+        for (int elements = 0; position < dataEnd && elements < MAX_ELEMENTS; elements++) {
+            long[] child = readElement(channel, element, position, dataEnd);
+            if (child == null) {
+                return Result.corrupt(position, "elemento Matroska no válido");
+            }
+            if (child[2] < 0) {
+                // Unknown size (live muxers): nothing further can be checked.
+                return Result.OK;
+            }
+            if (child[1] + child[2] > dataEnd) {
+                return Result.corrupt(position, "un elemento Matroska sobrepasa el segmento");
+            }
+            position = child[1] + child[2];
+        }
+        return Result.OK;
+    }
+
+    /**
+     * Reads an EBML element header at {@code position}.
+     *
+     * @return {@code {id, dataStart, dataSize}} with a negative size when it is
+     *         unknown, or {@code null} if the header is malformed
+     */
+    private static long[] readElement(FileChannel channel, ByteBuffer buffer, long position, long limit)
+            throws IOException {
+        if (position >= limit || !readFully(channel, buffer.clear().limit((int) Math.min(12, limit - position)), position)) {
+            return null;
+        }
+        int available = buffer.position();
+        int idLength = vintLength(buffer.get(0));
+        if (idLength == 0 || idLength > 4 || idLength >= available) {
+            return null;
+        }
+        long id = 0L;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (buffer.get(i) & 0xFF);
+        }
+        int sizeLength = vintLength(buffer.get(idLength));
+        if (sizeLength == 0 || idLength + sizeLength > available) {
+            return null;
+        }
+        long dataSize = buffer.get(idLength) & (0xFF >> sizeLength);
+        boolean unknown = dataSize == (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int value = buffer.get(idLength + i) & 0xFF;
+            unknown &= value == 0xFF;
+            dataSize = (dataSize << 8) | value;
+        }
+        return new long[]{id, position + idLength + sizeLength, unknown ? -1L : dataSize};
+    }
+
+    private static int vintLength(byte first) {
+        int value = first & 0xFF;
+        return value == 0 ? 0 : Integer.numberOfLeadingZeros(value) - 23;
+    }
+
+    private static String fourCc(ByteBuffer buffer, int offset) {
+        byte[] type = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            byte value = buffer.get(offset + i);
+            if (value < 0x20 || value > 0x7E) {
+                return null;
+            }
+            type[i] = value;
+        }
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    /** Fills {@code buffer} from {@code position}; returns {@code false} when the file ends first. */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+}
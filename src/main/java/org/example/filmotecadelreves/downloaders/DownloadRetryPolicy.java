@@ -0,0 +1,156 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.FileSystemException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import javax.net.ssl.SSLException;
+
+/**
+ * Decides whether a failed direct download is tried again and after how
+ * long.  Failures are grouped by cause, each with its own budget and
+ * exponential backoff: expired links are re-resolved almost at once,
+ * throttled hosts get long waits unless they send {@code Retry-After},
+ * which then wins; server errors and network drops sit in between.  Delays use "equal jitter" (half
+ * fixed, half random) so downloads that fail together do not come back
+ * together.  Budgets start over once bytes flow again, see {@link #reset()}.
+ */
+final class DownloadRetryPolicy {
+
+    /** Longest {@code Retry-After} that is honoured; some hosts answer with hours. */
+    static final long MAX_RETRY_AFTER_MS = 10L * 60 * 1000;
+
+    enum Failure {
+        /** 403/410 on a tokenized link: it needs resolving again. */
+        EXPIRED_LINK(3, 1_000L, 15_000L),
+        /** 429/503: the host limits requests or connections. */
+        THROTTLED(6, 5_000L, 120_000L),
+        SERVER_ERROR(5, 2_000L, 60_000L),
+        /** Timeouts, resets, DNS failures and connections closed mid-transfer. */
+        NETWORK(8, 1_000L, 30_000L),
+        /** Anything that will fail the same way again. */
+        FATAL(0, 0L, 0L);
+
+        final int maxAttempts;
+        final long baseDelayMs;
+        final long maxDelayMs;
+
+        Failure(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+            this.maxAttempts = maxAttempts;
+            this.baseDelayMs = baseDelayMs;
+            this.maxDelayMs = maxDelayMs;
+        }
+    }
+
+    private final DoubleSupplier random;
+    private final Map<Failure, Integer> attempts = new EnumMap<>(Failure.class);
+
+    DownloadRetryPolicy() {
+        this(() -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /** @param random source of values in {@code [0, 1)} for the jitter */
+    DownloadRetryPolicy(DoubleSupplier random) {
+        this.random = random;
+    }
+
+    static Failure classify(int statusCode) {
+        if (statusCode == 403 || statusCode == 410) {
+            return Failure.EXPIRED_LINK;
+        }
+        if (statusCode == 429 || statusCode == 503) {
+            return Failure.THROTTLED;
+        }
+        if (statusCode == 408) {
+            return Failure.NETWORK;
+        }
+        if (statusCode >= 500 && statusCode < 600) {
+            return Failure.SERVER_ERROR;
+        }
+        return Failure.FATAL;
+    }
+
+    /** Classifies an I/O failure that carries no HTTP status. */
+    static Failure classify(IOException failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileSystemException) {
+                // Local disk or permission problems do not go away by waiting.
+                return Failure.FATAL;
+            }
+            if (cause instanceof SocketException
+                    || cause instanceof SocketTimeoutException
+                    || cause instanceof HttpTimeoutException
+                    || cause instanceof UnknownHostException
+                    || cause instanceof EOFException
+                    || cause instanceof SSLException) {
+                return Failure.NETWORK;
+            }
+        }
+        // HttpClient reports most dropped connections as plain IOExceptions.
+        return failure.getClass() == IOException.class ? Failure.NETWORK : Failure.FATAL;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, either delay-seconds or an HTTP
+     * date, into milliseconds from {@code nowMillis}.
+     *
+     * @return the delay, or {@code -1} if the header is missing or invalid
+     */
+    static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.isBlank()) {
+            return -1L;
+        }
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1L : Math.min(seconds, MAX_RETRY_AFTER_MS / 1000) * 1000;
+        } catch (NumberFormatException ignored) {
+            // Not delay-seconds; try an HTTP date.
+        }
+        try {
+            long at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0L, at - nowMillis);
+        } catch (DateTimeParseException ignored) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Counts one more failure of {@code failure}.
+     *
+     * @param retryAfterMs delay asked for by the server, or {@code -1}
+     * @return milliseconds to wait before the next attempt, or {@code -1}
+     *         once the budget of that kind of failure is spent
+     */
+    synchronized long nextDelay(Failure failure, long retryAfterMs) {
+        int attempt = attempts.merge(failure, 1, Integer::sum);
+        if (attempt > failure.maxAttempts) {
+            return -1L;
+        }
+        if (retryAfterMs > 0) {
+            return Math.min(retryAfterMs, MAX_RETRY_AFTER_MS);
+        }
+        long ceiling = Math.min(failure.maxDelayMs, failure.baseDelayMs << Math.min(attempt - 1, 20));
+        long half = ceiling / 2;
+        return half + (long) (random.getAsDouble() * (ceiling - half));
+    }
+
+    synchronized int attempts(Failure failure) {
+        return attempts.getOrDefault(failure, 0);
+    }
+
+    /** Starts every budget over, e.g. after the download made progress again. */
+    synchronized void reset() {
+        attempts.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Watches the network traffic of a Chrome session through the DevTools
+ * protocol and completes as soon as the page requests the video, so the
+ * Selenium resolvers do not have to poll the page source for the link.
+ * <p>
+ * A request counts when its URL matches the resolver's pattern, or when the
+ * player's own host answers it with an MP4; MP4s served from elsewhere, such
+ * as the ads embedded in the page, are ignored.  The raw {@code Network} events are used
+ * rather than a versioned CDP binding, so the capture keeps working when
+ * Chrome is updated ahead of Selenium.
+ */
+final class MediaRequestCapture implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MediaRequestCapture.class.getName());
+
+    private static final Event<Map<String, Object>> REQUEST_WILL_BE_SENT =
+            new Event<>("Network.requestWillBeSent", input -> input.read(Json.MAP_TYPE));
+    private static final Event<Map<String, Object>> RESPONSE_RECEIVED =
+            new Event<>("Network.responseReceived", input -> input.read(Json.MAP_TYPE));
+
+    private final DevTools devTools;
+    private final Pattern mediaUrl;
+    private final String playerHost;
+    private final CompletableFuture<String> found = new CompletableFuture<>();
+
+    private MediaRequestCapture(DevTools devTools, Pattern mediaUrl, String playerUrl) {
+        this.devTools = devTools;
+        this.mediaUrl = mediaUrl;
+        String host = hostOf(playerUrl);
+        this.playerHost = host != null && host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    /** For tests: a capture that is not attached to any browser and is fed the events directly. */
+    MediaRequestCapture(Pattern mediaUrl, String playerUrl) {
+        this(null, mediaUrl, playerUrl);
+    }
+
+    /**
+     * Starts listening on the current window of {@code driver}.  Call it
+     * before loading the page.
+     *
+     * @param playerUrl the page about to be loaded; MP4 responses only count
+     *                  when they come from its host or one of its subdomains
+     *
+     * @return the capture, or {@code null} if the session has no DevTools
+     * connection; the caller then falls back to reading the page
+     */
+    static MediaRequestCapture start(WebDriver driver, Pattern mediaUrl, String playerUrl) {
+        if (!(driver instanceof HasDevTools hasDevTools)) {
+            return null;
+        }
+        DevTools devTools = null;
+        try {
+            devTools = hasDevTools.getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+            MediaRequestCapture capture = new MediaRequestCapture(devTools, mediaUrl, playerUrl);
+            devTools.addListener(REQUEST_WILL_BE_SENT, capture::onRequest);
+            devTools.addListener(RESPONSE_RECEIVED, capture::onResponse);
+            devTools.send(new Command<Void>("Network.enable", Map.of()));
+            return capture;
+        } catch (WebDriverException e) {
+            LOGGER.log(Level.WARNING, "DevTools no disponible; se buscará el vídeo en la página: " + e.getMessage());
+            if (devTools != null) {
+                disconnect(devTools);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Waits for the page to request the video.
+     *
+     * @throws TimeoutException      if it did not within {@code timeout}
+     * @throws CancellationException if the waiting thread was interrupted
+     */
+    String await(Duration timeout) {
+        try {
+            return found.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new TimeoutException("La página no pidió ningún vídeo en " + timeout.toSeconds() + " s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Espera del vídeo interrumpida");
+        } catch (ExecutionException e) {
+            throw new WebDriverException(e.getCause());
+        }
+    }
+
+    /** The video requested so far, without waiting. */
+    Optional<String> current() {
+        return Optional.ofNullable(found.getNow(null));
+    }
+
+    @Override
+    public void close() {
+        if (devTools != null) {
+            disconnect(devTools);
+        }
+    }
+
+    void onRequest(Map<String, Object> params) {
+        String url = stringAt(params, "request", "url");
+        if (url != null && mediaUrl.matcher(url).find()) {
+            accept(url, "petición");
+        }
+    }
+
+    void onResponse(Map<String, Object> params) {
+        String mimeType = stringAt(params, "response", "mimeType");
+        if (mimeType == null || !mimeType.toLowerCase(Locale.ROOT).startsWith("video/mp4")) {
+            return;
+        }
+        String url = stringAt(params, "response", "url");
+        if (url != null && (mediaUrl.matcher(url).find() || fromPlayer(url))) {
+            accept(url, "respuesta");
+        }
+    }
+
+    private boolean fromPlayer(String url) {
+        String host = hostOf(url);
+        return playerHost != null && host != null
+                && (host.equals(playerHost) || host.endsWith("." + playerHost));
+    }
+
+    private static String hostOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void accept(String url, String source) {
+        if (url == null || !url.regionMatches(true, 0, "http", 0, 4)) {
+            // blob: and data: URLs cannot be downloaded outside the page.
+            return;
+        }
+        if (found.complete(url)) {
+            LOGGER.log(Level.FINE, "Vídeo detectado en la " + source + " de red: " + url);
+        }
+    }
+
+    private static String stringAt(Map<String, Object> params, String object, String field) {
+        Object nested = params.get(object);
+        if (nested instanceof Map<?, ?> map && map.get(field) instanceof String value) {
+            return value;
+        }
+        return null;
+    }
+
+    private static void disconnect(DevTools devTools) {
+        quietly(devTools::clearListeners);
+        quietly(() -> devTools.send(new Command<Void>("Network.disable", Map.of())));
+        quietly(devTools::disconnectSession);
+    }
+
+    private static void quietly(Runnable step) {
+        try {
+            step.run();
+        } catch (WebDriverException e) {
+            LOGGER.log(Level.FINE, "Error cerrando la sesión de DevTools: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.filmotecadelreves.downloaders;
+
+/**
+ * Lets a {@link ResumableHttpDownloadTask} move to another server holding the
+ * same video when the current one becomes slow or stops answering.
+ */
+interface MirrorFailover {
+
+    /**
+     * @param keepOffset whether the bytes already on disk are valid on the new
+     *                   server; otherwise the download starts over there
+     */
+    record Switch(String server, DirectLink link, boolean keepOffset) {
+    }
+
+    /**
+     * Called from the download thread; may block while other mirrors are
+     * resolved and probed.
+     *
+     * @param remainingBytes bytes still missing, or {@code -1} if unknown
+     * @param bytesPerSecond throughput of the current server over the last
+     *                       window, or {@code 0} when it keeps failing
+     * @return where to continue, or {@code null} to stay
+     */
+    Switch next(long remainingBytes, double bytesPerSecond);
+}
@@ -0,0 +1,138 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Measures how a mirror serves a file with a single ranged GET for its first
+ * {@link #SAMPLE_BYTES}: the time to the first byte and the throughput of the
+ * rest.  The total length and a CRC32C of the first {@link #IDENTITY_BYTES}
+ * identify the file, so a partial download from one mirror can continue on
+ * another whose sample matches.
+ */
+final class MirrorProbe {
+
+    static final int SAMPLE_BYTES = 512 * 1024;
+    static final int IDENTITY_BYTES = 64 * 1024;
+    static final Duration SAMPLE_TIMEOUT = Duration.ofSeconds(8);
+    /** Transfer the initial ranking is based on; large enough for the throughput to dominate. */
+    static final long RANKING_BYTES = 64L * 1024 * 1024;
+    /** Fixed price of moving a running download: new resolution, HEAD and connections. */
+    static final long SWITCH_COST_MS = 5_000L;
+    /** Another mirror must finish this many times sooner to be worth a switch. */
+    static final double SWITCH_MARGIN = 1.5;
+    static final long NO_CHECKSUM = -1L;
+
+    /**
+     * @param firstByteMillis time from the request to the first body byte
+     * @param totalLength     file length, or {@code -1} if the mirror did not tell
+     * @param headChecksum    CRC32C of the first {@link #IDENTITY_BYTES}, or {@link #NO_CHECKSUM}
+     * @param ranges          whether the mirror answered the range with 206
+     */
+    record Sample(long firstByteMillis, double bytesPerSecond, long totalLength, long headChecksum, boolean ranges) {
+
+        double estimatedMillis(long bytes) {
+            if (bytesPerSecond <= 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return firstByteMillis + Math.max(0L, bytes) * 1000.0 / bytesPerSecond;
+        }
+
+        /** Whether bytes downloaded from the mirror of {@code other} stay valid on this one. */
+        boolean continues(Sample other) {
+            return other != null
+                    && ranges
+                    && totalLength > 0
+                    && totalLength == other.totalLength
+                    && headChecksum != NO_CHECKSUM
+                    && headChecksum == other.headChecksum;
+        }
+
+        /**
+         * Whether moving here finishes clearly sooner than staying on a server
+         * that delivers {@code currentBytesPerSecond} ({@code 0} when it fails).
+         *
+         * @param keepOffset whether the {@code remainingBytes} are all that is left
+         *                   here too, or the file starts over
+         */
+        boolean beats(long remainingBytes, double currentBytesPerSecond, boolean keepOffset) {
+            if (bytesPerSecond <= 0) {
+                return false;
+            }
+            double stayMillis = currentBytesPerSecond > 0
+                    ? remainingBytes * 1000.0 / currentBytesPerSecond
+                    : Double.POSITIVE_INFINITY;
+            long bytesHere = keepOffset || totalLength <= 0 ? remainingBytes : totalLength;
+            return (estimatedMillis(bytesHere) + SWITCH_COST_MS) * SWITCH_MARGIN < stayMillis;
+        }
+    }
+
+    private MirrorProbe() {
+    }
+
+    static Sample probe(DirectHttpTransport transport, DirectLink link) throws IOException, InterruptedException {
+        HttpRequest request = transport.request(link.url(), link.headers())
+                .timeout(SAMPLE_TIMEOUT)
+                .setHeader("Range", "bytes=0-" + (SAMPLE_BYTES - 1))
+                .build();
+        long started = System.nanoTime();
+        long deadline = started + SAMPLE_TIMEOUT.toNanos();
+        try (DirectHttpTransport.Exchange exchange = transport.send(request)) {
+            int code = exchange.statusCode();
+            if (code != 200 && code != 206) {
+                throw new IOException("GET " + code);
+            }
+            boolean ranges = code == 206;
+            long totalLength = ranges ? contentRangeTotal(exchange.header("Content-Range")) : exchange.contentLength();
+
+            ResponseBodyChannel body = exchange.body();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            CRC32C crc = new CRC32C();
+            long firstByteAt = -1L;
+            long firstRead = 0L;
+            long sampled = 0L;
+            while (sampled < SAMPLE_BYTES && System.nanoTime() < deadline) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), SAMPLE_BYTES - sampled));
+                int read = body.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                if (firstByteAt < 0) {
+                    firstByteAt = System.nanoTime();
+                    firstRead = read;
+                }
+                if (sampled < IDENTITY_BYTES) {
+                    crc.update(buffer.flip().limit((int) Math.min(read, IDENTITY_BYTES - sampled)));
+                }
+                sampled += read;
+            }
+            if (firstByteAt < 0) {
+                throw new IOException("El servidor no envió datos");
+            }
+            long finished = System.nanoTime();
+            long bodyNanos = finished - firstByteAt;
+            double bytesPerSecond = bodyNanos > 0 && sampled > firstRead
+                    ? (sampled - firstRead) * 1e9 / bodyNanos
+                    : sampled * 1e9 / Math.max(1L, finished - started);
+            boolean identified = sampled >= IDENTITY_BYTES || (totalLength > 0 && sampled >= totalLength);
+            return new Sample(TimeUnit.NANOSECONDS.toMillis(firstByteAt - started), bytesPerSecond,
+                    totalLength, identified ? crc.getValue() : NO_CHECKSUM, ranges);
+        }
+    }
+
+    private static long contentRangeTotal(String contentRange) {
+        if (contentRange == null) {
+            return -1L;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        try {
+            return slash >= 0 ? Long.parseLong(contentRange.substring(slash + 1).trim()) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.DirectDownloader;
+import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloader for a video that several servers (mirrors) host.  Before the
+ * download starts, every mirror whose downloader can {@linkplain
+ * DirectDownloader#resolveDirectLink resolve its link unattended} is resolved
+ * and {@linkplain MirrorProbe probed} in parallel and the fastest one is
+ * used; the chosen server keeps the download unless another is clearly
+ * faster.  While it runs, the {@link ResumableHttpDownloadTask} asks this
+ * class for another mirror when its throughput drops or its server keeps
+ * failing.  The bytes already on disk are kept only when the probes show the
+ * same length and the same first bytes; otherwise the new mirror starts from
+ * zero.
+ * <p>
+ * One instance serves one download.  When no mirror can be probed (captchas,
+ * manual mode) the download is handed to the downloader of the chosen server.
+ */
+public class MirroredDirectDownloader implements DirectDownloader, MirrorFailover {
+
+    private static final Logger LOGGER = Logger.getLogger(MirroredDirectDownloader.class.getName());
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(45);
+    /** Another mirror has to be this much faster to be preferred over the server in use. */
+    private static final double PREFERENCE_MARGIN = 1.2;
+    /** Minimum time on a mirror before a slow (but working) one is left. */
+    private static final long MIN_DWELL_MS = 120_000L;
+
+    /** Page of the video on one server, with the downloader that resolves it. */
+    public record Mirror(String server, String pageUrl, DirectDownloader downloader) {
+        public Mirror {
+            Objects.requireNonNull(pageUrl, "pageUrl");
+            Objects.requireNonNull(downloader, "downloader");
+        }
+    }
+
+    private record Candidate(Mirror mirror, DirectLink link, MirrorProbe.Sample sample) {
+    }
+
+    private final List<Mirror> mirrors;
+    private final Map<Mirror, MirrorProbe.Sample> samples = new ConcurrentHashMap<>();
+    private final DirectHttpTransport transport = DirectHttpTransport.shared();
+    /** Guards the choice of mirror; a lock rather than a monitor so probing does not pin a carrier thread. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Mirror current;
+    /** Probe of the mirror the bytes on disk came from. */
+    private volatile MirrorProbe.Sample currentSample;
+    private volatile long switchedAt;
+    private volatile ResumableHttpDownloadTask task;
+
+    /**
+     * @param mirrors servers holding the video, the one chosen by the user first
+     */
+    public MirroredDirectDownloader(List<Mirror> mirrors) {
+        if (mirrors == null || mirrors.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un servidor");
+        }
+        this.mirrors = List.copyOf(mirrors);
+    }
+
+    public List<Mirror> getMirrors() {
+        return mirrors;
+    }
+
+    @Override
+    public void download(String url, String destinationPath, DescargasUI.DirectDownload directDownload) {
+        DirectDownloadEngine.shared().resolve(directDownload.getId(), directDownload.getName(), () -> {
+            try {
+                updateDownload(directDownload, d -> d.setStatus("Processing"));
+                Candidate chosen = choose(directDownload);
+                if (chosen == null) {
+                    Mirror primary = mirrors.get(0);
+                    LOGGER.log(Level.INFO, "No se pudo comparar ningún servidor espejo de " + directDownload.getName()
+                            + "; se descarga de " + primary.server() + ".");
+                    directDownload.setDownloader(primary.downloader());
+                    primary.downloader().download(url, destinationPath, directDownload);
+                    return;
+                }
+                start(chosen, directDownload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "No se pudo iniciar la descarga de " + directDownload.getName(), e);
+                updateDownload(directDownload, d -> d.setStatus("Error"));
+            }
+        });
+    }
+
+    /**
+     * Probes every mirror and picks the fastest.  A download that already has
+     * bytes on disk only considers mirrors that can continue them.
+     *
+     * @return the mirror to use, or {@code null} if none could be probed
+     */
+    private Candidate choose(DescargasUI.DirectDownload download) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            return chooseLocked(download);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Candidate chooseLocked(DescargasUI.DirectDownload download) throws InterruptedException {
+        Map<Mirror, Candidate> probed = probeAll();
+        probed.forEach((mirror, candidate) -> samples.put(mirror, candidate.sample()));
+
+        Mirror inUse = current != null ? current : mirrors.get(0);
+        MirrorProbe.Sample reference = null;
+        if (download.getDownloadedBytes() > 0) {
+            reference = currentSample;
+            if (reference == null) {
+                // Bytes left by an earlier session come from the server the download was queued with.
+                Candidate origin = probed.get(mirrors.get(0));
+                if (origin == null) {
+                    return null;
+                }
+                reference = origin.sample();
+            }
+        }
+
+        Candidate best = null;
+        double bestMillis = Double.POSITIVE_INFINITY;
+        for (Candidate candidate : probed.values()) {
+            if (reference != null && !candidate.sample().continues(reference)) {
+                continue;
+            }
+            double millis = fullTransferMillis(candidate.sample());
+            if (millis < bestMillis) {
+                best = candidate;
+                bestMillis = millis;
+            }
+        }
+        Candidate preferred = probed.get(inUse);
+        if (best != null && preferred != null && best != preferred
+                && (reference == null || preferred.sample().continues(reference))
+                && fullTransferMillis(preferred.sample()) <= bestMillis * PREFERENCE_MARGIN) {
+            best = preferred;
+        }
+        return best;
+    }
+
+    private void start(Candidate chosen, DescargasUI.DirectDownload download) {
+        MirrorProbe.Sample sample = chosen.sample();
+        LOGGER.log(Level.INFO, "Descarga " + download.getName() + ": se usa " + chosen.mirror().server()
+                + " (primer byte en " + sample.firstByteMillis() + " ms, "
+                + Math.round(sample.bytesPerSecond() / 1024) + " KB/s).");
+        lock.lock();
+        try {
+            current = chosen.mirror();
+            currentSample = sample;
+            switchedAt = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+        ResumableHttpDownloadTask started = new ResumableHttpDownloadTask(chosen.link().url(), download,
+                chosen.link().headers(), this, chosen.mirror().server(), this);
+        task = started;
+        started.getCompletionFuture().whenComplete((ignored, error) -> {
+            if (task == started) {
+                task = null;
+            }
+        });
+        started.start();
+    }
+
+    /**
+     * Moves the download to the mirror that would finish it clearly sooner,
+     * judged by the earlier probes and confirmed with a fresh one.
+     */
+    @Override
+    public Switch next(long remainingBytes, double bytesPerSecond) {
+        lock.lock();
+        try {
+            return nextLocked(remainingBytes, bytesPerSecond);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Switch nextLocked(long remainingBytes, double bytesPerSecond) {
+        boolean failing = bytesPerSecond <= 0;
+        long now = System.currentTimeMillis();
+        if (!failing && now - switchedAt < MIN_DWELL_MS) {
+            return null;
+        }
+        List<Mirror> others = new ArrayList<>(mirrors);
+        others.remove(current);
+        others.sort(Comparator.comparingDouble(mirror -> {
+            MirrorProbe.Sample known = samples.get(mirror);
+            return known != null ? fullTransferMillis(known) : Double.POSITIVE_INFINITY;
+        }));
+        for (Mirror mirror : others) {
+            MirrorProbe.Sample known = samples.get(mirror);
+            if (known == null
+                    ? !failing
+                    : !known.beats(remainingBytes, bytesPerSecond, known.continues(currentSample))) {
+                continue;
+            }
+            Candidate fresh = probe(mirror);
+            if (fresh == null) {
+                samples.remove(mirror);
+                continue;
+            }
+            samples.put(mirror, fresh.sample());
+            boolean keepOffset = fresh.sample().continues(currentSample);
+            if (!fresh.sample().beats(remainingBytes, bytesPerSecond, keepOffset)) {
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Se cambia de " + (current != null ? current.server() : "?") + " a " + mirror.server()
+                    + (failing ? " (el servidor no responde)" : " (" + Math.round(bytesPerSecond / 1024) + " KB/s frente a "
+                    + Math.round(fresh.sample().bytesPerSecond() / 1024) + " KB/s)")
+                    + (keepOffset ? "; se conserva lo descargado." : "; el archivo es distinto y se empieza de cero."));
+            current = mirror;
+            currentSample = fresh.sample();
+            switchedAt = now;
+            return new Switch(mirror.server(), fresh.link(), keepOffset);
+        }
+        return null;
+    }
+
+    private Map<Mirror, Candidate> probeAll() throws InterruptedException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Map<Mirror, Future<Candidate>> pending = new LinkedHashMap<>();
+        Map<Mirror, Candidate> probed = new LinkedHashMap<>();
+        try {
+            for (Mirror mirror : mirrors) {
+                pending.put(mirror, executor.submit(() -> probe(mirror)));
+            }
+            long deadline = System.nanoTime() + PROBE_TIMEOUT.toNanos();
+            for (Map.Entry<Mirror, Future<Candidate>> entry : pending.entrySet()) {
+                try {
+                    Candidate candidate = entry.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (candidate != null) {
+                        probed.put(entry.getKey(), candidate);
+                    }
+                } catch (TimeoutException | ExecutionException e) {
+                    LOGGER.log(Level.FINE, "Sin respuesta a tiempo de " + entry.getKey().server(), e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return probed;
+    }
+
+    private Candidate probe(Mirror mirror) {
+        try {
+            DirectLink link = mirror.downloader().resolveDirectLink(mirror.pageUrl());
+            if (link == null) {
+                return null;
+            }
+            return new Candidate(mirror, link, MirrorProbe.probe(transport, link));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "No se pudo probar " + mirror.server() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static double fullTransferMillis(MirrorProbe.Sample sample) {
+        return sample.estimatedMillis(sample.totalLength() > 0 ? sample.totalLength() : MirrorProbe.RANKING_BYTES);
+    }
+
+    /** The link of the mirror in use expired: resolve it again on the same server. */
+    @Override
+    public String refreshDownloadUrl(DescargasUI.DirectDownload download) {
+        Mirror mirror = current;
+        if (mirror == null) {
+            return null;
+        }
+        DirectLink link = mirror.downloader().resolveDirectLink(mirror.pageUrl());
+        return link != null ? link.url() : null;
+    }
+
+    @Override
+    public void pauseDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask running = task;
+        if (running != null) {
+            running.pause();
+        }
+        updateDownload(download, d -> {
+            d.setStatus("Paused");
+            d.setDownloadSpeed(0.0);
+        });
+    }
+
+    @Override
+    public void resumeDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask running = task;
+        if (running != null) {
+            running.resume();
+            updateDownload(download, d -> d.setStatus("Downloading"));
+        } else {
+            download(download.getUrl(), download.getDestinationPath(), download);
+        }
+    }
+
+    @Override
+    public void cancelDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask running = task;
+        task = null;
+        if (running != null) {
+            running.cancel();
+        }
+        updateDownload(download, d -> {
+            d.setStatus("Cancelled");
+            d.setDownloadSpeed(0.0);
+        });
+    }
+
+    @Override
+    public boolean isAvailable(String url) {
+        return mirrors.get(0).downloader().isAvailable(url);
+    }
+
+    private void updateDownload(DescargasUI.DirectDownload download, Consumer<DescargasUI.DirectDownload> consumer) {
+        ProgressEventBus.shared().post(download, consumer);
+    }
+}
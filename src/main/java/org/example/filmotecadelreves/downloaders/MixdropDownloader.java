@@ -2,24 +2,21 @@ package org.example.filmotecadelreves.downloaders;
 
 import org.example.filmotecadelreves.DirectDownloader;
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
+import java.util.concurrent.Future;
 
 /**
  * Implementación de descargador para el servidor Mixdrop
@@ -30,15 +27,17 @@ public class MixdropDownloader implements DirectDownloader {
     private static final String[] CHROME_DRIVER_CANDIDATES = {PRIMARY_CHROME_DRIVER};
     private static final String CHROME_BINARY_PATH = resolvePath("chrome-win", "chrome.exe");
     private static final int WAIT_TIME_SECONDS = 10; // Tiempo de espera para Mixdrop
+    private static final BrowserSessionPool.Profile BROWSER_PROFILE =
+            new BrowserSessionPool.Profile("Mixdrop", true, true, MixdropDownloader::createBrowserOptions);
 
     private final Map<String, ResumableHttpDownloadTask> activeDownloads = new ConcurrentHashMap<>();
 
-    private WebDriver driver;
-    private final Map<String, Thread> resolverThreads = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> resolverTasks = new ConcurrentHashMap<>();
 
     @Override
     public void download(String videoUrl, String destinationPath, DescargasUI.DirectDownload directDownload) {
-        Thread resolverThread = new Thread(() -> {
+        Future<?> resolverTask = DirectDownloadEngine.shared().resolve(directDownload.getId(), directDownload.getName(), () -> {
+            BrowserSessionPool.Lease browser = null;
             try {
                 updateDownloadStatus(directDownload, "Processing", 0);
 
@@ -50,22 +49,8 @@ public class MixdropDownloader implements DirectDownloader {
                     Thread.sleep(1000);
                 }
 
-                String driverPath = ChromeExecutableLocator.resolveChromeDriver(CHROME_DRIVER_CANDIDATES);
-                if (driverPath != null) {
-                    System.setProperty("webdriver.chrome.driver", driverPath);
-                } else {
-                    System.clearProperty("webdriver.chrome.driver");
-                    System.err.println("ChromeDriver empaquetado no disponible. Selenium Manager resolverá la versión adecuada.");
-                }
-                ChromeOptions options = new ChromeOptions();
-                String chromeBinary = ChromeExecutableLocator.resolvePackagedChromeBinary(CHROME_BINARY_PATH);
-                if (chromeBinary != null) {
-                    options.setBinary(chromeBinary);
-                } else {
-                    System.err.println("No se encontró el Chrome empaquetado. Se usará el navegador predeterminado del sistema.");
-                }
-                options.addArguments("--no-sandbox", "--disable-dev-shm-usage", "--window-size=1920,1080", "--remote-allow-origins=*");
-                driver = new ChromeDriver(options);
+                browser = BrowserSessionPool.shared().lease(BROWSER_PROFILE);
+                WebDriver driver = browser.driver();
                 WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(15));
 
                 updateDownloadStatus(directDownload, "Processing", 10);
@@ -119,16 +104,13 @@ public class MixdropDownloader implements DirectDownloader {
                 }
 
                 updateDownloadStatus(directDownload, "Processing", 80);
-                if (driver != null) {
-                    driver.quit();
-                    driver = null;
-                }
+                browser.close();
+                browser = null;
                 updateDownloadStatus(directDownload, "Processing", 90);
 
-                Consumer<HttpURLConnection> headers = connection -> {
-                    connection.setRequestProperty("Referer", "https://mixdrop.co/");
-                    connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-                };
+                DirectHttpTransport.RequestCustomizer headers = request -> request
+                        .setHeader("Referer", "https://mixdrop.co/")
+                        .setHeader("User-Agent", "Mozilla/5.0");
 
                 ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(downloadUrl, directDownload, headers);
                 activeDownloads.put(directDownload.getId(), task);
@@ -139,19 +121,16 @@ public class MixdropDownloader implements DirectDownloader {
                 System.err.println("Error en la descarga de Mixdrop: " + e.getMessage());
                 updateDownloadStatus(directDownload, "Error", 0);
             } finally {
-                if (driver != null) {
-                    try {
-                        driver.quit();
-                    } catch (Exception ignored) {
-                    }
-                    driver = null;
+                if (browser != null) {
+                    browser.close();
                 }
-                resolverThreads.remove(directDownload.getId());
+                resolverTasks.remove(directDownload.getId());
             }
-        }, "MixdropResolverThread");
-        resolverThreads.put(directDownload.getId(), resolverThread);
-        resolverThread.setDaemon(true);
-        resolverThread.start();
+        });
+        resolverTasks.put(directDownload.getId(), resolverTask);
+        if (resolverTask.isDone()) {
+            resolverTasks.remove(directDownload.getId(), resolverTask);
+        }
     }
 
     @Override
@@ -176,9 +155,9 @@ public class MixdropDownloader implements DirectDownloader {
 
     @Override
     public void cancelDownload(DescargasUI.DirectDownload download) {
-        Thread resolver = resolverThreads.remove(download.getId());
+        Future<?> resolver = resolverTasks.remove(download.getId());
         if (resolver != null) {
-            resolver.interrupt();
+            resolver.cancel(true);
         }
         ResumableHttpDownloadTask task = activeDownloads.remove(download.getId());
         if (task != null) {
@@ -190,25 +169,45 @@ public class MixdropDownloader implements DirectDownloader {
     @Override
     public boolean isAvailable(String url) {
         try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            int responseCode = connection.getResponseCode();
-            return (responseCode == HttpURLConnection.HTTP_OK);
+            int responseCode = DirectHttpTransport.shared().headStatus(url, null, Duration.ofSeconds(5));
+            return (responseCode == 200);
         } catch (Exception e) {
             System.err.println("Error verificando disponibilidad: " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Opciones de las sesiones nuevas del grupo de navegadores. Mixdrop no necesita al
+     * usuario, así que el navegador va en segundo plano.
+     */
+    private static ChromeOptions createBrowserOptions() {
+        String driverPath = ChromeExecutableLocator.resolveChromeDriver(CHROME_DRIVER_CANDIDATES);
+        if (driverPath != null) {
+            System.setProperty("webdriver.chrome.driver", driverPath);
+        } else {
+            System.clearProperty("webdriver.chrome.driver");
+            System.err.println("ChromeDriver empaquetado no disponible. Selenium Manager resolverá la versión adecuada.");
+        }
+        ChromeOptions options = new ChromeOptions();
+        String chromeBinary = ChromeExecutableLocator.resolvePackagedChromeBinary(CHROME_BINARY_PATH);
+        if (chromeBinary != null) {
+            options.setBinary(chromeBinary);
+        } else {
+            System.err.println("No se encontró el Chrome empaquetado. Se usará el navegador predeterminado del sistema.");
+        }
+        options.addArguments("--no-sandbox", "--disable-dev-shm-usage", "--window-size=1920,1080", "--remote-allow-origins=*",
+                "--headless=new");
+        return options;
+    }
+
     /**
      * Actualiza el estado de la descarga
      */
     private void updateDownloadStatus(DescargasUI.DirectDownload download, String status, int progress) {
-        CompletableFuture.runAsync(() -> {
-            download.setStatus(status);
-            download.setProgress(progress);
+        ProgressEventBus.shared().post(download, d -> {
+            d.setStatus(status);
+            d.setProgress(progress);
         });
     }
 
@@ -0,0 +1,340 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers how peers behaved across torrents and restarts.  Entries are keyed
+ * by {@code ip:port} and keep a smoothed throughput, failure counters, the
+ * last time the peer was seen and the torrents it was seen on, so that
+ * {@link TorrentDownloader} can contact known-fast peers first and skip the
+ * ones that keep failing.
+ */
+final class PeerReputationStore {
+
+    private static final Logger LOGGER = Logger.getLogger(PeerReputationStore.class.getName());
+    static final String PATH_PROPERTY = "filmoteca.peer.reputation.path";
+    private static final String DEFAULT_FILENAME = "peer_reputation.json";
+    private static final int MAX_ENTRIES = 4000;
+    private static final int MAX_TORRENTS_PER_PEER = 8;
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+    private static final int SLOW_PEER_THROUGHPUT_BYTES = 8 * 1024;
+    private static final int SLOW_PEER_MIN_SAMPLES = 6;
+    private static final int BAD_PEER_CONSECUTIVE_FAILURES = 3;
+    private static final long FAILED_PEER_BACKOFF_MS = Duration.ofHours(6).toMillis();
+    private static final long SLOW_PEER_BACKOFF_MS = Duration.ofHours(1).toMillis();
+    private static final long ENTRY_TTL_MS = Duration.ofDays(14).toMillis();
+
+    private final Path file;
+    private final ConcurrentHashMap<String, Reputation> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    PeerReputationStore(Path file) {
+        this.file = file;
+        load();
+    }
+
+    static Path defaultPath() {
+        String override = System.getProperty(PATH_PROPERTY);
+        if (override != null && !override.trim().isEmpty()) {
+            return Paths.get(override.trim());
+        }
+        return Paths.get("DB", DEFAULT_FILENAME);
+    }
+
+    /** Records a throughput sample (bytes/s) for a connected peer. */
+    void recordThroughput(String endpoint, String infoHash, long bytesPerSecond, long now) {
+        String key = normalize(endpoint);
+        if (key == null) {
+            return;
+        }
+        Reputation reputation = entries.computeIfAbsent(key, k -> new Reputation());
+        reputation.sample(Math.max(0L, bytesPerSecond), infoHash, now);
+        dirty = true;
+    }
+
+    /** Records a failed connection or a peer error. */
+    void recordFailure(String endpoint, String infoHash, long now) {
+        String key = normalize(endpoint);
+        if (key == null) {
+            return;
+        }
+        Reputation reputation = entries.computeIfAbsent(key, k -> new Reputation());
+        reputation.fail(infoHash, now);
+        dirty = true;
+    }
+
+    /** Whether the peer failed or was slow recently enough to be skipped. */
+    boolean isKnownBad(String endpoint, long now) {
+        String key = normalize(endpoint);
+        Reputation reputation = key != null ? entries.get(key) : null;
+        return reputation != null && reputation.isBad(now);
+    }
+
+    /**
+     * Ranking score of a peer.  Unknown peers get a neutral score between
+     * known-fast and known-slow ones.
+     */
+    double score(String endpoint) {
+        String key = normalize(endpoint);
+        Reputation reputation = key != null ? entries.get(key) : null;
+        if (reputation == null) {
+            return SLOW_PEER_THROUGHPUT_BYTES;
+        }
+        return reputation.score();
+    }
+
+    /**
+     * Drops known-bad candidates and orders the rest from the best to the
+     * worst reputation, keeping the original order between equals.
+     */
+    <T> List<T> rank(Collection<T> candidates, Function<T, String> endpointOf, long now) {
+        List<T> ranked = new ArrayList<>();
+        if (candidates == null) {
+            return ranked;
+        }
+        for (T candidate : candidates) {
+            if (candidate != null && !isKnownBad(endpointOf.apply(candidate), now)) {
+                ranked.add(candidate);
+            }
+        }
+        ranked.sort(Comparator.comparingDouble((T candidate) -> score(endpointOf.apply(candidate))).reversed());
+        return ranked;
+    }
+
+    /** Fastest peers previously seen on {@code infoHash}, best first. */
+    List<String> knownFastPeers(String infoHash, int limit, long now) {
+        if (infoHash == null || limit <= 0) {
+            return List.of();
+        }
+        List<Map.Entry<String, Reputation>> matches = new ArrayList<>();
+        for (Map.Entry<String, Reputation> entry : entries.entrySet()) {
+            Reputation reputation = entry.getValue();
+            if (reputation.seenOn(infoHash) && reputation.isFast() && !reputation.isBad(now)) {
+                matches.add(entry);
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Map.Entry<String, Reputation> e) -> e.getValue().score()).reversed());
+        List<String> endpoints = new ArrayList<>(Math.min(limit, matches.size()));
+        for (Map.Entry<String, Reputation> entry : matches) {
+            if (endpoints.size() >= limit) {
+                break;
+            }
+            endpoints.add(entry.getKey());
+        }
+        return endpoints;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** Writes the store to disk if it changed since the last save. */
+    @SuppressWarnings("unchecked")
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        prune(now);
+        JSONArray peers = new JSONArray();
+        for (Map.Entry<String, Reputation> entry : entries.entrySet()) {
+            peers.add(entry.getValue().toJson(entry.getKey()));
+        }
+        JSONObject root = new JSONObject();
+        root.put("version", 1L);
+        root.put("peers", peers);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(tmp), StandardCharsets.UTF_8))) {
+                writer.write(root.toJSONString());
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo guardar la reputación de peers: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            Object parsed = new JSONParser().parse(Files.readString(file, StandardCharsets.UTF_8));
+            if (!(parsed instanceof JSONObject root) || !(root.get("peers") instanceof JSONArray peers)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Object item : peers) {
+                if (!(item instanceof JSONObject json)) {
+                    continue;
+                }
+                String key = normalize(json.get("endpoint") instanceof String s ? s : null);
+                if (key == null) {
+                    continue;
+                }
+                Reputation reputation = Reputation.fromJson(json);
+                if (now - reputation.lastSeen <= ENTRY_TTL_MS) {
+                    entries.put(key, reputation);
+                }
+            }
+        } catch (IOException | ParseException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se pudo leer la reputación de peers: " + e.getMessage());
+        }
+    }
+
+    private void prune(long now) {
+        entries.entrySet().removeIf(entry -> now - entry.getValue().lastSeen > ENTRY_TTL_MS);
+        int excess = entries.size() - MAX_ENTRIES;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, Reputation>> oldest = new ArrayList<>(entries.entrySet());
+        oldest.sort(Comparator.comparingLong(e -> e.getValue().lastSeen));
+        for (int i = 0; i < excess; i++) {
+            entries.remove(oldest.get(i).getKey());
+        }
+    }
+
+    private static String normalize(String endpoint) {
+        if (endpoint == null) {
+            return null;
+        }
+        String trimmed = endpoint.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static final class Reputation {
+        private double throughput;
+        private long samples;
+        private long failures;
+        private int consecutiveFailures;
+        private long lastSeen;
+        private long lastFailure;
+        private final LinkedHashSet<String> torrents = new LinkedHashSet<>();
+
+        private synchronized void sample(long bytesPerSecond, String infoHash, long now) {
+            throughput = samples == 0
+                    ? bytesPerSecond
+                    : throughput * (1.0 - THROUGHPUT_SMOOTHING) + bytesPerSecond * THROUGHPUT_SMOOTHING;
+            samples++;
+            if (bytesPerSecond >= SLOW_PEER_THROUGHPUT_BYTES) {
+                consecutiveFailures = 0;
+            }
+            lastSeen = now;
+            rememberTorrent(infoHash);
+        }
+
+        private synchronized void fail(String infoHash, long now) {
+            failures++;
+            consecutiveFailures++;
+            lastFailure = now;
+            lastSeen = Math.max(lastSeen, now);
+            rememberTorrent(infoHash);
+        }
+
+        private synchronized boolean isBad(long now) {
+            if (consecutiveFailures >= BAD_PEER_CONSECUTIVE_FAILURES && now - lastFailure < FAILED_PEER_BACKOFF_MS) {
+                return true;
+            }
+            return samples >= SLOW_PEER_MIN_SAMPLES
+                    && throughput < SLOW_PEER_THROUGHPUT_BYTES
+                    && now - lastSeen < SLOW_PEER_BACKOFF_MS;
+        }
+
+        private synchronized boolean isFast() {
+            return samples > 0 && throughput >= SLOW_PEER_THROUGHPUT_BYTES;
+        }
+
+        private synchronized double score() {
+            double base = samples > 0 ? throughput : SLOW_PEER_THROUGHPUT_BYTES;
+            return base / (1 + consecutiveFailures);
+        }
+
+        private synchronized boolean seenOn(String infoHash) {
+            return torrents.contains(infoHash);
+        }
+
+        private void rememberTorrent(String infoHash) {
+            if (infoHash == null || infoHash.isBlank()) {
+                return;
+            }
+            torrents.remove(infoHash);
+            torrents.add(infoHash);
+            while (torrents.size() > MAX_TORRENTS_PER_PEER) {
+                torrents.remove(torrents.iterator().next());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized JSONObject toJson(String endpoint) {
+            JSONObject json = new JSONObject();
+            json.put("endpoint", endpoint);
+            json.put("throughput", Math.round(throughput));
+            json.put("samples", samples);
+            json.put("failures", failures);
+            json.put("consecutiveFailures", (long) consecutiveFailures);
+            json.put("lastSeen", lastSeen);
+            json.put("lastFailure", lastFailure);
+            JSONArray hashes = new JSONArray();
+            hashes.addAll(torrents);
+            json.put("torrents", hashes);
+            return json;
+        }
+
+        private static Reputation fromJson(JSONObject json) {
+            Reputation reputation = new Reputation();
+            reputation.throughput = asLong(json.get("throughput"));
+            reputation.samples = asLong(json.get("samples"));
+            reputation.failures = asLong(json.get("failures"));
+            reputation.consecutiveFailures = (int) Math.min(Integer.MAX_VALUE, asLong(json.get("consecutiveFailures")));
+            reputation.lastSeen = asLong(json.get("lastSeen"));
+            reputation.lastFailure = asLong(json.get("lastFailure"));
+            if (json.get("torrents") instanceof JSONArray hashes) {
+                for (Object hash : hashes) {
+                    if (hash instanceof String value) {
+                        reputation.rememberTorrent(value);
+                    }
+                }
+            }
+            return reputation;
+        }
+
+        private static long asLong(Object value) {
+            return value instanceof Number number ? Math.max(0L, number.longValue()) : 0L;
+        }
+    }
+}
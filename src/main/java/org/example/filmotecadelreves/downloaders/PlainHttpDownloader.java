@@ -0,0 +1,77 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.DirectDownloader;
+import org.example.filmotecadelreves.UI.DescargasUI;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Descargador para enlaces HTTP(S) que ya apuntan al archivo final, sin
+ * resolución previa ni navegador.  Lo usa el modo sin interfaz para las
+ * descargas directas añadidas por URL.
+ */
+public class PlainHttpDownloader implements DirectDownloader {
+
+    private static final int AVAILABILITY_TIMEOUT_MS = 10_000;
+
+    private final Map<String, ResumableHttpDownloadTask> activeDownloads = new ConcurrentHashMap<>();
+
+    @Override
+    public void download(String url, String destinationPath, DescargasUI.DirectDownload directDownload) {
+        if (destinationPath != null && !destinationPath.equals(directDownload.getDestinationPath())) {
+            directDownload.setDestinationPath(destinationPath);
+        }
+        ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(url, directDownload,
+                request -> request.setHeader("User-Agent", "Mozilla/5.0"));
+        ResumableHttpDownloadTask previous = activeDownloads.put(directDownload.getId(), task);
+        if (previous != null) {
+            previous.cancel();
+        }
+        task.getCompletionFuture().whenComplete((ignored, error) -> activeDownloads.remove(directDownload.getId(), task));
+        task.start();
+    }
+
+    @Override
+    public void pauseDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask task = activeDownloads.get(download.getId());
+        if (task != null) {
+            task.pause();
+        }
+        download.setStatus("Paused");
+        download.setDownloadSpeed(0);
+    }
+
+    @Override
+    public void resumeDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask task = activeDownloads.get(download.getId());
+        if (task != null) {
+            task.resume();
+            download.setStatus("Downloading");
+        } else {
+            download(download.getUrl(), download.getDestinationPath(), download);
+        }
+    }
+
+    @Override
+    public void cancelDownload(DescargasUI.DirectDownload download) {
+        ResumableHttpDownloadTask task = activeDownloads.remove(download.getId());
+        if (task != null) {
+            task.cancel();
+        }
+        download.setStatus("Cancelled");
+        download.setDownloadSpeed(0);
+    }
+
+    @Override
+    public boolean isAvailable(String url) {
+        try {
+            int code = DirectHttpTransport.shared().headStatus(url, null,
+                    Duration.ofMillis(AVAILABILITY_TIMEOUT_MS));
+            return code >= 200 && code < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
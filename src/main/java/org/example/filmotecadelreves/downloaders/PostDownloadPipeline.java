@@ -0,0 +1,558 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.example.filmotecadelreves.library.LibraryEntry;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Work that runs once a download has finished: verify the payload, extract
+ * archives, move everything into the library folder and register the videos
+ * in the library catalog.  Jobs run on a small bounded pool so that slow disks
+ * or large archives never hold up the torrent status thread.
+ */
+public final class PostDownloadPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(PostDownloadPipeline.class.getName());
+    private static final long TRANSFER_CHUNK = 8L * 1024L * 1024L;
+    private static final int COPY_BUFFER = 256 * 1024;
+    private static final String MOVE_SUFFIX = ".moviendo";
+    private static final Set<String> VIDEO_EXTENSIONS = Set.of(
+            "mp4", "mkv", "avi", "mov", "wmv", "flv", "webm", "mpeg", "mpg", "m4v");
+
+    /** Stages in execution order. */
+    public enum Stage {
+        VERIFY("Verificación"),
+        EXTRACT("Extracción"),
+        MOVE("Traslado"),
+        REGISTER("Registro en biblioteca");
+
+        private final String displayName;
+
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /** A payload file relative to {@link Job#sourceRoot()}; a negative size skips the size check. */
+    public record PayloadFile(String relativePath, long expectedSize) {
+    }
+
+    /**
+     * @param targetRoot library folder to move into, or {@code null} to leave
+     *                   the files where they are
+     */
+    public record Job(String id,
+                      String name,
+                      Path sourceRoot,
+                      List<PayloadFile> files,
+                      LibraryEntry.LibraryType libraryType,
+                      Path targetRoot,
+                      boolean extractArchives) {
+        public Job {
+            Objects.requireNonNull(id, "id");
+            Objects.requireNonNull(sourceRoot, "sourceRoot");
+            files = List.copyOf(files);
+        }
+    }
+
+    /**
+     * @param finalRoot   folder that holds the payload after the move stage
+     * @param outputs     payload and extracted files at their final location
+     * @param failedStage stage that aborted the job, or {@code null} on success
+     */
+    public record Result(Path finalRoot,
+                         List<Path> outputs,
+                         int registered,
+                         Map<Stage, Duration> timings,
+                         Stage failedStage,
+                         String error) {
+        public boolean succeeded() {
+            return failedStage == null;
+        }
+    }
+
+    /** Progress callbacks; invoked from the pipeline worker threads. */
+    public interface Listener {
+        void onProgress(Job job, Stage stage, double fraction, String message);
+
+        void onStageCompleted(Job job, Stage stage, Duration elapsed, String summary);
+
+        void onFinished(Job job, Result result);
+    }
+
+    /** Adds finished files to the library catalog and returns how many were new. */
+    @FunctionalInterface
+    public interface Registrar {
+        int register(LibraryEntry.LibraryType type, List<Path> files);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Registrar registrar;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public PostDownloadPipeline(int workers, int queueCapacity, Registrar registrar) {
+        int threads = Math.max(1, workers);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "post-download-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.registrar = registrar;
+    }
+
+    /**
+     * Queues {@code job}.  A job whose id is already queued or running is
+     * ignored and the returned future completes with {@code null}.
+     */
+    public CompletableFuture<Result> submit(Job job, Listener listener) {
+        Objects.requireNonNull(job, "job");
+        Listener target = listener != null ? listener : NO_OP_LISTENER;
+        if (!inFlight.add(job.id())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                // The id is released before completing, so whoever reacts to the future may queue it again.
+                try {
+                    Result result = process(job, target);
+                    target.onFinished(job, result);
+                    inFlight.remove(job.id());
+                    future.complete(result);
+                } catch (Throwable t) {
+                    // Errors too (a missing library class, for instance): the caller must always hear back.
+                    inFlight.remove(job.id());
+                    LOGGER.log(Level.SEVERE, "Postproceso de " + job.name() + " abortado", t);
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(job.id());
+            Result rejected = new Result(job.sourceRoot(), List.of(), 0, Map.of(), Stage.VERIFY,
+                    "Cola de postproceso llena");
+            target.onFinished(job, rejected);
+            future.complete(rejected);
+        }
+        return future;
+    }
+
+    public int getQueuedJobs() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Result process(Job job, Listener listener) {
+        Map<Stage, Duration> timings = new EnumMap<>(Stage.class);
+        List<String> relativeOutputs = new ArrayList<>();
+        for (PayloadFile file : job.files()) {
+            relativeOutputs.add(file.relativePath());
+        }
+        Path finalRoot = job.sourceRoot();
+        int registered = 0;
+        Stage current = Stage.VERIFY;
+        try {
+            long start = System.nanoTime();
+            verify(job, listener);
+            finishStage(job, listener, timings, current, start, job.files().size() + " archivos correctos");
+
+            if (job.extractArchives()) {
+                current = Stage.EXTRACT;
+                start = System.nanoTime();
+                List<String> extracted = extract(job, listener);
+                relativeOutputs.addAll(extracted);
+                finishStage(job, listener, timings, current, start, extracted.size() + " archivos extraídos");
+            }
+
+            current = Stage.MOVE;
+            start = System.nanoTime();
+            finalRoot = move(job, relativeOutputs, listener);
+            finishStage(job, listener, timings, current, start,
+                    finalRoot.equals(job.sourceRoot()) ? "Sin traslado" : "Trasladado a " + finalRoot);
+
+            current = Stage.REGISTER;
+            start = System.nanoTime();
+            List<Path> videos = new ArrayList<>();
+            for (String relative : relativeOutputs) {
+                Path path = finalRoot.resolve(relative);
+                if (isVideo(path) && Files.isRegularFile(path)) {
+                    videos.add(path);
+                }
+            }
+            if (registrar != null && job.libraryType() != null && !videos.isEmpty()) {
+                listener.onProgress(job, current, 0.0, "Registrando " + videos.size() + " vídeos");
+                registered = registrar.register(job.libraryType(), videos);
+            }
+            finishStage(job, listener, timings, current, start, registered + " vídeos añadidos a la biblioteca");
+
+            return new Result(finalRoot, resolveAll(finalRoot, relativeOutputs), registered, timings, null, null);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Postproceso de " + job.name() + " detenido en " + current.getDisplayName()
+                    + ": " + e.getMessage());
+            return new Result(finalRoot, resolveAll(finalRoot, relativeOutputs), registered, timings, current,
+                    e.getMessage());
+        }
+    }
+
+    private static void finishStage(Job job, Listener listener, Map<Stage, Duration> timings,
+                                    Stage stage, long startNanos, String summary) {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        timings.put(stage, elapsed);
+        listener.onProgress(job, stage, 1.0, summary);
+        listener.onStageCompleted(job, stage, elapsed, summary);
+    }
+
+    private static List<Path> resolveAll(Path root, List<String> relativePaths) {
+        List<Path> resolved = new ArrayList<>(relativePaths.size());
+        for (String relative : relativePaths) {
+            resolved.add(root.resolve(relative));
+        }
+        return resolved;
+    }
+
+    private static void verify(Job job, Listener listener) throws IOException {
+        List<PayloadFile> files = job.files();
+        for (int i = 0; i < files.size(); i++) {
+            PayloadFile file = files.get(i);
+            Path path = resolveInside(job.sourceRoot(), file.relativePath());
+            if (!Files.isRegularFile(path)) {
+                throw new IOException("Falta el archivo " + file.relativePath());
+            }
+            long size = Files.size(path);
+            if (file.expectedSize() >= 0 && size != file.expectedSize()) {
+                throw new IOException("Tamaño incorrecto en " + file.relativePath() + ": " + size
+                        + " bytes en lugar de " + file.expectedSize());
+            }
+            listener.onProgress(job, Stage.VERIFY, (i + 1) / (double) files.size(), file.relativePath());
+        }
+    }
+
+    private static List<String> extract(Job job, Listener listener) throws IOException {
+        List<String> archives = new ArrayList<>();
+        long totalBytes = 0L;
+        for (PayloadFile file : job.files()) {
+            String lower = file.relativePath().toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".rar")) {
+                listener.onProgress(job, Stage.EXTRACT, 0.0,
+                        "Formato RAR no soportado, se deja sin extraer: " + file.relativePath());
+            } else if (isSupportedArchive(lower)) {
+                archives.add(file.relativePath());
+                totalBytes += Files.size(job.sourceRoot().resolve(file.relativePath()));
+            }
+        }
+        List<String> extracted = new ArrayList<>();
+        long processed = 0L;
+        long total = Math.max(1L, totalBytes);
+        for (String relative : archives) {
+            Path archive = job.sourceRoot().resolve(relative);
+            Path outputDirectory = archive.getParent();
+            long base = processed;
+            LongConsumer progress = read -> listener.onProgress(job, Stage.EXTRACT,
+                    Math.min(1.0, (base + read) / (double) total), relative);
+            for (Path output : extractArchive(archive, outputDirectory, progress)) {
+                extracted.add(job.sourceRoot().relativize(output).toString());
+            }
+            processed = base + Files.size(archive);
+        }
+        return extracted;
+    }
+
+    private static boolean isSupportedArchive(String lowerName) {
+        return lowerName.endsWith(".zip") || lowerName.endsWith(".7z") || lowerName.endsWith(".tar")
+                || lowerName.endsWith(".tar.gz") || lowerName.endsWith(".tgz");
+    }
+
+    /**
+     * Extracts {@code archive} into {@code outputDirectory}, reading it as a
+     * stream so memory use does not depend on the archive size (7z needs
+     * random access and is read through {@link SevenZFile}).  Entries that
+     * already exist with the expected size are skipped, which makes the stage
+     * safe to repeat after a restart.
+     */
+    static List<Path> extractArchive(Path archive, Path outputDirectory, LongConsumer progress) throws IOException {
+        String lower = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+        List<Path> outputs = new ArrayList<>();
+        if (lower.endsWith(".7z")) {
+            try (SevenZFile sevenZ = SevenZFile.builder().setFile(archive.toFile()).get()) {
+                long uncompressedTotal = 0L;
+                for (SevenZArchiveEntry entry : sevenZ.getEntries()) {
+                    uncompressedTotal += Math.max(0L, entry.getSize());
+                }
+                double scale = Files.size(archive) / (double) Math.max(1L, uncompressedTotal);
+                long written = 0L;
+                SevenZArchiveEntry entry;
+                while ((entry = sevenZ.getNextEntry()) != null) {
+                    if (entry.isDirectory() || !entry.hasStream()) {
+                        continue;
+                    }
+                    Path target = entryTarget(outputDirectory, entry.getName());
+                    if (!alreadyExtracted(target, entry.getSize())) {
+                        writeEntry(sevenZ.getInputStream(entry), target);
+                    }
+                    outputs.add(target);
+                    written += Math.max(0L, entry.getSize());
+                    progress.accept((long) (written * scale));
+                }
+            }
+            return outputs;
+        }
+
+        try (CountingInputStream counting = new CountingInputStream(Files.newInputStream(archive));
+             ArchiveInputStream<? extends ArchiveEntry> input = openStreamingArchive(lower,
+                     new BufferedInputStream(counting, COPY_BUFFER))) {
+            ArchiveEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                if (entry.isDirectory() || !input.canReadEntryData(entry)) {
+                    continue;
+                }
+                Path target = entryTarget(outputDirectory, entry.getName());
+                if (!alreadyExtracted(target, entry.getSize())) {
+                    writeEntry(input, target);
+                }
+                outputs.add(target);
+                progress.accept(counting.count);
+            }
+        }
+        return outputs;
+    }
+
+    private static ArchiveInputStream<? extends ArchiveEntry> openStreamingArchive(String lowerName, InputStream in)
+            throws IOException {
+        if (lowerName.endsWith(".zip")) {
+            return new ZipArchiveInputStream(in);
+        }
+        if (lowerName.endsWith(".tar")) {
+            return new TarArchiveInputStream(in);
+        }
+        return new TarArchiveInputStream(new GzipCompressorInputStream(in));
+    }
+
+    private static Path entryTarget(Path outputDirectory, String entryName) throws IOException {
+        Path target = outputDirectory.resolve(entryName).normalize();
+        if (!target.startsWith(outputDirectory.normalize())) {
+            throw new IOException("Entrada fuera del directorio de extracción: " + entryName);
+        }
+        return target;
+    }
+
+    private static boolean alreadyExtracted(Path target, long expectedSize) throws IOException {
+        return expectedSize >= 0 && Files.isRegularFile(target) && Files.size(target) == expectedSize;
+    }
+
+    private static void writeEntry(InputStream entryData, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling(target.getFileName() + ".extrayendo");
+        Files.copy(entryData, temporary, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path move(Job job, List<String> relativeOutputs, Listener listener) throws IOException {
+        Path source = job.sourceRoot().toAbsolutePath().normalize();
+        if (job.targetRoot() == null) {
+            return job.sourceRoot();
+        }
+        Path target = job.targetRoot().toAbsolutePath().normalize();
+        if (source.equals(target)) {
+            return job.sourceRoot();
+        }
+        long totalBytes = 0L;
+        for (String relative : relativeOutputs) {
+            Path file = source.resolve(relative);
+            if (Files.isRegularFile(file)) {
+                totalBytes += Files.size(file);
+            }
+        }
+        long total = Math.max(1L, totalBytes);
+        long moved = 0L;
+        Set<Path> sourceDirectories = new LinkedHashSet<>();
+        for (String relative : relativeOutputs) {
+            Path from = resolveInside(source, relative);
+            Path to = resolveInside(target, relative);
+            if (!Files.exists(from)) {
+                if (Files.isRegularFile(to)) {
+                    continue;
+                }
+                throw new IOException("No se encuentra " + relative + " para trasladarlo");
+            }
+            long size = Files.size(from);
+            long base = moved;
+            moveFile(from, to, copied -> listener.onProgress(job, Stage.MOVE,
+                    Math.min(1.0, (base + copied) / (double) total), relative));
+            moved += size;
+            sourceDirectories.add(from.getParent());
+        }
+        for (Path directory : sourceDirectories) {
+            removeEmptyDirectories(directory, source);
+        }
+        return target;
+    }
+
+    /**
+     * Moves a single file.  Within one filesystem this is an atomic rename;
+     * across devices the data is streamed with {@link FileChannel#transferTo}
+     * into a temporary sibling of {@code to}, flushed, and only then renamed
+     * into place so a crash never leaves a truncated file under the final name.
+     */
+    static void moveFile(Path from, Path to, LongConsumer progress) throws IOException {
+        Files.createDirectories(to.getParent());
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+            progress.accept(Files.size(to));
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Different filesystem: fall back to copy + delete below.
+        }
+        copyAcrossFileSystems(from, to, progress);
+        Files.delete(from);
+    }
+
+    static void copyAcrossFileSystems(Path from, Path to, LongConsumer progress) throws IOException {
+        Path temporary = to.resolveSibling(to.getFileName() + MOVE_SUFFIX);
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0L;
+            while (position < size) {
+                long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                if (transferred <= 0) {
+                    throw new IOException("La copia de " + from + " no avanza");
+                }
+                position += transferred;
+                progress.accept(position);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void removeEmptyDirectories(Path directory, Path stopAt) {
+        Path current = directory;
+        while (current != null && current.startsWith(stopAt) && !current.equals(stopAt)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(current)) {
+                if (entries.iterator().hasNext()) {
+                    return;
+                }
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                Files.delete(current);
+            } catch (IOException e) {
+                return;
+            }
+            current = current.getParent();
+        }
+    }
+
+    private static Path resolveInside(Path root, String relative) throws IOException {
+        Path resolved = root.resolve(relative).normalize();
+        if (!resolved.startsWith(root.normalize())) {
+            throw new IOException("Ruta fuera de la carpeta de descarga: " + relative);
+        }
+        return resolved;
+    }
+
+    private static boolean isVideo(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && VIDEO_EXTENSIONS.contains(name.substring(dot + 1));
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static final Listener NO_OP_LISTENER = new Listener() {
+        @Override
+        public void onProgress(Job job, Stage stage, double fraction, String message) {
+        }
+
+        @Override
+        public void onStageCompleted(Job job, Stage stage, Duration elapsed, String summary) {
+        }
+
+        @Override
+        public void onFinished(Job job, Result result) {
+        }
+    };
+}
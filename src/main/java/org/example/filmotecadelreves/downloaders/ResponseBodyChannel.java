@@ -0,0 +1,193 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response body subscriber that the download thread reads as a channel.  The
+ * buffers delivered by {@link java.net.http.HttpClient} are handed over
+ * without copying them into a byte array.  A few batches are requested
+ * ahead and each consumed batch asks for one more, so a paused or
+ * rate-limited download applies back-pressure to the connection.
+ * <p>
+ * {@link #read} blocks for at most the read timeout; {@link #available()}
+ * tells {@link ChannelTransfer} whether more data can be read without
+ * blocking.
+ */
+final class ResponseBodyChannel implements HttpResponse.BodySubscriber<ResponseBodyChannel>, ReadableByteChannel {
+
+    private static final Object END = new Object();
+    /** Batches requested ahead of the reader; bounds the memory a fast connection can pile up. */
+    private static final int PREFETCH = 16;
+
+    private final long readTimeoutMillis;
+    private final BlockingQueue<Object> delivered = new LinkedBlockingQueue<>();
+    private final Deque<ByteBuffer> current = new ArrayDeque<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean open = true;
+    private boolean ended;
+    private IOException failure;
+
+    ResponseBodyChannel(long readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public CompletionStage<ResponseBodyChannel> getBody() {
+        return CompletableFuture.completedStage(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (open) {
+            subscription.request(PREFETCH);
+        } else {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        delivered.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        delivered.add(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        delivered.add(END);
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (!target.hasRemaining()) {
+            return 0;
+        }
+        ByteBuffer source = next(true);
+        if (source == null) {
+            return -1;
+        }
+        int length = Math.min(target.remaining(), source.remaining());
+        ByteBuffer slice = source.slice().limit(length);
+        target.put(slice);
+        source.position(source.position() + length);
+        return length;
+    }
+
+    /** Bytes that can be read right now without waiting for the network. */
+    int available() throws IOException {
+        if (!open) {
+            return 0;
+        }
+        ByteBuffer source = next(false);
+        if (source != null) {
+            return source.remaining();
+        }
+        // End of body: the next read returns -1 straight away.
+        return ended ? 1 : 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Stops the body.  A response that was not read to the end is cancelled,
+     * which on HTTP/1.1 also drops its connection; one that was fully
+     * received leaves the connection to be reused.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        boolean complete = receivedEverything();
+        open = false;
+        current.clear();
+        Flow.Subscription active = subscription;
+        if (active != null && !complete) {
+            active.cancel();
+        }
+    }
+
+    private boolean receivedEverything() {
+        try {
+            return next(false) == null && ended;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Next buffer with data, or {@code null} at the end of the body (or, without waiting, if none is ready). */
+    private ByteBuffer next(boolean wait) throws IOException {
+        while (true) {
+            while (!current.isEmpty()) {
+                ByteBuffer head = current.peekFirst();
+                if (head.hasRemaining()) {
+                    return head;
+                }
+                current.pollFirst();
+                if (current.isEmpty()) {
+                    subscription.request(1);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (ended) {
+                return null;
+            }
+            Object item;
+            try {
+                item = wait ? delivered.poll(readTimeoutMillis, TimeUnit.MILLISECONDS) : delivered.poll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura interrumpida");
+            }
+            if (item == null) {
+                if (wait) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                return null;
+            }
+            if (item == END) {
+                ended = true;
+                return null;
+            }
+            if (item instanceof Throwable error) {
+                ended = true;
+                failure = error instanceof IOException io ? io : new IOException(error.getMessage(), error);
+                throw failure;
+            }
+            @SuppressWarnings("unchecked")
+            List<ByteBuffer> buffers = (List<ByteBuffer>) item;
+            if (buffers.isEmpty()) {
+                subscription.request(1);
+            } else {
+                current.addAll(buffers);
+            }
+        }
+    }
+}
@@ -1,76 +1,200 @@
 package org.example.filmotecadelreves.downloaders;
 
+import org.example.filmotecadelreves.DirectDownloader;
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
+import org.example.filmotecadelreves.downloaders.DownloadCheckpointJournal.Checkpoint;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
-import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.net.http.HttpRequest;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Small utility that handles HTTP downloads with pause/resume support using the Range header.
  * The task keeps the {@link DescargasUI.DirectDownload} model synchronised with the persisted
- * state so that downloads can continue even after restarting the application.
+ * state so that downloads can continue even after restarting the application.  Progress is
+ * recorded in a {@link DownloadCheckpointJournal} next to the {@code .part} file; a
+ * {@code .meta.json} left by older versions is migrated on the first run.
+ * <p>
+ * Large files on servers that accept byte ranges are fetched over several connections at
+ * once (see {@link SegmentedDownloadPlan}), since hosts such as Streamtape or Mixdrop
+ * throttle each connection separately.  All requests go through the shared
+ * {@link DirectHttpTransport}, so the HEAD probe, retries and segment connections reuse
+ * kept-alive connections instead of opening a new one each.
+ * <p>
+ * {@link #start()} hands the task to the {@link DirectDownloadEngine}, which runs it on a
+ * virtual thread once a slot is free; a link that waited long for it is renewed before the
+ * first request.  While paused or waiting for disk space the task gives its slot back so
+ * queued downloads can run.
+ * <p>
+ * Failed requests and dropped connections are retried as decided by a
+ * {@link DownloadRetryPolicy}; when a tokenized link expires (403/410) the owning
+ * {@link DirectDownloader} is asked for a fresh one and the download continues from the
+ * bytes already on disk.  A task given a {@link MirrorFailover} may also move to another
+ * server holding the same video when its throughput drops or its server keeps failing.
  */
 public class ResumableHttpDownloadTask implements Runnable {
 
-    private static final int BUFFER_SIZE = 8192;
+    private static final Logger LOGGER = Logger.getLogger(ResumableHttpDownloadTask.class.getName());
     private static final long UI_UPDATE_INTERVAL_MS = 500L;
     private static final long META_UPDATE_INTERVAL_MS = 1500L;
-    private static final int CONNECT_TIMEOUT_MS = (int) Duration.ofSeconds(20).toMillis();
-    private static final int READ_TIMEOUT_MS = (int) Duration.ofSeconds(60).toMillis();
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL = 206;
     private static final int HTTP_PRECONDITION_FAILED = 412;
     private static final int HTTP_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
-    private static final int HTTP_GONE = 410;
     private static final String PART_EXTENSION = ".part";
-    private static final String META_EXTENSION = ".meta.json";
+    private static final String LEGACY_META_EXTENSION = ".meta.json";
+    private static final long DISK_SPACE_RETRY_MS = Duration.ofSeconds(15).toMillis();
+    private static final int SEGMENT_CONNECTIONS = 4;
+    private static final long MIN_SEGMENTED_BYTES = 16L * 1024 * 1024;
+    private static final long MIN_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final long MIN_STEAL_BYTES = 1024L * 1024;
+    private static final long MONITOR_INTERVAL_MS = 250L;
+    private static final long CONNECTION_DRAIN_MS = 5000L;
+    /** Times a download that failed verification is repaired before it is marked as damaged. */
+    private static final int INTEGRITY_RETRIES = 2;
+    private static final long REFETCH_WINDOW_BYTES = 4L * 1024 * 1024;
+    /** Throughput is reported to the {@link MirrorFailover} over windows this long. */
+    private static final long THROUGHPUT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** Consecutive failures of one kind after which other mirrors are tried. */
+    private static final int FAILOVER_AFTER_ATTEMPTS = 2;
+    /** A link that waited this long for its slot is renewed before the first request. */
+    private static final long STALE_LINK_NANOS = TimeUnit.MINUTES.toNanos(10);
+    /** When {@code true} single-connection downloads reserve the full file length up front. */
+    static final String PREALLOCATE_PROPERTY = "filmoteca.direct.preallocate";
 
-    private final String downloadUrl;
     private final DescargasUI.DirectDownload download;
-    private final Consumer<HttpURLConnection> headerConfigurer;
+    private final DirectDownloader owner;
+    private final MirrorFailover failover;
+    private final DownloadRetryPolicy retries = new DownloadRetryPolicy();
+    /** Bytes received by this task; a retry budget starts over once it grows. */
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    /** Time readers spent waiting on a bandwidth cap, which must not count as a slow server. */
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final DirectHttpTransport transport = DirectHttpTransport.shared();
     private final AtomicBoolean paused = new AtomicBoolean(false);
     private final AtomicBoolean cancelled = new AtomicBoolean(false);
-    private final Object pauseLock = new Object();
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition resumed = pauseLock.newCondition();
     private final CompletableFuture<Void> completionFuture = new CompletableFuture<>();
+    private final DirectDownloadEngine engine = DirectDownloadEngine.shared();
+
+    private volatile String downloadUrl;
+    private volatile long linkResolvedAt = System.nanoTime();
+    private volatile DirectHttpTransport.RequestCustomizer requestCustomizer;
+    private volatile BandwidthLimiter limiter;
+    private volatile DirectDownloadEngine.Ticket ticket;
+    private volatile Thread workerThread;
+    private long windowStartNanos;
+    private long windowStartBytes;
+    private long windowThrottledNanos;
 
-    private Thread workerThread;
+    public ResumableHttpDownloadTask(String downloadUrl,
+                                     DescargasUI.DirectDownload download,
+                                     DirectHttpTransport.RequestCustomizer requestCustomizer) {
+        this(downloadUrl, download, requestCustomizer, null);
+    }
 
+    /**
+     * @param owner downloader asked for a fresh link when this one expires, or {@code null}
+     *              if the link cannot be renewed
+     */
     public ResumableHttpDownloadTask(String downloadUrl,
                                      DescargasUI.DirectDownload download,
-                                     Consumer<HttpURLConnection> headerConfigurer) {
+                                     DirectHttpTransport.RequestCustomizer requestCustomizer,
+                                     DirectDownloader owner) {
+        this(downloadUrl, download, requestCustomizer, owner, download.getServer(), null);
+    }
+
+    /**
+     * @param server   server {@code downloadUrl} belongs to, for its bandwidth cap
+     * @param failover asked for another mirror when this one is slow or failing, or {@code null}
+     */
+    ResumableHttpDownloadTask(String downloadUrl,
+                              DescargasUI.DirectDownload download,
+                              DirectHttpTransport.RequestCustomizer requestCustomizer,
+                              DirectDownloader owner,
+                              String server,
+                              MirrorFailover failover) {
         this.downloadUrl = Objects.requireNonNull(downloadUrl, "downloadUrl");
         this.download = Objects.requireNonNull(download, "download");
-        this.headerConfigurer = headerConfigurer != null ? headerConfigurer : connection -> { };
+        this.requestCustomizer = requestCustomizer != null ? requestCustomizer : DirectHttpTransport.RequestCustomizer.NONE;
+        this.owner = owner;
+        this.failover = failover;
+        this.limiter = BandwidthLimiter.forDownload(download.getId(), server);
     }
 
-    public CompletableFuture<Void> start() {
-        if (workerThread != null) {
+    public synchronized CompletableFuture<Void> start() {
+        if (ticket != null || completionFuture.isDone()) {
             return completionFuture;
         }
-        workerThread = new Thread(this, "DirectDownload-" + download.getId());
-        workerThread.setDaemon(true);
-        workerThread.start();
+        // The link is in hand; until the engine grants a slot the download just waits.
+        updateDownload(d -> d.setStatus("Waiting"));
+        download.linkResolved();
+        try {
+            ticket = engine.submit(download.getId(), download.getName(), downloadUrl, new DirectDownloadEngine.Job() {
+                @Override
+                public void run(DirectDownloadEngine.Ticket granted) {
+                    workerThread = Thread.currentThread();
+                    renewStaleLink();
+                    ResumableHttpDownloadTask.this.run();
+                }
+
+                @Override
+                public void skipped() {
+                    updateDownload(d -> d.setStatus(cancelled.get() ? "Cancelled" : "Paused"));
+                    completionFuture.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            completionFuture.completeExceptionally(rejected);
+        }
         return completionFuture;
     }
 
     @Override
     public void run() {
+        try {
+            runDownload();
+        } finally {
+            DiskReservationLedger.getInstance().release(reservationKey());
+            if (cancelled.get() || "Completed".equals(download.getStatus())) {
+                BandwidthLimiter.releaseDownload(download.getId());
+            }
+        }
+    }
+
+    private void runDownload() {
         try {
             executeDownload();
             if (!completionFuture.isDone()) {
@@ -104,6 +228,14 @@ public class ResumableHttpDownloadTask implements Runnable {
                 if (!completionFuture.isDone()) {
                     completionFuture.complete(null);
                 }
+            } else if (engine.isShutdown()) {
+                updateDownload(d -> {
+                    d.setStatus("Paused");
+                    d.setDownloadSpeed(0);
+                });
+                if (!completionFuture.isDone()) {
+                    completionFuture.complete(null);
+                }
             } else {
                 updateDownload(d -> {
                     d.setStatus("Error");
@@ -122,18 +254,28 @@ public class ResumableHttpDownloadTask implements Runnable {
 
     public void resume() {
         if (paused.compareAndSet(true, false)) {
-            synchronized (pauseLock) {
-                pauseLock.notifyAll();
-            }
+            signalResumed();
         }
     }
 
     public void cancel() {
         cancelled.set(true);
-        resume();
+        signalResumed();
         Thread thread = workerThread;
         if (thread != null) {
             thread.interrupt();
+        } else if (ticket != null) {
+            // Still waiting for a slot.
+            ticket.cancel();
+        }
+    }
+
+    private void signalResumed() {
+        pauseLock.lock();
+        try {
+            resumed.signalAll();
+        } finally {
+            pauseLock.unlock();
         }
     }
 
@@ -143,12 +285,221 @@ public class ResumableHttpDownloadTask implements Runnable {
 
     private void executeDownload() throws IOException, InterruptedException, RestartDeclinedException, DownloadHaltedException {
         Path targetFile = prepareTargetFile();
-        Path partFile = resolvePartFile(targetFile);
-        Path metaFile = resolveMetaFile(targetFile);
+        try (DownloadCheckpointJournal journal = new DownloadCheckpointJournal(resolveJournalFile(targetFile))) {
+            int repairs = 0;
+            while (true) {
+                long transferredBefore = bytesTransferred.get();
+                windowStartNanos = 0L;
+                try {
+                    executeDownload(targetFile, resolvePartFile(targetFile), journal);
+                    return;
+                } catch (MirrorSwitchException moved) {
+                    switchMirror(moved.target, resolvePartFile(targetFile), journal);
+                } catch (CorruptDownloadException corrupt) {
+                    LOGGER.log(Level.WARNING, "Descarga " + download.getName() + " dañada: " + corrupt.getMessage());
+                    if (!corrupt.isRepairable() || repairs++ >= INTEGRITY_RETRIES) {
+                        throw new DownloadHaltedException("Error (archivo dañado)");
+                    }
+                    updateDownload(d -> d.setStatus("Waiting"));
+                } catch (IOException failure) {
+                    if (cancelled.get() || engine.isShutdown() || Thread.currentThread().isInterrupted()) {
+                        throw failure;
+                    }
+                    if (bytesTransferred.get() > transferredBefore) {
+                        retries.reset();
+                    }
+                    retryAfterFailure(failure, resolvePartFile(targetFile), journal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits as long as the {@link #retries retry policy} asks before the next
+     * attempt, giving the engine slot back meanwhile, and renews the link
+     * first if it expired.  A server that keeps failing is left for another
+     * mirror when there is one.
+     */
+    private void retryAfterFailure(IOException failure, Path partFile, DownloadCheckpointJournal journal)
+            throws IOException, InterruptedException, DownloadHaltedException {
+        DownloadRetryPolicy.Failure kind = failure instanceof HttpStatusException status
+                ? DownloadRetryPolicy.classify(status.responseCode)
+                : DownloadRetryPolicy.classify(failure);
+        long retryAfter = failure instanceof HttpStatusException status ? status.retryAfterMs : -1L;
+        long delay = retries.nextDelay(kind, retryAfter);
+        // Local errors (disk, permissions) would follow the download to any server.
+        boolean serverFailure = kind != DownloadRetryPolicy.Failure.FATAL || failure instanceof HttpStatusException;
+        if (serverFailure && (delay < 0 || retries.attempts(kind) >= FAILOVER_AFTER_ATTEMPTS)
+                && tryOtherMirror(partFile, journal)) {
+            return;
+        }
+        if (delay < 0) {
+            if (kind == DownloadRetryPolicy.Failure.EXPIRED_LINK) {
+                throw new DownloadHaltedException("Error (URL expirada)");
+            }
+            throw failure;
+        }
+        LOGGER.log(Level.INFO, "Descarga " + download.getName() + ": " + failure.getMessage()
+                + " (" + kind + ", intento " + retries.attempts(kind) + "); se reintentará en " + delay + " ms.");
+        updateDownload(d -> {
+            d.setStatus("Waiting");
+            d.setDownloadSpeed(0);
+        });
+        suspendSlot(kind == DownloadRetryPolicy.Failure.EXPIRED_LINK
+                ? "Renovando enlace"
+                : "Reintento en " + Math.max(1L, delay / 1000) + " s");
+        Thread.sleep(delay);
+        if (kind == DownloadRetryPolicy.Failure.EXPIRED_LINK && !refreshDownloadUrl()) {
+            if (!tryOtherMirror(partFile, journal)) {
+                throw new DownloadHaltedException("Error (URL expirada)");
+            }
+        }
+        resumeSlot();
+    }
+
+    /** Asks the {@link MirrorFailover} for a server to replace one that is failing. */
+    private boolean tryOtherMirror(Path partFile, DownloadCheckpointJournal journal)
+            throws IOException, InterruptedException {
+        if (failover == null) {
+            return false;
+        }
+        long total = download.getFileSize();
+        MirrorFailover.Switch target = failover.next(total > 0 ? total - download.getDownloadedBytes() : -1L, 0.0);
+        if (target == null) {
+            return false;
+        }
+        switchMirror(target, partFile, journal);
+        return true;
+    }
+
+    /**
+     * Points the task at another mirror.  Its offsets are kept when the
+     * failover verified that it serves the same file; otherwise the partial
+     * file is dropped and the download starts over there.
+     */
+    private void switchMirror(MirrorFailover.Switch target, Path partFile, DownloadCheckpointJournal journal)
+            throws IOException {
+        downloadUrl = target.link().url();
+        requestCustomizer = target.link().headers();
+        limiter = BandwidthLimiter.forDownload(download.getId(), target.server());
+        retries.reset();
+        windowStartNanos = 0L;
+        if (target.keepOffset()) {
+            Checkpoint meta = journal.recover();
+            if (meta != null) {
+                // The validators belong to the old server; length and first bytes were compared instead.
+                meta.url = downloadUrl;
+                meta.etag = null;
+                meta.lastModified = null;
+                journal.append(meta);
+                journal.sync();
+            }
+        } else {
+            Files.deleteIfExists(partFile);
+            journal.discard();
+        }
+        // Set right away: the next attempt falls back to these when the journal has none.
+        download.setEtag(null);
+        download.setLastModified(null);
+        if (!target.keepOffset()) {
+            download.setFileSize(0);
+            download.setDownloadedBytes(0);
+            download.setProgress(0);
+        }
+        updateDownload(d -> {
+            d.setStatus("Waiting");
+            d.setDownloadSpeed(0);
+        });
+        LOGGER.log(Level.INFO, "Descarga " + download.getName() + " continúa en " + target.server()
+                + (target.keepOffset() ? " desde los bytes ya descargados." : " desde el principio."));
+    }
+
+    /**
+     * Reports the throughput of every {@link #THROUGHPUT_WINDOW_NANOS} window
+     * to the {@link MirrorFailover}; windows where a bandwidth cap held the
+     * readers back are skipped since another server would not be faster.
+     *
+     * @throws MirrorSwitchException if the download should move to another mirror
+     */
+    private void checkThroughput(long downloaded, long totalBytes) throws MirrorSwitchException {
+        if (failover == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (windowStartNanos == 0L) {
+            startThroughputWindow(now, downloaded);
+            return;
+        }
+        long elapsed = now - windowStartNanos;
+        if (elapsed < THROUGHPUT_WINDOW_NANOS) {
+            return;
+        }
+        double bytesPerSecond = (downloaded - windowStartBytes) * 1e9 / elapsed;
+        boolean capped = throttledNanos.get() - windowThrottledNanos > elapsed / 10;
+        startThroughputWindow(now, downloaded);
+        if (capped) {
+            return;
+        }
+        // A stalled server reports 1 B/s so it is judged on speed, not as a failure.
+        MirrorFailover.Switch target = failover.next(totalBytes > 0 ? totalBytes - downloaded : -1L,
+                Math.max(1.0, bytesPerSecond));
+        if (target != null) {
+            throw new MirrorSwitchException(target);
+        }
+    }
+
+    private void startThroughputWindow(long now, long downloaded) {
+        windowStartNanos = now;
+        windowStartBytes = downloaded;
+        windowThrottledNanos = throttledNanos.get();
+    }
+
+    private void throttle(int bytes) throws InterruptedException {
+        long before = System.nanoTime();
+        limiter.acquire(bytes);
+        throttledNanos.addAndGet(System.nanoTime() - before);
+    }
 
-        DownloadMeta meta = loadMeta(metaFile);
+    /**
+     * Links are resolved ahead of the transfers, so one may have waited in the queue
+     * until it is about to expire.  If it cannot be renewed it is tried as it is.
+     */
+    private void renewStaleLink() {
+        if (System.nanoTime() - linkResolvedAt > STALE_LINK_NANOS && !cancelled.get()) {
+            refreshDownloadUrl();
+        }
+    }
+
+    /** Asks the owning downloader for a fresh link; {@code false} if there is none. */
+    private boolean refreshDownloadUrl() {
+        if (owner == null) {
+            return false;
+        }
+        String fresh;
+        try {
+            fresh = owner.refreshDownloadUrl(download);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se pudo renovar el enlace de " + download.getName(), e);
+            return false;
+        }
+        if (fresh == null || fresh.isBlank()) {
+            return false;
+        }
+        downloadUrl = fresh;
+        linkResolvedAt = System.nanoTime();
+        LOGGER.log(Level.INFO, "Enlace de " + download.getName() + " renovado; se reanuda desde los bytes ya descargados.");
+        return true;
+    }
+
+    private void executeDownload(Path targetFile, Path partFile, DownloadCheckpointJournal journal)
+            throws IOException, InterruptedException, RestartDeclinedException, DownloadHaltedException {
+        Path legacyMetaFile = resolveLegacyMetaFile(targetFile);
+        Checkpoint meta = journal.recover();
+        if (meta == null) {
+            meta = loadLegacyMeta(legacyMetaFile);
+        }
         if (meta == null && downloadHasMetaSnapshot()) {
-            meta = new DownloadMeta();
+            meta = new Checkpoint();
             meta.url = downloadUrl;
             meta.etag = download.getEtag();
             meta.lastModified = download.getLastModified();
@@ -158,15 +509,25 @@ public class ResumableHttpDownloadTask implements Runnable {
         }
 
         if (!Files.exists(partFile) && meta != null) {
-            deleteMeta(metaFile);
+            journal.discard();
             meta = null;
         }
 
-        long localBytes = Files.exists(partFile) ? Files.size(partFile) : 0L;
         if (meta == null) {
-            meta = new DownloadMeta();
-            meta.url = downloadUrl;
+            meta = new Checkpoint();
         }
+        // Tokenized links change on every resolution; the ETag and length keep identifying the file.
+        meta.url = downloadUrl;
+        verifyResumePoints(partFile, meta);
+        // A segmented .part file is preallocated, so its size says nothing about progress.
+        SegmentedDownloadPlan plan = SegmentedDownloadPlan.fromOffsets(meta.segments, meta.totalLength);
+        if (plan == null) {
+            meta.segments = null;
+        }
+        long partSize = Files.exists(partFile) ? Files.size(partFile) : 0L;
+        long localBytes = plan != null
+                ? plan.downloadedBytes()
+                : meta.preallocated ? Math.min(meta.downloadedBytes, partSize) : partSize;
         meta.downloadedBytes = localBytes;
         if (meta.totalLength <= 0 && download.getFileSize() > 0) {
             meta.totalLength = download.getFileSize();
@@ -177,7 +538,9 @@ public class ResumableHttpDownloadTask implements Runnable {
         if (meta.lastModified == null || meta.lastModified.isBlank()) {
             meta.lastModified = download.getLastModified();
         }
-        persistMeta(metaFile, meta);
+        if (journal.append(meta)) {
+            deleteLegacyMeta(legacyMetaFile);
+        }
 
         if (download.getDownloadedBytes() != localBytes) {
             long finalLocalBytes = localBytes;
@@ -214,16 +577,36 @@ public class ResumableHttpDownloadTask implements Runnable {
         if (knownLength > 0) {
             meta.totalLength = knownLength;
         }
-        persistMeta(metaFile, meta);
+        journal.append(meta);
 
         if (knownLength > 0 && localBytes >= knownLength) {
-            finalizeDownload(targetFile, partFile, metaFile, knownLength);
+            finalizeDownload(targetFile, partFile, journal, meta, knownLength);
             return;
         }
 
+        if (knownLength > 0) {
+            reserveDiskSpace(partFile, knownLength - localBytes);
+        }
+
+        if (plan != null || shouldSegment(metadata, knownLength, localBytes)) {
+            if (plan == null) {
+                plan = SegmentedDownloadPlan.create(knownLength, SEGMENT_CONNECTIONS, MIN_SEGMENT_BYTES);
+            }
+            if (executeSegmentedDownload(plan, targetFile, partFile, journal, meta)) {
+                return;
+            }
+            // The server ignored the byte ranges: start over on a single connection.
+            Files.deleteIfExists(partFile);
+            localBytes = 0L;
+            meta.segments = null;
+            meta.preallocated = false;
+            meta.downloadedBytes = 0L;
+            journal.append(meta);
+        }
+
         boolean hasPartialFile = localBytes > 0 && Files.exists(partFile);
-        DownloadConnection response = openDownloadConnection(meta, localBytes, hasPartialFile, targetFile, partFile, metaFile);
-        HttpURLConnection connection = response.connection;
+        DownloadConnection response = openDownloadConnection(meta, localBytes, hasPartialFile, targetFile, partFile, journal);
+        DirectHttpTransport.Exchange connection = response.connection;
         long startingOffset = response.startingOffset;
 
         if (response.resumed && startingOffset != localBytes) {
@@ -243,22 +626,22 @@ public class ResumableHttpDownloadTask implements Runnable {
             meta.totalLength = totalBytes;
         }
 
-        String responseEtag = connection.getHeaderField("ETag");
+        String responseEtag = connection.header("ETag");
         if (responseEtag != null && !responseEtag.isBlank()) {
             updateDownload(d -> d.setEtag(responseEtag));
             meta.etag = responseEtag;
         }
-        String responseLastModified = connection.getHeaderField("Last-Modified");
+        String responseLastModified = connection.header("Last-Modified");
         if (responseLastModified != null && !responseLastModified.isBlank()) {
             updateDownload(d -> d.setLastModified(responseLastModified));
             meta.lastModified = responseLastModified;
         }
-        String acceptRanges = connection.getHeaderField("Accept-Ranges");
+        String acceptRanges = connection.header("Accept-Ranges");
         if (acceptRanges != null && !acceptRanges.isBlank()) {
             boolean supportsResume = !"none".equalsIgnoreCase(acceptRanges.trim());
             updateDownload(d -> d.setResumeSupported(supportsResume));
         }
-        persistMeta(metaFile, meta);
+        journal.append(meta);
 
         updateDownload(d -> {
             d.setStatus("Downloading");
@@ -277,15 +660,21 @@ public class ResumableHttpDownloadTask implements Runnable {
         long lastUpdateTime = System.currentTimeMillis();
         long lastMetaUpdateTime = lastUpdateTime;
 
-        try (InputStream input = connection.getInputStream();
-             RandomAccessFile raf = new RandomAccessFile(partFile.toFile(), "rw")) {
-            if (startingOffset > 0) {
-                raf.seek(startingOffset);
-            } else {
-                raf.setLength(0);
+        boolean preallocate = totalBytes > 0 && Boolean.getBoolean(PREALLOCATE_PROPERTY);
+        DownloadIntegrity.TailChecksum tail = new DownloadIntegrity.TailChecksum(startingOffset);
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             ChannelTransfer transfer = new ChannelTransfer(connection.body(), channel)) {
+            if (startingOffset == 0) {
+                channel.truncate(0);
+            } else if (!meta.preallocated) {
+                channel.truncate(startingOffset);
+            }
+            if (preallocate) {
+                ChannelTransfer.preallocate(channel, totalBytes);
             }
+            // A preallocated .part file is full-sized, so progress only lives in the metadata.
+            meta.preallocated = preallocate || (meta.preallocated && startingOffset > 0);
 
-            byte[] buffer = new byte[BUFFER_SIZE];
             while (true) {
                 if (cancelled.get()) {
                     updateDownload(d -> {
@@ -296,14 +685,19 @@ public class ResumableHttpDownloadTask implements Runnable {
                     return;
                 }
 
-                waitIfPaused(metaFile, meta, downloaded);
+                if (paused.get()) {
+                    meta.tailChecksums = tailEntries(List.of(tail));
+                }
+                waitIfPaused(journal, meta, downloaded);
 
-                int read = input.read(buffer);
+                int read = transfer.transfer(downloaded, transfer.batchSize(), tail::update);
                 if (read == -1) {
                     break;
                 }
-                raf.write(buffer, 0, read);
                 downloaded += read;
+                tail.commit(downloaded);
+                bytesTransferred.addAndGet(read);
+                throttle(read);
 
                 long now = System.currentTimeMillis();
                 if (now - lastUpdateTime >= UI_UPDATE_INTERVAL_MS) {
@@ -318,7 +712,7 @@ public class ResumableHttpDownloadTask implements Runnable {
                             ? Math.min(100.0, (downloaded * 100.0) / totalBytes)
                             : download.getProgress();
                     long progressBytes = downloaded;
-                    updateDownload(d -> {
+                    updateProgress(d -> {
                         d.setDownloadedBytes(progressBytes);
                         if (totalBytes > 0) {
                             d.setProgress(progress);
@@ -328,17 +722,39 @@ public class ResumableHttpDownloadTask implements Runnable {
                     });
                     lastUpdateTime = now;
                     lastUpdateBytes = downloaded;
+                    checkThroughput(downloaded, totalBytes);
                 }
 
                 if (now - lastMetaUpdateTime >= META_UPDATE_INTERVAL_MS) {
+                    if (totalBytes > 0) {
+                        DiskReservationLedger.getInstance().update(reservationKey(), totalBytes - downloaded);
+                    }
+                    if (meta.preallocated) {
+                        // The recorded offset must never run ahead of the data on disk.
+                        channel.force(false);
+                    }
                     meta.downloadedBytes = downloaded;
+                    meta.tailChecksums = tailEntries(List.of(tail));
                     meta.updatedAt = now;
-                    persistMeta(metaFile, meta);
+                    journal.append(meta);
                     lastMetaUpdateTime = now;
                 }
             }
+            if (!cancelled.get() && totalBytes > 0 && downloaded != totalBytes) {
+                if (downloaded > totalBytes) {
+                    throw new DownloadHaltedException("Error (tamaño inesperado)");
+                }
+                // Resuming picks up at the first missing byte.
+                channel.force(false);
+                meta.downloadedBytes = downloaded;
+                meta.tailChecksums = tailEntries(List.of(tail));
+                meta.updatedAt = System.currentTimeMillis();
+                journal.append(meta);
+                journal.sync();
+                throw new EOFException("Conexión cerrada en el byte " + downloaded + " de " + totalBytes);
+            }
         } finally {
-            connection.disconnect();
+            connection.close();
         }
 
         if (cancelled.get()) {
@@ -350,7 +766,379 @@ public class ResumableHttpDownloadTask implements Runnable {
             return;
         }
 
-        finalizeDownload(targetFile, partFile, metaFile, downloaded);
+        finalizeDownload(targetFile, partFile, journal, meta, downloaded);
+    }
+
+    private String reservationKey() {
+        return "direct:" + download.getId();
+    }
+
+    private boolean shouldSegment(RemoteMetadata metadata, long knownLength, long localBytes) {
+        return SEGMENT_CONNECTIONS > 1
+                && metadata.resumeSupported
+                && knownLength >= MIN_SEGMENTED_BYTES
+                && localBytes == 0;
+    }
+
+    /**
+     * Fetches the pending segments of {@code plan} over up to
+     * {@link #SEGMENT_CONNECTIONS} connections into a preallocated part file,
+     * while this thread reports progress and persists the plan.
+     *
+     * @return {@code false} if the server does not honour byte ranges and
+     *         nothing has been written yet, so the caller can fall back to a
+     *         single connection
+     */
+    private boolean executeSegmentedDownload(SegmentedDownloadPlan plan,
+                                             Path targetFile,
+                                             Path partFile,
+                                             DownloadCheckpointJournal journal,
+                                             Checkpoint meta)
+            throws IOException, InterruptedException, DownloadHaltedException {
+        long totalBytes = plan.totalLength();
+        meta.totalLength = totalBytes;
+        meta.segments = plan.toOffsets();
+        journal.append(meta);
+
+        long startingBytes = plan.downloadedBytes();
+        updateDownload(d -> {
+            d.setStatus("Downloading");
+            d.setDownloadSpeed(0);
+            d.setRemainingTime(0);
+            d.setFileSize(totalBytes);
+            d.setDownloadedBytes(startingBytes);
+            d.setResumeSupported(true);
+            d.setActualFilePath(partFile.toString());
+            d.setProgress(Math.min(100.0, (startingBytes * 100.0) / totalBytes));
+        });
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicInteger activeConnections = new AtomicInteger();
+        Map<SegmentedDownloadPlan.Segment, DownloadIntegrity.TailChecksum> tails = new ConcurrentHashMap<>();
+        ExecutorService connections = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("DirectDownload-" + download.getId() + "-", 1).factory());
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            try {
+                // Extending the file lets every connection write at its own offset.
+                ChannelTransfer.preallocate(channel, totalBytes);
+                List<Future<?>> workers = new ArrayList<>();
+                for (int i = 0; i < SEGMENT_CONNECTIONS; i++) {
+                    activeConnections.incrementAndGet();
+                    workers.add(connections.submit(() -> {
+                        try {
+                            runSegmentConnection(plan, channel, meta, tails, stop, activeConnections);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                            stop.set(true);
+                        } finally {
+                            activeConnections.decrementAndGet();
+                        }
+                    }));
+                }
+
+                long lastUpdateBytes = startingBytes;
+                long lastUpdateTime = System.currentTimeMillis();
+                long lastMetaUpdateTime = lastUpdateTime;
+                while (!allDone(workers)) {
+                    if (cancelled.get()) {
+                        stop.set(true);
+                        break;
+                    }
+                    if (paused.get()) {
+                        meta.segments = plan.toOffsets();
+                        meta.tailChecksums = tailEntries(pendingTails(tails));
+                        waitIfPaused(journal, meta, plan.downloadedBytes());
+                        lastUpdateTime = System.currentTimeMillis();
+                        lastUpdateBytes = plan.downloadedBytes();
+                        continue;
+                    }
+                    Thread.sleep(MONITOR_INTERVAL_MS);
+                    long now = System.currentTimeMillis();
+                    long downloaded = plan.downloadedBytes();
+                    if (now - lastUpdateTime >= UI_UPDATE_INTERVAL_MS) {
+                        double speedBps = (downloaded - lastUpdateBytes) * 1000.0 / (now - lastUpdateTime);
+                        long remainingSeconds = speedBps > 0
+                                ? Math.max(0L, Math.round((totalBytes - downloaded) / speedBps))
+                                : download.getRemainingTime();
+                        updateProgress(d -> {
+                            d.setDownloadedBytes(downloaded);
+                            d.setProgress(Math.min(100.0, (downloaded * 100.0) / totalBytes));
+                            d.setRemainingTime(remainingSeconds);
+                            d.setDownloadSpeed(speedBps / (1024.0 * 1024.0));
+                        });
+                        lastUpdateTime = now;
+                        lastUpdateBytes = downloaded;
+                        checkThroughput(downloaded, totalBytes);
+                    }
+                    if (now - lastMetaUpdateTime >= META_UPDATE_INTERVAL_MS) {
+                        DiskReservationLedger.getInstance().update(reservationKey(), totalBytes - downloaded);
+                        channel.force(false);
+                        meta.downloadedBytes = downloaded;
+                        meta.segments = plan.toOffsets();
+                        meta.tailChecksums = tailEntries(pendingTails(tails));
+                        meta.updatedAt = now;
+                        journal.append(meta);
+                        lastMetaUpdateTime = now;
+                    }
+                }
+            } finally {
+                stop.set(true);
+                drainConnections(connections);
+                // Only bytes on disk may be recorded as downloaded, as in the periodic checkpoint.
+                if (channel.isOpen()) {
+                    channel.force(false);
+                }
+                meta.downloadedBytes = plan.downloadedBytes();
+                meta.segments = plan.toOffsets();
+                meta.tailChecksums = tailEntries(pendingTails(tails));
+                meta.updatedAt = System.currentTimeMillis();
+                journal.append(meta);
+            }
+        }
+
+        if (cancelled.get()) {
+            updateDownload(d -> {
+                d.setStatus("Cancelled");
+                d.setDownloadSpeed(0);
+                d.setRemainingTime(0);
+            });
+            return true;
+        }
+        Exception error = failure.get();
+        if (error instanceof RangeNotHonouredException && plan.downloadedBytes() == 0) {
+            return false;
+        }
+        if (error instanceof RangeNotHonouredException) {
+            throw new DownloadHaltedException("Error (recurso cambiado)");
+        }
+        if (error instanceof DownloadHaltedException halted) {
+            throw halted;
+        }
+        if (error instanceof InterruptedException interrupted) {
+            throw interrupted;
+        }
+        if (error != null) {
+            throw error instanceof IOException io ? io : new IOException(error.getMessage(), error);
+        }
+        if (!plan.isComplete()) {
+            throw new IOException("La descarga segmentada terminó con rangos pendientes");
+        }
+        finalizeDownload(targetFile, partFile, journal, meta, totalBytes);
+        return true;
+    }
+
+    /**
+     * Waits for the segment connections to see the stop flag and return.
+     * Interrupting them is the last resort: an interrupt during a write closes
+     * the shared channel, so it is only sent to connections stuck in a read.
+     */
+    private static void drainConnections(ExecutorService connections) {
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(CONNECTION_DRAIN_MS, TimeUnit.MILLISECONDS)) {
+                connections.shutdownNow();
+                if (!connections.awaitTermination(CONNECTION_DRAIN_MS, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warning("Conexiones de la descarga segmentada sin terminar tras detenerlas");
+                }
+            }
+        } catch (InterruptedException e) {
+            connections.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Checksums of the segments that still have bytes to fetch, where a resume would start. */
+    private static List<DownloadIntegrity.TailChecksum> pendingTails(
+            Map<SegmentedDownloadPlan.Segment, DownloadIntegrity.TailChecksum> tails) {
+        List<DownloadIntegrity.TailChecksum> pending = new ArrayList<>();
+        tails.forEach((segment, tail) -> {
+            if (segment.position() < segment.end()) {
+                pending.add(tail);
+            }
+        });
+        return pending;
+    }
+
+    private static long[] tailEntries(List<DownloadIntegrity.TailChecksum> tails) {
+        return tails.stream()
+                .mapToLong(DownloadIntegrity.TailChecksum::entry)
+                .filter(entry -> entry != DownloadIntegrity.NO_ENTRY)
+                .limit(DownloadCheckpointJournal.MAX_SEGMENTS)
+                .toArray();
+    }
+
+    private static boolean allDone(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One connection of a segmented download: takes a segment, or steals part
+     * of the slowest one, until nothing is left.  Failed ranges are retried
+     * with the connection's own {@link DownloadRetryPolicy}; a connection
+     * throttled with 429/503 while others are still working gives its segment
+     * back and stops, since the host limits connections.  An expired link
+     * stops the whole download so it can be renewed once.
+     */
+    private void runSegmentConnection(SegmentedDownloadPlan plan,
+                                      FileChannel channel,
+                                      Checkpoint meta,
+                                      Map<SegmentedDownloadPlan.Segment, DownloadIntegrity.TailChecksum> tails,
+                                      AtomicBoolean stop,
+                                      AtomicInteger activeConnections)
+            throws IOException, InterruptedException, DownloadHaltedException {
+        SegmentedDownloadPlan.Segment segment = plan.acquire(MIN_STEAL_BYTES);
+        DownloadRetryPolicy connectionRetries = new DownloadRetryPolicy();
+        while (segment != null && !stop.get() && !cancelled.get()) {
+            long delay;
+            try {
+                fetchSegment(plan, segment, channel, meta, tails, stop);
+                connectionRetries.reset();
+                if (stop.get() || cancelled.get()) {
+                    break;
+                }
+                segment = plan.acquire(MIN_STEAL_BYTES);
+                continue;
+            } catch (HttpStatusException status) {
+                DownloadRetryPolicy.Failure kind = DownloadRetryPolicy.classify(status.responseCode);
+                if (kind == DownloadRetryPolicy.Failure.THROTTLED && activeConnections.get() > 1) {
+                    plan.release(segment);
+                    return;
+                }
+                delay = kind == DownloadRetryPolicy.Failure.EXPIRED_LINK
+                        ? -1L
+                        : connectionRetries.nextDelay(kind, status.retryAfterMs);
+                if (delay < 0) {
+                    throw status;
+                }
+            } catch (RangeNotHonouredException e) {
+                throw e;
+            } catch (IOException e) {
+                delay = connectionRetries.nextDelay(DownloadRetryPolicy.classify(e), -1L);
+                if (delay < 0) {
+                    throw e;
+                }
+            }
+            Thread.sleep(delay);
+        }
+        if (segment != null) {
+            plan.release(segment);
+        }
+    }
+
+    private void fetchSegment(SegmentedDownloadPlan plan,
+                              SegmentedDownloadPlan.Segment segment,
+                              FileChannel channel,
+                              Checkpoint meta,
+                              Map<SegmentedDownloadPlan.Segment, DownloadIntegrity.TailChecksum> tails,
+                              AtomicBoolean stop)
+            throws IOException, InterruptedException, DownloadHaltedException {
+        long from = segment.position();
+        long to = segment.end() - 1;
+        if (from > to) {
+            return;
+        }
+        HttpRequest.Builder request = newRequest().setHeader("Range", "bytes=" + from + "-" + to);
+        if (meta.etag != null && !meta.etag.isBlank()) {
+            request.setHeader("If-Range", meta.etag);
+        } else if (meta.lastModified != null && !meta.lastModified.isBlank()) {
+            request.setHeader("If-Range", meta.lastModified);
+        }
+        try (DirectHttpTransport.Exchange connection = transport.send(request.build())) {
+            int code = connection.statusCode();
+            if (code != HTTP_OK && code != HTTP_PARTIAL
+                    && DownloadRetryPolicy.classify(code) != DownloadRetryPolicy.Failure.FATAL) {
+                throw new HttpStatusException(connection);
+            }
+            if (code != HTTP_PARTIAL
+                    || parseContentRangeStart(connection.header("Content-Range")) != from) {
+                throw new RangeNotHonouredException(code);
+            }
+            long total = parseContentRangeTotal(connection.header("Content-Range"));
+            String etag = connection.header("ETag");
+            if ((total > 0 && total != plan.totalLength())
+                    || (meta.etag != null && etag != null && !meta.etag.equals(etag))) {
+                throw new DownloadHaltedException("Error (recurso cambiado)");
+            }
+
+            DownloadIntegrity.TailChecksum tail = new DownloadIntegrity.TailChecksum(from);
+            tails.put(segment, tail);
+            try (ChannelTransfer transfer = new ChannelTransfer(connection.body(), channel)) {
+                while (!stop.get() && !cancelled.get()) {
+                    awaitResume();
+                    int allowed = plan.claim(segment, transfer.batchSize());
+                    if (allowed == 0) {
+                        return;
+                    }
+                    int written = transfer.transfer(segment.position(), allowed, tail::update);
+                    if (written == -1) {
+                        plan.commit(segment, 0);
+                        throw new IOException("Conexión cerrada antes de completar el rango " + from + "-" + to);
+                    }
+                    plan.commit(segment, written);
+                    tail.commit(segment.position());
+                    bytesTransferred.addAndGet(written);
+                    throttle(written);
+                }
+            }
+        }
+    }
+
+    private void awaitResume() throws InterruptedException {
+        if (!paused.get()) {
+            return;
+        }
+        awaitResumeSignal();
+    }
+
+    private void awaitResumeSignal() throws InterruptedException {
+        pauseLock.lock();
+        try {
+            while (paused.get() && !cancelled.get()) {
+                resumed.await(250L, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the disk reservation ledger grants the remaining bytes so
+     * that several direct downloads and torrents cannot jointly overfill the
+     * destination volume.  Downloads that can never fit are halted.
+     */
+    private void reserveDiskSpace(Path partFile, long remainingBytes) throws InterruptedException, DownloadHaltedException {
+        DiskReservationLedger ledger = DiskReservationLedger.getInstance();
+        Path directory = partFile.toAbsolutePath().getParent();
+        boolean waiting = false;
+        while (!cancelled.get()) {
+            DiskReservationLedger.Decision decision = ledger.tryReserve(reservationKey(), directory, remainingBytes);
+            if (decision == DiskReservationLedger.Decision.GRANTED) {
+                if (waiting) {
+                    resumeSlot();
+                }
+                return;
+            }
+            if (decision == DiskReservationLedger.Decision.REFUSED) {
+                throw new DownloadHaltedException("Paused (disk space)");
+            }
+            if (!waiting) {
+                waiting = true;
+                updateDownload(d -> {
+                    d.setStatus("Waiting");
+                    d.setDownloadSpeed(0);
+                });
+                suspendSlot("Sin espacio en disco");
+            }
+            Thread.sleep(DISK_SPACE_RETRY_MS);
+        }
+        throw new DownloadHaltedException("Cancelled");
     }
 
     private Path prepareTargetFile() throws IOException {
@@ -369,15 +1157,22 @@ public class ResumableHttpDownloadTask implements Runnable {
         return target.resolveSibling(target.getFileName() + PART_EXTENSION);
     }
 
-    private Path resolveMetaFile(Path target) {
-        return target.resolveSibling(target.getFileName() + META_EXTENSION);
+    private Path resolveJournalFile(Path target) {
+        return target.resolveSibling(target.getFileName() + DownloadCheckpointJournal.EXTENSION);
     }
 
-    private void finalizeDownload(Path targetFile, Path partFile, Path metaFile, long downloadedBytes) throws IOException {
+    private Path resolveLegacyMetaFile(Path target) {
+        return target.resolveSibling(target.getFileName() + LEGACY_META_EXTENSION);
+    }
+
+    private void finalizeDownload(Path targetFile, Path partFile, DownloadCheckpointJournal journal,
+                                  Checkpoint meta, long downloadedBytes) throws IOException {
         if (Files.exists(partFile)) {
+            verifyCompletedPart(partFile, journal, meta, downloadedBytes);
             Files.move(partFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
         }
-        deleteMeta(metaFile);
+        journal.discard();
+        deleteLegacyMeta(resolveLegacyMetaFile(targetFile));
         long finalDownloaded = downloadedBytes;
         updateDownload(d -> {
             d.setDownloadedBytes(finalDownloaded);
@@ -389,114 +1184,186 @@ public class ResumableHttpDownloadTask implements Runnable {
         });
     }
 
+    /**
+     * Checks a finished .part file before it is renamed: its size against the
+     * expected length, then its container layout.  When the problem has an
+     * offset, the journal is left pointing at a window from there so the next
+     * attempt only fetches those bytes again.
+     */
+    private void verifyCompletedPart(Path partFile, DownloadCheckpointJournal journal, Checkpoint meta,
+                                     long expectedBytes) throws IOException {
+        DownloadIntegrity.Result result;
+        long size;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (expectedBytes > 0 && size < expectedBytes) {
+                result = DownloadIntegrity.Result.corrupt(size, "faltan " + (expectedBytes - size) + " bytes");
+            } else if (expectedBytes > 0 && size > expectedBytes) {
+                result = DownloadIntegrity.Result.corrupt(-1L, "sobran " + (size - expectedBytes) + " bytes");
+            } else {
+                result = DownloadIntegrity.checkContainer(channel, size);
+            }
+        }
+        if (result.valid()) {
+            return;
+        }
+        boolean repairable = result.offset() >= 0 && expectedBytes > 0;
+        if (repairable) {
+            long[] offsets = meta.segments != null ? meta.segments : new long[]{0L, size, expectedBytes};
+            meta.segments = DownloadIntegrity.refetch(offsets, result.offset(), REFETCH_WINDOW_BYTES);
+            meta.totalLength = expectedBytes;
+            meta.downloadedBytes = DownloadIntegrity.downloadedBytes(meta.segments);
+            meta.tailChecksums = null;
+            meta.updatedAt = System.currentTimeMillis();
+            journal.append(meta);
+            journal.sync();
+        }
+        throw new CorruptDownloadException(result.offset() >= 0
+                ? result.problem() + " (byte " + result.offset() + ")"
+                : result.problem(), repairable);
+    }
+
+    /**
+     * Reads back the blocks checksummed right below the recorded resume
+     * points; a block that no longer matches is fetched again from its start.
+     */
+    private void verifyResumePoints(Path partFile, Checkpoint meta) throws IOException {
+        long[] entries = meta.tailChecksums;
+        meta.tailChecksums = null;
+        if (entries == null || !Files.exists(partFile)) {
+            return;
+        }
+        for (long bad : DownloadIntegrity.mismatchedBlocks(partFile, entries)) {
+            LOGGER.log(Level.WARNING, "Bloque dañado en el byte " + bad + " de " + partFile.getFileName()
+                    + "; se descargará de nuevo.");
+            if (meta.segments != null) {
+                meta.segments = DownloadIntegrity.refetch(meta.segments, bad, Long.MAX_VALUE);
+                meta.downloadedBytes = DownloadIntegrity.downloadedBytes(meta.segments);
+            } else if (meta.preallocated) {
+                meta.downloadedBytes = Math.min(meta.downloadedBytes, bad);
+            } else {
+                try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+                    if (channel.size() > bad) {
+                        channel.truncate(bad);
+                    }
+                }
+            }
+        }
+    }
+
     private RemoteMetadata fetchRemoteMetadata() {
         RemoteMetadata metadata = new RemoteMetadata();
         try {
-            HttpURLConnection connection = openConnection("HEAD");
-            try {
-                int code = connection.getResponseCode();
+            HttpRequest request = newRequest().method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            try (DirectHttpTransport.Exchange connection = transport.send(request)) {
+                int code = connection.statusCode();
                 if (code >= 200 && code < 400) {
-                    metadata.contentLength = connection.getContentLengthLong();
-                    String etag = connection.getHeaderField("ETag");
+                    metadata.contentLength = connection.contentLength();
+                    String etag = connection.header("ETag");
                     if (etag != null) {
                         metadata.etag = etag;
                     }
-                    String lastModified = connection.getHeaderField("Last-Modified");
+                    String lastModified = connection.header("Last-Modified");
                     if (lastModified != null) {
                         metadata.lastModified = lastModified;
                     }
-                    String acceptRanges = connection.getHeaderField("Accept-Ranges");
+                    String acceptRanges = connection.header("Accept-Ranges");
                     if (acceptRanges != null && !acceptRanges.isBlank()) {
                         metadata.resumeSupported = !"none".equalsIgnoreCase(acceptRanges.trim());
                     }
                 }
-            } finally {
-                connection.disconnect();
             }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
         } catch (Exception ignored) {
             // Algunos servidores no admiten HEAD; continuaremos sin esta metadata.
         }
         return metadata;
     }
 
-    private DownloadConnection openDownloadConnection(DownloadMeta meta,
+    private DownloadConnection openDownloadConnection(Checkpoint meta,
                                                        long localBytes,
                                                        boolean hasPartialFile,
                                                        Path targetFile,
                                                        Path partFile,
-                                                       Path metaFile)
+                                                       DownloadCheckpointJournal journal)
             throws IOException, InterruptedException, RestartDeclinedException, DownloadHaltedException {
-        HttpURLConnection connection = openConnection("GET");
+        HttpRequest.Builder request = newRequest();
         boolean attemptingResume = hasPartialFile;
         if (attemptingResume) {
-            connection.setRequestProperty("Range", "bytes=" + localBytes + "-");
+            request.setHeader("Range", "bytes=" + localBytes + "-");
             String etag = meta.etag;
             if (etag != null && !etag.isBlank()) {
-                connection.setRequestProperty("If-Match", etag);
+                request.setHeader("If-Match", etag);
             }
             String lastModified = meta.lastModified;
             if (lastModified != null && !lastModified.isBlank()) {
-                connection.setRequestProperty("If-Unmodified-Since", lastModified);
+                request.setHeader("If-Unmodified-Since", lastModified);
             }
         }
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode == HttpURLConnection.HTTP_FORBIDDEN || responseCode == HTTP_GONE) {
-            connection.disconnect();
-            throw new DownloadHaltedException("Error (URL expirada)");
-        }
+        DirectHttpTransport.Exchange connection = transport.send(request.build());
+        try {
+            int responseCode = connection.statusCode();
+            if (DownloadRetryPolicy.classify(responseCode) == DownloadRetryPolicy.Failure.EXPIRED_LINK) {
+                throw new HttpStatusException(connection);
+            }
 
-        if (attemptingResume) {
-            if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
-                validateResumedIdentity(meta, connection, localBytes);
-                return new DownloadConnection(connection, localBytes, true, responseCode);
-            }
-            if (responseCode == HTTP_REQUESTED_RANGE_NOT_SATISFIABLE) {
-                long totalFromRange = parseContentRangeTotal(connection.getHeaderField("Content-Range"));
-                if (totalFromRange > 0 && localBytes >= totalFromRange) {
-                    connection.disconnect();
-                    finalizeDownload(targetFile, partFile, metaFile, totalFromRange);
-                    throw new DownloadHaltedException("Completed");
+            if (attemptingResume) {
+                if (responseCode == HTTP_PARTIAL) {
+                    validateResumedIdentity(meta, connection, localBytes);
+                    return new DownloadConnection(connection, localBytes, true, responseCode);
                 }
-                connection.disconnect();
-                throw new DownloadHaltedException("Error (rango inválido)");
-            }
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                boolean canValidate = canValidateIdentity(meta, connection);
-                if (!canValidate) {
-                    connection.disconnect();
-                    throw new DownloadHaltedException("Error (recurso cambiado)");
+                if (responseCode == HTTP_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    long totalFromRange = parseContentRangeTotal(connection.header("Content-Range"));
+                    if (totalFromRange > 0 && localBytes >= totalFromRange) {
+                        connection.close();
+                        finalizeDownload(targetFile, partFile, journal, meta, totalFromRange);
+                        throw new DownloadHaltedException("Completed");
+                    }
+                    connection.close();
+                    throw new DownloadHaltedException("Error (rango inválido)");
                 }
-                connection.disconnect();
-                handleRestartRequired(partFile, metaFile,
-                        "El servidor no aceptó reanudar la descarga.");
-                HttpURLConnection restart = openConnection("GET");
-                int restartCode = restart.getResponseCode();
-                if (restartCode != HttpURLConnection.HTTP_OK && restartCode != HttpURLConnection.HTTP_PARTIAL) {
-                    restart.disconnect();
-                    throw new IOException("GET " + restartCode);
+                if (responseCode == HTTP_OK) {
+                    boolean canValidate = canValidateIdentity(meta, connection);
+                    connection.close();
+                    if (!canValidate) {
+                        throw new DownloadHaltedException("Error (recurso cambiado)");
+                    }
+                    handleRestartRequired(partFile, journal,
+                            "El servidor no aceptó reanudar la descarga.");
+                    DirectHttpTransport.Exchange restart = transport.send(newRequest().build());
+                    int restartCode = restart.statusCode();
+                    if (restartCode != HTTP_OK && restartCode != HTTP_PARTIAL) {
+                        HttpStatusException refused = new HttpStatusException(restart);
+                        restart.close();
+                        throw refused;
+                    }
+                    return new DownloadConnection(restart, 0, restartCode == HTTP_PARTIAL, restartCode);
+                }
+                if (responseCode == HTTP_PRECONDITION_FAILED) {
+                    connection.close();
+                    throw new DownloadHaltedException("Error (recurso cambiado)");
                 }
-                return new DownloadConnection(restart, 0, restartCode == HttpURLConnection.HTTP_PARTIAL, restartCode);
-            }
-            if (responseCode == HTTP_PRECONDITION_FAILED) {
-                connection.disconnect();
-                throw new DownloadHaltedException("Error (recurso cambiado)");
             }
-        }
 
-        if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL) {
-            connection.disconnect();
-            throw new IOException("GET " + responseCode);
-        }
+            if (responseCode != HTTP_OK && responseCode != HTTP_PARTIAL) {
+                throw new HttpStatusException(connection);
+            }
 
-        long newOffset = (responseCode == HttpURLConnection.HTTP_PARTIAL) ? localBytes : 0L;
-        if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
-            validateResumedIdentity(meta, connection, localBytes);
+            long newOffset = (responseCode == HTTP_PARTIAL) ? localBytes : 0L;
+            if (responseCode == HTTP_PARTIAL) {
+                validateResumedIdentity(meta, connection, localBytes);
+            }
+            return new DownloadConnection(connection, newOffset, responseCode == HTTP_PARTIAL, responseCode);
+        } catch (Throwable failure) {
+            // Closing is idempotent; it frees the host slot whichever check failed.
+            connection.close();
+            throw failure;
         }
-        return new DownloadConnection(connection, newOffset, responseCode == HttpURLConnection.HTTP_PARTIAL, responseCode);
     }
 
-    private void validateResumedIdentity(DownloadMeta meta, HttpURLConnection connection, long localBytes)
+    private void validateResumedIdentity(Checkpoint meta, DirectHttpTransport.Exchange connection, long localBytes)
             throws DownloadHaltedException {
         if (localBytes <= 0) {
             return;
@@ -504,33 +1371,33 @@ public class ResumableHttpDownloadTask implements Runnable {
         if (!canValidateIdentity(meta, connection)) {
             throw new DownloadHaltedException("Error (validación fallida)");
         }
-        String responseEtag = connection.getHeaderField("ETag");
+        String responseEtag = connection.header("ETag");
         if (meta.etag != null && responseEtag != null && !meta.etag.equals(responseEtag)) {
             throw new DownloadHaltedException("Error (recurso cambiado)");
         }
-        String responseLastModified = connection.getHeaderField("Last-Modified");
+        String responseLastModified = connection.header("Last-Modified");
         if (meta.lastModified != null && responseLastModified != null
                 && !meta.lastModified.equals(responseLastModified)) {
             throw new DownloadHaltedException("Error (recurso cambiado)");
         }
-        long totalFromRange = parseContentRangeTotal(connection.getHeaderField("Content-Range"));
+        long totalFromRange = parseContentRangeTotal(connection.header("Content-Range"));
         if (meta.totalLength > 0 && totalFromRange > 0 && meta.totalLength != totalFromRange) {
             throw new DownloadHaltedException("Error (recurso cambiado)");
         }
     }
 
-    private boolean canValidateIdentity(DownloadMeta meta, HttpURLConnection connection) {
+    private boolean canValidateIdentity(Checkpoint meta, DirectHttpTransport.Exchange connection) {
         boolean hasExpectation = (meta.etag != null && !meta.etag.isBlank())
                 || (meta.lastModified != null && !meta.lastModified.isBlank())
                 || meta.totalLength > 0;
-        boolean hasResponse = (connection.getHeaderField("ETag") != null)
-                || (connection.getHeaderField("Last-Modified") != null)
-                || parseContentRangeTotal(connection.getHeaderField("Content-Range")) > 0
-                || connection.getContentLengthLong() > 0;
+        boolean hasResponse = (connection.header("ETag") != null)
+                || (connection.header("Last-Modified") != null)
+                || parseContentRangeTotal(connection.header("Content-Range")) > 0
+                || connection.contentLength() > 0;
         return hasExpectation && hasResponse;
     }
 
-    private void handleRestartRequired(Path partFile, Path metaFile, String reason)
+    private void handleRestartRequired(Path partFile, DownloadCheckpointJournal journal, String reason)
             throws IOException, InterruptedException, RestartDeclinedException {
         CompletableFuture<Boolean> decisionFuture = download.askToRestartDownload(reason);
         boolean restart;
@@ -555,7 +1422,7 @@ public class ResumableHttpDownloadTask implements Runnable {
             Files.deleteIfExists(partFile);
         } catch (IOException ignored) {
         }
-        deleteMeta(metaFile);
+        journal.discard();
 
         updateDownload(d -> {
             d.setDownloadedBytes(0);
@@ -569,24 +1436,44 @@ public class ResumableHttpDownloadTask implements Runnable {
         });
     }
 
-    private long determineTotalBytes(HttpURLConnection connection,
+    private long determineTotalBytes(DirectHttpTransport.Exchange connection,
                                      long startingOffset,
                                      long knownLength,
                                      int responseCode) {
-        long contentLength = connection.getContentLengthLong();
+        long contentLength = connection.contentLength();
         if (contentLength <= 0) {
-            long totalFromRange = parseContentRangeTotal(connection.getHeaderField("Content-Range"));
+            long totalFromRange = parseContentRangeTotal(connection.header("Content-Range"));
             if (totalFromRange > 0) {
                 return totalFromRange;
             }
             return knownLength;
         }
-        if (startingOffset > 0 && responseCode == HttpURLConnection.HTTP_PARTIAL) {
+        if (startingOffset > 0 && responseCode == HTTP_PARTIAL) {
             return startingOffset + contentLength;
         }
         return contentLength;
     }
 
+    /** First byte of a {@code Content-Range: bytes a-b/total} header, or {@code -1}. */
+    private long parseContentRangeStart(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        String value = contentRange.trim();
+        if (value.regionMatches(true, 0, "bytes", 0, 5)) {
+            value = value.substring(5).trim();
+        }
+        int dash = value.indexOf('-');
+        if (dash <= 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring(0, dash).trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
     private long parseContentRangeTotal(String contentRange) {
         if (contentRange == null || contentRange.isBlank()) {
             return -1;
@@ -606,44 +1493,55 @@ public class ResumableHttpDownloadTask implements Runnable {
         }
     }
 
-    private void waitIfPaused(Path metaFile, DownloadMeta meta, long downloadedBytes) throws InterruptedException {
+    private void waitIfPaused(DownloadCheckpointJournal journal, Checkpoint meta, long downloadedBytes)
+            throws InterruptedException {
         if (!paused.get()) {
             return;
         }
         meta.downloadedBytes = downloadedBytes;
         meta.updatedAt = System.currentTimeMillis();
-        persistMeta(metaFile, meta);
+        journal.append(meta);
+        journal.sync();
         updateDownload(d -> {
             d.setStatus("Paused");
             d.setDownloadSpeed(0);
         });
-        synchronized (pauseLock) {
-            while (paused.get() && !cancelled.get()) {
-                pauseLock.wait(250L);
-            }
-        }
+        suspendSlot("Pausada");
+        awaitResumeSignal();
+        windowStartNanos = 0L;
         if (!cancelled.get()) {
+            resumeSlot();
             updateDownload(d -> d.setStatus("Downloading"));
         }
     }
 
-    private HttpURLConnection openConnection(String method) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) new URL(downloadUrl).openConnection();
-        connection.setInstanceFollowRedirects(true);
-        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        connection.setReadTimeout(READ_TIMEOUT_MS);
-        connection.setRequestMethod(method);
-        headerConfigurer.accept(connection);
-        return connection;
+    /** Lets queued downloads use the engine slot while this one cannot transfer. */
+    private void suspendSlot(String reason) {
+        DirectDownloadEngine.Ticket current = ticket;
+        if (current != null) {
+            current.suspend(reason);
+        }
+    }
+
+    private void resumeSlot() throws InterruptedException {
+        DirectDownloadEngine.Ticket current = ticket;
+        if (current != null && !current.tryResume()) {
+            updateDownload(d -> d.setStatus("Waiting"));
+            current.resume();
+        }
+    }
+
+    private HttpRequest.Builder newRequest() throws IOException {
+        return transport.request(downloadUrl, requestCustomizer);
     }
 
     private void updateDownload(Consumer<DescargasUI.DirectDownload> consumer) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                consumer.accept(download);
-            } catch (Exception ignored) {
-            }
-        });
+        ProgressEventBus.shared().post(download, consumer);
+    }
+
+    /** Progress snapshots replace each other until the UI applies the latest one. */
+    private void updateProgress(Consumer<DescargasUI.DirectDownload> consumer) {
+        ProgressEventBus.shared().post(download, ProgressEventBus.PROGRESS, consumer);
     }
 
     private boolean downloadHasMetaSnapshot() {
@@ -653,7 +1551,8 @@ public class ResumableHttpDownloadTask implements Runnable {
                 || download.getDownloadedBytes() > 0;
     }
 
-    private DownloadMeta loadMeta(Path metaFile) {
+    /** Reads the {@code .meta.json} written before the checkpoint journal existed. */
+    private Checkpoint loadLegacyMeta(Path metaFile) {
         if (!Files.exists(metaFile)) {
             return null;
         }
@@ -664,40 +1563,23 @@ public class ResumableHttpDownloadTask implements Runnable {
             if (!(parsed instanceof JSONObject json)) {
                 return null;
             }
-            DownloadMeta meta = new DownloadMeta();
+            Checkpoint meta = new Checkpoint();
             meta.url = asString(json.get("url"));
             meta.etag = asString(json.get("etag"));
             meta.lastModified = asString(json.get("lastModified"));
             meta.totalLength = asLong(json.get("totalLength"));
             meta.downloadedBytes = asLong(json.get("downloadedBytes"));
             meta.updatedAt = asLong(json.get("updatedAt"));
+            SegmentedDownloadPlan plan = SegmentedDownloadPlan.fromJson(json.get("segments"), meta.totalLength);
+            meta.segments = plan != null ? plan.toOffsets() : null;
+            meta.preallocated = Boolean.TRUE.equals(json.get("preallocated"));
             return meta;
         } catch (IOException | ParseException ignored) {
             return null;
         }
     }
 
-    private void persistMeta(Path metaFile, DownloadMeta meta) {
-        if (meta == null) {
-            return;
-        }
-        JSONObject json = new JSONObject();
-        json.put("url", meta.url);
-        json.put("etag", meta.etag);
-        json.put("lastModified", meta.lastModified);
-        json.put("totalLength", meta.totalLength);
-        json.put("downloadedBytes", meta.downloadedBytes);
-        json.put("updatedAt", meta.updatedAt);
-        try {
-            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                    Files.newOutputStream(metaFile), StandardCharsets.UTF_8))) {
-                writer.write(json.toJSONString());
-            }
-        } catch (IOException ignored) {
-        }
-    }
-
-    private void deleteMeta(Path metaFile) {
+    private void deleteLegacyMeta(Path metaFile) {
         try {
             Files.deleteIfExists(metaFile);
         } catch (IOException ignored) {
@@ -745,6 +1627,50 @@ public class ResumableHttpDownloadTask implements Runnable {
         }
     }
 
+    /** The downloaded data failed verification; repairable ones have a window to fetch again. */
+    private static final class CorruptDownloadException extends IOException {
+        private final boolean repairable;
+
+        private CorruptDownloadException(String message, boolean repairable) {
+            super(message);
+            this.repairable = repairable;
+        }
+
+        private boolean isRepairable() {
+            return repairable;
+        }
+    }
+
+    /** Unwinds the current attempt so the download continues on another mirror. */
+    private static final class MirrorSwitchException extends IOException {
+        private final MirrorFailover.Switch target;
+
+        private MirrorSwitchException(MirrorFailover.Switch target) {
+            super("Cambio a " + target.server());
+            this.target = target;
+        }
+    }
+
+    /** The server answered a range request with the whole resource or another range. */
+    private static final class RangeNotHonouredException extends IOException {
+        private RangeNotHonouredException(int responseCode) {
+            super("Rango no respetado (HTTP " + responseCode + ")");
+        }
+    }
+
+    /** The server answered with an error status; {@link DownloadRetryPolicy#classify(int)} tells what to do. */
+    private static final class HttpStatusException extends IOException {
+        private final int responseCode;
+        private final long retryAfterMs;
+
+        private HttpStatusException(DirectHttpTransport.Exchange connection) {
+            super("GET " + connection.statusCode());
+            this.responseCode = connection.statusCode();
+            this.retryAfterMs = DownloadRetryPolicy.parseRetryAfter(connection.header("Retry-After"),
+                    System.currentTimeMillis());
+        }
+    }
+
     private static final class RemoteMetadata {
         long contentLength = -1;
         boolean resumeSupported;
@@ -752,22 +1678,13 @@ public class ResumableHttpDownloadTask implements Runnable {
         String lastModified;
     }
 
-    private static final class DownloadMeta {
-        String url;
-        String etag;
-        String lastModified;
-        long totalLength = -1;
-        long downloadedBytes;
-        long updatedAt;
-    }
-
     private static final class DownloadConnection {
-        final HttpURLConnection connection;
+        final DirectHttpTransport.Exchange connection;
         final long startingOffset;
         final boolean resumed;
         final int responseCode;
 
-        private DownloadConnection(HttpURLConnection connection, long startingOffset, boolean resumed, int responseCode) {
+        private DownloadConnection(DirectHttpTransport.Exchange connection, long startingOffset, boolean resumed, int responseCode) {
             this.connection = connection;
             this.startingOffset = startingOffset;
             this.resumed = resumed;
@@ -0,0 +1,175 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Seeding goals for finished torrents, stored in {@code config.json} under
+ * {@link #CONFIG_KEY}.  A torrent has met its goal once it reaches the target
+ * ratio or has been seeding for the configured time; either goal set to zero
+ * is ignored.  With {@code seedOnlyWhileIdle} finished torrents are held while
+ * other torrents are still downloading, so uploads do not compete with them.
+ * <p>
+ * {@link #getDownloadUploadReservePercent()} is the part of the global upload
+ * limit kept for torrents that are still downloading: their upload is what
+ * peers reciprocate with data, so starving it slows the download down.
+ */
+public final class SeedingPolicy {
+
+    public static final String CONFIG_KEY = "seedingPolicy";
+    static final int DEFAULT_DOWNLOAD_UPLOAD_RESERVE_PERCENT = 50;
+    private static final int MAX_DOWNLOAD_UPLOAD_RESERVE_PERCENT = 90;
+
+    /** What happens to a torrent once its seeding goal is met. */
+    public enum GoalAction {
+        /** The torrent stays in the session, paused. */
+        PAUSE,
+        /** The torrent leaves the session; its files are kept. */
+        REMOVE_KEEP_FILES
+    }
+
+    /** Outcome of {@link #evaluate}. */
+    public enum Verdict {
+        SEED,
+        /** Other torrents are downloading and seeding is only allowed when idle. */
+        HOLD_WHILE_DOWNLOADING,
+        GOAL_REACHED
+    }
+
+    private final double targetRatio;
+    private final Duration seedTime;
+    private final boolean seedOnlyWhileIdle;
+    private final GoalAction goalAction;
+    private final int downloadUploadReservePercent;
+
+    public SeedingPolicy(double targetRatio,
+                         Duration seedTime,
+                         boolean seedOnlyWhileIdle,
+                         GoalAction goalAction,
+                         int downloadUploadReservePercent) {
+        this.targetRatio = Double.isFinite(targetRatio) ? Math.max(0.0, targetRatio) : 0.0;
+        this.seedTime = seedTime == null || seedTime.isNegative() ? Duration.ZERO : seedTime;
+        this.seedOnlyWhileIdle = seedOnlyWhileIdle;
+        this.goalAction = goalAction != null ? goalAction : GoalAction.PAUSE;
+        this.downloadUploadReservePercent = Math.max(0,
+                Math.min(MAX_DOWNLOAD_UPLOAD_RESERVE_PERCENT, downloadUploadReservePercent));
+    }
+
+    /** Seeds forever, as before, but still protects the upload of active downloads. */
+    public static SeedingPolicy unlimited() {
+        return new SeedingPolicy(0.0, Duration.ZERO, false, GoalAction.PAUSE,
+                DEFAULT_DOWNLOAD_UPLOAD_RESERVE_PERCENT);
+    }
+
+    public double getTargetRatio() {
+        return targetRatio;
+    }
+
+    public Duration getSeedTime() {
+        return seedTime;
+    }
+
+    public boolean isSeedOnlyWhileIdle() {
+        return seedOnlyWhileIdle;
+    }
+
+    public GoalAction getGoalAction() {
+        return goalAction;
+    }
+
+    public int getDownloadUploadReservePercent() {
+        return downloadUploadReservePercent;
+    }
+
+    public boolean hasGoal() {
+        return targetRatio > 0.0 || !seedTime.isZero();
+    }
+
+    /**
+     * Decides what a finished torrent should do.
+     *
+     * @param ratio            uploaded bytes divided by the payload size
+     * @param seeding          time since the torrent finished
+     * @param downloadsActive  whether other torrents are still downloading
+     */
+    public Verdict evaluate(double ratio, Duration seeding, boolean downloadsActive) {
+        if (targetRatio > 0.0 && ratio >= targetRatio) {
+            return Verdict.GOAL_REACHED;
+        }
+        if (!seedTime.isZero() && seeding != null && seeding.compareTo(seedTime) >= 0) {
+            return Verdict.GOAL_REACHED;
+        }
+        if (seedOnlyWhileIdle && downloadsActive) {
+            return Verdict.HOLD_WHILE_DOWNLOADING;
+        }
+        return Verdict.SEED;
+    }
+
+    /**
+     * Share ratio of a torrent.  {@code downloaded} is preferred as the
+     * denominator; torrents that were already complete on disk downloaded
+     * nothing, so their size is used instead.
+     */
+    public static double ratio(long uploaded, long downloaded, long size) {
+        long basis = downloaded > 0 ? downloaded : size;
+        if (basis <= 0) {
+            return 0.0;
+        }
+        return Math.max(0L, uploaded) / (double) basis;
+    }
+
+    /** Bytes/s of {@code uploadBudget} kept for torrents that are still downloading. */
+    public int downloadUploadReserve(int uploadBudget) {
+        if (uploadBudget <= 0) {
+            return 0;
+        }
+        return (int) ((long) uploadBudget * downloadUploadReservePercent / 100L);
+    }
+
+    /** Parses the value stored in config.json; missing fields keep their defaults. */
+    public static SeedingPolicy fromJson(Object value) {
+        if (!(value instanceof JSONObject json)) {
+            return unlimited();
+        }
+        double ratio = json.get("targetRatio") instanceof Number number ? number.doubleValue() : 0.0;
+        long minutes = json.get("seedTimeMinutes") instanceof Number number ? number.longValue() : 0L;
+        boolean idleOnly = Boolean.TRUE.equals(json.get("seedOnlyWhileIdle"));
+        GoalAction action = GoalAction.PAUSE;
+        if (json.get("goalAction") instanceof String text) {
+            try {
+                action = GoalAction.valueOf(text.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ignored) {
+                // keep the default
+            }
+        }
+        int reserve = json.get("downloadUploadReservePercent") instanceof Number number
+                ? number.intValue()
+                : DEFAULT_DOWNLOAD_UPLOAD_RESERVE_PERCENT;
+        return new SeedingPolicy(ratio, Duration.ofMinutes(Math.max(0L, minutes)), idleOnly, action, reserve);
+    }
+
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("targetRatio", targetRatio);
+        json.put("seedTimeMinutes", seedTime.toMinutes());
+        json.put("seedOnlyWhileIdle", seedOnlyWhileIdle);
+        json.put("goalAction", goalAction.name());
+        json.put("downloadUploadReservePercent", downloadUploadReservePercent);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(targetRatio > 0.0 ? String.format(Locale.ROOT, "ratio %.2f", targetRatio) : "sin ratio objetivo");
+        text.append(", ").append(seedTime.isZero() ? "sin tiempo máximo" : seedTime.toMinutes() + " min");
+        if (seedOnlyWhileIdle) {
+            text.append(", solo sin descargas activas");
+        }
+        text.append(", al cumplirse: ").append(goalAction == GoalAction.PAUSE ? "pausar" : "retirar conservando archivos");
+        return text.toString();
+    }
+}
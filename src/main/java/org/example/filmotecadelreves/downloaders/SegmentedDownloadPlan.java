@@ -0,0 +1,256 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits a direct download into byte ranges fetched over parallel
+ * connections.  The segments always partition {@code [0, totalLength)}; each
+ * one has been written from its start up to {@code position}.  A connection
+ * that runs out of work steals the second half of the segment with the most
+ * bytes left, so a slow connection does not hold the download back at the
+ * end.
+ * <p>
+ * Writers {@link #claim} the bytes they are about to write and
+ * {@link #commit} them afterwards; a steal never takes claimed bytes.  The
+ * plan is persisted in the {@link DownloadCheckpointJournal} as
+ * {@code [start, position, end]} triples so pausing or a crash only loses
+ * what was not committed.
+ */
+final class SegmentedDownloadPlan {
+
+    static final class Segment {
+        private final long start;
+        private long position;
+        private long claimedUntil;
+        private long end;
+        private boolean assigned;
+
+        private Segment(long start, long position, long end) {
+            this.start = start;
+            this.position = position;
+            this.claimedUntil = position;
+            this.end = end;
+        }
+
+        synchronized long start() {
+            return start;
+        }
+
+        synchronized long position() {
+            return position;
+        }
+
+        synchronized long end() {
+            return end;
+        }
+
+        private long remaining() {
+            return end - claimedUntil;
+        }
+    }
+
+    private final long totalLength;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private SegmentedDownloadPlan(long totalLength) {
+        this.totalLength = totalLength;
+    }
+
+    /** Evenly split plan; segments never get smaller than {@code minSegmentBytes}. */
+    static SegmentedDownloadPlan create(long totalLength, int connections, long minSegmentBytes) {
+        if (totalLength <= 0) {
+            throw new IllegalArgumentException("totalLength");
+        }
+        SegmentedDownloadPlan plan = new SegmentedDownloadPlan(totalLength);
+        int count = (int) Math.max(1L, Math.min(Math.max(1, connections), totalLength / Math.max(1L, minSegmentBytes)));
+        long size = totalLength / count;
+        long start = 0L;
+        for (int i = 0; i < count; i++) {
+            long end = i == count - 1 ? totalLength : start + size;
+            plan.segments.add(new Segment(start, start, end));
+            start = end;
+        }
+        return plan;
+    }
+
+    /** Rebuilds a persisted plan; returns {@code null} unless it exactly covers the file. */
+    static SegmentedDownloadPlan fromJson(Object value, long totalLength) {
+        if (!(value instanceof List<?> list) || list.isEmpty()) {
+            return null;
+        }
+        long[] offsets = new long[list.size() * 3];
+        int index = 0;
+        for (Object item : list) {
+            if (!(item instanceof List<?> triple) || triple.size() != 3
+                    || !(triple.get(0) instanceof Number start)
+                    || !(triple.get(1) instanceof Number position)
+                    || !(triple.get(2) instanceof Number end)) {
+                return null;
+            }
+            offsets[index++] = start.longValue();
+            offsets[index++] = position.longValue();
+            offsets[index++] = end.longValue();
+        }
+        return fromOffsets(offsets, totalLength);
+    }
+
+    /** Same as {@link #fromJson} for the flat triples of {@link #toOffsets()}. */
+    static SegmentedDownloadPlan fromOffsets(long[] offsets, long totalLength) {
+        if (offsets == null || offsets.length == 0 || offsets.length % 3 != 0 || totalLength <= 0) {
+            return null;
+        }
+        SegmentedDownloadPlan plan = new SegmentedDownloadPlan(totalLength);
+        for (int i = 0; i < offsets.length; i += 3) {
+            long start = offsets[i];
+            long position = offsets[i + 1];
+            long end = offsets[i + 2];
+            if (start > position || position > end) {
+                return null;
+            }
+            plan.segments.add(new Segment(start, position, end));
+        }
+        plan.segments.sort(Comparator.comparingLong(segment -> segment.start));
+        long expected = 0L;
+        for (Segment segment : plan.segments) {
+            if (segment.start != expected) {
+                return null;
+            }
+            expected = segment.end;
+        }
+        return expected == totalLength ? plan : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized JSONArray toJson() {
+        JSONArray array = new JSONArray();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                JSONArray triple = new JSONArray();
+                triple.add(segment.start);
+                triple.add(segment.position);
+                triple.add(segment.end);
+                array.add(triple);
+            }
+        }
+        return array;
+    }
+
+    /** Segments as consecutive {@code start, position, end} values, in file order. */
+    synchronized long[] toOffsets() {
+        long[] offsets = new long[segments.size() * 3];
+        int index = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                offsets[index++] = segment.start;
+                offsets[index++] = segment.position;
+                offsets[index++] = segment.end;
+            }
+        }
+        return offsets;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    synchronized long downloadedBytes() {
+        long done = 0L;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                done += segment.position - segment.start;
+            }
+        }
+        return done;
+    }
+
+    synchronized boolean isComplete() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                if (segment.position < segment.end) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands out work for one connection: an unassigned unfinished segment if
+     * any, otherwise the upper half of the busiest segment when at least
+     * {@code 2 * minStealBytes} are left in it.  Returns {@code null} when
+     * there is nothing worth splitting.
+     */
+    synchronized Segment acquire(long minStealBytes) {
+        Segment busiest = null;
+        long busiestRemaining = 0L;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                if (segment.position >= segment.end) {
+                    continue;
+                }
+                if (!segment.assigned) {
+                    segment.assigned = true;
+                    return segment;
+                }
+                long remaining = segment.remaining();
+                if (remaining > busiestRemaining) {
+                    busiest = segment;
+                    busiestRemaining = remaining;
+                }
+            }
+        }
+        if (busiest == null || busiestRemaining < 2 * Math.max(1L, minStealBytes)) {
+            return null;
+        }
+        Segment stolen;
+        synchronized (busiest) {
+            long remaining = busiest.remaining();
+            if (remaining < 2 * Math.max(1L, minStealBytes)) {
+                return null;
+            }
+            long middle = busiest.claimedUntil + remaining / 2;
+            stolen = new Segment(middle, middle, busiest.end);
+            busiest.end = middle;
+        }
+        stolen.assigned = true;
+        segments.add(segments.indexOf(busiest) + 1, stolen);
+        return stolen;
+    }
+
+    /** Gives a segment back so another connection can pick it up. */
+    void release(Segment segment) {
+        synchronized (segment) {
+            segment.claimedUntil = segment.position;
+            segment.assigned = false;
+        }
+    }
+
+    /**
+     * Reserves up to {@code length} bytes at the current position of
+     * {@code segment}; {@code 0} means the segment is done (possibly because
+     * its tail was stolen).
+     */
+    int claim(Segment segment, int length) {
+        synchronized (segment) {
+            int allowed = (int) Math.max(0L, Math.min(length, segment.end - segment.position));
+            segment.claimedUntil = segment.position + allowed;
+            return allowed;
+        }
+    }
+
+    /** Records {@code written} bytes at the position returned by the previous claim. */
+    void commit(Segment segment, int written) {
+        synchronized (segment) {
+            segment.position = Math.min(segment.end, segment.position + Math.max(0, written));
+            segment.claimedUntil = segment.position;
+        }
+    }
+}
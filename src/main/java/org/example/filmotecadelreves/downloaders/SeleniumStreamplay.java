@@ -3,10 +3,10 @@ package org.example.filmotecadelreves.downloaders;
 import org.example.filmotecadelreves.DirectDownloader;
 import org.example.filmotecadelreves.ManualDownloadCapable;
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
 import org.example.filmotecadelreves.moviesad.DownloadLimitManager;
 import org.example.filmotecadelreves.moviesad.ProgressDialog;
 import org.openqa.selenium.*;
-import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
@@ -14,8 +14,6 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Duration;
@@ -29,10 +27,10 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -53,6 +51,8 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
     };
     private static final Duration DEFAULT_CAPTCHA_WAIT_TIMEOUT = Duration.ofSeconds(60);
     private static final int MAX_MP4_TIMEOUTS_BEFORE_MANUAL = 2;
+    private static final Duration REFRESH_MP4_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration MP4_WAIT_TIMEOUT = Duration.ofSeconds(30);
     private static final Pattern MP4_PATTERN = Pattern.compile("(https?://[^\"'\\s>]+?\\.mp4(?:\\?[^\"'\\s>]*)?)", Pattern.CASE_INSENSITIVE);
 
     private static final int CAPTCHA_GRACE_SECONDS = 10; // Tiempo para que NoCaptcha resuelva automáticamente
@@ -61,10 +61,17 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
     private final AtomicBoolean manualFallbackLaunched = new AtomicBoolean(false);
     private final Map<String, ResumableHttpDownloadTask> activeDownloads = new ConcurrentHashMap<>();
 
+    /**
+     * Serializa la resolución del enlace y {@link #refreshDownloadUrl}: ambas guardan su
+     * navegador, driver, espera y captura en los campos de abajo.
+     */
+    private final ReentrantLock browserLock = new ReentrantLock();
+    private BrowserSessionPool.Lease browser;
+    private MediaRequestCapture mediaCapture;
     private WebDriver driver;
     private WebDriverWait wait;
-    private Thread downloadThread;
-    private boolean isNopechaInstalled = false;
+    private Future<?> resolverTask;
+    private volatile boolean isNopechaInstalled = false;
     private volatile boolean runHeadless = true;
     private Duration captchaWaitTimeout = DEFAULT_CAPTCHA_WAIT_TIMEOUT;
     private boolean currentSessionHeadless = true;
@@ -93,7 +100,10 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         isCancelled.set(false);
         manualFallbackLaunched.set(false);
 
-        downloadThread = new Thread(() -> {
+        resolverTask = DirectDownloadEngine.shared().resolve(directDownload.getId(), directDownload.getName(), () -> {
+            if (!lockBrowser()) {
+                return;
+            }
             try {
                 boolean limitReached = DownloadLimitManager.isPowvideoStreamplayLimitReached();
                 boolean manualOverride = manualMode;
@@ -101,7 +111,7 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
                 updateDownloadStatus(directDownload, "Processing", 0);
 
                 boolean requiresInteraction = manualOverride || limitReached;
-                setupBrowser(requiresInteraction);
+                setupBrowser(requiresInteraction, videoUrl);
 
                 logDebug("Abriendo enlace original: " + videoUrl);
                 driver.get(videoUrl);
@@ -133,7 +143,7 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
                             logWarn("Nopecha no resolvió el captcha. Solicitando intervención manual.");
                             if (currentSessionHeadless && runHeadless) {
                                 shutdownDriver();
-                                setupBrowser(true);
+                                setupBrowser(true, videoUrl);
                                 driver.get(videoUrl);
                                 wait.until(ExpectedConditions.jsReturnsValue("return document.readyState === 'complete';"));
                                 logPageState("Página recargada en modo visible para intervención manual");
@@ -194,11 +204,9 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
                 logException("Error en la descarga de Streamplay", e);
                 updateDownloadStatus(directDownload, "Error", 0);
             } finally {
-                shutdownDriver();
+                releaseBrowser();
             }
         });
-
-        downloadThread.start();
     }
 
     @Override
@@ -224,8 +232,8 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
     @Override
     public void cancelDownload(DescargasUI.DirectDownload download) {
         isCancelled.set(true);
-        if (downloadThread != null && downloadThread.isAlive()) {
-            downloadThread.interrupt();
+        if (resolverTask != null && !resolverTask.isDone()) {
+            resolverTask.cancel(true);
         }
         ResumableHttpDownloadTask task = activeDownloads.remove(download.getId());
         if (task != null) {
@@ -234,6 +242,44 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         updateDownloadStatus(download, "Cancelled", download.getProgress());
     }
 
+    /**
+     * Vuelve a obtener el enlace v.mp4 en segundo plano cuando el anterior caduca a mitad
+     * de la descarga. Solo se intenta si el captcha puede resolverse sin el usuario; en
+     * otro caso devuelve {@code null} y la descarga queda como "URL expirada".
+     */
+    @Override
+    public String refreshDownloadUrl(DescargasUI.DirectDownload download) {
+        String videoUrl = download.getUrl();
+        if (videoUrl == null || videoUrl.isBlank() || DownloadLimitManager.isPowvideoStreamplayLimitReached()) {
+            return null;
+        }
+        if (!lockBrowser()) {
+            return null;
+        }
+        try {
+            logDebug("Renovando enlace caducado: " + videoUrl);
+            setupBrowser(false, videoUrl);
+            driver.get(videoUrl);
+            wait.until(ExpectedConditions.jsReturnsValue("return document.readyState === 'complete';"));
+            if (isNopechaInstalled && !waitForNopechaResolution(PROVIDER_NAME)) {
+                return null;
+            }
+            sleepSilently(CAPTCHA_GRACE_SECONDS * 1000L);
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            clickProceedButton();
+            String url = awaitMp4Url(REFRESH_MP4_TIMEOUT);
+            logDebug("Enlace renovado: " + url);
+            return url;
+        } catch (WebDriverException e) {
+            logWarn("No se pudo renovar el enlace: " + e.getMessage());
+            return null;
+        } finally {
+            releaseBrowser();
+        }
+    }
+
     /**
      * Controla si el navegador debe ejecutarse en modo headless o visible.
      *
@@ -246,12 +292,8 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
     @Override
     public boolean isAvailable(String url) {
         try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            int responseCode = connection.getResponseCode();
-            return (responseCode == HttpURLConnection.HTTP_OK);
+            int responseCode = DirectHttpTransport.shared().headStatus(url, null, Duration.ofSeconds(5));
+            return (responseCode == 200);
         } catch (Exception e) {
             logError("Error verificando disponibilidad: " + e.getMessage());
             return false;
@@ -262,8 +304,31 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
      * Configura el navegador Chrome con las opciones necesarias.
      *
      * @param userInteraction Si es true, no se usa el modo headless para permitir la interacción del usuario
+     * @param playerUrl       Página del reproductor que se va a abrir; solo se aceptan los MP4 que sirva su dominio
+     */
+    private void setupBrowser(boolean userInteraction, String playerUrl) {
+        boolean headlessMode = !userInteraction && runHeadless;
+        logDebug("Configurando navegador (userInteraction=" + userInteraction + ", headless=" + headlessMode + ")");
+        BrowserSessionPool.Profile profile = new BrowserSessionPool.Profile(
+                PROVIDER_NAME, headlessMode, true, () -> createBrowserOptions(headlessMode));
+        try {
+            browser = BrowserSessionPool.shared().lease(profile);
+        } catch (SessionNotCreatedException e) {
+            logWarn("[Streamplay] Falló Chrome con extensiones. " + e.getMessage());
+            throw e;
+        }
+        driver = browser.driver();
+        wait = new WebDriverWait(driver, Duration.ofSeconds(15));
+        mediaCapture = MediaRequestCapture.start(driver, MP4_PATTERN, playerUrl);
+        currentSessionHeadless = headlessMode;
+        logDebug("Navegador listo. Headless=" + headlessMode + ", nopecha=" + isNopechaInstalled);
+    }
+
+    /**
+     * Opciones de las sesiones nuevas del grupo de navegadores; las sesiones reutilizadas
+     * ya vienen configuradas.
      */
-    private void setupBrowser(boolean userInteraction) {
+    private ChromeOptions createBrowserOptions(boolean headlessMode) {
         String resolvedDriver = ChromeExecutableLocator.resolveChromeDriver(CHROME_DRIVER_PATH);
         if (resolvedDriver != null) {
             System.setProperty("webdriver.chrome.driver", resolvedDriver);
@@ -281,8 +346,6 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         } else {
             logWarn("No se encontró el Chrome empaquetado. Se usará el navegador predeterminado del sistema.");
         }
-        boolean headlessMode = !userInteraction && runHeadless;
-        logDebug("Configurando navegador (userInteraction=" + userInteraction + ", headless=" + headlessMode + ")");
 
         Set<Path> loadedExtensions = new HashSet<>();
         boolean popupExtensionLoaded = addExtensionFromCandidates(options, VideosStreamerManager.getPopupExtensionCandidates(), loadedExtensions);
@@ -308,15 +371,7 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
             options.addArguments("--headless=new");
         }
 
-        try {
-            driver = new ChromeDriver(options);
-        } catch (SessionNotCreatedException e) {
-            logWarn("[Streamplay] Falló Chrome con extensiones. " + e.getMessage());
-            throw e;
-        }
-        wait = new WebDriverWait(driver, Duration.ofSeconds(15));
-        currentSessionHeadless = headlessMode;
-        logDebug("Navegador inicializado. Modo headless=" + headlessMode + ", popup=" + popupExtensionLoaded + ", nopecha=" + isNopechaInstalled);
+        return options;
     }
 
     private boolean addExtensionFromCandidates(ChromeOptions options, String[] candidates, Set<Path> loadedExtensions) {
@@ -454,7 +509,7 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
             // Continuar esperando
         }
 
-        if (findMp4Url(driver, MP4_PATTERN).isPresent()) {
+        if (mp4UrlSeen()) {
             logDebug("Página con enlace mp4 detectada durante la espera manual.");
             return true;
         }
@@ -462,6 +517,29 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         return false;
     }
 
+    /**
+     * Espera a que el reproductor pida el vídeo, escuchando la red con DevTools. Solo si la
+     * sesión no tiene DevTools se vuelve a buscar el enlace en la página periódicamente.
+     */
+    private String awaitMp4Url(Duration timeout) {
+        if (mediaCapture != null) {
+            return mediaCapture.await(timeout);
+        }
+        return new WebDriverWait(driver, timeout).until(webDriver -> {
+            if (isCancelled.get()) {
+                throw new CancellationException("Descarga cancelada");
+            }
+            return findMp4Url(webDriver, MP4_PATTERN).orElse(null);
+        });
+    }
+
+    private boolean mp4UrlSeen() {
+        if (mediaCapture != null) {
+            return mediaCapture.current().isPresent();
+        }
+        return findMp4Url(driver, MP4_PATTERN).isPresent();
+    }
+
     private Optional<String> findMp4Url(WebDriver webDriver, Pattern pattern) {
         String pageSource = webDriver.getPageSource();
         Matcher matcher = pattern.matcher(pageSource);
@@ -505,13 +583,7 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         while (!isCancelled.get()) {
             try {
                 logDebug("Iniciando espera activa para enlaces v.mp4... (intento " + attempt + ")");
-                WebDriverWait mp4Wait = new WebDriverWait(driver, Duration.ofSeconds(30));
-                String url = mp4Wait.until(webDriver -> {
-                    if (isCancelled.get()) {
-                        throw new CancellationException("Descarga cancelada");
-                    }
-                    return findMp4Url(webDriver, MP4_PATTERN).orElse(null);
-                });
+                String url = awaitMp4Url(MP4_WAIT_TIMEOUT);
 
                 if (url != null && !url.isBlank()) {
                     logDebug("Enlace v.mp4 encontrado en el intento " + attempt + ": " + url);
@@ -809,15 +881,37 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
         }
     }
 
+    /** Espera a que termine la otra resolución o renovación; {@code false} si se canceló mientras tanto. */
+    private boolean lockBrowser() {
+        try {
+            browserLock.lockInterruptibly();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void releaseBrowser() {
+        try {
+            shutdownDriver();
+        } finally {
+            browserLock.unlock();
+        }
+    }
+
     private void shutdownDriver() {
-        if (driver == null) {
+        if (browser == null) {
             return;
         }
         try {
-            driver.quit();
-        } catch (WebDriverException e) {
-            logWarn("Error cerrando el navegador: " + e.getMessage());
+            if (mediaCapture != null) {
+                mediaCapture.close();
+            }
+            browser.close();
         } finally {
+            mediaCapture = null;
+            browser = null;
             driver = null;
             wait = null;
         }
@@ -872,14 +966,14 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
             return;
         }
 
-        Consumer<HttpURLConnection> headerConfigurer = connection -> {
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+        DirectHttpTransport.RequestCustomizer requestCustomizer = request -> {
+            request.setHeader("User-Agent", "Mozilla/5.0");
             if (referer != null && !referer.isBlank()) {
-                connection.setRequestProperty("Referer", referer);
+                request.setHeader("Referer", referer);
             }
         };
 
-        ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(fileUrl, directDownload, headerConfigurer);
+        ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(fileUrl, directDownload, requestCustomizer, this);
         activeDownloads.put(directDownload.getId(), task);
         task.getCompletionFuture().whenComplete((ignored, error) -> activeDownloads.remove(directDownload.getId()));
         task.start();
@@ -889,12 +983,12 @@ public class SeleniumStreamplay implements DirectDownloader, ManualDownloadCapab
      * Actualiza el estado de la descarga con toda la información.
      */
     private void updateDownloadStatus(DescargasUI.DirectDownload download, String status, int progress, long downloadedBytes, double speed, long remainingTime) {
-        CompletableFuture.runAsync(() -> {
-            download.setStatus(status);
-            download.setProgress(progress);
-            download.setDownloadedBytes(downloadedBytes);
-            download.setDownloadSpeed(speed);
-            download.setRemainingTime(remainingTime);
+        ProgressEventBus.shared().post(download, d -> {
+            d.setStatus(status);
+            d.setProgress(progress);
+            d.setDownloadedBytes(downloadedBytes);
+            d.setDownloadSpeed(speed);
+            d.setRemainingTime(remainingTime);
         });
     }
 
@@ -0,0 +1,102 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the throughput history a {@link SwarmTuningPolicy} is fed with: the
+ * last observed download rate, a decaying peak and windowed averages for
+ * download and upload.  Timestamps are supplied by the caller so the same
+ * code can run against the wall clock or a simulated one.
+ */
+final class SessionRateTracker {
+
+    private static final double PEAK_RATE_DECAY = 0.85;
+
+    private final Averager downloadAverager;
+    private final Averager uploadAverager;
+    private long lastObservedDownloadRate;
+    private long peakObservedDownloadRate;
+
+    SessionRateTracker(long windowMillis) {
+        this.downloadAverager = new Averager(windowMillis);
+        this.uploadAverager = new Averager(windowMillis);
+    }
+
+    /** Records the instantaneous download rate used for the peak estimate. */
+    synchronized void observe(long downloadRate) {
+        lastObservedDownloadRate = downloadRate;
+        long previous = Math.max(0L, peakObservedDownloadRate);
+        if (downloadRate <= 0) {
+            peakObservedDownloadRate = (long) (previous * PEAK_RATE_DECAY);
+        } else if (previous <= 0) {
+            peakObservedDownloadRate = downloadRate;
+        } else {
+            peakObservedDownloadRate = (long) (previous * PEAK_RATE_DECAY
+                    + downloadRate * (1.0 - PEAK_RATE_DECAY));
+        }
+    }
+
+    /** Adds a sample to the windowed averages. */
+    synchronized void addSample(long downloadRate, long uploadRate, long nowMillis) {
+        downloadAverager.add(downloadRate, nowMillis);
+        uploadAverager.add(uploadRate, nowMillis);
+    }
+
+    /** Rate the session is expected to sustain, never below the configured limit. */
+    synchronized long expectedDownloadRate(long limitBytes, long nowMillis) {
+        long observed = Math.max(Math.max(lastObservedDownloadRate, peakObservedDownloadRate),
+                downloadAverager.average(nowMillis));
+        if (limitBytes > 0) {
+            return Math.max(limitBytes, observed);
+        }
+        return observed;
+    }
+
+    synchronized long smoothedDownloadRate(long nowMillis) {
+        return downloadAverager.average(nowMillis);
+    }
+
+    synchronized long smoothedUploadRate(long nowMillis) {
+        return uploadAverager.average(nowMillis);
+    }
+
+    private static final class Averager {
+        private final long windowMillis;
+        private final Deque<Sample> samples = new ArrayDeque<>();
+        private long total;
+
+        private Averager(long windowMillis) {
+            this.windowMillis = Math.max(1L, windowMillis);
+        }
+
+        private void add(long value, long now) {
+            long sanitized = Math.max(0L, value);
+            samples.addLast(new Sample(now, sanitized));
+            total += sanitized;
+            trim(now);
+        }
+
+        private long average(long now) {
+            trim(now);
+            if (samples.isEmpty()) {
+                return 0L;
+            }
+            return total / samples.size();
+        }
+
+        private void trim(long now) {
+            while (!samples.isEmpty()) {
+                Sample head = samples.peekFirst();
+                if (now - head.timestamp <= windowMillis) {
+                    break;
+                }
+                samples.removeFirst();
+                total -= head.value;
+            }
+        }
+    }
+
+    private record Sample(long timestamp, long value) {
+    }
+}
@@ -2,17 +2,15 @@ package org.example.filmotecadelreves.downloaders;
 
 import org.example.filmotecadelreves.DirectDownloader;
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +22,9 @@ public class StreamtapeDownloader implements DirectDownloader {
 
     private static final int SCRAPE_TIMEOUT_MS = 15_000;
     private static final int AVAILABILITY_TIMEOUT_MS = 10_000;
+    private static final DirectHttpTransport.RequestCustomizer HEADERS = request -> request
+            .setHeader("Referer", "https://streamtape.com/")
+            .setHeader("User-Agent", "Mozilla/5.0");
 
     private final Map<String, ResumableHttpDownloadTask> activeDownloads = new ConcurrentHashMap<>();
 
@@ -36,33 +37,46 @@ public class StreamtapeDownloader implements DirectDownloader {
 
     @Override
     public void download(String videoUrl, String destinationPath, DescargasUI.DirectDownload directDownload) {
-        Thread resolverThread = new Thread(() -> {
+        DirectDownloadEngine.shared().resolve(directDownload.getId(), directDownload.getName(), () -> {
             try {
                 updateDownloadStatus(directDownload, "Processing", directDownload.getProgress(), directDownload.getDownloadedBytes(), directDownload.getDownloadSpeed(), directDownload.getRemainingTime());
 
-                String downloadUrl = resolveStreamtapeDownloadUrl(videoUrl);
-                if (downloadUrl == null) {
+                DirectLink link = resolveDirectLink(videoUrl);
+                if (link == null) {
                     updateDownloadStatus(directDownload, "Error", directDownload.getProgress(), directDownload.getDownloadedBytes(), directDownload.getDownloadSpeed(), directDownload.getRemainingTime());
                     return;
                 }
 
-                this.lastResolvedUrl = downloadUrl;
-
-                Consumer<HttpURLConnection> headers = connection -> {
-                    connection.setRequestProperty("Referer", "https://streamtape.com/");
-                    connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-                };
-
-                ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(downloadUrl, directDownload, headers);
+                ResumableHttpDownloadTask task = new ResumableHttpDownloadTask(link.url(), directDownload, link.headers(), this);
                 activeDownloads.put(directDownload.getId(), task);
                 task.getCompletionFuture().whenComplete((ignored, error) -> activeDownloads.remove(directDownload.getId()));
                 task.start();
             } catch (Exception e) {
                 updateDownloadStatus(directDownload, "Error", directDownload.getProgress(), directDownload.getDownloadedBytes(), directDownload.getDownloadSpeed(), directDownload.getRemainingTime());
             }
-        }, "StreamtapeResolverThread");
-        resolverThread.setDaemon(true);
-        resolverThread.start();
+        });
+    }
+
+    /**
+     * El token de Streamtape caduca: basta con volver a leer la página del vídeo.
+     */
+    @Override
+    public String refreshDownloadUrl(DescargasUI.DirectDownload download) {
+        DirectLink link = resolveDirectLink(download.getUrl());
+        return link != null ? link.url() : null;
+    }
+
+    /**
+     * Basta con Jsoup, así que Streamtape puede compararse con otros servidores espejo.
+     */
+    @Override
+    public DirectLink resolveDirectLink(String pageUrl) {
+        String downloadUrl = resolveStreamtapeDownloadUrl(pageUrl);
+        if (downloadUrl == null) {
+            return null;
+        }
+        this.lastResolvedUrl = downloadUrl;
+        return new DirectLink(downloadUrl, HEADERS);
     }
 
     /**
@@ -120,22 +134,19 @@ public class StreamtapeDownloader implements DirectDownloader {
 
     private void updateDownloadStatus(DescargasUI.DirectDownload download, String status,
                                       int progress, long downloadedBytes, double speedMBps, long remainingSeconds) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                download.setStatus(status);
-                if (progress >= 0) {
-                    download.setProgress(progress);
-                }
-                if (downloadedBytes >= 0) {
-                    download.setDownloadedBytes(downloadedBytes);
-                }
-                if (speedMBps >= 0) {
-                    download.setDownloadSpeed(speedMBps);
-                }
-                if (remainingSeconds >= 0) {
-                    download.setRemainingTime(remainingSeconds);
-                }
-            } catch (Exception ignored) {
+        ProgressEventBus.shared().post(download, d -> {
+            d.setStatus(status);
+            if (progress >= 0) {
+                d.setProgress(progress);
+            }
+            if (downloadedBytes >= 0) {
+                d.setDownloadedBytes(downloadedBytes);
+            }
+            if (speedMBps >= 0) {
+                d.setDownloadSpeed(speedMBps);
+            }
+            if (remainingSeconds >= 0) {
+                d.setRemainingTime(remainingSeconds);
             }
         });
     }
@@ -172,11 +183,8 @@ public class StreamtapeDownloader implements DirectDownloader {
     @Override
     public boolean isAvailable(String url) {
         try {
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-            conn.setRequestMethod("HEAD");
-            conn.setConnectTimeout(AVAILABILITY_TIMEOUT_MS);
-            conn.setReadTimeout(AVAILABILITY_TIMEOUT_MS);
-            return conn.getResponseCode() == HttpURLConnection.HTTP_OK;
+            return DirectHttpTransport.shared().headStatus(url, null,
+                    Duration.ofMillis(AVAILABILITY_TIMEOUT_MS)) == 200;
         } catch (Exception e) {
             System.err.println("Error verificando disponibilidad: " + e.getMessage());
             return false;
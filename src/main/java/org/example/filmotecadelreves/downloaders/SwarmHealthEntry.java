@@ -0,0 +1,63 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+
+import java.util.Locale;
+
+/**
+ * Health of one downloading torrent as seen by the periodic swarm scan.
+ * {@code availability} is the number of distributed copies among the
+ * connected peers ({@code -1} when unknown) and {@code etaSeconds} is
+ * {@code -1} while nothing is being received.
+ */
+public record SwarmHealthEntry(TorrentState state,
+                               Verdict verdict,
+                               Remedy remedy,
+                               int seeds,
+                               int peers,
+                               double availability,
+                               long downloadRate,
+                               long remainingBytes,
+                               long etaSeconds,
+                               boolean trackerError) {
+
+    public enum Verdict {
+        HEALTHY("Saludable"),
+        /** Transferring, but no peer has the last copy of some pieces. */
+        AT_RISK("Sin copia completa"),
+        STALLED("Estancado"),
+        /** No seeds and no availability: it cannot progress. */
+        DEAD("Sin fuentes");
+
+        private final String displayName;
+
+        Verdict(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /** Action taken by the scanner on this pass. */
+    public enum Remedy {
+        NONE,
+        TRACKER_REFRESH,
+        DHT_ANNOUNCE,
+        /** Paused so the slot goes to a torrent waiting in the queue. */
+        ROTATE_OUT
+    }
+
+    public String describe() {
+        StringBuilder text = new StringBuilder(verdict.getDisplayName());
+        text.append(": ").append(seeds).append(" seeds, ").append(peers).append(" peers");
+        if (availability >= 0) {
+            text.append(String.format(Locale.ROOT, ", disponibilidad %.2f", availability));
+        }
+        if (trackerError) {
+            text.append(", error de tracker");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates every downloading torrent in one pass and decides which remedy
+ * to apply.  A torrent that stays stalled or dead across consecutive scans
+ * escalates from a tracker refresh to a DHT announce; a dead swarm is
+ * finally rotated out of its active slot when other torrents are waiting in
+ * the queue.  The scanner only decides: the downloader applies the remedies.
+ */
+final class SwarmHealthScanner {
+
+    /** Below this rate (bytes/s) a torrent with sources counts as stalled. */
+    static final long STALLED_RATE_BYTES = 1024L;
+    /** Consecutive unhealthy scans after which a dead swarm gives up its slot. */
+    static final int ROTATE_AFTER_SCANS = 3;
+
+    /** What the downloader knows about one downloading torrent at scan time. */
+    record Sample(TorrentState state,
+                  boolean hasMetadata,
+                  boolean trackerError,
+                  int seeds,
+                  int peers,
+                  double availability,
+                  long downloadRate,
+                  long remainingBytes) {
+    }
+
+    private final Map<TorrentState, Integer> unhealthyScans = new HashMap<>();
+
+    synchronized SwarmHealthSummary scan(List<Sample> samples, boolean othersWaiting, long now) {
+        List<SwarmHealthEntry> entries = new ArrayList<>(samples.size());
+        Set<TorrentState> seen = new HashSet<>();
+        long totalRate = 0L;
+        long totalRemaining = 0L;
+        for (Sample sample : samples) {
+            seen.add(sample.state());
+            SwarmHealthEntry.Verdict verdict = classify(sample);
+            SwarmHealthEntry.Remedy remedy = SwarmHealthEntry.Remedy.NONE;
+            if (verdict == SwarmHealthEntry.Verdict.STALLED || verdict == SwarmHealthEntry.Verdict.DEAD) {
+                int scans = unhealthyScans.merge(sample.state(), 1, Integer::sum);
+                remedy = remedyFor(verdict, scans, othersWaiting);
+                if (remedy == SwarmHealthEntry.Remedy.ROTATE_OUT) {
+                    unhealthyScans.remove(sample.state());
+                }
+            } else {
+                unhealthyScans.remove(sample.state());
+            }
+            long rate = Math.max(0L, sample.downloadRate());
+            long remaining = Math.max(0L, sample.remainingBytes());
+            totalRate += rate;
+            totalRemaining += remaining;
+            entries.add(new SwarmHealthEntry(sample.state(), verdict, remedy,
+                    Math.max(0, sample.seeds()), Math.max(0, sample.peers()), sample.availability(),
+                    rate, remaining, rate > 0 ? remaining / rate : -1L, sample.trackerError()));
+        }
+        unhealthyScans.keySet().retainAll(seen);
+        entries.sort(RANKING);
+        return new SwarmHealthSummary(now, entries, totalRate, totalRemaining);
+    }
+
+    static SwarmHealthEntry.Verdict classify(Sample sample) {
+        boolean noAvailability = sample.availability() >= 0 ? sample.availability() <= 0.0 : sample.peers() == 0;
+        if (sample.seeds() == 0 && noAvailability && sample.downloadRate() < STALLED_RATE_BYTES) {
+            return SwarmHealthEntry.Verdict.DEAD;
+        }
+        if (!sample.hasMetadata() && sample.peers() == 0) {
+            return SwarmHealthEntry.Verdict.DEAD;
+        }
+        if (sample.downloadRate() < STALLED_RATE_BYTES) {
+            return SwarmHealthEntry.Verdict.STALLED;
+        }
+        if (sample.seeds() == 0 && sample.availability() >= 0 && sample.availability() < 1.0) {
+            return SwarmHealthEntry.Verdict.AT_RISK;
+        }
+        return SwarmHealthEntry.Verdict.HEALTHY;
+    }
+
+    private static SwarmHealthEntry.Remedy remedyFor(SwarmHealthEntry.Verdict verdict, int scans, boolean othersWaiting) {
+        if (verdict == SwarmHealthEntry.Verdict.DEAD && scans >= ROTATE_AFTER_SCANS && othersWaiting) {
+            return SwarmHealthEntry.Remedy.ROTATE_OUT;
+        }
+        return scans % 2 == 1 ? SwarmHealthEntry.Remedy.TRACKER_REFRESH : SwarmHealthEntry.Remedy.DHT_ANNOUNCE;
+    }
+
+    /** Soonest to finish first; torrents without an estimate after them and dead swarms last. */
+    private static final Comparator<SwarmHealthEntry> RANKING = Comparator
+            .comparing((SwarmHealthEntry entry) -> entry.verdict() == SwarmHealthEntry.Verdict.DEAD)
+            .thenComparing(entry -> entry.etaSeconds() < 0)
+            .thenComparingLong(SwarmHealthEntry::etaSeconds)
+            .thenComparing(entry -> -entry.state().getPriority());
+}
@@ -0,0 +1,93 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of one swarm health scan over every downloading torrent, ranked by
+ * expected completion time (dead swarms last).  Meant for dashboards: the
+ * counters and totals summarise the whole queue at a glance.
+ */
+public record SwarmHealthSummary(long generatedAt,
+                                 List<SwarmHealthEntry> entries,
+                                 long downloadRate,
+                                 long remainingBytes) {
+
+    public SwarmHealthSummary {
+        entries = List.copyOf(entries);
+    }
+
+    public static SwarmHealthSummary empty() {
+        return new SwarmHealthSummary(0L, List.of(), 0L, 0L);
+    }
+
+    public int count(SwarmHealthEntry.Verdict verdict) {
+        int count = 0;
+        for (SwarmHealthEntry entry : entries) {
+            if (entry.verdict() == verdict) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Seconds until everything finishes at the current rate, or {@code -1}. */
+    public long estimatedSeconds() {
+        return downloadRate > 0 ? remainingBytes / downloadRate : -1L;
+    }
+
+    public String summary() {
+        if (entries.isEmpty()) {
+            return "Sin torrents descargando.";
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(entries.size()).append(" descargando: ")
+                .append(count(SwarmHealthEntry.Verdict.HEALTHY)).append(" saludables");
+        int atRisk = count(SwarmHealthEntry.Verdict.AT_RISK);
+        if (atRisk > 0) {
+            text.append(", ").append(atRisk).append(" sin copia completa");
+        }
+        int stalled = count(SwarmHealthEntry.Verdict.STALLED);
+        if (stalled > 0) {
+            text.append(", ").append(stalled).append(" estancados");
+        }
+        int dead = count(SwarmHealthEntry.Verdict.DEAD);
+        if (dead > 0) {
+            text.append(", ").append(dead).append(" sin fuentes");
+        }
+        return text.append('.').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson() {
+        JSONArray torrents = new JSONArray();
+        for (SwarmHealthEntry entry : entries) {
+            JSONObject json = new JSONObject();
+            json.put("id", entry.state().getInstanceId());
+            json.put("name", entry.state().getName());
+            json.put("verdict", entry.verdict().name());
+            json.put("remedy", entry.remedy().name());
+            json.put("seeds", entry.seeds());
+            json.put("peers", entry.peers());
+            json.put("availability", entry.availability());
+            json.put("downloadRate", entry.downloadRate());
+            json.put("remainingBytes", entry.remainingBytes());
+            json.put("etaSeconds", entry.etaSeconds());
+            json.put("trackerError", entry.trackerError());
+            torrents.add(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("generatedAt", generatedAt);
+        json.put("downloadRate", downloadRate);
+        json.put("remainingBytes", remainingBytes);
+        json.put("etaSeconds", estimatedSeconds());
+        for (SwarmHealthEntry.Verdict verdict : SwarmHealthEntry.Verdict.values()) {
+            json.put(verdict.name().toLowerCase(Locale.ROOT), count(verdict));
+        }
+        json.put("torrents", torrents);
+        return json;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.List;
+
+/**
+ * Networking heuristics used by {@link TorrentDownloader} to size the session
+ * and each torrent.  Implementations only see plain numbers so they can be
+ * driven either by the live libtorrent session or by an offline simulation;
+ * applying the returned values (and any hysteresis) is up to the caller.
+ * <p>
+ * Rates are expressed in bytes per second and limits in KiB/s, where
+ * {@code 0} means "no limit".
+ */
+public interface SwarmTuningPolicy {
+
+    /** Short name used in logs and benchmark reports. */
+    String getName();
+
+    /** Session wide connection limit used before any throughput is observed. */
+    int baseConnectionsLimit(int maxConcurrentDownloads, int downloadLimitKiB);
+
+    /** Connection attempts per second used before any throughput is observed. */
+    int baseConnectionSpeed(int maxConcurrentDownloads, int downloadLimitKiB);
+
+    /** Connection budget suggested for the given session throughput. */
+    int dynamicConnectionsFromRate(long downloadRate, long uploadRate,
+                                   int maxConcurrentDownloads, int downloadLimitKiB);
+
+    /** Periodic session tuning (connections, connection speed and request queue). */
+    SessionTuning tuneSession(SessionSample sample);
+
+    /** Periodic per-torrent tuning (connections and upload slots). */
+    TorrentTuning tuneTorrent(TorrentSample sample);
+
+    /** Estimates how many peers are needed to reach {@code targetRate}; 0 when unknown. */
+    int estimateSlotsForTargetRate(List<PeerRate> peers, long targetRate);
+
+    /** Relative weight of a torrent when splitting the download budget. */
+    double downloadDemand(long remainingBytes, long downloadRate);
+
+    /** Relative weight of a torrent when splitting the upload budget. */
+    double uploadDemand(long uploadRate, int numPeers);
+
+    /**
+     * Splits {@code budget} bytes/s between torrents proportionally to their
+     * demand.  {@code participants} counts every active torrent, including the
+     * ones with a manual limit that are not part of {@code demands}.
+     *
+     * @return the share for each entry of {@code demands}, or an empty array
+     * when there is nothing to distribute
+     */
+    int[] allocateShares(int budget, double[] demands, int participants, int minimumShare);
+
+    /** Session throughput observed by the caller. */
+    record SessionSample(long expectedRate,
+                         long smoothedDownloadRate,
+                         long smoothedUploadRate,
+                         int maxConcurrentDownloads,
+                         int downloadLimitKiB) {
+    }
+
+    record SessionTuning(int connectionsLimit, int connectionSpeed, int requestQueue) {
+    }
+
+    /** Speed of one connected peer as reported by the session. */
+    record PeerRate(int downSpeed, int upSpeed, float progress) {
+    }
+
+    /** State of an active torrent at the time of tuning. */
+    record TorrentSample(int activeTorrents,
+                         int sessionConnectionsLimit,
+                         int listPeers,
+                         int numPeers,
+                         long downloadRate,
+                         long sessionTargetRate,
+                         List<PeerRate> peers) {
+    }
+
+    record TorrentTuning(int maxConnections, int maxUploads) {
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the metadata of many torrents through a fixed number of workers
+ * instead of one thread per torrent.  Work is taken by priority (the
+ * {@link TorrentState#getPriority()} of each item) and then in submission
+ * order, so a season pack added at once hits trackers a few episodes at a
+ * time.  Resolved torrents are handed to the {@link Sink} in the order they
+ * were submitted within their batch, feeding the start queue gradually
+ * without reordering episodes.
+ * <p>
+ * Items whose info-hash is already known to the sink, resolved earlier in the
+ * same batch or being handed over by another batch are reported as
+ * duplicates.
+ *
+ * @param <T> what the resolver produces for the sink, e.g. the add parameters
+ */
+final class TorrentBatchIngestor<T> {
+
+    /** Produces the info-hash and payload of one torrent; may block on the network. */
+    @FunctionalInterface
+    interface Resolver<T> {
+        Resolved<T> resolve(TorrentState state) throws Exception;
+    }
+
+    /** {@code infoHash} may be {@code null} when it cannot be known before starting. */
+    record Resolved<T>(String infoHash, T payload) {
+    }
+
+    interface Sink<T> {
+        /** Whether another torrent with this info-hash is already queued or running. */
+        boolean isKnown(String infoHash, TorrentState state);
+
+        void accept(TorrentState state, String infoHash, T payload);
+
+        void duplicate(TorrentState state, String infoHash);
+
+        void reject(TorrentState state, String reason);
+    }
+
+    /** Called once per item, in submission order, after it has been handed over. */
+    @FunctionalInterface
+    interface Progress {
+        void onItemDone(TorrentState state, int done, int total);
+    }
+
+    private final Sink<T> sink;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> claimedHashes = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    TorrentBatchIngestor(int workers, Sink<T> sink) {
+        this.sink = sink;
+        int threads = Math.max(1, workers);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "torrent-metadata-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    CompletableFuture<TorrentBatchReport> submit(List<TorrentState> states, Resolver<T> resolver, Progress progress) {
+        Batch batch = new Batch(UUID.randomUUID().toString(), states, resolver, progress);
+        if (batch.slots.isEmpty()) {
+            batch.future.complete(batch.report());
+            return batch.future;
+        }
+        Set<String> seenSources = new HashSet<>();
+        for (Slot slot : batch.slots) {
+            String source = slot.state.getTorrentSource();
+            String key = source != null ? source.trim().toLowerCase(Locale.ROOT) : "";
+            if (!key.isEmpty() && !seenSources.add(key)) {
+                // Same link twice in the batch: no need to fetch it again.
+                slot.duplicate = true;
+                slot.done = true;
+                continue;
+            }
+            executor.execute(new ResolveTask(batch, slot, sequence.incrementAndGet()));
+        }
+        batch.drain();
+        return batch.future;
+    }
+
+    int getQueuedItems() {
+        return executor.getQueue().size();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class Batch {
+        private final String id;
+        private final List<Slot> slots = new ArrayList<>();
+        private final Resolver<T> resolver;
+        private final Progress progress;
+        private final CompletableFuture<TorrentBatchReport> future = new CompletableFuture<>();
+        private final Set<String> batchHashes = new HashSet<>();
+        private final List<TorrentState> queued = new ArrayList<>();
+        private final List<TorrentState> duplicates = new ArrayList<>();
+        private final Map<TorrentState, String> failures = new LinkedHashMap<>();
+        private int cursor;
+
+        private Batch(String id, List<TorrentState> states, Resolver<T> resolver, Progress progress) {
+            this.id = id;
+            this.resolver = resolver;
+            this.progress = progress;
+            if (states != null) {
+                for (TorrentState state : states) {
+                    if (state != null) {
+                        slots.add(new Slot(state));
+                    }
+                }
+            }
+        }
+
+        /** Hands over every finished slot at the head of the batch, keeping submission order. */
+        private void drain() {
+            synchronized (this) {
+                while (cursor < slots.size() && slots.get(cursor).done) {
+                    Slot slot = slots.get(cursor++);
+                    handOver(slot);
+                    if (progress != null) {
+                        progress.onItemDone(slot.state, cursor, slots.size());
+                    }
+                }
+                if (cursor < slots.size() || future.isDone()) {
+                    return;
+                }
+            }
+            future.complete(report());
+        }
+
+        private void handOver(Slot slot) {
+            if (slot.error != null) {
+                failures.put(slot.state, slot.error);
+                sink.reject(slot.state, slot.error);
+                return;
+            }
+            String hash = slot.infoHash;
+            boolean duplicate = slot.duplicate;
+            boolean claimed = false;
+            if (!duplicate && hash != null) {
+                if (!batchHashes.add(hash) || !claimedHashes.add(hash)) {
+                    duplicate = true;
+                } else {
+                    claimed = true;
+                    duplicate = sink.isKnown(hash, slot.state);
+                }
+            }
+            try {
+                if (duplicate) {
+                    duplicates.add(slot.state);
+                    sink.duplicate(slot.state, hash);
+                } else {
+                    sink.accept(slot.state, hash, slot.payload);
+                    queued.add(slot.state);
+                }
+            } finally {
+                if (claimed) {
+                    claimedHashes.remove(hash);
+                }
+            }
+        }
+
+        private synchronized TorrentBatchReport report() {
+            return new TorrentBatchReport(id, slots.size(), queued, duplicates, failures);
+        }
+    }
+
+    private final class Slot {
+        private final TorrentState state;
+        private volatile boolean done;
+        private volatile boolean duplicate;
+        private volatile String infoHash;
+        private volatile T payload;
+        private volatile String error;
+
+        private Slot(TorrentState state) {
+            this.state = state;
+        }
+    }
+
+    private final class ResolveTask implements Runnable, Comparable<ResolveTask> {
+        private final Batch batch;
+        private final Slot slot;
+        private final int priority;
+        private final long order;
+
+        private ResolveTask(Batch batch, Slot slot, long order) {
+            this.batch = batch;
+            this.slot = slot;
+            this.priority = slot.state.getPriority();
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Resolved<T> resolved = batch.resolver.resolve(slot.state);
+                if (resolved == null) {
+                    slot.error = "No se pudieron obtener los metadatos del torrent.";
+                } else {
+                    slot.infoHash = resolved.infoHash() != null
+                            ? resolved.infoHash().toLowerCase(Locale.ROOT)
+                            : null;
+                    slot.payload = resolved.payload();
+                }
+            } catch (Exception e) {
+                slot.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            } finally {
+                slot.done = true;
+                batch.drain();
+            }
+        }
+
+        @Override
+        public int compareTo(ResolveTask other) {
+            int byPriority = Integer.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
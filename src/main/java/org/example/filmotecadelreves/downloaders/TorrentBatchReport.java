@@ -0,0 +1,36 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of {@link TorrentDownloader#addTorrents}: which torrents reached the
+ * start queue, which were dropped because the same info-hash was already
+ * queued, running or earlier in the batch, and which could not be resolved.
+ */
+public record TorrentBatchReport(String batchId,
+                                 int submitted,
+                                 List<TorrentState> queued,
+                                 List<TorrentState> duplicates,
+                                 Map<TorrentState, String> failures) {
+
+    public TorrentBatchReport {
+        queued = List.copyOf(queued);
+        duplicates = List.copyOf(duplicates);
+        failures = Map.copyOf(failures);
+    }
+
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        text.append(queued.size()).append(" de ").append(submitted).append(" torrents añadidos a la cola");
+        if (!duplicates.isEmpty()) {
+            text.append(", ").append(duplicates.size()).append(" duplicados");
+        }
+        if (!failures.isEmpty()) {
+            text.append(", ").append(failures.size()).append(" con error");
+        }
+        return text.append('.').toString();
+    }
+}
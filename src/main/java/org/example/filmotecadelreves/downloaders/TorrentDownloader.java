@@ -1,10 +1,14 @@
 package org.example.filmotecadelreves.downloaders;
 
 import com.frostwire.jlibtorrent.*;
+import org.example.filmotecadelreves.UI.ProgressEventBus;
+import org.example.filmotecadelreves.library.LibraryCatalogRegistrar;
+import org.example.filmotecadelreves.library.LibraryEntry;
 import org.example.filmotecadelreves.moviesad.TorrentState;
 
 import com.frostwire.jlibtorrent.alerts.Alert;
 import com.frostwire.jlibtorrent.alerts.MetadataReceivedAlert;
+import com.frostwire.jlibtorrent.alerts.PeerErrorAlert;
 import com.frostwire.jlibtorrent.alerts.StateChangedAlert;
 import com.frostwire.jlibtorrent.alerts.StateUpdateAlert;
 import com.frostwire.jlibtorrent.alerts.TorrentErrorAlert;
@@ -21,7 +25,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.DirectoryStream;
-import java.nio.file.FileStore;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,9 +33,11 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -40,6 +45,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -48,12 +54,12 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
+import java.util.regex.Pattern;
 
 /**
  * Minimal torrent downloader built on top of jlibtorrent.
@@ -77,6 +83,22 @@ public class TorrentDownloader {
         void onDebugMessage(String message, Level level);
 
         void onTorrentStatusUpdate(TorrentState torrentState, TorrentStats stats);
+
+        /** Called after each periodic swarm health scan. */
+        default void onSwarmHealthUpdate(SwarmHealthSummary summary) {
+        }
+    }
+
+    /** Downloads a remote .torrent file; lets callers apply their own mirrors or cookies. */
+    @FunctionalInterface
+    public interface TorrentFileFetcher {
+        Path fetch(String url, String suggestedName) throws IOException;
+    }
+
+    /** Reports each item of a batch once it has been queued, discarded or failed. */
+    @FunctionalInterface
+    public interface BatchProgressListener {
+        void onItemDone(TorrentState torrentState, int done, int total);
     }
 
     private static final Logger LOGGER = Logger.getLogger(TorrentDownloader.class.getName());
@@ -96,21 +118,29 @@ public class TorrentDownloader {
     private static final Duration DHT_PEER_FETCH_INTERVAL = Duration.ofSeconds(40);
     private static final long SLOW_PEER_SAMPLE_GRACE_MS = Duration.ofSeconds(30).toMillis();
     private static final long SLOW_PEER_BACKOFF_MS = Duration.ofMinutes(5).toMillis();
+    private static final Duration PEER_REPUTATION_SAVE_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration SESSION_STATE_SAVE_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration DISK_SPACE_RETRY_INTERVAL = Duration.ofSeconds(15);
+    private static final Duration SEEDING_POLICY_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration SWARM_HEALTH_SCAN_INTERVAL = Duration.ofSeconds(30);
+    /** How long a dead swarm stays out of its slot before it is tried again. */
+    private static final Duration ROTATED_RETRY_INTERVAL = Duration.ofMinutes(20);
+    private static final int POST_PROCESS_WORKERS = 2;
+    private static final int POST_PROCESS_QUEUE_CAPACITY = 32;
+    /** Metadata fetches (remote .torrent files) running at the same time. */
+    private static final int METADATA_RESOLVE_WORKERS = 3;
+    private static final Pattern SEASON_EPISODE_PATTERN = Pattern.compile("(?i)S\\d{1,2}E\\d{1,2}");
     private static final int MINIMUM_ACTIVE_PEERS = 6;
     private static final int MINIMUM_ACTIVE_SEEDS = 1;
     private static final long STALLED_DOWNLOAD_RATE_BYTES = 64L * 1024L;
     private static final long STALLED_UPLOAD_RATE_BYTES = 16L * 1024L;
     private static final int STALLED_CHECKS_THRESHOLD = 3;
     private static final int LOW_DHT_NODE_THRESHOLD = 12;
-    private static final int MAX_DYNAMIC_CONNECTIONS = 2500;
-    private static final int MIN_DYNAMIC_REQUEST_QUEUE = 512;
-    private static final int MAX_DYNAMIC_REQUEST_QUEUE = 4000;
+    private static final int MAX_DYNAMIC_CONNECTIONS = DefaultSwarmTuningPolicy.MAX_DYNAMIC_CONNECTIONS;
     private static final int MIN_AUTO_DOWNLOAD_LIMIT = 128 * 1024;
     private static final int MIN_AUTO_UPLOAD_LIMIT = 64 * 1024;
     private static final int MAX_EXTRA_DHT_CONNECTIONS = 12;
     private static final int MIN_PEER_SAMPLE_SPEED_BYTES = 8 * 1024;
-    private static final int MIN_PEER_SAMPLE_COUNT = 2;
-    private static final double PEAK_RATE_DECAY = 0.85;
     private static final int MAX_LOG_ENTRIES_PER_TORRENT = 250;
     private static final String[] DEFAULT_TRACKERS = {
             "udp://tracker.opentrackr.org:1337/announce",
@@ -171,6 +201,13 @@ public class TorrentDownloader {
     private boolean extractArchives;
     private int downloadSpeedLimit;
     private int uploadSpeedLimit;
+    private int configuredMaxConcurrentDownloads;
+    private int configuredDownloadSpeedLimit;
+    private int configuredUploadSpeedLimit;
+    private int scheduledMaxActiveTorrents;
+    private int scheduledDownloadSpeedLimit;
+    private int scheduledUploadSpeedLimit;
+    private int ceilingDownloadSpeedLimit;
     private boolean autoStartDownloads;
     private volatile long lastSessionAutotuneNanos;
     private volatile int lastAutoConnectionsLimit;
@@ -179,10 +216,25 @@ public class TorrentDownloader {
     private final AtomicInteger consecutiveLowDhtSamples;
     private volatile long lastDhtBootstrapTimeMs;
     private volatile long lastBandwidthRebalanceNanos;
-    private volatile long lastObservedDownloadRate;
-    private final AtomicLong peakObservedDownloadRate;
-    private final ThroughputAverager sessionDownloadThroughput;
-    private final ThroughputAverager sessionUploadThroughput;
+    private final SessionRateTracker sessionRates;
+    private volatile SwarmTuningPolicy tuningPolicy;
+    private final PeerReputationStore peerReputation;
+    private final TorrentMetadataCache metadataCache;
+    private final TorrentLogArchive logArchive;
+    private final TorrentSessionStateStore sessionStateStore;
+    private final PostDownloadPipeline postDownloadPipeline;
+    private volatile Path movieLibraryDestination;
+    private volatile Path seriesLibraryDestination;
+    private final DiskReservationLedger diskLedger;
+    private final DiskReservationLedger.LowSpaceListener lowSpaceListener;
+    private final List<PendingTorrent> deferredForSpace;
+    private volatile long lastDiskSpaceRetryNanos;
+    private volatile SeedingPolicy seedingPolicy;
+    private final TorrentBatchIngestor<Supplier<AddTorrentParams>> batchIngestor;
+    private volatile long lastSeedingPolicyNanos;
+    private final SwarmHealthScanner healthScanner;
+    private volatile SwarmHealthSummary swarmHealth;
+    private volatile long lastSwarmHealthScanNanos;
 
 
     /**
@@ -196,10 +248,11 @@ public class TorrentDownloader {
                               int uploadSpeedLimit,
                               boolean verboseLogging,
                               boolean consoleLogging) {
-        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+        this.configuredMaxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
         this.extractArchives = extractArchives;
-        this.downloadSpeedLimit = Math.max(0, downloadSpeedLimit);
-        this.uploadSpeedLimit = Math.max(0, uploadSpeedLimit);
+        this.configuredDownloadSpeedLimit = Math.max(0, downloadSpeedLimit);
+        this.configuredUploadSpeedLimit = Math.max(0, uploadSpeedLimit);
+        recomputeEffectiveLimitsUnlocked();
         this.autoStartDownloads = true;
 
         configureLogging(verboseLogging, consoleLogging);
@@ -222,10 +275,27 @@ public class TorrentDownloader {
         this.consecutiveLowDhtSamples = new AtomicInteger(0);
         this.lastDhtBootstrapTimeMs = 0L;
         this.lastBandwidthRebalanceNanos = 0L;
-        this.lastObservedDownloadRate = 0L;
-        this.peakObservedDownloadRate = new AtomicLong(0L);
-        this.sessionDownloadThroughput = new ThroughputAverager(SESSION_THROUGHPUT_WINDOW.toMillis());
-        this.sessionUploadThroughput = new ThroughputAverager(SESSION_THROUGHPUT_WINDOW.toMillis());
+        this.sessionRates = new SessionRateTracker(SESSION_THROUGHPUT_WINDOW.toMillis());
+        this.tuningPolicy = new DefaultSwarmTuningPolicy();
+        this.peerReputation = new PeerReputationStore(PeerReputationStore.defaultPath());
+        this.metadataCache = new TorrentMetadataCache(TorrentMetadataCache.defaultDirectory(),
+                TorrentMetadataCache.DEFAULT_MAX_BYTES);
+        this.logArchive = new TorrentLogArchive(TorrentLogArchive.defaultDirectory(),
+                TorrentLogArchive.DEFAULT_MAX_SEGMENT_BYTES, TorrentLogArchive.DEFAULT_MAX_SEGMENTS);
+        this.postDownloadPipeline = new PostDownloadPipeline(POST_PROCESS_WORKERS, POST_PROCESS_QUEUE_CAPACITY,
+                new LibraryCatalogRegistrar()::register);
+        this.diskLedger = DiskReservationLedger.getInstance();
+        this.lowSpaceListener = this::onPredictedLowSpace;
+        this.diskLedger.addListener(lowSpaceListener);
+        this.deferredForSpace = new ArrayList<>();
+        this.lastDiskSpaceRetryNanos = 0L;
+        this.seedingPolicy = SeedingPolicy.unlimited();
+        this.batchIngestor = new TorrentBatchIngestor<>(METADATA_RESOLVE_WORKERS, new BatchSink());
+        this.lastSeedingPolicyNanos = 0L;
+        this.healthScanner = new SwarmHealthScanner();
+        this.swarmHealth = SwarmHealthSummary.empty();
+        this.lastSwarmHealthScanNanos = 0L;
+        this.sessionStateStore = new TorrentSessionStateStore(TorrentSessionStateStore.defaultPath());
 
         startSession();
         this.running = true;
@@ -233,6 +303,14 @@ public class TorrentDownloader {
                 STATUS_UPDATE_PERIOD_SECONDS,
                 STATUS_UPDATE_PERIOD_SECONDS,
                 TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(peerReputation::save,
+                PEER_REPUTATION_SAVE_INTERVAL.toSeconds(),
+                PEER_REPUTATION_SAVE_INTERVAL.toSeconds(),
+                TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::persistSessionState,
+                SESSION_STATE_SAVE_INTERVAL.toSeconds(),
+                SESSION_STATE_SAVE_INTERVAL.toSeconds(),
+                TimeUnit.SECONDS);
 
         log(Level.INFO, "TorrentDownloader inicializado con soporte para "
                 + this.maxConcurrentDownloads + " descargas simultáneas.");
@@ -269,7 +347,26 @@ public class TorrentDownloader {
     private void startSession() {
         SettingsPack settings = buildDefaultSettings();
         sessionManager.addListener(alertListener);
-        sessionManager.start(new SessionParams(settings));
+        byte[] storedState = sessionStateStore.load();
+        SessionParams params = null;
+        if (storedState != null) {
+            try {
+                params = new SessionParams(storedState);
+            } catch (Throwable t) {
+                log(Level.WARNING, "No se pudo leer el estado guardado de la sesión: " + t.getMessage());
+            }
+        }
+        if (params != null) {
+            sessionManager.start(params);
+            try {
+                sessionManager.applySettings(settings);
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo aplicar la configuración a la sesión restaurada: " + t.getMessage());
+            }
+            log(Level.INFO, "Estado de sesión (DHT) restaurado desde " + TorrentSessionStateStore.defaultPath() + ".");
+        } else {
+            sessionManager.start(new SessionParams(settings));
+        }
         sessionManager.resume();
         try {
             sessionManager.startDht();
@@ -350,25 +447,11 @@ public class TorrentDownloader {
     }
 
     private int computeConnectionsLimit() {
-        int active = Math.max(1, maxConcurrentDownloads);
-        int base = active * 80;
-        if (downloadSpeedLimit > 0) {
-            base = Math.max(base, (downloadSpeedLimit / 64) * 40);
-        } else {
-            base = Math.max(base, 600);
-        }
-        return clamp(base, 150, 2000);
+        return tuningPolicy.baseConnectionsLimit(maxConcurrentDownloads, downloadSpeedLimit);
     }
 
     private int computeConnectionSpeed() {
-        int active = Math.max(1, maxConcurrentDownloads);
-        int base = active * 30;
-        if (downloadSpeedLimit > 0) {
-            base = Math.max(base, Math.min(400, downloadSpeedLimit / 16));
-        } else {
-            base = Math.max(base, 80);
-        }
-        return clamp(base, 30, 400);
+        return tuningPolicy.baseConnectionSpeed(maxConcurrentDownloads, downloadSpeedLimit);
     }
 
     private static int clamp(int value, int min, int max) {
@@ -407,20 +490,170 @@ public class TorrentDownloader {
                               int uploadSpeedLimit,
                               boolean autoStartDownloads) {
         synchronized (lock) {
-            this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+            this.configuredMaxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
             this.extractArchives = extractArchives;
-            this.downloadSpeedLimit = Math.max(0, downloadSpeedLimit);
-            this.uploadSpeedLimit = Math.max(0, uploadSpeedLimit);
+            this.configuredDownloadSpeedLimit = Math.max(0, downloadSpeedLimit);
+            this.configuredUploadSpeedLimit = Math.max(0, uploadSpeedLimit);
             this.autoStartDownloads = autoStartDownloads;
+            recomputeEffectiveLimitsUnlocked();
         }
         applySessionSettings();
         lastBandwidthRebalanceNanos = 0L;
-        if (autoStartDownloads) {
-            startNextIfPossible();
-        }
+        startNextIfPossible();
         log(Level.INFO, "Configuración del TorrentDownloader actualizada.");
     }
 
+    /**
+     * Applies the caps of the active bandwidth schedule slot on top of the
+     * configured limits.  Values are KiB/s (or torrents) and {@code 0} removes
+     * the corresponding restriction.
+     */
+    public void applyScheduledLimits(int downloadLimitKiB, int uploadLimitKiB, int maxActiveTorrents) {
+        synchronized (lock) {
+            this.scheduledDownloadSpeedLimit = Math.max(0, downloadLimitKiB);
+            this.scheduledUploadSpeedLimit = Math.max(0, uploadLimitKiB);
+            this.scheduledMaxActiveTorrents = Math.max(0, maxActiveTorrents);
+            recomputeEffectiveLimitsUnlocked();
+        }
+        if (!running) {
+            return;
+        }
+        applySessionSettings();
+        lastBandwidthRebalanceNanos = 0L;
+        startNextIfPossible();
+        log(Level.INFO, "Límites del horario aplicados: bajada "
+                + (downloadSpeedLimit > 0 ? downloadSpeedLimit + " KiB/s" : "sin límite")
+                + ", subida " + (uploadSpeedLimit > 0 ? uploadSpeedLimit + " KiB/s" : "sin límite")
+                + ", " + maxConcurrentDownloads + " torrents activos.");
+    }
+
+    /**
+     * Applies the torrent share of the combined download ceiling (KiB/s) on
+     * top of the configured and scheduled limits; {@code 0} removes it.  Only
+     * the session rate limit is touched, so it is cheap to call often.
+     */
+    public void applyCeilingLimit(int downloadLimitKiB) {
+        boolean changed;
+        synchronized (lock) {
+            int sanitized = Math.max(0, downloadLimitKiB);
+            changed = sanitized != ceilingDownloadSpeedLimit;
+            this.ceilingDownloadSpeedLimit = sanitized;
+            recomputeEffectiveLimitsUnlocked();
+        }
+        if (changed && running && sessionManager.isRunning()) {
+            applyRateLimits();
+        }
+    }
+
+    /** Current download rate of the whole session in bytes/s. */
+    public long getSessionDownloadRate() {
+        if (!running || !sessionManager.isRunning()) {
+            return 0L;
+        }
+        SessionStats stats = sessionManager.stats();
+        return stats != null ? Math.max(0L, stats.downloadRate()) : 0L;
+    }
+
+    /** Whether any torrent is still downloading, as opposed to paused or seeding. */
+    public boolean hasDownloadingTorrents() {
+        for (ManagedTorrent managed : managedByHash.values()) {
+            if (!managed.completed && isTorrentActive(managed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recomputeEffectiveLimitsUnlocked() {
+        this.maxConcurrentDownloads = scheduledMaxActiveTorrents > 0
+                ? Math.max(1, Math.min(configuredMaxConcurrentDownloads, scheduledMaxActiveTorrents))
+                : configuredMaxConcurrentDownloads;
+        this.downloadSpeedLimit = BandwidthScheduler.combineLimits(
+                BandwidthScheduler.combineLimits(configuredDownloadSpeedLimit, scheduledDownloadSpeedLimit),
+                ceilingDownloadSpeedLimit);
+        this.uploadSpeedLimit = BandwidthScheduler.combineLimits(configuredUploadSpeedLimit, scheduledUploadSpeedLimit);
+    }
+
+    /**
+     * Pauses the lowest priority torrents when the schedule reduces the number
+     * of active downloads and resumes them once the limit grows again.
+     */
+    private void enforceActiveTorrentLimit() {
+        if (!running) {
+            return;
+        }
+        synchronized (lock) {
+            List<ManagedTorrent> active = new ArrayList<>();
+            List<ManagedTorrent> held = new ArrayList<>();
+            for (ManagedTorrent managed : managedByState.values()) {
+                if (managed.completed || !managed.handle.isValid()) {
+                    continue;
+                }
+                if (!managed.paused) {
+                    active.add(managed);
+                } else if (managed.schedulePaused) {
+                    held.add(managed);
+                }
+            }
+            Comparator<ManagedTorrent> byPriority = Comparator.comparingInt(m -> m.state.getPriority());
+            if (active.size() > maxConcurrentDownloads) {
+                active.sort(byPriority);
+                int excess = active.size() - maxConcurrentDownloads;
+                for (int i = 0; i < excess; i++) {
+                    ManagedTorrent managed = active.get(i);
+                    try {
+                        managed.handle.pause();
+                    } catch (Throwable t) {
+                        log(Level.FINEST, "No se pudo pausar el torrent por horario: " + t.getMessage());
+                        continue;
+                    }
+                    managed.paused = true;
+                    managed.schedulePaused = true;
+                    managed.state.setStatus("En espera (horario)");
+                    recordEvent(managed.state, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
+                            "Descarga pausada por el horario de ancho de banda.");
+                }
+            } else if (!held.isEmpty()) {
+                held.sort(byPriority.reversed());
+                int free = maxConcurrentDownloads - active.size();
+                for (int i = 0; i < held.size() && i < free; i++) {
+                    ManagedTorrent managed = held.get(i);
+                    try {
+                        managed.handle.resume();
+                    } catch (Throwable t) {
+                        log(Level.FINEST, "No se pudo reanudar el torrent por horario: " + t.getMessage());
+                        continue;
+                    }
+                    managed.paused = false;
+                    managed.schedulePaused = false;
+                    managed.state.setStatus("Descargando");
+                    recordEvent(managed.state, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
+                            "Descarga reanudada por el horario de ancho de banda.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Folders configured for torrent movies and series.  Completed torrents
+     * are moved into the matching one by the post-download pipeline.
+     */
+    public void setLibraryDestinations(String movieDestination, String seriesDestination) {
+        this.movieLibraryDestination = toDestination(movieDestination);
+        this.seriesLibraryDestination = toDestination(seriesDestination);
+    }
+
+    private static Path toDestination(String destination) {
+        if (destination == null || destination.isBlank()) {
+            return null;
+        }
+        try {
+            return Paths.get(destination).toAbsolutePath().normalize();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
     public void setAutoStartDownloads(boolean autoStartDownloads) {
         synchronized (lock) {
             this.autoStartDownloads = autoStartDownloads;
@@ -430,6 +663,38 @@ public class TorrentDownloader {
         }
     }
 
+    /** Replaces the networking heuristics used by the status loop. */
+    public void setTuningPolicy(SwarmTuningPolicy tuningPolicy) {
+        this.tuningPolicy = Objects.requireNonNull(tuningPolicy, "tuningPolicy");
+        lastSessionAutotuneNanos = 0L;
+        lastBandwidthRebalanceNanos = 0L;
+        log(Level.INFO, "Política de ajuste de red: " + tuningPolicy.getName());
+    }
+
+    public SwarmTuningPolicy getTuningPolicy() {
+        return tuningPolicy;
+    }
+
+    /**
+     * Seeding goals applied to finished torrents by the status loop.  Torrents
+     * the policy already stopped are re-evaluated against the new goals.
+     */
+    public void setSeedingPolicy(SeedingPolicy seedingPolicy) {
+        this.seedingPolicy = seedingPolicy != null ? seedingPolicy : SeedingPolicy.unlimited();
+        synchronized (lock) {
+            for (ManagedTorrent managed : managedByState.values()) {
+                managed.seedingOverride = false;
+            }
+        }
+        lastSeedingPolicyNanos = 0L;
+        lastBandwidthRebalanceNanos = 0L;
+        log(Level.INFO, "Política de compartición: " + this.seedingPolicy);
+    }
+
+    public SeedingPolicy getSeedingPolicy() {
+        return seedingPolicy;
+    }
+
     /** Ajusta la prioridad del torrent y reordena la cola de inicio. */
     public void reprioritize(TorrentState torrentState, int priority) {
         if (torrentState == null) {
@@ -539,7 +804,32 @@ public class TorrentDownloader {
             return Collections.emptyList();
         }
         TorrentLogBook book = logsByState.get(torrentState);
-        return book != null ? book.snapshot() : Collections.emptyList();
+        if (book != null) {
+            return book.snapshot();
+        }
+        // Nothing logged since start-up: show the end of the archived history.
+        return logArchive.readPage(torrentState.getInstanceId(), null, MAX_LOG_ENTRIES_PER_TORRENT).entries();
+    }
+
+    /**
+     * Pages through the archived log of a torrent, newest page first.  Pass
+     * {@code null} to get the latest entries and the returned
+     * {@link TorrentLogPage#olderCursor()} to go further back.
+     */
+    public TorrentLogPage getTorrentLogPage(TorrentState torrentState, TorrentLogPage.Cursor before, int limit) {
+        if (torrentState == null) {
+            return TorrentLogPage.empty();
+        }
+        if (before == null) {
+            // Make the events logged a moment ago visible to the reader.
+            logArchive.flush(1, TimeUnit.SECONDS);
+        }
+        return logArchive.readPage(torrentState.getInstanceId(), before, limit);
+    }
+
+    /** Latest swarm health scan of the downloading torrents, ranked by expected completion. */
+    public SwarmHealthSummary getSwarmHealth() {
+        return swarmHealth;
     }
 
     public TorrentHealthReport runHealthCheck(TorrentState torrentState) {
@@ -689,22 +979,120 @@ public class TorrentDownloader {
             notifyError(torrentState, "No se especificó la fuente del torrent.");
             return;
         }
+        addTorrents(List.of(torrentState), null, null);
+    }
 
-        if (source.startsWith("magnet:")) {
-            enqueueTorrent(new PendingTorrent(torrentState,
-                    () -> buildParamsFromMagnet(source, torrentState)));
-        } else if (source.startsWith("http://") || source.startsWith("https://")) {
-            workerExecutor.submit(() -> {
-                try {
-                    Path file = downloadRemoteTorrent(source, torrentState.getName());
-                    enqueueTorrent(new PendingTorrent(torrentState,
-                            () -> buildParamsFromFile(file, torrentState)));
-                } catch (IOException e) {
-                    notifyError(torrentState, "Error descargando el archivo torrent: " + e.getMessage());
+    /** Same as {@link #addTorrents(List, TorrentFileFetcher, BatchProgressListener)} with the default fetcher. */
+    public CompletableFuture<TorrentBatchReport> addTorrents(List<TorrentState> torrentStates) {
+        return addTorrents(torrentStates, null, null);
+    }
+
+    /**
+     * Adds many torrents at once (a season pack, the download basket or the
+     * torrents restored at start-up).  Magnets, .torrent URLs and local files
+     * are resolved by a small pool of workers, so a hundred episodes no longer
+     * mean a hundred threads hitting the trackers.  Torrents whose info-hash is
+     * already queued or running are discarded, and the rest reach the start
+     * queue in the order given.
+     *
+     * @param fetcher  downloads remote .torrent files; {@code null} uses a plain HTTP request
+     * @param progress notified as each item is handed over; may be {@code null}
+     */
+    public CompletableFuture<TorrentBatchReport> addTorrents(List<TorrentState> torrentStates,
+                                                            TorrentFileFetcher fetcher,
+                                                            BatchProgressListener progress) {
+        List<TorrentState> states = torrentStates != null ? torrentStates : List.of();
+        for (TorrentState state : states) {
+            if (state != null) {
+                recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
+                        "Torrent en espera de obtener sus metadatos.");
+            }
+        }
+        CompletableFuture<TorrentBatchReport> result = batchIngestor.submit(states,
+                state -> resolveBatchSource(state, fetcher),
+                progress != null ? progress::onItemDone : null);
+        if (states.size() > 1) {
+            result.thenAccept(report -> log(Level.INFO, "Lote de torrents procesado: " + report.summary()));
+        }
+        return result;
+    }
+
+    private TorrentBatchIngestor.Resolved<Supplier<AddTorrentParams>> resolveBatchSource(
+            TorrentState state, TorrentFileFetcher fetcher) throws IOException {
+        String source = state.getTorrentSource();
+        if (source == null || source.isBlank()) {
+            throw new IOException("No se especificó la fuente del torrent.");
+        }
+        String trimmed = source.trim();
+        if (trimmed.startsWith("magnet:")) {
+            return new TorrentBatchIngestor.Resolved<>(TorrentMetadataCache.infoHashFromMagnet(trimmed),
+                    () -> buildParamsFromMagnet(trimmed, state));
+        }
+        TorrentInfo info;
+        if (trimmed.startsWith("http://") || trimmed.startsWith("https://")) {
+            info = loadCachedTorrent(metadataCache.hashForUrl(trimmed));
+            if (info != null) {
+                recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
+                        "Archivo torrent recuperado de la caché de metadatos.");
+            } else {
+                Path file = fetcher != null
+                        ? fetcher.fetch(trimmed, state.getName())
+                        : downloadRemoteTorrent(trimmed, state.getName());
+                if (file == null) {
+                    throw new IOException("No se pudo descargar el archivo torrent.");
                 }
-            });
+                info = new TorrentInfo(file.toFile());
+                cacheTorrentInfo(info, trimmed);
+            }
         } else {
-            downloadTorrent(source, torrentState);
+            info = new TorrentInfo(Paths.get(trimmed).toFile());
+        }
+        TorrentInfo resolved = info;
+        return new TorrentBatchIngestor.Resolved<>(resolved.infoHash().toHex(),
+                () -> buildParamsFromInfo(resolved, state));
+    }
+
+    /** Connects the batch ingestor with the start queue. */
+    private final class BatchSink implements TorrentBatchIngestor.Sink<Supplier<AddTorrentParams>> {
+        @Override
+        public boolean isKnown(String infoHash, TorrentState state) {
+            synchronized (lock) {
+                for (ManagedTorrent managed : managedByState.values()) {
+                    if (managed.state != state && managed.infoHashKey.equalsIgnoreCase(infoHash)) {
+                        return true;
+                    }
+                }
+                for (TorrentState pending : pendingByState.keySet()) {
+                    if (pending != state && infoHash.equalsIgnoreCase(pending.getHash())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void accept(TorrentState state, String infoHash, Supplier<AddTorrentParams> params) {
+            if ("Eliminado".equals(state.getStatus())) {
+                return;
+            }
+            if (infoHash != null) {
+                state.setHash(infoHash);
+            }
+            enqueueTorrent(new PendingTorrent(state, params));
+        }
+
+        @Override
+        public void duplicate(TorrentState state, String infoHash) {
+            state.setStatus("Duplicado");
+            recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.WARNING,
+                    "Torrent descartado: " + (infoHash != null ? "el hash " + infoHash : "el mismo enlace")
+                            + " ya está en la cola o descargándose.");
+        }
+
+        @Override
+        public void reject(TorrentState state, String reason) {
+            notifyError(state, "Error obteniendo los metadatos del torrent: " + reason);
         }
     }
 
@@ -723,6 +1111,13 @@ public class TorrentDownloader {
                     torrentState.setUserPaused(true);
                     recordEvent(torrentState, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
                             "Descarga pausada por el usuario.");
+                } else if (managed.schedulePaused || managed.healthRotated) {
+                    managed.schedulePaused = false;
+                    managed.healthRotated = false;
+                    torrentState.setStatus("Pausado");
+                    torrentState.setUserPaused(true);
+                    recordEvent(torrentState, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
+                            "Descarga pausada por el usuario.");
                 }
             } else {
                 PendingTorrent pending = pendingByState.get(torrentState);
@@ -749,11 +1144,24 @@ public class TorrentDownloader {
             ManagedTorrent managed = managedByState.get(torrentState);
             if (managed != null) {
                 if (managed.completed) {
+                    if (managed.paused && managed.handle.isValid()) {
+                        managed.handle.resume();
+                        managed.paused = false;
+                        managed.seedingHeld = false;
+                        managed.seedingGoalReached = false;
+                        managed.seedingOverride = true;
+                        torrentState.setStatus("Completado");
+                        recordEvent(torrentState, TorrentLogEntry.Step.COMPLETED, Level.INFO,
+                                "Compartición reanudada por el usuario; se ignora la política de compartición.");
+                        lastBandwidthRebalanceNanos = 0L;
+                    }
                     return;
                 }
                 if (managed.paused && managed.handle.isValid()) {
                     managed.handle.resume();
                     managed.paused = false;
+                    managed.schedulePaused = false;
+                    managed.healthRotated = false;
                     torrentState.setStatus("Descargando");
                     torrentState.setUserPaused(false);
                     recordEvent(torrentState, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
@@ -789,6 +1197,7 @@ public class TorrentDownloader {
             PendingTorrent pending = pendingByState.remove(torrentState);
             if (pending != null) {
                 pendingQueue.remove(pending);
+                deferredForSpace.remove(pending);
             }
             managed = managedByState.remove(torrentState);
             if (managed != null) {
@@ -817,6 +1226,7 @@ public class TorrentDownloader {
                 sessionManager.remove(managed.handle);
             }
         }
+        diskLedger.release(reservationKey(torrentState));
         torrentState.setStatus("Eliminado");
         recordEvent(torrentState, TorrentLogEntry.Step.DOWNLOAD, Level.INFO,
                 deleteFiles ? "Descarga eliminada y datos borrados." : "Descarga eliminada conservando los archivos.");
@@ -824,6 +1234,7 @@ public class TorrentDownloader {
             deleteTorrentPayload(savePath, torrentInfo, torrentState);
         }
         logsByState.remove(torrentState);
+        logArchive.delete(torrentState.getInstanceId());
         lastBandwidthRebalanceNanos = 0L;
         startNextIfPossible();
     }
@@ -965,9 +1376,23 @@ public class TorrentDownloader {
         scheduler.shutdownNow();
         workerExecutor.shutdownNow();
         sessionManager.removeListener(alertListener);
+        postDownloadPipeline.shutdown();
+        batchIngestor.shutdown();
+        diskLedger.removeListener(lowSpaceListener);
+        synchronized (lock) {
+            for (TorrentState state : managedByState.keySet()) {
+                diskLedger.release(reservationKey(state));
+            }
+            for (TorrentState state : pendingByState.keySet()) {
+                diskLedger.release(reservationKey(state));
+            }
+        }
+        persistSessionState();
         sessionManager.stop();
+        peerReputation.save();
         cleanupTemporaryFiles();
         log(Level.INFO, "TorrentDownloader detenido.");
+        logArchive.close();
     }
 
     public byte[] saveSessionState() {
@@ -979,6 +1404,32 @@ public class TorrentDownloader {
         }
     }
 
+    /**
+     * Writes the session state (DHT routing table included) to its own file.
+     * Runs periodically and on shutdown, so a crash loses at most one
+     * interval; unchanged states are not rewritten.
+     */
+    public void persistSessionState() {
+        if (!sessionManager.isRunning()) {
+            return;
+        }
+        byte[] state = saveSessionState();
+        if (state != null) {
+            sessionStateStore.save(state);
+        }
+    }
+
+    /**
+     * Adopts a session state stored by older versions inside
+     * {@code config.json}, unless the dedicated file already holds one.
+     */
+    public void importLegacySessionState(byte[] sessionState) {
+        if (sessionStateStore.exists()) {
+            return;
+        }
+        restoreSessionState(sessionState);
+    }
+
     public void restoreSessionState(byte[] sessionState) {
         if (sessionState == null || sessionState.length == 0) {
             return;
@@ -989,6 +1440,7 @@ public class TorrentDownloader {
             applySessionSettings();
             running = true;
             startNextIfPossible();
+            persistSessionState();
             log(Level.INFO, "Estado de sesión restaurado correctamente.");
         } catch (Exception e) {
             log(Level.SEVERE, "Error al restaurar la sesión: " + e.getMessage());
@@ -1007,6 +1459,7 @@ public class TorrentDownloader {
             if (previous != null) {
                 pendingQueue.remove(previous);
             }
+            declareQueuedSpace(state);
             if (autoStartDownloads) {
                 pendingQueue.offerLast(pendingTorrent);
                 state.setStatus("En espera");
@@ -1027,6 +1480,7 @@ public class TorrentDownloader {
         if (!running) {
             return;
         }
+        enforceActiveTorrentLimit();
         List<PendingTorrent> toStart = new ArrayList<>();
         synchronized (lock) {
             if (!autoStartDownloads) {
@@ -1096,15 +1550,29 @@ public class TorrentDownloader {
             recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
                     "Directorio de destino verificado: " + destination.toAbsolutePath());
             long requiredSpace = calculateRequiredSpace(state);
-            if (!hasEnoughDiskSpace(destination, requiredSpace)) {
+            DiskReservationLedger.Decision decision = diskLedger.tryReserve(reservationKey(state), destination, requiredSpace);
+            if (decision == DiskReservationLedger.Decision.REFUSED) {
                 state.setStatus("Pausado (Espacio insuficiente)");
                 recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.WARNING,
                         "Espacio insuficiente en el destino. Se requieren " + formatSize(requiredSpace) + '.');
                 notifyDiskSpace(destination, requiredSpace);
                 return;
             }
+            if (decision == DiskReservationLedger.Decision.DEFERRED) {
+                synchronized (lock) {
+                    if (pendingByState.get(state) == pending && !deferredForSpace.contains(pending)) {
+                        deferredForSpace.add(pending);
+                    }
+                }
+                state.setStatus("En espera (espacio)");
+                recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
+                        "El espacio libre ya está comprometido por otras descargas; se iniciará cuando haya "
+                                + formatSize(requiredSpace) + " disponibles.");
+                startNextIfPossible();
+                return;
+            }
             recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
-                    "Espacio disponible suficiente para la descarga (" + formatSize(requiredSpace) + ").");
+                    "Espacio reservado para la descarga (" + formatSize(requiredSpace) + ").");
 
             params.savePath(destination.toAbsolutePath().toString());
             if (params.name() == null || params.name().isBlank()) {
@@ -1158,6 +1626,7 @@ public class TorrentDownloader {
         } catch (Exception e) {
             state.setStatus("Error");
             notifyError(state, "Error al iniciar el torrent: " + e.getMessage());
+            diskLedger.release(reservationKey(state));
             synchronized (lock) {
                 pendingByState.remove(state);
             }
@@ -1228,6 +1697,12 @@ public class TorrentDownloader {
             snapshot = new ArrayList<>(managedByState.values());
         }
         int activeCount = countActiveTorrents(snapshot);
+        long now = System.nanoTime();
+        List<SwarmHealthScanner.Sample> healthSamples = null;
+        if (now - lastSwarmHealthScanNanos >= SWARM_HEALTH_SCAN_INTERVAL.toNanos()) {
+            lastSwarmHealthScanNanos = now;
+            healthSamples = new ArrayList<>();
+        }
         for (ManagedTorrent managed : snapshot) {
             if (!managed.handle.isValid()) {
                 synchronized (lock) {
@@ -1246,67 +1721,338 @@ public class TorrentDownloader {
             if (status != null) {
                 updateManagedTorrent(managed, status);
                 maybeOptimizeTorrentConnections(managed, status, activeCount);
+                if (healthSamples != null && !managed.completed && !managed.paused) {
+                    healthSamples.add(healthSample(managed, status));
+                }
             }
         }
+        if (healthSamples != null) {
+            scanSwarmHealth(healthSamples, snapshot);
+        }
         autoTuneSessionIfNeeded();
+        applySeedingPolicy(snapshot);
         rebalanceActiveTorrentBandwidth(snapshot);
+        retryDeferredForSpaceIfDue();
     }
 
-    private void requestTorrentStatusUpdates() {
-        if (!running) {
-            return;
-        }
-        try {
-            sessionManager.postTorrentUpdates();
-        } catch (Throwable t) {
-            log(Level.FINEST, "No se pudo solicitar la actualización de torrents: " + t.getMessage());
-        }
-        try {
-            sessionManager.postSessionStats();
-        } catch (Throwable t) {
-            log(Level.FINEST, "No se pudo solicitar las estadísticas de sesión: " + t.getMessage());
-        }
+    private SwarmHealthScanner.Sample healthSample(ManagedTorrent managed, TorrentStatus status) {
+        boolean trackerError = false;
+        double availability = -1.0;
         try {
-            sessionManager.postDhtStats();
+            trackerError = status.errorCode().value() != 0;
+            availability = status.distributedCopies();
         } catch (Throwable t) {
-            log(Level.FINEST, "No se pudo solicitar las estadísticas de la DHT: " + t.getMessage());
+            log(Level.FINEST, "No se pudo leer la disponibilidad del torrent: " + t.getMessage());
         }
+        return new SwarmHealthScanner.Sample(managed.state, status.hasMetadata(), trackerError,
+                status.numSeeds(), status.numPeers(), availability, status.downloadRate(),
+                Math.max(0L, status.totalWanted() - status.totalWantedDone()));
     }
 
-    private void updateManagedTorrent(ManagedTorrent managed, TorrentStatus status) {
-        if (status == null) {
-            return;
-        }
-        managed.stats.update(status);
-
-        TorrentState state = managed.state;
-        double progress = Math.max(0, Math.min(1.0, status.progress()));
-        state.setProgress(progress * 100);
-        state.setDownloadSpeed(status.downloadRate() / 1024.0);
-        state.setUploadSpeed(status.uploadRate() / 1024.0);
-        state.setPeers(status.numPeers());
-        state.setSeeds(status.numSeeds());
-        state.setFileSize(status.total());
-        state.setRemainingTime(calculateRemainingSeconds(status));
-
-        if (status.name() != null && !status.name().isBlank()) {
-            state.setFileName(status.name());
-            state.setName(status.name());
+    /**
+     * Evaluates all downloading torrents in one pass, applies the remedies
+     * chosen by the {@link SwarmHealthScanner} and publishes the summary.
+     * Dead swarms rotated out earlier get their slot back once nothing else
+     * is waiting or after {@link #ROTATED_RETRY_INTERVAL}.
+     */
+    private void scanSwarmHealth(List<SwarmHealthScanner.Sample> samples, List<ManagedTorrent> snapshot) {
+        boolean othersWaiting;
+        synchronized (lock) {
+            othersWaiting = !pendingQueue.isEmpty();
         }
-
-        if (!managed.completed) {
-            if (status.isFinished() || status.isSeeding()) {
-                completeTorrent(managed);
-            } else if (!managed.paused) {
-                state.setStatus(describeState(status.state()));
+        long nowMs = System.currentTimeMillis();
+        SwarmHealthSummary summary = healthScanner.scan(samples, othersWaiting, nowMs);
+        boolean rotated = false;
+        for (SwarmHealthEntry entry : summary.entries()) {
+            ManagedTorrent managed;
+            synchronized (lock) {
+                managed = managedByState.get(entry.state());
+            }
+            if (managed == null || !managed.handle.isValid()) {
+                continue;
+            }
+            switch (entry.remedy()) {
+                case TRACKER_REFRESH -> {
+                    if (nowMs - managed.lastTrackerAnnounceMs >= TRACKER_REANNOUNCE_INTERVAL.toMillis()) {
+                        try {
+                            managed.handle.forceReannounce();
+                            managed.handle.scrapeTracker();
+                            recordEvent(managed.state, TorrentLogEntry.Step.TRACKER, Level.INFO,
+                                    entry.describe() + ". Reanunciando a los trackers.", true);
+                        } catch (Throwable t) {
+                            log(Level.FINEST, "No se pudo reanunciar el torrent: " + t.getMessage());
+                        }
+                        managed.lastTrackerAnnounceMs = nowMs;
+                    }
+                }
+                case DHT_ANNOUNCE -> {
+                    if (nowMs - managed.lastDhtAnnounceMs >= DHT_REANNOUNCE_INTERVAL.toMillis()) {
+                        try {
+                            managed.handle.forceDHTAnnounce();
+                            sessionManager.dhtAnnounce(managed.infoHash);
+                            recordEvent(managed.state, TorrentLogEntry.Step.DHT, Level.INFO,
+                                    entry.describe() + ". Anunciando en la DHT.", true);
+                        } catch (Throwable t) {
+                            log(Level.FINEST, "No se pudo anunciar en la DHT: " + t.getMessage());
+                        }
+                        managed.lastDhtAnnounceMs = nowMs;
+                    }
+                }
+                case ROTATE_OUT -> rotated |= rotateOutDeadSwarm(managed, entry, nowMs);
+                case NONE -> {
+                }
             }
         }
-
-        improvePeerDiscovery(managed, status);
-        notifyStatusUpdate(state, managed.stats);
+        boolean resumed = !rotated && retryRotatedTorrents(snapshot, othersWaiting, nowMs);
+        swarmHealth = summary;
+        for (TorrentNotificationListener listener : listeners) {
+            listener.onSwarmHealthUpdate(summary);
+        }
+        if (rotated || resumed) {
+            lastBandwidthRebalanceNanos = 0L;
+            startNextIfPossible();
+        }
     }
 
-    private void improvePeerDiscovery(ManagedTorrent managed, TorrentStatus status) {
+    private boolean rotateOutDeadSwarm(ManagedTorrent managed, SwarmHealthEntry entry, long nowMs) {
+        synchronized (lock) {
+            if (managed.paused || managed.completed) {
+                return false;
+            }
+            try {
+                managed.handle.pause();
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo pausar el torrent sin fuentes: " + t.getMessage());
+                return false;
+            }
+            managed.paused = true;
+            managed.healthRotated = true;
+            managed.healthRotatedAtMs = nowMs;
+            managed.state.setStatus("En espera (sin fuentes)");
+        }
+        recordEvent(managed.state, TorrentLogEntry.Step.HEALTHCHECK, Level.WARNING,
+                entry.describe() + ". Se cede el turno a otra descarga de la cola.", true);
+        return true;
+    }
+
+    private boolean retryRotatedTorrents(List<ManagedTorrent> snapshot, boolean othersWaiting, long nowMs) {
+        boolean resumed = false;
+        synchronized (lock) {
+            for (ManagedTorrent managed : snapshot) {
+                if (!managed.healthRotated || !managed.handle.isValid()) {
+                    continue;
+                }
+                if (othersWaiting && nowMs - managed.healthRotatedAtMs < ROTATED_RETRY_INTERVAL.toMillis()) {
+                    continue;
+                }
+                if (countActiveDownloadsInternal() >= maxConcurrentDownloads) {
+                    break;
+                }
+                try {
+                    managed.handle.resume();
+                } catch (Throwable t) {
+                    log(Level.FINEST, "No se pudo reanudar el torrent sin fuentes: " + t.getMessage());
+                    continue;
+                }
+                managed.paused = false;
+                managed.healthRotated = false;
+                managed.state.setStatus("Descargando");
+                recordEvent(managed.state, TorrentLogEntry.Step.HEALTHCHECK, Level.INFO,
+                        "Se vuelve a intentar la descarga sin fuentes.", true);
+                resumed = true;
+            }
+        }
+        return resumed;
+    }
+
+    /**
+     * Applies the {@link SeedingPolicy} to finished torrents: holds them while
+     * other torrents download if seeding is restricted to idle periods and
+     * pauses or retires them once their ratio or seed time goal is met.
+     */
+    private void applySeedingPolicy(List<ManagedTorrent> snapshot) {
+        long now = System.nanoTime();
+        if (now - lastSeedingPolicyNanos < SEEDING_POLICY_INTERVAL.toNanos()) {
+            return;
+        }
+        lastSeedingPolicyNanos = now;
+        SeedingPolicy policy = seedingPolicy;
+        boolean downloadsActive = false;
+        for (ManagedTorrent managed : snapshot) {
+            if (!managed.completed && isTorrentActive(managed)) {
+                downloadsActive = true;
+                break;
+            }
+        }
+        LocalDateTime moment = LocalDateTime.now();
+        for (ManagedTorrent managed : snapshot) {
+            if (!managed.completed || managed.postProcessing || managed.seedingOverride
+                    || !managed.handle.isValid()) {
+                continue;
+            }
+            LocalDateTime completedAt = managed.state.getCompletedAt();
+            Duration seeding = completedAt != null ? Duration.between(completedAt, moment) : Duration.ZERO;
+            switch (policy.evaluate(managed.shareRatio, seeding, downloadsActive)) {
+                case GOAL_REACHED -> finishSeeding(managed, policy.getGoalAction());
+                case HOLD_WHILE_DOWNLOADING -> holdSeeding(managed);
+                case SEED -> releaseSeeding(managed);
+            }
+        }
+    }
+
+    private void holdSeeding(ManagedTorrent managed) {
+        if (managed.seedingHeld) {
+            return;
+        }
+        if (!managed.seedingGoalReached) {
+            try {
+                managed.handle.pause();
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo pausar la compartición: " + t.getMessage());
+                return;
+            }
+        }
+        managed.paused = true;
+        managed.seedingHeld = true;
+        managed.seedingGoalReached = false;
+        managed.state.setStatus("Completado (compartición en espera)");
+        managed.state.setUploadSpeed(0);
+        recordEvent(managed.state, TorrentLogEntry.Step.COMPLETED, Level.INFO,
+                "Compartición en espera mientras haya otras descargas activas.");
+        lastBandwidthRebalanceNanos = 0L;
+    }
+
+    private void releaseSeeding(ManagedTorrent managed) {
+        if (!managed.seedingHeld && !managed.seedingGoalReached) {
+            return;
+        }
+        try {
+            managed.handle.resume();
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudo reanudar la compartición: " + t.getMessage());
+            return;
+        }
+        managed.paused = false;
+        managed.seedingHeld = false;
+        managed.seedingGoalReached = false;
+        managed.state.setStatus("Completado");
+        recordEvent(managed.state, TorrentLogEntry.Step.COMPLETED, Level.INFO, "Compartición reanudada.");
+        lastBandwidthRebalanceNanos = 0L;
+    }
+
+    private void finishSeeding(ManagedTorrent managed, SeedingPolicy.GoalAction action) {
+        if (managed.seedingGoalReached) {
+            return;
+        }
+        TorrentState state = managed.state;
+        String goal = String.format(Locale.ROOT, "Objetivo de compartición cumplido (ratio %.2f)", managed.shareRatio);
+        if (action == SeedingPolicy.GoalAction.REMOVE_KEEP_FILES) {
+            synchronized (lock) {
+                managedByState.remove(state);
+                managedByHash.remove(managed.infoHashKey);
+            }
+            try {
+                sessionManager.remove(managed.handle);
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo retirar el torrent de la sesión: " + t.getMessage());
+            }
+            state.setStatus("Completado (sin compartir)");
+            ProgressEventBus.shared().post(state, s -> {
+                s.setUploadSpeed(0);
+                s.setPeers(0);
+                s.setSeeds(0);
+            });
+            recordEvent(state, TorrentLogEntry.Step.COMPLETED, Level.INFO,
+                    goal + "; torrent retirado conservando los archivos.");
+        } else {
+            if (!managed.seedingHeld) {
+                try {
+                    managed.handle.pause();
+                } catch (Throwable t) {
+                    log(Level.FINEST, "No se pudo pausar la compartición: " + t.getMessage());
+                    return;
+                }
+            }
+            managed.paused = true;
+            managed.seedingHeld = false;
+            managed.seedingGoalReached = true;
+            state.setStatus("Completado (compartición finalizada)");
+            ProgressEventBus.shared().post(state, s -> s.setUploadSpeed(0));
+            recordEvent(state, TorrentLogEntry.Step.COMPLETED, Level.INFO, goal + "; compartición en pausa.");
+        }
+        lastBandwidthRebalanceNanos = 0L;
+    }
+
+    private void requestTorrentStatusUpdates() {
+        if (!running) {
+            return;
+        }
+        try {
+            sessionManager.postTorrentUpdates();
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudo solicitar la actualización de torrents: " + t.getMessage());
+        }
+        try {
+            sessionManager.postSessionStats();
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudo solicitar las estadísticas de sesión: " + t.getMessage());
+        }
+        try {
+            sessionManager.postDhtStats();
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudo solicitar las estadísticas de la DHT: " + t.getMessage());
+        }
+    }
+
+    private void updateManagedTorrent(ManagedTorrent managed, TorrentStatus status) {
+        if (status == null) {
+            return;
+        }
+        managed.stats.update(status);
+        managed.shareRatio = SeedingPolicy.ratio(status.allTimeUpload(), status.allTimeDownload(),
+                status.totalWanted());
+        if (!managed.completed) {
+            diskLedger.update(reservationKey(managed.state),
+                    Math.max(0L, status.totalWanted() - status.totalWantedDone()));
+        }
+
+        TorrentState state = managed.state;
+        double progress = Math.max(0, Math.min(1.0, status.progress())) * 100;
+        double downloadKiB = status.downloadRate() / 1024.0;
+        double uploadKiB = status.uploadRate() / 1024.0;
+        int peers = status.numPeers();
+        int seeds = status.numSeeds();
+        long totalBytes = status.total();
+        long remainingSeconds = calculateRemainingSeconds(status);
+        // The table is bound to these properties: they change on the JavaFX thread, one snapshot per frame.
+        ProgressEventBus.shared().post(state, ProgressEventBus.PROGRESS, s -> {
+            s.setProgress(progress);
+            s.setDownloadSpeed(downloadKiB);
+            s.setUploadSpeed(uploadKiB);
+            s.setPeers(peers);
+            s.setSeeds(seeds);
+            s.setFileSize(totalBytes);
+            s.setRemainingTime(remainingSeconds);
+        });
+
+        if (status.name() != null && !status.name().isBlank()) {
+            state.setFileName(status.name());
+            state.setName(status.name());
+        }
+
+        if (!managed.completed) {
+            if (status.isFinished() || status.isSeeding()) {
+                completeTorrent(managed);
+            } else if (!managed.paused) {
+                state.setStatus(describeState(status.state()));
+            }
+        }
+
+        improvePeerDiscovery(managed, status);
+        notifyStatusUpdate(state, managed.stats);
+    }
+
+    private void improvePeerDiscovery(ManagedTorrent managed, TorrentStatus status) {
         if (managed == null || status == null) {
             return;
         }
@@ -1450,17 +2196,20 @@ public class TorrentDownloader {
                 List<PeerSample> peerSamples = snapshotPeers(managed);
                 rememberContactedPeers(managed, peerSamples);
 
+                long iterationStart = System.currentTimeMillis();
+                int connected = connectKnownFastPeers(managed, iterationStart);
+
                 List<TcpEndpoint> dhtPeers = sessionManager.dhtGetPeers(managed.infoHash, 6);
                 if (dhtPeers == null || dhtPeers.isEmpty()) {
-                    sessionManager.dhtAnnounce(managed.infoHash);
+                    if (connected == 0) {
+                        sessionManager.dhtAnnounce(managed.infoHash);
+                    }
                     return;
                 }
 
-                int connected = 0;
-                long iterationStart = System.currentTimeMillis();
-                for (TcpEndpoint endpoint : dhtPeers) {
-                    if (endpoint == null) {
-                        continue;
+                for (TcpEndpoint endpoint : peerReputation.rank(dhtPeers, TcpEndpoint::toString, iterationStart)) {
+                    if (connected >= MAX_EXTRA_DHT_CONNECTIONS) {
+                        break;
                     }
                     String key = endpoint.toString();
                     if (key.isBlank()) {
@@ -1477,15 +2226,8 @@ public class TorrentDownloader {
                     if (!managed.contactedPeers.add(key)) {
                         continue;
                     }
-                    try {
-                        handle.swig().connect_peer(endpoint.swig());
+                    if (connectPeer(managed, endpoint, key, iterationStart)) {
                         connected++;
-                    } catch (Throwable t) {
-                        managed.contactedPeers.remove(key);
-                        log(Level.FINEST, "No se pudo conectar al peer " + key + ": " + t.getMessage());
-                    }
-                    if (connected >= MAX_EXTRA_DHT_CONNECTIONS) {
-                        break;
                     }
                 }
 
@@ -1502,6 +2244,55 @@ public class TorrentDownloader {
         });
     }
 
+    /**
+     * Connects the fastest peers remembered for this torrent, which lets a
+     * restarted session reach full speed before the DHT answers.
+     */
+    private int connectKnownFastPeers(ManagedTorrent managed, long now) {
+        int connected = 0;
+        for (String key : peerReputation.knownFastPeers(managed.infoHashKey, MAX_EXTRA_DHT_CONNECTIONS, now)) {
+            TcpEndpoint endpoint = parseEndpoint(key);
+            if (endpoint == null || !managed.contactedPeers.add(key)) {
+                continue;
+            }
+            if (connectPeer(managed, endpoint, key, now)) {
+                connected++;
+            }
+        }
+        if (connected > 0) {
+            log(Level.FINE, "Conectando " + connected + " peers conocidos para " + managed.state.getName() + '.');
+        }
+        return connected;
+    }
+
+    private boolean connectPeer(ManagedTorrent managed, TcpEndpoint endpoint, String key, long now) {
+        try {
+            managed.handle.swig().connect_peer(endpoint.swig());
+            return true;
+        } catch (Throwable t) {
+            managed.contactedPeers.remove(key);
+            peerReputation.recordFailure(key, managed.infoHashKey, now);
+            log(Level.FINEST, "No se pudo conectar al peer " + key + ": " + t.getMessage());
+            return false;
+        }
+    }
+
+    private static TcpEndpoint parseEndpoint(String key) {
+        int separator = key.lastIndexOf(':');
+        if (separator <= 0 || separator == key.length() - 1) {
+            return null;
+        }
+        String address = key.substring(0, separator);
+        if (address.startsWith("[") && address.endsWith("]")) {
+            address = address.substring(1, address.length() - 1);
+        }
+        try {
+            return new TcpEndpoint(address, Integer.parseInt(key.substring(separator + 1)));
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
     private List<PeerSample> snapshotPeers(ManagedTorrent managed) {
         if (managed == null || !managed.handle.isValid()) {
             if (managed != null) {
@@ -1567,6 +2358,7 @@ public class TorrentDownloader {
                     continue;
                 }
                 int throughput = Math.max(peer.downSpeed(), peer.upSpeed());
+                peerReputation.recordThroughput(endpoint, managed.infoHashKey, throughput, now);
                 if (throughput >= MIN_PEER_SAMPLE_SPEED_BYTES) {
                     managed.slowPeers.remove(endpoint);
                 } else {
@@ -1600,14 +2392,6 @@ public class TorrentDownloader {
         managed.lastPeerOptimizationMs = now;
 
         int globalConnections = lastAutoConnectionsLimit > 0 ? lastAutoConnectionsLimit : computeConnectionsLimit();
-        globalConnections = clamp(globalConnections, 150, MAX_DYNAMIC_CONNECTIONS);
-
-        int baseline = globalConnections / Math.max(1, activeCount);
-        baseline = clamp(baseline, 80, globalConnections);
-
-        int peerCandidates = Math.max(status.listPeers(), status.numPeers());
-        int desiredConnections = Math.max(baseline, peerCandidates + MINIMUM_ACTIVE_PEERS);
-        desiredConnections = clamp(desiredConnections, baseline, globalConnections);
         long sessionTargetRate = Math.max(expectedSessionDownloadRate(),
                 Math.max(status.downloadRate(), smoothedDownloadRate()));
 
@@ -1615,15 +2399,20 @@ public class TorrentDownloader {
         if (peerSamples.isEmpty()) {
             peerSamples = snapshotPeers(managed);
         }
-        int sampleSuggestedSlots = estimateSlotsForTargetRate(peerSamples, sessionTargetRate);
-        if (sampleSuggestedSlots > 0) {
-            desiredConnections = clamp(Math.max(desiredConnections, sampleSuggestedSlots + MINIMUM_ACTIVE_PEERS),
-                    baseline, globalConnections);
+        List<SwarmTuningPolicy.PeerRate> peerRates = new ArrayList<>(peerSamples.size());
+        for (PeerSample sample : peerSamples) {
+            peerRates.add(new SwarmTuningPolicy.PeerRate(sample.downSpeed, sample.upSpeed, sample.progress));
         }
 
-        if (status.downloadRate() < STALLED_DOWNLOAD_RATE_BYTES && status.numPeers() < MINIMUM_ACTIVE_PEERS) {
-            desiredConnections = clamp(desiredConnections + 80, baseline, globalConnections);
-        }
+        SwarmTuningPolicy.TorrentTuning tuning = tuningPolicy.tuneTorrent(new SwarmTuningPolicy.TorrentSample(
+                activeCount,
+                globalConnections,
+                status.listPeers(),
+                status.numPeers(),
+                status.downloadRate(),
+                sessionTargetRate,
+                peerRates));
+        int desiredConnections = tuning.maxConnections();
 
         if (desiredConnections > 0 && desiredConnections != managed.lastMaxConnections) {
             TorrentHandle handle = managed.handle;
@@ -1635,9 +2424,8 @@ public class TorrentDownloader {
             }
         }
 
-        int desiredUploads = Math.max(MINIMUM_ACTIVE_SEEDS + 4, desiredConnections / 4);
-        desiredUploads = clamp(desiredUploads, MINIMUM_ACTIVE_SEEDS + 4, 128);
-        if (desiredUploads != managed.lastMaxUploads) {
+        int desiredUploads = tuning.maxUploads();
+        if (desiredUploads > 0 && desiredUploads != managed.lastMaxUploads) {
             TorrentHandle handle = managed.handle;
             try {
                 Objects.requireNonNull(handle, "torrentHandle").swig().set_max_uploads(desiredUploads);
@@ -1683,23 +2471,19 @@ public class TorrentDownloader {
         long downloadRate = stats.downloadRate();
         long uploadRate = stats.uploadRate();
         long dhtNodes = stats.dhtNodes();
+        long nowMillis = System.currentTimeMillis();
 
-        lastObservedDownloadRate = downloadRate;
-        updatePeakDownloadRate(downloadRate);
+        sessionRates.observe(downloadRate);
         long expectedRate = expectedSessionDownloadRate();
-        sessionDownloadThroughput.addSample(downloadRate);
-        sessionUploadThroughput.addSample(uploadRate);
+        sessionRates.addSample(downloadRate, uploadRate, nowMillis);
         long smoothedDownload = Math.max(downloadRate, smoothedDownloadRate());
         long smoothedUpload = Math.max(uploadRate, smoothedUploadRate());
-        long effectiveRate = Math.max(expectedRate, smoothedDownload);
 
-        int desiredConnections = clamp(Math.max(computeConnectionsLimit(),
-                dynamicConnectionsFromRate(effectiveRate, smoothedUpload)),
-                150, MAX_DYNAMIC_CONNECTIONS);
-        int desiredConnectionSpeed = clamp(Math.max(computeConnectionSpeed(),
-                dynamicConnectionSpeed(effectiveRate)), 30, 500);
-        int desiredRequestQueue = clamp(dynamicRequestQueue(effectiveRate),
-                MIN_DYNAMIC_REQUEST_QUEUE, MAX_DYNAMIC_REQUEST_QUEUE);
+        SwarmTuningPolicy.SessionTuning tuning = tuningPolicy.tuneSession(new SwarmTuningPolicy.SessionSample(
+                expectedRate, smoothedDownload, smoothedUpload, maxConcurrentDownloads, downloadSpeedLimit));
+        int desiredConnections = tuning.connectionsLimit();
+        int desiredConnectionSpeed = tuning.connectionSpeed();
+        int desiredRequestQueue = tuning.requestQueue();
 
         SettingsPack dynamic = new SettingsPack();
         boolean changed = false;
@@ -1729,35 +2513,19 @@ public class TorrentDownloader {
 
         rebootstrapDhtIfNeeded(dhtNodes);
     }
-    private void updatePeakDownloadRate(long downloadRate) {
-        peakObservedDownloadRate.updateAndGet(previous -> {
-            long sanitizedPrevious = Math.max(0L, previous);
-            if (downloadRate <= 0) {
-                return (long) (sanitizedPrevious * PEAK_RATE_DECAY);
-            }
-            if (sanitizedPrevious <= 0) {
-                return downloadRate;
-            }
-            return (long) (sanitizedPrevious * PEAK_RATE_DECAY
-                    + downloadRate * (1.0 - PEAK_RATE_DECAY));
-        });
-    }
-
     private long expectedSessionDownloadRate() {
         long limit = downloadSpeedLimit > 0 ? downloadSpeedLimit * 1024L : 0L;
-        long observed = Math.max(Math.max(lastObservedDownloadRate, peakObservedDownloadRate.get()), smoothedDownloadRate());
-        if (limit > 0) {
-            return Math.max(limit, observed);
-        }
-        return observed;
+        return sessionRates.expectedDownloadRate(limit, System.currentTimeMillis());
     }
+
     private long smoothedDownloadRate() {
-        return sessionDownloadThroughput != null ? sessionDownloadThroughput.getAverage() : 0L;
+        return sessionRates.smoothedDownloadRate(System.currentTimeMillis());
     }
 
     private long smoothedUploadRate() {
-        return sessionUploadThroughput != null ? sessionUploadThroughput.getAverage() : 0L;
+        return sessionRates.smoothedUploadRate(System.currentTimeMillis());
     }
+
     private void rebalanceActiveTorrentBandwidth(List<ManagedTorrent> snapshot) {
         if (snapshot == null || snapshot.isEmpty()) {
             return;
@@ -1782,36 +2550,28 @@ public class TorrentDownloader {
         int uploadBudget = uploadSpeedLimit > 0 ? uploadSpeedLimit * 1024 : -1;
 
         if (downloadBudget > 0) {
-            double totalDemand = 0.0;
+            List<ManagedTorrent> automatic = new ArrayList<>();
             for (ManagedTorrent managed : active) {
-                if (managed.downloadLimitBytes >= 0) {
-                    continue;
+                if (managed.downloadLimitBytes < 0) {
+                    automatic.add(managed);
                 }
-                totalDemand += computeDownloadDemand(managed);
             }
-            if (totalDemand > 0.0) {
-                int participants = Math.max(1, active.size());
-                int minShare = Math.min(MIN_AUTO_DOWNLOAD_LIMIT,
-                        Math.max(1, downloadBudget / participants));
-                for (ManagedTorrent managed : active) {
-                    if (managed.downloadLimitBytes >= 0) {
-                        continue;
-                    }
-                    double demand = computeDownloadDemand(managed);
-                    int share = (int) Math.round(downloadBudget * (demand / totalDemand));
-                    if (share < minShare) {
-                        share = minShare;
-                    }
-                    if (share > downloadBudget) {
-                        share = downloadBudget;
-                    }
-                    if (managed.lastAutoDownloadLimit != share) {
-                        try {
-                            managed.handle.setDownloadLimit(share);
-                            managed.lastAutoDownloadLimit = share;
-                        } catch (Throwable t) {
-                            log(Level.FINEST, "No se pudo ajustar el límite dinámico de descarga: " + t.getMessage());
-                        }
+            double[] demands = new double[automatic.size()];
+            for (int i = 0; i < demands.length; i++) {
+                TorrentStats stats = automatic.get(i).stats;
+                demands[i] = tuningPolicy.downloadDemand(stats.totalWanted() - stats.totalWantedDone(),
+                        stats.downloadRate());
+            }
+            int[] shares = tuningPolicy.allocateShares(downloadBudget, demands, active.size(), MIN_AUTO_DOWNLOAD_LIMIT);
+            for (int i = 0; i < shares.length && i < automatic.size(); i++) {
+                ManagedTorrent managed = automatic.get(i);
+                int share = shares[i];
+                if (managed.lastAutoDownloadLimit != share) {
+                    try {
+                        managed.handle.setDownloadLimit(share);
+                        managed.lastAutoDownloadLimit = share;
+                    } catch (Throwable t) {
+                        log(Level.FINEST, "No se pudo ajustar el límite dinámico de descarga: " + t.getMessage());
                     }
                 }
             }
@@ -1832,38 +2592,20 @@ public class TorrentDownloader {
         }
 
         if (uploadBudget > 0) {
-            double totalDemand = 0.0;
+            // Seeding torrents must not starve the upload that downloading ones trade for data.
+            List<ManagedTorrent> downloading = new ArrayList<>();
+            List<ManagedTorrent> seeding = new ArrayList<>();
             for (ManagedTorrent managed : active) {
-                if (managed.uploadLimitBytes >= 0) {
-                    continue;
-                }
-                totalDemand += computeUploadDemand(managed);
-            }
-            if (totalDemand > 0.0) {
-                int participants = Math.max(1, active.size());
-                int minShare = Math.min(MIN_AUTO_UPLOAD_LIMIT,
-                        Math.max(1, uploadBudget / participants));
-                for (ManagedTorrent managed : active) {
-                    if (managed.uploadLimitBytes >= 0) {
-                        continue;
-                    }
-                    double demand = computeUploadDemand(managed);
-                    int share = (int) Math.round(uploadBudget * (demand / totalDemand));
-                    if (share < minShare) {
-                        share = minShare;
-                    }
-                    if (share > uploadBudget) {
-                        share = uploadBudget;
-                    }
-                    if (managed.lastAutoUploadLimit != share) {
-                        try {
-                            managed.handle.setUploadLimit(share);
-                            managed.lastAutoUploadLimit = share;
-                        } catch (Throwable t) {
-                            log(Level.FINEST, "No se pudo ajustar el límite dinámico de subida: " + t.getMessage());
-                        }
-                    }
-                }
+                (managed.completed ? seeding : downloading).add(managed);
+            }
+            int reserve = downloading.isEmpty() || seeding.isEmpty()
+                    ? 0
+                    : seedingPolicy.downloadUploadReserve(uploadBudget);
+            if (reserve > 0) {
+                allocateUploadShares(downloading, reserve);
+                allocateUploadShares(seeding, uploadBudget - reserve);
+            } else {
+                allocateUploadShares(active, uploadBudget);
             }
         } else {
             for (ManagedTorrent managed : active) {
@@ -1882,80 +2624,6 @@ public class TorrentDownloader {
         }
     }
 
-    private double computeDownloadDemand(ManagedTorrent managed) {
-        long remaining = Math.max(1L, managed.stats.totalWanted() - managed.stats.totalWantedDone());
-        double backlog = Math.log1p(remaining / (1024.0 * 1024.0));
-        double liveRate = Math.log1p(Math.max(0, managed.stats.downloadRate()) / 1024.0);
-        return Math.max(1.0, backlog + liveRate);
-    }
-
-    private double computeUploadDemand(ManagedTorrent managed) {
-        double liveRate = Math.log1p(Math.max(0, managed.stats.uploadRate()) / 1024.0);
-        double peers = Math.log1p(Math.max(1, managed.stats.numPeers()));
-        return Math.max(1.0, liveRate + (peers * 0.5));
-    }
-
-    private int dynamicConnectionsFromRate(long downloadRate, long uploadRate) {
-        long basis = Math.max(downloadRate, uploadRate);
-        if (downloadSpeedLimit > 0) {
-            basis = Math.max(basis, downloadSpeedLimit * 1024L);
-        }
-        if (basis <= 0) {
-            return computeConnectionsLimit();
-        }
-        long scaled = basis / (64L * 1024L);
-        int dynamic = (int) (300 + scaled * 4);
-        return clamp(dynamic, 150, MAX_DYNAMIC_CONNECTIONS);
-    }
-
-    private int dynamicConnectionSpeed(long downloadRate) {
-        long basis = downloadRate;
-        if (downloadSpeedLimit > 0) {
-            basis = Math.max(basis, downloadSpeedLimit * 1024L);
-        }
-        if (basis <= 0) {
-            return computeConnectionSpeed();
-        }
-        long scaled = Math.max(1, basis / (128L * 1024L));
-        int dynamic = (int) Math.min(500, 30 + scaled * 5);
-        return clamp(dynamic, 30, 500);
-    }
-
-    private int dynamicRequestQueue(long downloadRate) {
-        long basis = downloadRate;
-        if (downloadSpeedLimit > 0) {
-            basis = Math.max(basis, downloadSpeedLimit * 1024L);
-        }
-        basis = Math.max(basis, 512L * 1024L);
-        int queue = (int) (basis / 1024L);
-        return clamp(queue, MIN_DYNAMIC_REQUEST_QUEUE, MAX_DYNAMIC_REQUEST_QUEUE);
-    }
-    private int estimateSlotsForTargetRate(List<PeerSample> peers, long targetRate) {
-        if (peers == null || peers.isEmpty() || targetRate <= 0) {
-            return 0;
-        }
-        long aggregate = 0;
-        int counted = 0;
-        for (PeerSample sample : peers) {
-            if (sample == null) {
-                continue;
-            }
-            if (sample.progress >= 0.999f) {
-                continue;
-            }
-            int observed = Math.max(sample.downSpeed, sample.upSpeed);
-            if (observed <= MIN_PEER_SAMPLE_SPEED_BYTES) {
-                continue;
-            }
-            aggregate += observed;
-            counted++;
-        }
-        if (counted < MIN_PEER_SAMPLE_COUNT) {
-            return 0;
-        }
-        long average = Math.max(MIN_PEER_SAMPLE_SPEED_BYTES, aggregate / counted);
-        return (int) Math.ceil(targetRate / (double) average);
-    }
     private boolean shouldUpdate(int desired, int last, int tolerance) {
         if (desired <= 0) {
             return false;
@@ -2004,28 +2672,188 @@ public class TorrentDownloader {
         });
     }
 
+    private void allocateUploadShares(List<ManagedTorrent> torrents, int budget) {
+        List<ManagedTorrent> automatic = new ArrayList<>();
+        for (ManagedTorrent managed : torrents) {
+            if (managed.uploadLimitBytes < 0) {
+                automatic.add(managed);
+            }
+        }
+        double[] demands = new double[automatic.size()];
+        for (int i = 0; i < demands.length; i++) {
+            TorrentStats stats = automatic.get(i).stats;
+            demands[i] = tuningPolicy.uploadDemand(stats.uploadRate(), stats.numPeers());
+        }
+        int[] shares = tuningPolicy.allocateShares(budget, demands, torrents.size(), MIN_AUTO_UPLOAD_LIMIT);
+        for (int i = 0; i < shares.length && i < automatic.size(); i++) {
+            ManagedTorrent managed = automatic.get(i);
+            int share = shares[i];
+            if (managed.lastAutoUploadLimit != share) {
+                try {
+                    managed.handle.setUploadLimit(share);
+                    managed.lastAutoUploadLimit = share;
+                } catch (Throwable t) {
+                    log(Level.FINEST, "No se pudo ajustar el límite dinámico de subida: " + t.getMessage());
+                }
+            }
+        }
+    }
+
     private void completeTorrent(ManagedTorrent managed) {
+        boolean firstCompletion = managed.state.getCompletedAt() == null;
         managed.completed = true;
+        diskLedger.release(reservationKey(managed.state));
         managed.paused = false;
         managed.stalledPeerChecks.set(0);
         managed.lastAutoDownloadLimit = -1;
         managed.lastAutoUploadLimit = -1;
         TorrentState state = managed.state;
-        state.setProgress(100);
-        state.setDownloadSpeed(0);
-        state.setUploadSpeed(0);
-        state.setRemainingTime(0);
+        // Posted after any pending snapshot, so a stale one cannot take the torrent back below 100 %.
+        ProgressEventBus.shared().post(state, s -> {
+            s.setProgress(100);
+            s.setDownloadSpeed(0);
+            s.setUploadSpeed(0);
+            s.setRemainingTime(0);
+        });
         state.setStatus("Completado");
         recordEvent(state, TorrentLogEntry.Step.COMPLETED, Level.INFO,
                 "Descarga completada. El torrent ha pasado a estado de compartición.");
         notifyComplete(state);
-        if (extractArchives) {
-            log(Level.INFO, "Extracción automática no implementada: " + state.getName());
+        if (firstCompletion) {
+            schedulePostProcessing(managed);
         }
         lastBandwidthRebalanceNanos = 0L;
         startNextIfPossible();
     }
 
+    /**
+     * Hands a finished torrent to the post-download pipeline.  When the files
+     * are relocated the torrent is paused meanwhile and then pointed at the
+     * new folder, so it keeps seeding from the library.
+     */
+    private void schedulePostProcessing(ManagedTorrent managed) {
+        TorrentState state = managed.state;
+        List<PostDownloadPipeline.PayloadFile> files = new ArrayList<>();
+        Path sourceRoot;
+        try {
+            TorrentInfo info = managed.handle.torrentFile();
+            FileStorage storage = info != null ? info.files() : null;
+            if (storage == null) {
+                return;
+            }
+            for (int i = 0; i < storage.numFiles(); i++) {
+                files.add(new PostDownloadPipeline.PayloadFile(storage.filePath(i), storage.fileSize(i)));
+            }
+            String savePath = managed.handle.savePath();
+            sourceRoot = Paths.get(savePath != null && !savePath.isBlank() ? savePath : state.getDestinationPath())
+                    .toAbsolutePath().normalize();
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudo preparar el postproceso: " + t.getMessage());
+            return;
+        }
+
+        Path movies = movieLibraryDestination;
+        Path series = seriesLibraryDestination;
+        LibraryEntry.LibraryType type;
+        if (series != null && sourceRoot.startsWith(series)) {
+            type = LibraryEntry.LibraryType.SERIES;
+        } else if (movies != null && sourceRoot.startsWith(movies)) {
+            type = LibraryEntry.LibraryType.MOVIES;
+        } else {
+            boolean looksLikeSeries = files.stream()
+                    .anyMatch(file -> SEASON_EPISODE_PATTERN.matcher(file.relativePath()).find());
+            type = looksLikeSeries ? LibraryEntry.LibraryType.SERIES : LibraryEntry.LibraryType.MOVIES;
+        }
+        Path target = type == LibraryEntry.LibraryType.SERIES ? series : movies;
+        if (target != null && sourceRoot.startsWith(target)) {
+            target = null;
+        }
+
+        PostDownloadPipeline.Job job = new PostDownloadPipeline.Job(managed.infoHashKey, state.getName(), sourceRoot,
+                files, type, target, extractArchives);
+        boolean relocating = target != null;
+        if (relocating) {
+            try {
+                managed.handle.pause();
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo pausar el torrent antes de moverlo: " + t.getMessage());
+            }
+        }
+        recordEvent(state, TorrentLogEntry.Step.POST_PROCESS, Level.INFO,
+                "Postproceso en cola" + (relocating ? " (destino: " + target + ")." : "."));
+        managed.postProcessing = true;
+        postDownloadPipeline.submit(job, new PostProcessListener(managed, relocating))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        recordEvent(state, TorrentLogEntry.Step.POST_PROCESS, Level.WARNING,
+                                "Postproceso abortado: " + error);
+                        if (relocating) {
+                            resumeAfterPostProcessing(managed);
+                        }
+                    }
+                    managed.postProcessing = false;
+                });
+    }
+
+    private void resumeAfterPostProcessing(ManagedTorrent managed) {
+        if (managed.handle.isValid() && !managed.paused) {
+            try {
+                managed.handle.resume();
+            } catch (Throwable t) {
+                log(Level.FINEST, "No se pudo reanudar el torrent tras el postproceso: " + t.getMessage());
+            }
+        }
+    }
+
+    private final class PostProcessListener implements PostDownloadPipeline.Listener {
+        private final ManagedTorrent managed;
+        private final boolean relocating;
+
+        private PostProcessListener(ManagedTorrent managed, boolean relocating) {
+            this.managed = managed;
+            this.relocating = relocating;
+        }
+
+        @Override
+        public void onProgress(PostDownloadPipeline.Job job, PostDownloadPipeline.Stage stage,
+                               double fraction, String message) {
+            log(Level.FINE, String.format(Locale.ROOT, "%s de %s: %.0f%% %s",
+                    stage.getDisplayName(), job.name(), fraction * 100, message));
+        }
+
+        @Override
+        public void onStageCompleted(PostDownloadPipeline.Job job, PostDownloadPipeline.Stage stage,
+                                     Duration elapsed, String summary) {
+            recordEvent(managed.state, TorrentLogEntry.Step.POST_PROCESS, Level.INFO,
+                    stage.getDisplayName() + " terminada en " + elapsed.toMillis() + " ms: " + summary);
+        }
+
+        @Override
+        public void onFinished(PostDownloadPipeline.Job job, PostDownloadPipeline.Result result) {
+            TorrentState state = managed.state;
+            boolean moved = !result.finalRoot().equals(job.sourceRoot());
+            if (moved) {
+                try {
+                    // The files are already in place; DONT_REPLACE makes libtorrent just adopt them.
+                    managed.handle.moveStorage(result.finalRoot().toString(), MoveFlags.DONT_REPLACE);
+                    state.setDestinationPath(result.finalRoot().toString());
+                } catch (Throwable t) {
+                    log(Level.WARNING, "No se pudo actualizar la ruta del torrent tras moverlo: " + t.getMessage());
+                }
+            }
+            if (relocating) {
+                resumeAfterPostProcessing(managed);
+            }
+            if (result.succeeded()) {
+                recordEvent(state, TorrentLogEntry.Step.POST_PROCESS, Level.INFO,
+                        "Postproceso completado" + (moved ? " en " + result.finalRoot() : "") + ".");
+            } else {
+                recordEvent(state, TorrentLogEntry.Step.POST_PROCESS, Level.WARNING,
+                        "Postproceso detenido en " + result.failedStage().getDisplayName() + ": " + result.error());
+            }
+        }
+    }
+
     private long calculateRemainingSeconds(TorrentStatus status) {
         long remaining = Math.max(0L, status.total() - status.totalDone());
         int rate = status.downloadRate();
@@ -2063,6 +2891,11 @@ public class TorrentDownloader {
         }
     }
 
+    /**
+     * Bytes the torrent still has to write.  Until the metadata is known the
+     * minimum is used as a placeholder; the reservation is corrected with the
+     * real figure on the first status update.
+     */
     private long calculateRequiredSpace(TorrentState state) {
         if (state == null) {
             return MIN_DISK_SPACE;
@@ -2071,7 +2904,82 @@ public class TorrentDownloader {
         if (size <= 0) {
             return MIN_DISK_SPACE;
         }
-        return Math.max(MIN_DISK_SPACE, size);
+        return Math.max(0L, size - Math.max(0L, state.getBytesDownloaded()));
+    }
+
+    private static String reservationKey(TorrentState state) {
+        return "torrent:" + state.getInstanceId();
+    }
+
+    private void declareQueuedSpace(TorrentState state) {
+        String destination = state.getDestinationPath();
+        if (destination == null || destination.isBlank()) {
+            return;
+        }
+        try {
+            diskLedger.declareQueued(reservationKey(state), Paths.get(destination), calculateRequiredSpace(state));
+        } catch (RuntimeException e) {
+            log(Level.FINEST, "No se pudo registrar el espacio previsto: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Puts torrents that were deferred for lack of uncommitted space back in
+     * the queue once the ledger can grant them.
+     */
+    private void retryDeferredForSpaceIfDue() {
+        long now = System.nanoTime();
+        if (now - lastDiskSpaceRetryNanos < DISK_SPACE_RETRY_INTERVAL.toNanos()) {
+            return;
+        }
+        lastDiskSpaceRetryNanos = now;
+        List<PendingTorrent> candidates;
+        synchronized (lock) {
+            if (deferredForSpace.isEmpty()) {
+                return;
+            }
+            candidates = new ArrayList<>(deferredForSpace);
+        }
+        boolean requeued = false;
+        for (PendingTorrent pending : candidates) {
+            TorrentState state = pending.state;
+            String destination = state.getDestinationPath();
+            if (destination == null || destination.isBlank()) {
+                continue;
+            }
+            DiskReservationLedger.Decision decision = diskLedger.tryReserve(reservationKey(state),
+                    Paths.get(destination), calculateRequiredSpace(state));
+            if (decision != DiskReservationLedger.Decision.GRANTED) {
+                continue;
+            }
+            synchronized (lock) {
+                deferredForSpace.remove(pending);
+                if (pendingByState.get(state) == pending && !pendingQueue.contains(pending)) {
+                    pendingQueue.offerFirst(pending);
+                    requeued = true;
+                }
+            }
+            recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
+                    "Hay espacio suficiente de nuevo; la descarga vuelve a la cola.");
+        }
+        if (requeued) {
+            startNextIfPossible();
+        }
+    }
+
+    private void onPredictedLowSpace(DiskReservationLedger.VolumeForecast forecast) {
+        String reason = forecast.overcommitted()
+                ? "las descargas activas no caben en el espacio libre"
+                : forecast.projectedFreeBytes() < forecast.headroomBytes()
+                ? "las descargas en cola no cabrán al terminar las activas"
+                : "al ritmo actual se agotará en " + Math.max(1L, forecast.secondsUntilReserve() / 60) + " min";
+        log(Level.WARNING, "Poco espacio previsto en " + forecast.volume() + ": " + reason
+                + " (libre " + formatSize(forecast.usableBytes()) + ", pendiente "
+                + formatSize(forecast.committedBytes() + forecast.queuedBytes()) + ").");
+        long required = forecast.committedBytes() + forecast.queuedBytes() + forecast.headroomBytes();
+        for (TorrentNotificationListener listener : listeners) {
+            listener.onDiskSpaceLow(forecast.usableBytes(), required);
+        }
     }
 
     private void updateStateFromHandle(ManagedTorrent managed) {
@@ -2087,17 +2995,6 @@ public class TorrentDownloader {
         }
     }
 
-    private boolean hasEnoughDiskSpace(Path destination, long requiredSpace) {
-        try {
-            FileStore store = Files.getFileStore(destination);
-            long free = store.getUsableSpace();
-            return free >= Math.max(MIN_DISK_SPACE, requiredSpace);
-        } catch (IOException e) {
-            log(Level.WARNING, "No se pudo comprobar el espacio en disco: " + e.getMessage());
-            return true;
-        }
-    }
-
     private String formatSize(long bytes) {
         if (bytes <= 0) {
             return "0 B";
@@ -2184,7 +3081,8 @@ public class TorrentDownloader {
         }
         long referenceDownload = baseline > 0 ? baseline : downloadSpeedLimit * 1024L;
         long referenceUpload = Math.max(smoothedUploadRate(), 0L);
-        return clamp(dynamicConnectionsFromRate(referenceDownload, referenceUpload), 300, MAX_DYNAMIC_CONNECTIONS);
+        return clamp(tuningPolicy.dynamicConnectionsFromRate(referenceDownload, referenceUpload,
+                maxConcurrentDownloads, downloadSpeedLimit), 300, MAX_DYNAMIC_CONNECTIONS);
     }
 
     private void primeNewTorrent(ManagedTorrent managed, AddTorrentParams params) {
@@ -2252,7 +3150,10 @@ public class TorrentDownloader {
     }
 
     private AddTorrentParams buildParamsFromFile(Path file, TorrentState state) {
-        TorrentInfo info = new TorrentInfo(file.toFile());
+        return buildParamsFromInfo(new TorrentInfo(file.toFile()), state);
+    }
+
+    private AddTorrentParams buildParamsFromInfo(TorrentInfo info, TorrentState state) {
         AddTorrentParams params = new AddTorrentParams();
         params.torrentInfo(info);
         params.name(info.name());
@@ -2267,11 +3168,49 @@ public class TorrentDownloader {
 
     private AddTorrentParams buildParamsFromMagnet(String magnet, TorrentState state) {
         AddTorrentParams params = AddTorrentParams.parseMagnetUri(magnet);
+        TorrentInfo cached = loadCachedTorrent(TorrentMetadataCache.infoHashFromMagnet(magnet));
+        if (cached != null) {
+            params.torrentInfo(cached);
+            state.setFileSize(cached.totalSize());
+            state.setFileName(cached.name());
+            recordEvent(state, TorrentLogEntry.Step.PREPARATION, Level.INFO,
+                    "Metadatos del magnet recuperados de la caché.");
+        }
         params.name(state.getName());
         applyDefaultTrackers(params);
         return params;
     }
 
+    private TorrentInfo loadCachedTorrent(String infoHash) {
+        byte[] data = metadataCache.get(infoHash);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return TorrentInfo.bdecode(data);
+        } catch (Throwable t) {
+            log(Level.FINE, "Entrada inválida en la caché de metadatos " + infoHash + ": " + t.getMessage());
+            return null;
+        }
+    }
+
+    private void cacheTorrentInfo(TorrentInfo info, String sourceUrl) {
+        if (info == null) {
+            return;
+        }
+        try {
+            String infoHash = info.infoHash().toHex();
+            if (!metadataCache.contains(infoHash)) {
+                metadataCache.put(infoHash, info.bencode());
+            }
+            if (sourceUrl != null && (sourceUrl.startsWith("http://") || sourceUrl.startsWith("https://"))) {
+                metadataCache.rememberUrl(sourceUrl, infoHash);
+            }
+        } catch (Throwable t) {
+            log(Level.FINEST, "No se pudieron guardar los metadatos en la caché: " + t.getMessage());
+        }
+    }
+
     private Path downloadRemoteTorrent(String url, String suggestedName) throws IOException {
         String fileName = (suggestedName == null || suggestedName.isBlank())
                 ? "download"
@@ -2353,8 +3292,9 @@ public class TorrentDownloader {
                              String message,
                              boolean fromHealthCheck) {
         if (state != null) {
-            TorrentLogBook book = logBookForState(state);
-            book.add(new TorrentLogEntry(System.currentTimeMillis(), level, step, message, fromHealthCheck));
+            TorrentLogEntry entry = new TorrentLogEntry(System.currentTimeMillis(), level, step, message, fromHealthCheck);
+            logBookForState(state).add(entry);
+            logArchive.append(state.getInstanceId(), entry);
         }
         log(level, '[' + step.getDisplayName() + "] " + message);
     }
@@ -2387,6 +3327,13 @@ public class TorrentDownloader {
                     managed.state.setStatus("Error");
                     notifyError(managed.state, errorAlert.message());
                 }
+            } else if (alert instanceof PeerErrorAlert) {
+                PeerErrorAlert peerError = (PeerErrorAlert) alert;
+                ManagedTorrent managed = findManagedTorrent(peerError.handle());
+                if (managed != null) {
+                    peerReputation.recordFailure(Objects.toString(peerError.endpoint(), ""),
+                            managed.infoHashKey, System.currentTimeMillis());
+                }
             } else if (alert instanceof MetadataReceivedAlert) {
                 MetadataReceivedAlert metadataAlert = (MetadataReceivedAlert) alert;
                 ManagedTorrent managed = findManagedTorrent(metadataAlert.handle());
@@ -2394,6 +3341,8 @@ public class TorrentDownloader {
                     recordEvent(managed.state, TorrentLogEntry.Step.VALIDATION, Level.INFO,
                             "Metadatos recibidos correctamente.");
                     updateStateFromHandle(managed);
+                    workerExecutor.submit(() -> cacheTorrentInfo(managed.handle.torrentFile(),
+                            managed.state.getTorrentSource()));
                 }
             } else if (alert instanceof StateChangedAlert) {
                 StateChangedAlert stateAlert = (StateChangedAlert) alert;
@@ -2574,55 +3523,6 @@ public class TorrentDownloader {
             return timestamp - lastSlow > SLOW_PEER_BACKOFF_MS;
         }
     }
-    private static final class ThroughputAverager {
-        private final long windowMillis;
-        private final Deque<Sample> samples;
-        private long total;
-
-        private ThroughputAverager(long windowMillis) {
-            this.windowMillis = Math.max(1L, windowMillis);
-            this.samples = new ArrayDeque<>();
-            this.total = 0L;
-        }
-
-        private synchronized void addSample(long value) {
-            long sanitized = Math.max(0L, value);
-            long now = System.currentTimeMillis();
-            samples.addLast(new Sample(now, sanitized));
-            total += sanitized;
-            trim(now);
-        }
-
-        private synchronized long getAverage() {
-            trim(System.currentTimeMillis());
-            if (samples.isEmpty()) {
-                return 0L;
-            }
-            return total / samples.size();
-        }
-
-        private void trim(long now) {
-            while (!samples.isEmpty()) {
-                Sample head = samples.peekFirst();
-                if (head == null || now - head.timestamp <= windowMillis) {
-                    break;
-                }
-                samples.removeFirst();
-                total -= head.value;
-            }
-        }
-
-        private static final class Sample {
-            private final long timestamp;
-            private final long value;
-
-            private Sample(long timestamp, long value) {
-                this.timestamp = timestamp;
-                this.value = value;
-            }
-        }
-    }
-
     /** Holds runtime information of an active torrent. */
     private static final class ManagedTorrent {
         private final TorrentState state;
@@ -2631,7 +3531,19 @@ public class TorrentDownloader {
         private final Sha1Hash infoHash;
         private final String infoHashKey;
         private volatile boolean paused;
+        private volatile boolean schedulePaused;
         private volatile boolean completed;
+        /** Held by the seeding policy while other torrents download. */
+        private volatile boolean seedingHeld;
+        /** Seeding goal met and the torrent paused because of it. */
+        private volatile boolean seedingGoalReached;
+        /** The user resumed seeding after the goal was met; the policy leaves it alone. */
+        private volatile boolean seedingOverride;
+        private volatile boolean postProcessing;
+        private volatile double shareRatio;
+        /** Paused by the swarm health scan to free its slot. */
+        private volatile boolean healthRotated;
+        private volatile long healthRotatedAtMs;
         private volatile boolean sequentialDownload;
         private volatile int downloadLimitBytes = -1;
         private volatile int uploadLimitBytes = -1;
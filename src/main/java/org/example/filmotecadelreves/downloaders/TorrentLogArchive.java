@@ -0,0 +1,381 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the activity log of every torrent on disk so it survives restarts.
+ * Entries are queued by {@link #append} without blocking and written by a
+ * single background thread as JSON lines into numbered segments per torrent
+ * ({@code <key>/00000001.jsonl}).  A segment is closed once it reaches
+ * {@code maxSegmentBytes}; only the newest {@code maxSegments} are kept.
+ * <p>
+ * {@link #readPage} walks the history backwards one segment at a time, so
+ * showing the latest events never loads the whole history.
+ */
+final class TorrentLogArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(TorrentLogArchive.class.getName());
+    static final String DIRECTORY_PROPERTY = "filmoteca.torrent.logs.path";
+    static final long DEFAULT_MAX_SEGMENT_BYTES = 256L * 1024L;
+    static final int DEFAULT_MAX_SEGMENTS = 8;
+    private static final String DEFAULT_DIRECTORY = "torrent_logs";
+    private static final String EXTENSION = ".jsonl";
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int WRITE_BATCH = 512;
+
+    /** Work items of the writer thread; markers keep deletes and flushes ordered with appends. */
+    private sealed interface Task permits Append, Delete, Flush {
+    }
+
+    private record Append(String key, TorrentLogEntry entry) implements Task {
+    }
+
+    private record Delete(String key) implements Task {
+    }
+
+    private record Flush(CountDownLatch done) implements Task {
+    }
+
+    /** Newest segment of a torrent as known by the writer thread. */
+    private static final class SegmentCursor {
+        private long number;
+        private long size;
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int maxSegments;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<String, SegmentCursor> cursors = new HashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    TorrentLogArchive(Path directory, long maxSegmentBytes, int maxSegments) {
+        this.directory = directory;
+        this.maxSegmentBytes = Math.max(1024L, maxSegmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.writer = new Thread(this::writeLoop, "torrent-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    static Path defaultDirectory() {
+        String override = System.getProperty(DIRECTORY_PROPERTY);
+        if (override != null && !override.trim().isEmpty()) {
+            return Paths.get(override.trim());
+        }
+        return Paths.get("DB", DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * Queues an entry for {@code key}.  Never blocks: when the writer falls
+     * behind the entry is only kept in memory and counted in {@link #getDroppedEntries()}.
+     */
+    void append(String key, TorrentLogEntry entry) {
+        String safeKey = sanitizeKey(key);
+        if (closed || safeKey == null || entry == null) {
+            return;
+        }
+        if (!queue.offer(new Append(safeKey, entry))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /** Removes the archived history of {@code key} once the queued entries have been written. */
+    void delete(String key) {
+        String safeKey = sanitizeKey(key);
+        if (closed || safeKey == null) {
+            return;
+        }
+        try {
+            queue.put(new Delete(safeKey));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Waits until everything queued before this call is on disk. */
+    boolean flush(long timeout, TimeUnit unit) {
+        if (closed || !writer.isAlive()) {
+            return false;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (!queue.offer(new Flush(done), timeout, unit)) {
+                return false;
+            }
+            return done.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    long getDroppedEntries() {
+        return dropped.get();
+    }
+
+    /**
+     * Reads up to {@code limit} entries that precede {@code before} (or the
+     * newest entries when it is {@code null}), oldest first.
+     */
+    TorrentLogPage readPage(String key, TorrentLogPage.Cursor before, int limit) {
+        String safeKey = sanitizeKey(key);
+        if (safeKey == null || limit <= 0) {
+            return TorrentLogPage.empty();
+        }
+        List<Long> segments = listSegments(directory.resolve(safeKey));
+        if (segments.isEmpty()) {
+            return TorrentLogPage.empty();
+        }
+        Deque<TorrentLogEntry> page = new ArrayDeque<>(limit);
+        int index = segments.size() - 1;
+        int endLine = Integer.MAX_VALUE;
+        if (before != null) {
+            index = Collections.binarySearch(segments, before.segment());
+            if (index < 0) {
+                // The segment was rotated away: continue from the newest older one.
+                index = -index - 2;
+            } else {
+                endLine = before.line();
+            }
+        }
+        TorrentLogPage.Cursor older = null;
+        for (; index >= 0 && page.size() < limit; index--) {
+            long segment = segments.get(index);
+            List<String> lines = readLines(directory.resolve(safeKey).resolve(segmentName(segment)));
+            int end = Math.min(endLine, lines.size());
+            int start = Math.max(0, end - (limit - page.size()));
+            for (int line = end - 1; line >= start; line--) {
+                TorrentLogEntry entry = parse(lines.get(line));
+                if (entry != null) {
+                    page.addFirst(entry);
+                }
+            }
+            endLine = Integer.MAX_VALUE;
+            if (start > 0) {
+                older = new TorrentLogPage.Cursor(segment, start);
+                break;
+            }
+            older = index > 0 ? new TorrentLogPage.Cursor(segments.get(index - 1), Integer.MAX_VALUE) : null;
+        }
+        return new TorrentLogPage(new ArrayList<>(page), older);
+    }
+
+    /** Writes what is already queued and stops the writer thread. */
+    void close() {
+        if (closed) {
+            return;
+        }
+        flush(2, TimeUnit.SECONDS);
+        closed = true;
+        writer.interrupt();
+    }
+
+    private void writeLoop() {
+        List<Task> batch = new ArrayList<>(WRITE_BATCH);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, WRITE_BATCH - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<Task> batch) {
+        Map<String, List<TorrentLogEntry>> pending = new LinkedHashMap<>();
+        for (Task task : batch) {
+            if (task instanceof Append append) {
+                pending.computeIfAbsent(append.key(), ignored -> new ArrayList<>()).add(append.entry());
+            } else if (task instanceof Delete delete) {
+                pending.remove(delete.key());
+                deleteHistory(delete.key());
+            } else if (task instanceof Flush flush) {
+                writePending(pending);
+                pending.clear();
+                flush.done().countDown();
+            }
+        }
+        writePending(pending);
+    }
+
+    private void writePending(Map<String, List<TorrentLogEntry>> pending) {
+        for (Map.Entry<String, List<TorrentLogEntry>> entry : pending.entrySet()) {
+            try {
+                write(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "No se pudo guardar el registro del torrent: " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(String key, List<TorrentLogEntry> entries) throws IOException {
+        Path torrentDirectory = directory.resolve(key);
+        SegmentCursor cursor = cursors.get(key);
+        if (cursor == null) {
+            Files.createDirectories(torrentDirectory);
+            cursor = new SegmentCursor();
+            List<Long> segments = listSegments(torrentDirectory);
+            cursor.number = segments.isEmpty() ? 1L : segments.get(segments.size() - 1);
+            Path current = torrentDirectory.resolve(segmentName(cursor.number));
+            cursor.size = Files.exists(current) ? Files.size(current) : 0L;
+            cursors.put(key, cursor);
+        }
+        BufferedWriter out = null;
+        try {
+            for (TorrentLogEntry entry : entries) {
+                String line = format(entry) + '\n';
+                int length = line.getBytes(StandardCharsets.UTF_8).length;
+                if (cursor.size > 0 && cursor.size + length > maxSegmentBytes) {
+                    if (out != null) {
+                        out.close();
+                        out = null;
+                    }
+                    cursor.number++;
+                    cursor.size = 0L;
+                    pruneSegments(torrentDirectory);
+                }
+                if (out == null) {
+                    out = Files.newBufferedWriter(torrentDirectory.resolve(segmentName(cursor.number)),
+                            StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                out.write(line);
+                cursor.size += length;
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    private void pruneSegments(Path torrentDirectory) throws IOException {
+        List<Long> segments = listSegments(torrentDirectory);
+        // The segment about to be created counts towards the limit.
+        for (int i = 0; i <= segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(torrentDirectory.resolve(segmentName(segments.get(i))));
+        }
+    }
+
+    private void deleteHistory(String key) {
+        cursors.remove(key);
+        Path torrentDirectory = directory.resolve(key);
+        if (!Files.isDirectory(torrentDirectory)) {
+            return;
+        }
+        try {
+            for (long segment : listSegments(torrentDirectory)) {
+                Files.deleteIfExists(torrentDirectory.resolve(segmentName(segment)));
+            }
+            Files.deleteIfExists(torrentDirectory);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "No se pudo borrar el registro del torrent: " + e.getMessage());
+        }
+    }
+
+    private static List<Long> listSegments(Path torrentDirectory) {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(torrentDirectory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(torrentDirectory, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(0, name.length() - EXTENSION.length())));
+                } catch (NumberFormatException ignored) {
+                    // not a segment
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "No se pudo listar el registro del torrent: " + e.getMessage());
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static List<String> readLines(Path segment) {
+        try {
+            return Files.readAllLines(segment, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Rotated away while paging.
+            return List.of();
+        }
+    }
+
+    private static String segmentName(long segment) {
+        return String.format("%08d", segment) + EXTENSION;
+    }
+
+    static String sanitizeKey(String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        String safe = key.trim().replaceAll("[^A-Za-z0-9._-]", "_");
+        return safe.startsWith(".") ? "_" + safe : safe;
+    }
+
+    @SuppressWarnings("unchecked")
+    static String format(TorrentLogEntry entry) {
+        JSONObject json = new JSONObject();
+        json.put("t", entry.getTimestamp());
+        json.put("l", entry.getLevel().getName());
+        json.put("s", entry.getStep().name());
+        json.put("m", entry.getMessage());
+        if (entry.isGeneratedByHealthCheck()) {
+            json.put("h", true);
+        }
+        return json.toJSONString();
+    }
+
+    static TorrentLogEntry parse(String line) {
+        if (line == null || line.isBlank()) {
+            return null;
+        }
+        try {
+            if (!(new JSONParser().parse(line) instanceof JSONObject json)) {
+                return null;
+            }
+            long timestamp = json.get("t") instanceof Number number ? number.longValue() : 0L;
+            Level level = Level.parse(String.valueOf(json.get("l")));
+            TorrentLogEntry.Step step = TorrentLogEntry.Step.valueOf(String.valueOf(json.get("s")));
+            Object message = json.get("m");
+            return new TorrentLogEntry(timestamp, level, step, message != null ? message.toString() : "",
+                    Boolean.TRUE.equals(json.get("h")));
+        } catch (ParseException | IllegalArgumentException e) {
+            // A line cut short by a crash; skip it.
+            return null;
+        }
+    }
+}
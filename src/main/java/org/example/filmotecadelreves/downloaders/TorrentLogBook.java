@@ -1,42 +1,86 @@
 package org.example.filmotecadelreves.downloaders;
 
 import java.io.Serializable;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Thread-safe ring buffer that stores the last {@code maxEntries} log events
- * for a torrent.  The downloader can append entries from background threads
- * while the JavaFX UI reads snapshots to show the activity log to the user.
+ * Lock-free ring buffer that keeps the last {@code maxEntries} log events of a
+ * torrent.  Any number of downloader threads may append concurrently: each
+ * writer claims a sequence number and publishes its entry in the slot for that
+ * sequence, so appends never wait on the JavaFX UI reading a snapshot.  A slot
+ * is only replaced by a newer sequence: a writer that was delayed past a full
+ * lap of the ring drops its entry instead of overwriting a newer one.
+ * <p>
+ * A snapshot only returns entries whose slot still carries the expected
+ * sequence; an entry that is being overwritten or has not been published yet
+ * is skipped rather than waited for.
  */
 final class TorrentLogBook implements Serializable {
 
+    private record Slot(long sequence, TorrentLogEntry entry) implements Serializable {
+    }
+
     private final int maxEntries;
-    private final Deque<TorrentLogEntry> entries;
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong next = new AtomicLong();
+    /** Sequences below this value were discarded by {@link #clear()}. */
+    private final AtomicLong floor = new AtomicLong();
 
     TorrentLogBook(int maxEntries) {
         this.maxEntries = Math.max(1, maxEntries);
-        this.entries = new ArrayDeque<>(this.maxEntries);
+        this.slots = new AtomicReferenceArray<>(this.maxEntries);
     }
 
-    synchronized void add(TorrentLogEntry entry) {
+    void add(TorrentLogEntry entry) {
         if (entry == null) {
             return;
         }
-        entries.addLast(entry);
-        while (entries.size() > maxEntries) {
-            entries.removeFirst();
+        publish(claimSequence(), entry);
+    }
+
+    /**
+     * The two halves of {@link #add}, package-private so tests can stall a
+     * writer between claiming its sequence and publishing its entry.
+     */
+    long claimSequence() {
+        return next.getAndIncrement();
+    }
+
+    void publish(long sequence, TorrentLogEntry entry) {
+        int index = (int) (sequence % maxEntries);
+        Slot published = new Slot(sequence, entry);
+        Slot current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.sequence() > sequence) {
+                // A writer that lapped us already published a newer entry here.
+                return;
+            }
+        } while (!slots.compareAndSet(index, current, published));
+    }
+
+    List<TorrentLogEntry> snapshot() {
+        long end = next.get();
+        long start = Math.max(floor.get(), end - maxEntries);
+        List<TorrentLogEntry> result = new ArrayList<>((int) Math.max(0L, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Slot slot = slots.get((int) (sequence % maxEntries));
+            if (slot != null && slot.sequence() == sequence) {
+                result.add(slot.entry());
+            }
         }
+        return result;
     }
 
-    synchronized List<TorrentLogEntry> snapshot() {
-        return new ArrayList<>(entries);
+    /** Number of entries appended since creation, including those already overwritten. */
+    long appended() {
+        return next.get();
     }
 
-    synchronized void clear() {
-        entries.clear();
+    void clear() {
+        floor.accumulateAndGet(next.get(), Math::max);
     }
 }
-
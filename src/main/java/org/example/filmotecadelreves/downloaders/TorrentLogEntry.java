@@ -84,6 +84,7 @@ public final class TorrentLogEntry implements Serializable {
         DHT("DHT"),
         DOWNLOAD("Descarga"),
         COMPLETED("Completado"),
+        POST_PROCESS("Postproceso"),
         ERROR("Error"),
         HEALTHCHECK("Diagnóstico");
 
@@ -0,0 +1,27 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.List;
+
+/**
+ * One page of the archived activity log of a torrent, oldest entry first.
+ * {@link #olderCursor()} points just before the first entry of the page and
+ * is {@code null} once the beginning of the history has been reached.
+ */
+public record TorrentLogPage(List<TorrentLogEntry> entries, Cursor olderCursor) {
+
+    /** Position inside the archive: the entries before {@code line} of {@code segment}. */
+    public record Cursor(long segment, int line) {
+    }
+
+    public TorrentLogPage {
+        entries = List.copyOf(entries);
+    }
+
+    public static TorrentLogPage empty() {
+        return new TorrentLogPage(List.of(), null);
+    }
+
+    public boolean hasOlder() {
+        return olderCursor != null;
+    }
+}
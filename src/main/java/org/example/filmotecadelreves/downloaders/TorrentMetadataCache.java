@@ -0,0 +1,278 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content addressed cache of torrent metadata.  Each entry is the bencoded
+ * torrent stored as {@code <infohash>.torrent}; an index maps the remote URLs
+ * torrents were fetched from to their info-hash.  When the cache grows past
+ * its size budget the least recently used entries are evicted.
+ */
+final class TorrentMetadataCache {
+
+    private static final Logger LOGGER = Logger.getLogger(TorrentMetadataCache.class.getName());
+    static final String DIRECTORY_PROPERTY = "filmoteca.torrent.cache.path";
+    static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+    private static final String DEFAULT_DIRECTORY = "torrent_cache";
+    private static final String EXTENSION = ".torrent";
+    private static final String URL_INDEX_FILE = "url_index.json";
+    private static final int MAX_URL_INDEX_ENTRIES = 5000;
+    private static final String BASE32_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> urlIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+    TorrentMetadataCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0L, maxBytes);
+        loadUrlIndex();
+    }
+
+    static Path defaultDirectory() {
+        String override = System.getProperty(DIRECTORY_PROPERTY);
+        if (override != null && !override.trim().isEmpty()) {
+            return Paths.get(override.trim());
+        }
+        return Paths.get("DB", DEFAULT_DIRECTORY);
+    }
+
+    /** Returns the cached torrent for {@code infoHash}, or {@code null}. */
+    synchronized byte[] get(String infoHash) {
+        String key = normalizeHash(infoHash);
+        if (key == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return data.length > 0 ? data : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "No se pudo leer la caché de metadatos: " + e.getMessage());
+            return null;
+        }
+    }
+
+    synchronized boolean contains(String infoHash) {
+        String key = normalizeHash(infoHash);
+        return key != null && Files.isRegularFile(directory.resolve(key + EXTENSION));
+    }
+
+    /** Stores the bencoded torrent for {@code infoHash} and applies the size budget. */
+    synchronized void put(String infoHash, byte[] torrentData) {
+        String key = normalizeHash(infoHash);
+        if (key == null || torrentData == null || torrentData.length == 0 || torrentData.length > maxBytes) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory.resolve(key + EXTENSION), torrentData);
+            evictIfNeeded(key);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo guardar la caché de metadatos: " + e.getMessage());
+        }
+    }
+
+    /** Info-hash of the torrent previously downloaded from {@code url}, if cached. */
+    synchronized String hashForUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        String hash = urlIndex.get(url.trim());
+        if (hash == null) {
+            return null;
+        }
+        if (!Files.isRegularFile(directory.resolve(hash + EXTENSION))) {
+            urlIndex.remove(url.trim());
+            return null;
+        }
+        return hash;
+    }
+
+    synchronized void rememberUrl(String url, String infoHash) {
+        String key = normalizeHash(infoHash);
+        if (url == null || url.isBlank() || key == null) {
+            return;
+        }
+        if (key.equals(urlIndex.put(url.trim(), key))) {
+            return;
+        }
+        while (urlIndex.size() > MAX_URL_INDEX_ENTRIES) {
+            urlIndex.remove(urlIndex.keySet().iterator().next());
+        }
+        saveUrlIndex();
+    }
+
+    /**
+     * Extracts the v1 info-hash from a magnet link, accepting both the hex and
+     * the base32 forms.  Returns {@code null} when the link has none.
+     */
+    static String infoHashFromMagnet(String magnet) {
+        if (magnet == null || !magnet.regionMatches(true, 0, "magnet:?", 0, 8)) {
+            return null;
+        }
+        for (String parameter : magnet.substring(8).split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator < 0 || !parameter.substring(0, separator).toLowerCase(Locale.ROOT).startsWith("xt")) {
+                continue;
+            }
+            String value = URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            if (!value.regionMatches(true, 0, "urn:btih:", 0, 9)) {
+                continue;
+            }
+            String hash = value.substring(9);
+            if (hash.length() == 32) {
+                hash = base32ToHex(hash);
+            }
+            String normalized = normalizeHash(hash);
+            if (normalized != null) {
+                return normalized;
+            }
+        }
+        return null;
+    }
+
+    static String normalizeHash(String infoHash) {
+        if (infoHash == null) {
+            return null;
+        }
+        String hash = infoHash.trim().toLowerCase(Locale.ROOT);
+        if (hash.length() != 40) {
+            return null;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return hash;
+    }
+
+    private static String base32ToHex(String base32) {
+        StringBuilder hex = new StringBuilder(40);
+        int buffer = 0;
+        int bits = 0;
+        for (char c : base32.toUpperCase(Locale.ROOT).toCharArray()) {
+            int value = BASE32_ALPHABET.indexOf(c);
+            if (value < 0) {
+                return null;
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                hex.append(String.format(Locale.ROOT, "%02x", (buffer >> bits) & 0xFF));
+            }
+        }
+        return hex.toString();
+    }
+
+    private void evictIfNeeded(String keep) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0L;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+                total += Files.size(entry);
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(TorrentMetadataCache::lastModified));
+        boolean indexChanged = false;
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            String name = entry.getFileName().toString();
+            String hash = name.substring(0, name.length() - EXTENSION.length());
+            if (hash.equals(keep)) {
+                continue;
+            }
+            long size = Files.size(entry);
+            Files.deleteIfExists(entry);
+            total -= size;
+            indexChanged |= urlIndex.values().removeIf(hash::equals);
+        }
+        if (indexChanged) {
+            saveUrlIndex();
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void loadUrlIndex() {
+        Path file = directory.resolve(URL_INDEX_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            Object parsed = new JSONParser().parse(Files.readString(file, StandardCharsets.UTF_8));
+            if (parsed instanceof JSONObject json) {
+                for (Object entry : json.entrySet()) {
+                    Map.Entry<?, ?> mapping = (Map.Entry<?, ?>) entry;
+                    String hash = normalizeHash(String.valueOf(mapping.getValue()));
+                    if (hash != null) {
+                        urlIndex.put(String.valueOf(mapping.getKey()), hash);
+                    }
+                }
+            }
+        } catch (IOException | ParseException e) {
+            LOGGER.log(Level.WARNING, "No se pudo leer el índice de la caché de torrents: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void saveUrlIndex() {
+        JSONObject json = new JSONObject();
+        json.putAll(urlIndex);
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory.resolve(URL_INDEX_FILE), json.toJSONString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo guardar el índice de la caché de torrents: " + e.getMessage());
+        }
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, data);
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the libtorrent session state (DHT routing table and node id) in its
+ * own binary file instead of {@code config.json}.  The file is a small header
+ * (magic, version, length, CRC32) followed by the raw bencoded state; it is
+ * replaced atomically after being forced to disk, so a crash leaves either
+ * the previous or the new state, never a torn one.  A state identical to the
+ * last one written is not written again.
+ */
+final class TorrentSessionStateStore {
+
+    private static final Logger LOGGER = Logger.getLogger(TorrentSessionStateStore.class.getName());
+    static final String PATH_PROPERTY = "filmoteca.torrent.session.path";
+    private static final String DEFAULT_FILENAME = "torrent_session.state";
+    private static final int MAGIC = 0x46445353; // "FDSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+    private static final int MAX_STATE_BYTES = 64 * 1024 * 1024;
+
+    private final Path file;
+    private long lastChecksum = -1L;
+    private int lastLength = -1;
+
+    TorrentSessionStateStore(Path file) {
+        this.file = file;
+    }
+
+    static Path defaultPath() {
+        String override = System.getProperty(PATH_PROPERTY);
+        if (override != null && !override.trim().isEmpty()) {
+            return Paths.get(override.trim());
+        }
+        return Paths.get("DB", DEFAULT_FILENAME);
+    }
+
+    boolean exists() {
+        return Files.isRegularFile(file);
+    }
+
+    /** Returns the stored state, or {@code null} when there is none or it is damaged. */
+    synchronized byte[] load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(raw)) {
+            if (in.readInt() != MAGIC) {
+                LOGGER.log(Level.WARNING, "El estado de la sesión de torrents no tiene un formato reconocido.");
+                return null;
+            }
+            int version = in.readInt();
+            int length = in.readInt();
+            long checksum = in.readLong();
+            if (version != VERSION || length < 0 || length > MAX_STATE_BYTES) {
+                LOGGER.log(Level.WARNING, "Versión o tamaño no válidos en el estado de la sesión de torrents.");
+                return null;
+            }
+            byte[] data = in.readNBytes(length);
+            if (data.length != length || checksum(data) != checksum) {
+                LOGGER.log(Level.WARNING, "El estado de la sesión de torrents está dañado; se ignora.");
+                return null;
+            }
+            lastChecksum = checksum;
+            lastLength = length;
+            return data;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo leer el estado de la sesión de torrents: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code state} unless it matches what is already on disk.
+     *
+     * @return {@code true} if the file now holds {@code state}
+     */
+    synchronized boolean save(byte[] state) {
+        if (state == null || state.length == 0 || state.length > MAX_STATE_BYTES) {
+            return false;
+        }
+        long checksum = checksum(state);
+        if (checksum == lastChecksum && state.length == lastLength && Files.isRegularFile(file)) {
+            return true;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(state.length)
+                    .putLong(checksum)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer body = ByteBuffer.wrap(state);
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, body});
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            lastChecksum = checksum;
+            lastLength = state.length;
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "No se pudo guardar el estado de la sesión de torrents: " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // best effort
+            }
+            return false;
+        }
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,412 @@
+package org.example.filmotecadelreves.headless;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.filmotecadelreves.downloaders.BrowserSessionPool;
+import org.example.filmotecadelreves.downloaders.DirectDownloadEngine;
+import org.example.filmotecadelreves.headless.HeadlessDownloadService.DownloadSnapshot;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loopback HTTP/JSON API of the headless mode.
+ * <pre>
+ * GET    /api/downloads                 listado de descargas
+ * GET    /api/downloads/{id}            una descarga
+ * POST   /api/torrents                  {"source": "...", "destination": "..."}
+ * POST   /api/direct                    {"url": "...", "name": "...", "server": "...", "destination": "..."}
+ * POST   /api/downloads/{id}/pause
+ * POST   /api/downloads/{id}/resume
+ * DELETE /api/downloads/{id}?deleteFiles=true
+ * GET    /api/stats                     totales y velocidades
+ * GET    /api/health                    salud de los enjambres de los torrents activos
+ * GET    /api/engine                    descargas directas en curso, en cola y bloqueadas
+ * GET    /api/browsers                  navegadores de los resolutores: en reserva, prestados y tiempos de espera
+ * GET    /api/events                    server-sent events con el progreso
+ * </pre>
+ * The server only binds to the loopback interface.  Every request must name
+ * it in its {@code Host} header, which defeats DNS rebinding, must not carry
+ * an {@code Origin} header, and must send {@code Authorization: Bearer <token>}
+ * with the random token written at start-up to a file only the current user
+ * can read:
+ * <pre>
+ * curl -H "Authorization: Bearer $(cat api.token)" http://127.0.0.1:8765/api/stats
+ * </pre>
+ */
+public final class HeadlessApiServer {
+
+    private static final Logger LOGGER = Logger.getLogger(HeadlessApiServer.class.getName());
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final Duration EVENT_HEARTBEAT = Duration.ofSeconds(15);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final HeadlessDownloadService service;
+    private final Path tokenFile;
+    private final String token;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long eventIntervalMillis;
+    private volatile boolean running;
+
+    public HeadlessApiServer(HeadlessDownloadService service, int port, Duration eventInterval,
+                             Path tokenFile) throws IOException {
+        this.service = service;
+        this.tokenFile = tokenFile;
+        this.token = newToken();
+        this.eventIntervalMillis = Math.max(50L, eventInterval.toMillis());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "headless-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() throws IOException {
+        writeTokenFile(tokenFile, token);
+        running = true;
+        server.start();
+        LOGGER.info("API local escuchando en http://127.0.0.1:" + getPort() + "/api/ (token en "
+                + tokenFile.toAbsolutePath() + ")");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        running = false;
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "No se pudo borrar " + tokenFile + ": " + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                sendError(exchange, 403, "Host no permitido.");
+                return;
+            }
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                sendError(exchange, 403, "Peticiones desde navegador no permitidas.");
+                return;
+            }
+            if (!hasToken(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendError(exchange, 401, "Falta el token de la API o no es válido.");
+                return;
+            }
+            route(exchange);
+        } catch (IllegalArgumentException e) {
+            trySendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            trySendError(exchange, 503, e.getMessage());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Conexión de la API cerrada: " + e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error atendiendo " + exchange.getRequestURI(), e);
+            trySendError(exchange, 500, "Error interno: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * A page reached through DNS rebinding talks to this port under its own
+     * host name, so only the loopback names are accepted.
+     */
+    private boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String normalized = host.trim().toLowerCase(Locale.ROOT);
+        String port = ":" + getPort();
+        return normalized.equals("127.0.0.1" + port)
+                || normalized.equals("localhost" + port)
+                || normalized.equals("[::1]" + port);
+    }
+
+    private boolean hasToken(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return false;
+        }
+        byte[] presented = authorization.substring(7).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /** Writes the token readable and writable by the owner only. */
+    private static void writeTokenFile(Path file, String token) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+            File plain = file.toFile();
+            plain.setReadable(false, false);
+            plain.setWritable(false, false);
+            plain.setReadable(true, true);
+            plain.setWritable(true, true);
+        }
+        Files.writeString(file, token, StandardCharsets.UTF_8);
+    }
+
+    private static void trySendError(HttpExchange exchange, int status, String message) {
+        try {
+            sendError(exchange, status, message);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "No se pudo enviar la respuesta de error: " + e.getMessage());
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] parts = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        String resource = parts.length > 0 ? parts[0] : "";
+
+        switch (resource) {
+            case "downloads" -> routeDownloads(exchange, method, parts);
+            case "torrents" -> {
+                requireMethod(method, "POST");
+                JSONObject body = readBody(exchange);
+                String id = service.addTorrent(asString(body.get("source")), asString(body.get("destination")));
+                sendJson(exchange, 201, idResponse(id));
+            }
+            case "direct" -> {
+                requireMethod(method, "POST");
+                JSONObject body = readBody(exchange);
+                String id = service.addDirectDownload(asString(body.get("url")), asString(body.get("name")),
+                        asString(body.get("server")), asString(body.get("destination")));
+                sendJson(exchange, 201, idResponse(id));
+            }
+            case "stats" -> {
+                requireMethod(method, "GET");
+                sendJson(exchange, 200, service.stats().toJson());
+            }
+            case "health" -> {
+                requireMethod(method, "GET");
+                sendJson(exchange, 200, service.swarmHealth().toJson());
+            }
+            case "engine" -> {
+                requireMethod(method, "GET");
+                sendJson(exchange, 200, DirectDownloadEngine.shared().snapshot().toJson());
+            }
+            case "browsers" -> {
+                requireMethod(method, "GET");
+                sendJson(exchange, 200, BrowserSessionPool.shared().stats().toJson());
+            }
+            case "events" -> {
+                requireMethod(method, "GET");
+                streamEvents(exchange);
+            }
+            default -> sendError(exchange, 404, "Recurso desconocido.");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void routeDownloads(HttpExchange exchange, String method, String[] parts) throws IOException {
+        if (parts.length == 1) {
+            requireMethod(method, "GET");
+            JSONArray downloads = new JSONArray();
+            for (DownloadSnapshot snapshot : service.snapshot()) {
+                downloads.add(snapshot.toJson());
+            }
+            JSONObject response = new JSONObject();
+            response.put("downloads", downloads);
+            sendJson(exchange, 200, response);
+            return;
+        }
+        String id = parts[1];
+        if (parts.length == 2) {
+            if ("DELETE".equals(method)) {
+                boolean deleteFiles = "true".equalsIgnoreCase(queryParameters(exchange.getRequestURI()).get("deleteFiles"));
+                respondFound(exchange, service.remove(id, deleteFiles), id);
+                return;
+            }
+            requireMethod(method, "GET");
+            DownloadSnapshot snapshot = service.find(id);
+            if (snapshot == null) {
+                sendError(exchange, 404, "Descarga no encontrada: " + id);
+            } else {
+                sendJson(exchange, 200, snapshot.toJson());
+            }
+            return;
+        }
+        requireMethod(method, "POST");
+        switch (parts[2]) {
+            case "pause" -> respondFound(exchange, service.pause(id), id);
+            case "resume" -> respondFound(exchange, service.resume(id), id);
+            default -> sendError(exchange, 404, "Acción desconocida: " + parts[2]);
+        }
+    }
+
+    /**
+     * Emits a {@code progress} event whenever a download changes and a
+     * {@code removed} event when it disappears, plus a periodic comment so
+     * proxies and clients notice dead connections.
+     */
+    @SuppressWarnings("unchecked")
+    private void streamEvents(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        Map<String, String> lastSent = new HashMap<>();
+        long lastWrite = System.currentTimeMillis();
+        writeEvent(out, ": conectado\n\n");
+        try {
+            while (running) {
+                Set<String> present = new HashSet<>();
+                boolean wrote = false;
+                for (DownloadSnapshot snapshot : service.snapshot()) {
+                    present.add(snapshot.id());
+                    String json = snapshot.toJson().toJSONString();
+                    if (!json.equals(lastSent.put(snapshot.id(), json))) {
+                        writeEvent(out, "event: progress\ndata: " + json + "\n\n");
+                        wrote = true;
+                    }
+                }
+                for (String id : new HashSet<>(lastSent.keySet())) {
+                    if (!present.contains(id)) {
+                        lastSent.remove(id);
+                        JSONObject removed = new JSONObject();
+                        removed.put("id", id);
+                        writeEvent(out, "event: removed\ndata: " + removed.toJSONString() + "\n\n");
+                        wrote = true;
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (wrote) {
+                    lastWrite = now;
+                } else if (now - lastWrite >= EVENT_HEARTBEAT.toMillis()) {
+                    writeEvent(out, ": ping\n\n");
+                    lastWrite = now;
+                }
+                Thread.sleep(eventIntervalMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeEvent(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!expected.equals(method)) {
+            throw new IllegalArgumentException("Método no permitido: " + method);
+        }
+    }
+
+    private static void respondFound(HttpExchange exchange, boolean found, String id) throws IOException {
+        if (found) {
+            sendJson(exchange, 200, idResponse(id));
+        } else {
+            sendError(exchange, 404, "Descarga no encontrada: " + id);
+        }
+    }
+
+    private static JSONObject readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            String content = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            if (content.isBlank()) {
+                return new JSONObject();
+            }
+            Object parsed = new JSONParser().parse(content);
+            if (!(parsed instanceof JSONObject json)) {
+                throw new IllegalArgumentException("Se esperaba un objeto JSON.");
+            }
+            return json;
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("JSON inválido: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> queryParameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isBlank()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator >= 0 ? pair.substring(0, separator) : pair;
+            String value = separator >= 0 ? pair.substring(separator + 1) : "";
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String asString(Object value) {
+        return value instanceof String text ? text : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject idResponse(String id) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        return json;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("error", message);
+        sendJson(exchange, status, json);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
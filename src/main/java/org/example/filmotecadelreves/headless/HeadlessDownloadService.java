@@ -0,0 +1,407 @@
+package org.example.filmotecadelreves.headless;
+
+import org.example.filmotecadelreves.DirectDownloader;
+import org.example.filmotecadelreves.UI.DescargasUI.DirectDownload;
+import org.example.filmotecadelreves.downloaders.PlainHttpDownloader;
+import org.example.filmotecadelreves.downloaders.SwarmHealthSummary;
+import org.example.filmotecadelreves.downloaders.TorrentDownloader;
+import org.example.filmotecadelreves.moviesad.DownloadManager;
+import org.example.filmotecadelreves.moviesad.DownloadPersistenceManager;
+import org.example.filmotecadelreves.moviesad.DownloadPersistenceManager.DirectDownloadRecord;
+import org.example.filmotecadelreves.moviesad.DownloadPersistenceManager.TorrentDownloadRecord;
+import org.example.filmotecadelreves.moviesad.TorrentState;
+import org.json.simple.JSONObject;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns the torrent and direct downloads when the application runs without
+ * JavaFX.  It mirrors what {@code DescargasUI} does for the desktop client:
+ * restores persisted downloads, starts new ones and forwards pause, resume
+ * and removal requests to the right engine.
+ */
+public final class HeadlessDownloadService {
+
+    private static final Logger LOGGER = Logger.getLogger(HeadlessDownloadService.class.getName());
+    static final String TYPE_TORRENT = "torrent";
+    static final String TYPE_DIRECT = "direct";
+
+    private final TorrentDownloader torrentDownloader;
+    private final DownloadPersistenceManager persistence;
+    private final Path defaultDestination;
+    private final DirectDownloader plainHttpDownloader = new PlainHttpDownloader();
+    private final Object lock = new Object();
+    private final Map<String, TorrentState> torrents = new LinkedHashMap<>();
+    private final Map<String, DirectDownload> directDownloads = new LinkedHashMap<>();
+
+    /**
+     * @param torrentDownloader torrent engine, or {@code null} to serve only
+     *                          direct downloads
+     */
+    public HeadlessDownloadService(TorrentDownloader torrentDownloader,
+                                   DownloadPersistenceManager persistence,
+                                   Path defaultDestination) {
+        this.torrentDownloader = torrentDownloader;
+        this.persistence = persistence;
+        this.defaultDestination = defaultDestination.toAbsolutePath();
+    }
+
+    public boolean isTorrentEngineAvailable() {
+        return torrentDownloader != null;
+    }
+
+    /** Loads the downloads saved by a previous run and restarts the unfinished ones. */
+    public void restorePersistedDownloads() {
+        for (DirectDownloadRecord record : persistence.loadDirectDownloads()) {
+            DirectDownload download = new DirectDownload(
+                    record.getId(),
+                    record.getName(),
+                    record.getProgress(),
+                    record.getStatus(),
+                    record.getServer(),
+                    record.getUrl(),
+                    record.getDestinationPath(),
+                    null,
+                    record.isManuallyPaused());
+            download.applySnapshot(record);
+            boolean supported = true;
+            try {
+                download.setDownloader(resolveDirectDownloader(record.getServer()));
+            } catch (IllegalArgumentException e) {
+                supported = false;
+                LOGGER.warning("No se encontró downloader para el servidor " + record.getServer()
+                        + " al restaurar la descarga " + record.getName());
+            }
+            prepareDirectDownload(download);
+            synchronized (lock) {
+                directDownloads.put(download.getId(), download);
+            }
+            if (supported && !download.isUserPaused() && !isFinished(download.getStatus())) {
+                download.setStatus("Waiting");
+                download.getDownloader().download(download.getUrl(), download.getDestinationPath(), download);
+            }
+        }
+
+        List<TorrentState> restoredTorrents = new ArrayList<>();
+        for (TorrentDownloadRecord record : persistence.loadTorrentDownloads()) {
+            TorrentState state = new TorrentState(record.getId(), record.getSource(), record.getDestinationPath(), 0, 0, 0);
+            state.applySnapshot(record);
+            synchronized (lock) {
+                torrents.put(state.getInstanceId(), state);
+            }
+            if (torrentDownloader != null && !state.isUserPaused() && !isFinished(state.getStatus())) {
+                state.setStatus("En espera");
+                restoredTorrents.add(state);
+            }
+        }
+        if (!restoredTorrents.isEmpty()) {
+            torrentDownloader.addTorrents(restoredTorrents);
+        }
+        LOGGER.info("Descargas restauradas: " + torrents.size() + " torrents, "
+                + directDownloads.size() + " directas.");
+    }
+
+    /** Queues a torrent from a magnet link, a .torrent URL or a local path. */
+    public String addTorrent(String source, String destination) {
+        if (torrentDownloader == null) {
+            throw new IllegalStateException("El gestor de torrents no está disponible.");
+        }
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Falta la fuente del torrent.");
+        }
+        TorrentState state = new TorrentState(source.trim(), resolveDestination(destination), 0, 0, 0);
+        synchronized (lock) {
+            torrents.put(state.getInstanceId(), state);
+        }
+        torrentDownloader.addTorrent(state);
+        return state.getInstanceId();
+    }
+
+    /**
+     * Starts a direct download.  When {@code server} names a supported host
+     * (Streamtape, Mixdrop...) its resolver is used; otherwise the URL must
+     * point to the file itself.
+     */
+    public String addDirectDownload(String url, String name, String server, String destination) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            throw new IllegalArgumentException("La URL de descarga debe ser http(s).");
+        }
+        String fileName = (name == null || name.isBlank()) ? fileNameFromUrl(url) : name.trim();
+        DirectDownloader downloader = resolveDirectDownloader(server);
+        DirectDownload download = new DirectDownload(fileName, 0, "Waiting",
+                server == null || server.isBlank() ? "http" : server.trim(),
+                url, resolveDestination(destination), downloader);
+        prepareDirectDownload(download);
+        synchronized (lock) {
+            directDownloads.put(download.getId(), download);
+        }
+        download.forcePersistSnapshot();
+        downloader.download(url, download.getDestinationPath(), download);
+        return download.getId();
+    }
+
+    public boolean pause(String id) {
+        TorrentState state;
+        DirectDownload download;
+        synchronized (lock) {
+            state = torrents.get(id);
+            download = directDownloads.get(id);
+        }
+        if (state != null && torrentDownloader != null) {
+            torrentDownloader.pauseDownload(state);
+            return true;
+        }
+        if (download != null) {
+            download.setUserPaused(true);
+            download.getDownloader().pauseDownload(download);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean resume(String id) {
+        TorrentState state;
+        DirectDownload download;
+        synchronized (lock) {
+            state = torrents.get(id);
+            download = directDownloads.get(id);
+        }
+        if (state != null && torrentDownloader != null) {
+            if (isFinished(state.getStatus()) || "Error".equals(state.getStatus())) {
+                state.setUserPaused(false);
+                torrentDownloader.addTorrent(state);
+            } else {
+                torrentDownloader.resumeDownload(state);
+            }
+            return true;
+        }
+        if (download != null) {
+            download.setUserPaused(false);
+            download.getDownloader().resumeDownload(download);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean remove(String id, boolean deleteFiles) {
+        TorrentState state;
+        DirectDownload download;
+        synchronized (lock) {
+            state = torrents.remove(id);
+            download = directDownloads.remove(id);
+        }
+        if (state != null) {
+            if (torrentDownloader != null) {
+                torrentDownloader.removeDownload(state, deleteFiles);
+            }
+            persistence.deleteTorrent(id);
+            return true;
+        }
+        if (download != null) {
+            download.getDownloader().cancelDownload(download);
+            persistence.deleteDirectDownload(id);
+            return true;
+        }
+        return false;
+    }
+
+    public List<DownloadSnapshot> snapshot() {
+        List<TorrentState> torrentList;
+        List<DirectDownload> directList;
+        synchronized (lock) {
+            torrentList = new ArrayList<>(torrents.values());
+            directList = new ArrayList<>(directDownloads.values());
+        }
+        List<DownloadSnapshot> snapshots = new ArrayList<>(torrentList.size() + directList.size());
+        for (TorrentState state : torrentList) {
+            snapshots.add(new DownloadSnapshot(
+                    state.getInstanceId(),
+                    TYPE_TORRENT,
+                    state.getName(),
+                    state.getStatus(),
+                    state.getProgress(),
+                    state.getFileSize(),
+                    (long) (state.getDownloadSpeed() * 1024.0),
+                    (long) (state.getUploadSpeed() * 1024.0),
+                    state.getRemainingTime(),
+                    state.getPeers(),
+                    state.getSeeds()));
+        }
+        for (DirectDownload download : directList) {
+            snapshots.add(new DownloadSnapshot(
+                    download.getId(),
+                    TYPE_DIRECT,
+                    download.getName(),
+                    download.getStatus(),
+                    download.progressProperty().get(),
+                    download.getFileSize(),
+                    (long) (download.getDownloadSpeed() * 1024.0 * 1024.0),
+                    0L,
+                    download.getRemainingTime(),
+                    0,
+                    0));
+        }
+        return snapshots;
+    }
+
+    public DownloadSnapshot find(String id) {
+        for (DownloadSnapshot snapshot : snapshot()) {
+            if (snapshot.id().equals(id)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    public Stats stats() {
+        int torrentCount = 0;
+        int directCount = 0;
+        int active = 0;
+        long downloadRate = 0L;
+        long uploadRate = 0L;
+        for (DownloadSnapshot snapshot : snapshot()) {
+            if (TYPE_TORRENT.equals(snapshot.type())) {
+                torrentCount++;
+            } else {
+                directCount++;
+            }
+            if (snapshot.downloadRate() > 0 || snapshot.uploadRate() > 0) {
+                active++;
+            }
+            downloadRate += snapshot.downloadRate();
+            uploadRate += snapshot.uploadRate();
+        }
+        return new Stats(torrentCount, directCount, active, downloadRate, uploadRate, isTorrentEngineAvailable());
+    }
+
+    public SwarmHealthSummary swarmHealth() {
+        return torrentDownloader != null ? torrentDownloader.getSwarmHealth() : SwarmHealthSummary.empty();
+    }
+
+    /** Pauses the running direct downloads so they can resume on the next start. */
+    public void shutdown() {
+        List<DirectDownload> directList;
+        synchronized (lock) {
+            directList = new ArrayList<>(directDownloads.values());
+        }
+        for (DirectDownload download : directList) {
+            if (!isFinished(download.getStatus())) {
+                download.getDownloader().pauseDownload(download);
+            }
+        }
+    }
+
+    private void prepareDirectDownload(DirectDownload download) {
+        if (download.getDownloader() == null) {
+            download.setDownloader(plainHttpDownloader);
+        }
+        // Sin interfaz no hay a quién preguntar: se reinicia desde cero como haría el usuario.
+        download.setRestartDecision(reason -> {
+            LOGGER.log(Level.INFO, "Reiniciando \"" + download.getName() + "\": " + reason);
+            return CompletableFuture.completedFuture(true);
+        });
+    }
+
+    private DirectDownloader resolveDirectDownloader(String server) {
+        if (server == null || server.isBlank() || "http".equalsIgnoreCase(server.trim())) {
+            return plainHttpDownloader;
+        }
+        DirectDownloader downloader = DownloadManager.getDownloaderForServer(server);
+        if (downloader == null) {
+            throw new IllegalArgumentException("Servidor no soportado: " + server);
+        }
+        return downloader;
+    }
+
+    private String resolveDestination(String destination) {
+        if (destination == null || destination.isBlank()) {
+            return defaultDestination.toString();
+        }
+        return destination.trim();
+    }
+
+    private static String fileNameFromUrl(String url) {
+        try {
+            String path = URI.create(url).getPath();
+            if (path != null) {
+                String candidate = path.substring(path.lastIndexOf('/') + 1);
+                if (!candidate.isBlank()) {
+                    return candidate;
+                }
+            }
+        } catch (IllegalArgumentException ignored) {
+        }
+        return "descarga-" + System.currentTimeMillis();
+    }
+
+    private static boolean isFinished(String status) {
+        if (status == null) {
+            return false;
+        }
+        String normalized = status.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith("completado") || normalized.contains("completed")
+                || normalized.contains("eliminado") || normalized.contains("cancel");
+    }
+
+    /** Point-in-time view of a download as exposed by the API. Rates are in bytes/s. */
+    public record DownloadSnapshot(String id,
+                                   String type,
+                                   String name,
+                                   String status,
+                                   double progress,
+                                   long size,
+                                   long downloadRate,
+                                   long uploadRate,
+                                   long remainingSeconds,
+                                   int peers,
+                                   int seeds) {
+
+        @SuppressWarnings("unchecked")
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("type", type);
+            json.put("name", name);
+            json.put("status", status);
+            json.put("progress", Math.round(progress * 10.0) / 10.0);
+            json.put("size", size);
+            json.put("downloadRate", downloadRate);
+            json.put("uploadRate", uploadRate);
+            json.put("remainingSeconds", remainingSeconds);
+            if (TYPE_TORRENT.equals(type)) {
+                json.put("peers", (long) peers);
+                json.put("seeds", (long) seeds);
+            }
+            return json;
+        }
+    }
+
+    public record Stats(int torrents,
+                        int directDownloads,
+                        int active,
+                        long downloadRate,
+                        long uploadRate,
+                        boolean torrentEngineAvailable) {
+
+        @SuppressWarnings("unchecked")
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("torrents", (long) torrents);
+            json.put("directDownloads", (long) directDownloads);
+            json.put("active", (long) active);
+            json.put("downloadRate", downloadRate);
+            json.put("uploadRate", uploadRate);
+            json.put("torrentEngine", torrentEngineAvailable);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.filmotecadelreves.headless;
+
+import org.example.filmotecadelreves.downloaders.BandwidthCaps;
+import org.example.filmotecadelreves.downloaders.BandwidthSchedule;
+import org.example.filmotecadelreves.downloaders.BandwidthScheduler;
+import org.example.filmotecadelreves.downloaders.BrowserSessionPool;
+import org.example.filmotecadelreves.downloaders.DirectDownloadEngine;
+import org.example.filmotecadelreves.downloaders.SeedingPolicy;
+import org.example.filmotecadelreves.downloaders.TorrentDownloader;
+import org.example.filmotecadelreves.moviesad.DownloadPersistenceManager;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Punto de entrada sin interfaz gráfica: arranca el gestor de torrents, la
+ * persistencia y las descargas directas y publica la API local descrita en
+ * {@link HeadlessApiServer}.  No carga JavaFX, por lo que puede ejecutarse en
+ * una máquina sin pantalla:
+ * <pre>
+ * java -cp FilmotecaDelreves.jar:lib/* org.example.filmotecadelreves.headless.HeadlessLauncher \
+ *      --port=8765 --config=config.json --download-dir=/srv/descargas --token-file=api.token
+ * </pre>
+ * Las opciones que no se indiquen se leen de {@code config.json}.  El token que
+ * exige la API se genera en cada arranque y se guarda en {@code --token-file}.
+ */
+public final class HeadlessLauncher {
+
+    private static final Logger LOGGER = Logger.getLogger(HeadlessLauncher.class.getName());
+    static final int DEFAULT_PORT = 8765;
+    private static final String DEFAULT_CONFIG = "config.json";
+    private static final String DEFAULT_DOWNLOAD_DIR = "Descargas";
+    private static final String DEFAULT_TOKEN_FILE = "api.token";
+    private static final Duration EVENT_INTERVAL = Duration.ofSeconds(1);
+
+    private final DownloadPersistenceManager persistence;
+    private final BandwidthScheduler bandwidthScheduler;
+    private final TorrentDownloader torrentDownloader;
+    private final HeadlessDownloadService service;
+    private final HeadlessApiServer apiServer;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    HeadlessLauncher(JSONObject config, int port, Path downloadDirectory, boolean enableTorrents,
+                     Duration eventInterval, Path tokenFile) throws IOException {
+        this.persistence = DownloadPersistenceManager.getInstance();
+        this.bandwidthScheduler = new BandwidthScheduler(
+                BandwidthSchedule.fromJson(config.get(BandwidthSchedule.CONFIG_KEY)),
+                readInt(config, "directDownloadSpeedLimit", 0),
+                BandwidthCaps.fromJson(config.get(BandwidthCaps.CONFIG_KEY)));
+        DirectDownloadEngine.shared().setMaxConcurrent(readInt(config, "maxConcurrentDirectDownloads",
+                DirectDownloadEngine.DEFAULT_MAX_CONCURRENT));
+        this.torrentDownloader = enableTorrents ? createTorrentDownloader(config) : null;
+        if (torrentDownloader != null) {
+            bandwidthScheduler.setTorrentDownloader(torrentDownloader);
+        }
+        this.service = new HeadlessDownloadService(torrentDownloader, persistence, downloadDirectory);
+        this.apiServer = new HeadlessApiServer(service, port, eventInterval, tokenFile);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int port = DEFAULT_PORT;
+        Path configPath = Paths.get(DEFAULT_CONFIG);
+        String downloadDir = null;
+        Path tokenFile = Paths.get(DEFAULT_TOKEN_FILE);
+        boolean enableTorrents = true;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--config=")) {
+                configPath = Paths.get(arg.substring("--config=".length()));
+            } else if (arg.startsWith("--download-dir=")) {
+                downloadDir = arg.substring("--download-dir=".length());
+            } else if (arg.startsWith("--token-file=")) {
+                tokenFile = Paths.get(arg.substring("--token-file=".length()));
+            } else if (arg.equals("--no-torrents")) {
+                enableTorrents = false;
+            } else {
+                System.err.println("Opción desconocida: " + arg);
+                System.err.println("Uso: HeadlessLauncher [--port=N] [--config=ruta] [--download-dir=ruta] [--token-file=ruta] [--no-torrents]");
+                System.exit(2);
+            }
+        }
+
+        JSONObject config = loadConfig(configPath);
+        if (downloadDir == null) {
+            Object configured = config.get("torrentMovieDestination");
+            downloadDir = configured instanceof String text && !text.isBlank() ? text : DEFAULT_DOWNLOAD_DIR;
+        }
+
+        HeadlessLauncher launcher = new HeadlessLauncher(config, port, Paths.get(downloadDir), enableTorrents,
+                EVENT_INTERVAL, tokenFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(launcher::stop, "headless-shutdown"));
+        launcher.start();
+        launcher.awaitStop();
+    }
+
+    void start() throws IOException {
+        service.restorePersistedDownloads();
+        apiServer.start();
+    }
+
+    int getPort() {
+        return apiServer.getPort();
+    }
+
+    HeadlessDownloadService getService() {
+        return service;
+    }
+
+    void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /** Stops the API and the engines; safe to call more than once. */
+    void stop() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        LOGGER.info("Deteniendo el modo sin interfaz...");
+        apiServer.stop();
+        service.shutdown();
+        DirectDownloadEngine.shared().shutdown(Duration.ofSeconds(5));
+        BrowserSessionPool.shared().shutdown();
+        bandwidthScheduler.shutdown();
+        if (torrentDownloader != null) {
+            torrentDownloader.shutdown();
+        }
+        persistence.close();
+        stopped.countDown();
+    }
+
+    private static TorrentDownloader createTorrentDownloader(JSONObject config) {
+        try {
+            TorrentDownloader downloader = new TorrentDownloader(
+                    Math.max(1, readInt(config, "maxConcurrentTorrentDownloads", 3)),
+                    readBoolean(config, "extractArchives", false),
+                    0,
+                    0);
+            downloader.setAutoStartDownloads(readBoolean(config, "autoStartTorrentDownloads", true));
+            downloader.setLibraryDestinations(readString(config, "torrentMovieDestination"),
+                    readString(config, "torrentSeriesDestination"));
+            downloader.setSeedingPolicy(SeedingPolicy.fromJson(config.get(SeedingPolicy.CONFIG_KEY)));
+            return downloader;
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "No se pudo inicializar el gestor de torrents; solo habrá descargas directas.", t);
+            return null;
+        }
+    }
+
+    static JSONObject loadConfig(Path configPath) {
+        if (configPath == null || !Files.exists(configPath)) {
+            return new JSONObject();
+        }
+        try {
+            Object parsed = new JSONParser().parse(Files.readString(configPath, StandardCharsets.UTF_8));
+            return parsed instanceof JSONObject json ? json : new JSONObject();
+        } catch (IOException | ParseException e) {
+            LOGGER.warning("No se pudo leer " + configPath + ": " + e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+    private static int readInt(JSONObject config, String key, int defaultValue) {
+        Object value = config.get(key);
+        return value instanceof Number number ? number.intValue() : defaultValue;
+    }
+
+    private static String readString(JSONObject config, String key) {
+        Object value = config.get(key);
+        return value instanceof String text ? text : null;
+    }
+
+    private static boolean readBoolean(JSONObject config, String key, boolean defaultValue) {
+        Object value = config.get(key);
+        return value instanceof Boolean flag ? flag : defaultValue;
+    }
+}
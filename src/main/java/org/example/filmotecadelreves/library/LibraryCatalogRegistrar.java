@@ -0,0 +1,71 @@
+package org.example.filmotecadelreves.library;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registers freshly downloaded files in the catalog of the library whose
+ * root folder contains them, so they show up in "Mi biblioteca" without a
+ * manual rescan.
+ */
+public class LibraryCatalogRegistrar {
+    private final LibraryConfigManager configManager;
+    private final LibraryCatalogStore catalogStore;
+    private final LibraryScanner libraryScanner;
+
+    public LibraryCatalogRegistrar() {
+        this(new LibraryConfigManager(), new LibraryCatalogStore(), new LibraryScanner());
+    }
+
+    public LibraryCatalogRegistrar(LibraryConfigManager configManager,
+                                   LibraryCatalogStore catalogStore,
+                                   LibraryScanner libraryScanner) {
+        this.configManager = configManager;
+        this.catalogStore = catalogStore;
+        this.libraryScanner = libraryScanner;
+    }
+
+    /**
+     * @return number of files added to a catalog; files that do not belong to
+     * any library of the given type are ignored
+     */
+    public synchronized int register(LibraryEntry.LibraryType type, List<Path> files) {
+        List<LibraryEntry> libraries = configManager.loadLibraries();
+        Map<LibraryEntry, LibraryCatalog> touched = new LinkedHashMap<>();
+        int registered = 0;
+        for (Path file : files) {
+            LibraryEntry library = findLibrary(libraries, type, file);
+            if (library == null) {
+                continue;
+            }
+            LibraryCatalog catalog = touched.computeIfAbsent(library,
+                    entry -> catalogStore.loadCatalog(configManager.getLibraryDataDir(entry)));
+            if (libraryScanner.registerFile(library, catalog, file)) {
+                registered++;
+            }
+        }
+        if (registered > 0) {
+            touched.forEach((entry, catalog) -> catalogStore.saveCatalog(configManager.getLibraryDataDir(entry), catalog));
+        }
+        return registered;
+    }
+
+    private static LibraryEntry findLibrary(List<LibraryEntry> libraries, LibraryEntry.LibraryType type, Path file) {
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        LibraryEntry best = null;
+        int bestDepth = -1;
+        for (LibraryEntry entry : libraries) {
+            if (entry.getType() != type || entry.getRootPath() == null || entry.getRootPath().isBlank()) {
+                continue;
+            }
+            Path root = Path.of(entry.getRootPath()).toAbsolutePath().normalize();
+            if (absoluteFile.startsWith(root) && root.getNameCount() > bestDepth) {
+                best = entry;
+                bestDepth = root.getNameCount();
+            }
+        }
+        return best;
+    }
+}
@@ -122,6 +122,59 @@ public class LibraryScanner {
         return new LibraryScanResult(catalog, missingMovies, missingEpisodes);
     }
 
+    /**
+     * Adds a single file to {@code catalog} the same way a full scan would,
+     * without walking the library folder.  Returns {@code false} when the file
+     * is outside the library, is not a video or is already catalogued.
+     */
+    public boolean registerFile(LibraryEntry libraryEntry, LibraryCatalog catalog, Path file) {
+        Path rootPath = Path.of(libraryEntry.getRootPath());
+        Path absoluteRoot = rootPath.toAbsolutePath().normalize();
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        if (!absoluteFile.startsWith(absoluteRoot) || !isVideoFile(absoluteFile)) {
+            return false;
+        }
+        // Same path representation that Files.walk(rootPath) produces during a scan.
+        Path scannedPath = rootPath.resolve(absoluteRoot.relativize(absoluteFile));
+        String filePath = scannedPath.toString();
+
+        if (libraryEntry.getType() == LibraryEntry.LibraryType.MOVIES) {
+            boolean known = catalog.getMovies().stream().anyMatch(item -> filePath.equals(item.getFilePath()));
+            if (known) {
+                return false;
+            }
+            String title = cleanTitle(scannedPath.getFileName().toString());
+            catalog.getMovies().add(new MediaItem(UUID.randomUUID().toString(), filePath, title));
+            return true;
+        }
+
+        boolean known = catalog.getSeries().stream()
+                .flatMap(series -> series.getSeasons().values().stream().flatMap(List::stream))
+                .anyMatch(episode -> filePath.equals(episode.getFilePath()));
+        if (known) {
+            return false;
+        }
+        String seriesName = getSeriesName(rootPath, scannedPath);
+        SeriesEntry seriesEntry = catalog.getSeries().stream()
+                .filter(entry -> entry.getTitle().equalsIgnoreCase(seriesName))
+                .findFirst()
+                .orElseGet(() -> {
+                    SeriesEntry newEntry = new SeriesEntry(UUID.randomUUID().toString(), seriesName);
+                    catalog.getSeries().add(newEntry);
+                    return newEntry;
+                });
+        String fileName = scannedPath.getFileName().toString();
+        SeasonEpisode seasonEpisode = parseSeasonEpisode(fileName, scannedPath);
+        seriesEntry.addEpisode(new EpisodeItem(
+                UUID.randomUUID().toString(),
+                filePath,
+                cleanTitle(fileName),
+                seasonEpisode.season(),
+                seasonEpisode.episode()
+        ));
+        return true;
+    }
+
     private boolean isVideoFile(Path path) {
         String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
         int index = fileName.lastIndexOf('.');
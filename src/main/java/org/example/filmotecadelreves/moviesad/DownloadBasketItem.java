@@ -2,6 +2,8 @@ package org.example.filmotecadelreves.moviesad;
 
 import org.example.filmotecadelreves.util.UrlNormalizer;
 
+import java.util.List;
+
 /**
  * Representa un elemento en la cesta de descargas
  */
@@ -15,6 +17,15 @@ public class DownloadBasketItem {
     private final String seriesName; // Solo para episodios
     private final int seasonNumber; // Solo para episodios
     private final int episodeNumber; // Solo para episodios
+    private List<Mirror> mirrors = List.of();
+
+    /**
+     * Otro servidor que ofrece el mismo archivo (misma calidad e idioma)
+     * @param server Nombre del servidor
+     * @param link Enlace del vídeo en ese servidor
+     */
+    public record Mirror(String server, String link) {
+    }
 
     /**
      * Constructor para un elemento de la cesta de descargas
@@ -137,6 +148,22 @@ public class DownloadBasketItem {
         return episodeNumber;
     }
 
+    /**
+     * Obtiene los servidores alternativos con el mismo archivo
+     * @return Servidores alternativos (lista vacía si no hay)
+     */
+    public List<Mirror> getMirrors() {
+        return mirrors;
+    }
+
+    /**
+     * Establece los servidores alternativos con el mismo archivo
+     * @param mirrors Servidores alternativos
+     */
+    public void setMirrors(List<Mirror> mirrors) {
+        this.mirrors = mirrors != null ? List.copyOf(mirrors) : List.of();
+    }
+
     /**
      * Obtiene el ID del episodio (solo para episodios)
      * @return ID del episodio
@@ -5,6 +5,7 @@ import org.example.filmotecadelreves.DirectDownloader;
 import org.example.filmotecadelreves.ManualDownloadCapable;
 import org.example.filmotecadelreves.UI.AjustesUI;
 import org.example.filmotecadelreves.UI.DescargasUI;
+import org.example.filmotecadelreves.downloaders.MirroredDirectDownloader;
 import org.example.filmotecadelreves.downloaders.MixdropDownloader;
 import org.example.filmotecadelreves.downloaders.SeleniumPowvideo;
 import org.example.filmotecadelreves.downloaders.SeleniumStreamplay;
@@ -12,7 +13,9 @@ import org.example.filmotecadelreves.downloaders.StreamtapeDownloader;
 import org.example.filmotecadelreves.util.UrlNormalizer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -160,6 +163,7 @@ public class DownloadManager {
             }
 
             String fileName = movieName + ".mp4";
+            DirectDownloader effectiveDownloader = manualMode ? downloader : withMirrors(item, normalizedLink, downloader);
             DescargasUI.DirectDownload directDownload = new DescargasUI.DirectDownload(
                     fileName,
                     0,
@@ -167,7 +171,7 @@ public class DownloadManager {
                     item.getServer(),
                     normalizedLink,
                     movieFolder,
-                    downloader
+                    effectiveDownloader
             );
 
             Runnable startAction;
@@ -175,7 +179,7 @@ public class DownloadManager {
                 ManualDownloadCapable manualDownloader = (ManualDownloadCapable) downloader;
                 startAction = () -> manualDownloader.downloadManual(normalizedLink, movieFolder, directDownload);
             } else {
-                startAction = () -> downloader.download(normalizedLink, movieFolder, directDownload);
+                startAction = () -> effectiveDownloader.download(normalizedLink, movieFolder, directDownload);
             }
 
             descargasUI.enqueueDirectDownload(directDownload, startAction);
@@ -246,6 +250,7 @@ public class DownloadManager {
             }
 
             String fileName = item.getName() + ".mp4";
+            DirectDownloader effectiveDownloader = manualMode ? downloader : withMirrors(item, normalizedLink, downloader);
             DescargasUI.DirectDownload directDownload = new DescargasUI.DirectDownload(
                     fileName,
                     0,
@@ -253,7 +258,7 @@ public class DownloadManager {
                     item.getServer(),
                     normalizedLink,
                     destinationPath,
-                    downloader
+                    effectiveDownloader
             );
 
             Runnable startAction;
@@ -261,7 +266,7 @@ public class DownloadManager {
                 ManualDownloadCapable manualDownloader = (ManualDownloadCapable) downloader;
                 startAction = () -> manualDownloader.downloadManual(normalizedLink, destinationPath, directDownload);
             } else {
-                startAction = () -> downloader.download(normalizedLink, destinationPath, directDownload);
+                startAction = () -> effectiveDownloader.download(normalizedLink, destinationPath, directDownload);
             }
 
             descargasUI.enqueueDirectDownload(directDownload, startAction);
@@ -279,6 +284,24 @@ public class DownloadManager {
         }
     }
 
+    /**
+     * Si el elemento tiene servidores alternativos con downloader conocido, devuelve un
+     * downloader que compara todos y usa el más rápido, cambiando de servidor a mitad de
+     * descarga si es necesario. Si no, devuelve el downloader del servidor elegido.
+     */
+    private static DirectDownloader withMirrors(DownloadBasketItem item, String normalizedLink, DirectDownloader downloader) {
+        List<MirroredDirectDownloader.Mirror> mirrors = new ArrayList<>();
+        mirrors.add(new MirroredDirectDownloader.Mirror(item.getServer(), normalizedLink, downloader));
+        for (DownloadBasketItem.Mirror mirror : item.getMirrors()) {
+            DirectDownloader mirrorDownloader = getDownloaderForServer(mirror.server());
+            String link = UrlNormalizer.normalizeMediaUrl(mirror.link());
+            if (mirrorDownloader != null && link != null && !link.isBlank() && !link.equals(normalizedLink)) {
+                mirrors.add(new MirroredDirectDownloader.Mirror(mirror.server(), link, mirrorDownloader));
+            }
+        }
+        return mirrors.size() > 1 ? new MirroredDirectDownloader(mirrors) : downloader;
+    }
+
     /**
      * Limpia un componente de ruta para que sea válido en sistemas de archivos como Windows.
      * Reemplaza caracteres no permitidos y elimina puntos o espacios finales.
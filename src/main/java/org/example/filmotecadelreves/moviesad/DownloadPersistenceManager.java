@@ -13,9 +13,15 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,8 +38,33 @@ public final class DownloadPersistenceManager {
     private static final String DB_PATH_PROPERTY = "filmoteca.download.db.path";
     private static volatile DownloadPersistenceManager INSTANCE;
 
+    private static final String UPSERT_TORRENT_SQL =
+            "INSERT INTO torrent_sessions (id, source, destination_path, name, status, progress, file_size, " +
+            "download_limit_kib, upload_limit_kib, priority, sequential, manually_paused, info_hash) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(id) DO UPDATE SET " +
+            "source = excluded.source, " +
+            "destination_path = excluded.destination_path, " +
+            "name = excluded.name, " +
+            "status = excluded.status, " +
+            "progress = excluded.progress, " +
+            "file_size = excluded.file_size, " +
+            "download_limit_kib = excluded.download_limit_kib, " +
+            "upload_limit_kib = excluded.upload_limit_kib, " +
+            "priority = excluded.priority, " +
+            "sequential = excluded.sequential, " +
+            "manually_paused = excluded.manually_paused, " +
+            "info_hash = excluded.info_hash, " +
+            "updated_at = CURRENT_TIMESTAMP";
+
     private final Path databasePath;
     private final String jdbcUrl;
+    /** Runs the writes handed over with {@link #submit}, one at a time and in order. */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "download-persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private DownloadPersistenceManager(Path databasePath) {
         this.databasePath = databasePath.toAbsolutePath();
@@ -334,57 +365,93 @@ public final class DownloadPersistenceManager {
                                boolean sequential,
                                boolean manuallyPaused,
                                String infoHash) {
-        String sql = "INSERT INTO torrent_sessions (id, source, destination_path, name, status, progress, file_size, " +
-                "download_limit_kib, upload_limit_kib, priority, sequential, manually_paused, info_hash) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                "ON CONFLICT(id) DO UPDATE SET " +
-                "source = excluded.source, " +
-                "destination_path = excluded.destination_path, " +
-                "name = excluded.name, " +
-                "status = excluded.status, " +
-                "progress = excluded.progress, " +
-                "file_size = excluded.file_size, " +
-                "download_limit_kib = excluded.download_limit_kib, " +
-                "upload_limit_kib = excluded.upload_limit_kib, " +
-                "priority = excluded.priority, " +
-                "sequential = excluded.sequential, " +
-                "manually_paused = excluded.manually_paused, " +
-                "info_hash = excluded.info_hash, " +
-                "updated_at = CURRENT_TIMESTAMP";
-
         try (Connection connection = DriverManager.getConnection(jdbcUrl);
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, id);
-            ps.setString(2, Objects.toString(source, ""));
-            ps.setString(3, destinationPath);
-            ps.setString(4, name);
-            ps.setString(5, Objects.toString(status, "En espera"));
-            ps.setDouble(6, progress);
-            ps.setLong(7, fileSize);
-            if (downloadLimit > 0) {
-                ps.setInt(8, downloadLimit);
-            } else {
-                ps.setNull(8, java.sql.Types.INTEGER);
-            }
-            if (uploadLimit > 0) {
-                ps.setInt(9, uploadLimit);
-            } else {
-                ps.setNull(9, java.sql.Types.INTEGER);
-            }
-            if (priority > 0) {
-                ps.setInt(10, priority);
-            } else {
-                ps.setNull(10, java.sql.Types.INTEGER);
-            }
-            ps.setInt(11, sequential ? 1 : 0);
-            ps.setInt(12, manuallyPaused ? 1 : 0);
-            ps.setString(13, infoHash);
+             PreparedStatement ps = connection.prepareStatement(UPSERT_TORRENT_SQL)) {
+            bindTorrent(ps, id, source, destinationPath, name, status, progress, fileSize, downloadLimit,
+                    uploadLimit, priority, sequential, manuallyPaused, infoHash);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al guardar el estado de un torrent", e);
         }
     }
 
+    /**
+     * Saves several torrents in a single transaction: either all of them are
+     * stored or none is, so a batch added at once is never half persisted.
+     *
+     * @return {@code true} when the transaction was committed
+     */
+    public boolean upsertTorrents(Collection<TorrentState> states) {
+        if (states == null || states.isEmpty()) {
+            return true;
+        }
+        try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(UPSERT_TORRENT_SQL)) {
+                for (TorrentState state : states) {
+                    if (state == null) {
+                        continue;
+                    }
+                    bindTorrent(ps, state.getInstanceId(), state.getTorrentSource(), state.getDestinationPath(),
+                            state.getName(), state.getStatus(), state.getProgress(), state.getFileSize(),
+                            state.getDownloadLimitKiB(), state.getUploadLimitKiB(), state.getPriority(),
+                            state.isSequentialDownload(), state.isUserPaused(), state.getHash());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al guardar un lote de torrents", e);
+            return false;
+        }
+    }
+
+    private static void bindTorrent(PreparedStatement ps,
+                                    String id,
+                                    String source,
+                                    String destinationPath,
+                                    String name,
+                                    String status,
+                                    double progress,
+                                    long fileSize,
+                                    int downloadLimit,
+                                    int uploadLimit,
+                                    int priority,
+                                    boolean sequential,
+                                    boolean manuallyPaused,
+                                    String infoHash) throws SQLException {
+        ps.setString(1, id);
+        ps.setString(2, Objects.toString(source, ""));
+        ps.setString(3, destinationPath);
+        ps.setString(4, name);
+        ps.setString(5, Objects.toString(status, "En espera"));
+        ps.setDouble(6, progress);
+        ps.setLong(7, fileSize);
+        if (downloadLimit > 0) {
+            ps.setInt(8, downloadLimit);
+        } else {
+            ps.setNull(8, java.sql.Types.INTEGER);
+        }
+        if (uploadLimit > 0) {
+            ps.setInt(9, uploadLimit);
+        } else {
+            ps.setNull(9, java.sql.Types.INTEGER);
+        }
+        if (priority > 0) {
+            ps.setInt(10, priority);
+        } else {
+            ps.setNull(10, java.sql.Types.INTEGER);
+        }
+        ps.setInt(11, sequential ? 1 : 0);
+        ps.setInt(12, manuallyPaused ? 1 : 0);
+        ps.setString(13, infoHash);
+    }
+
     public void deleteTorrent(String id) {
         if (id == null) {
             return;
@@ -408,8 +475,30 @@ public final class DownloadPersistenceManager {
         }
     }
 
+    /**
+     * Runs a write on the persistence thread after every write submitted
+     * before it.  The JavaFX thread uses it so that applying progress updates
+     * never waits for SQLite.
+     */
+    public void submit(Runnable write) {
+        writer.execute(() -> {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Error al guardar el estado de una descarga", e);
+            }
+        });
+    }
+
     public void close() {
-        // Connections are managed per-operation; nothing to close explicitly.
+        // Connections are managed per-operation; only the queued writes have to finish.
+        try {
+            writer.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.WARNING, "No se terminaron de guardar todas las descargas", e);
+        }
         LOGGER.fine("Gestor de persistencia de descargas cerrado a las " + Instant.now());
     }
 
@@ -726,7 +726,21 @@ public class TorrentState implements Serializable {
             }
         }
 
-        DownloadPersistenceManager.getInstance().upsertTorrent(this);
+        String id = instanceId;
+        String source = getTorrentSource();
+        String destination = getDestinationPath();
+        String currentName = getName();
+        long size = getFileSize();
+        int downloadLimit = getDownloadLimitKiB();
+        int uploadLimit = getUploadLimitKiB();
+        int currentPriority = getPriority();
+        boolean sequential = isSequentialDownload();
+        boolean paused = userPaused;
+        String currentHash = getHash();
+        // The setters also run on the JavaFX thread: SQLite is written on the persistence thread.
+        DownloadPersistenceManager.getInstance().submit(() -> DownloadPersistenceManager.getInstance().upsertTorrent(
+                id, source, destination, currentName, currentStatus, currentProgress, size,
+                downloadLimit, uploadLimit, currentPriority, sequential, paused, currentHash));
         lastPersistedProgress = currentProgress;
         lastPersistedStatus = currentStatus;
         lastPersistedTimestamp = now;
@@ -0,0 +1,102 @@
+package org.example.filmotecadelreves.UI;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectDownloadQueueTest {
+
+    private record Item(String name, String server) {
+    }
+
+    private final List<String> started = new ArrayList<>();
+
+    private DirectDownloadQueue<Item> newQueue(int resolveAhead) {
+        return new DirectDownloadQueue<>(resolveAhead, Item::server, (item, action) -> action.run());
+    }
+
+    private void enqueue(DirectDownloadQueue<Item> queue, Item item) {
+        queue.enqueue(item, () -> started.add(item.name()));
+    }
+
+    @Test
+    void neverHasMoreThanTheBoundOut() {
+        DirectDownloadQueue<Item> queue = newQueue(3);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            items.add(new Item("d" + i, "servidor" + i));
+            enqueue(queue, items.get(i));
+        }
+        assertEquals(List.of("d0", "d1", "d2"), started);
+        assertEquals(2, queue.pendingCount());
+
+        queue.markResolved(items.get(0));
+        assertEquals(3, started.size(), "Un enlace resuelto sigue ocupando su puesto hasta que transfiere");
+
+        assertTrue(queue.release(items.get(0)));
+        assertEquals(List.of("d0", "d1", "d2", "d3"), started);
+        assertEquals(3, queue.aheadCount());
+    }
+
+    @Test
+    void eachServerResolvesOneLinkAtATime() {
+        DirectDownloadQueue<Item> queue = newQueue(3);
+        Item first = new Item("a1", "Powvideo");
+        Item second = new Item("a2", "Powvideo");
+        Item other = new Item("b1", "Streamtape");
+        enqueue(queue, first);
+        enqueue(queue, second);
+        enqueue(queue, other);
+        assertEquals(List.of("a1", "b1"), started, "Las de otro servidor se adelantan");
+
+        queue.markResolved(first);
+        assertEquals(List.of("a1", "b1", "a2"), started);
+        assertTrue(queue.isResolved(first));
+        assertFalse(queue.isResolved(second));
+    }
+
+    @Test
+    void resolvedDownloadsLeaveWhenPausedAndPendingOnesWhenCancelled() {
+        DirectDownloadQueue<Item> queue = newQueue(1);
+        Item first = new Item("d1", "Mixdrop");
+        Item cancelled = new Item("d2", "Mixdrop");
+        Item last = new Item("d3", "Mixdrop");
+        enqueue(queue, first);
+        enqueue(queue, cancelled);
+        enqueue(queue, last);
+
+        assertTrue(queue.release(cancelled), "Una descarga cancelada sale de la cola sin arrancar");
+        queue.markResolved(first);
+        assertTrue(queue.release(first));
+        assertFalse(queue.release(first));
+        assertEquals(List.of("d1", "d3"), started);
+        assertEquals(0, queue.pendingCount());
+    }
+
+    @Test
+    void linksResolvedWhileStartingLetTheQueueMoveOn() {
+        AtomicReference<DirectDownloadQueue<Item>> queue = new AtomicReference<>();
+        // Plain HTTP downloads have their link at once: they report it from inside the start action.
+        queue.set(new DirectDownloadQueue<>(2, Item::server, (item, action) -> {
+            action.run();
+            queue.get().markResolved(item);
+        }));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Item item = new Item("d" + i, "HTTP");
+            items.add(item);
+            enqueue(queue.get(), item);
+        }
+
+        assertEquals(List.of("d0", "d1"), started);
+        queue.get().release(items.get(0));
+        queue.get().release(items.get(1));
+        assertEquals(List.of("d0", "d1", "d2", "d3"), started);
+    }
+}
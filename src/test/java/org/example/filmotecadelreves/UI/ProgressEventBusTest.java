@@ -0,0 +1,87 @@
+package org.example.filmotecadelreves.UI;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressEventBusTest {
+
+    private static final class Row {
+        final List<String> applied = new ArrayList<>();
+        long bytes;
+        double speed;
+        String status;
+    }
+
+    @Test
+    void progressSnapshotsCollapseToTheLatestOne() {
+        AtomicInteger wakeUps = new AtomicInteger();
+        ProgressEventBus bus = new ProgressEventBus(wakeUps::incrementAndGet);
+        Row row = new Row();
+
+        for (int i = 1; i <= 100; i++) {
+            long bytes = i * 1024L;
+            bus.post(row, ProgressEventBus.PROGRESS, r -> {
+                r.applied.add("progress");
+                r.bytes = bytes;
+                r.speed = 2.0;
+            });
+        }
+        assertEquals(1, wakeUps.get(), "Una sola petición de pulso para todo el lote");
+        assertEquals(0, row.bytes, "Nada se aplica antes del pulso");
+
+        bus.flush();
+        assertEquals(List.of("progress"), row.applied);
+        assertEquals(100 * 1024L, row.bytes);
+    }
+
+    @Test
+    void untaggedUpdatesKeepTheirOrderAroundProgress() {
+        ProgressEventBus bus = new ProgressEventBus(() -> { });
+        Row row = new Row();
+
+        bus.post(row, ProgressEventBus.PROGRESS, r -> r.speed = 1.0);
+        bus.post(row, r -> {
+            r.status = "Paused";
+            r.speed = 0.0;
+        });
+        bus.post(row, r -> r.status = "Downloading");
+        bus.post(row, ProgressEventBus.PROGRESS, r -> r.speed = 3.0);
+        bus.post(row, r -> {
+            r.status = "Completed";
+            r.speed = 0.0;
+        });
+
+        bus.flush();
+        assertEquals("Completed", row.status);
+        assertEquals(0.0, row.speed, "El estado final llega después del último progreso");
+    }
+
+    @Test
+    void listenersReceiveOnlyTheChangedSources() {
+        ProgressEventBus bus = new ProgressEventBus(() -> { });
+        Row first = new Row();
+        Row second = new Row();
+        Object torrent = new Object();
+        List<Set<Object>> flushed = new ArrayList<>();
+        bus.addFlushListener(changed -> flushed.add(Set.copyOf(changed)));
+
+        bus.post(first, ProgressEventBus.PROGRESS, r -> r.bytes = 1);
+        bus.markDirty(torrent);
+        bus.flush();
+        bus.flush();
+        bus.post(second, r -> r.status = "Waiting");
+        bus.flush();
+
+        assertEquals(2, flushed.size(), "Un pulso sin cambios no avisa a nadie");
+        assertEquals(Set.of(first, torrent), flushed.get(0));
+        assertEquals(Set.of(second), flushed.get(1));
+        assertTrue(first.bytes == 1 && "Waiting".equals(second.status));
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthCeilingTest {
+
+    private static final long CEILING = 10 * 1024 * 1024L;
+
+    @Test
+    void noCeilingLeavesBothSidesUnlimited() {
+        BandwidthCeiling ceiling = new BandwidthCeiling();
+
+        assertSame(BandwidthCeiling.Split.UNLIMITED, ceiling.rebalance(0, 5_000_000, true, 5_000_000, true));
+    }
+
+    @Test
+    void idleSideKeepsOnlyTheFloor() {
+        BandwidthCeiling ceiling = new BandwidthCeiling();
+
+        BandwidthCeiling.Split split = ceiling.rebalance(CEILING, 0, false, 4_000_000, true);
+
+        assertEquals(CEILING / 10, split.directBytesPerSecond());
+        assertEquals(CEILING - CEILING / 10, split.torrentBytesPerSecond());
+    }
+
+    @Test
+    void unusedShareMovesToTheSaturatedSide() {
+        BandwidthCeiling ceiling = new BandwidthCeiling();
+        BandwidthCeiling.Split split = ceiling.rebalance(CEILING, 0, true, 0, true);
+        assertEquals(CEILING / 2, split.directBytesPerSecond());
+
+        // The torrents only manage 1 MiB/s, direct downloads fill their half.
+        split = ceiling.rebalance(CEILING, split.directBytesPerSecond(), true, 1024 * 1024L, true);
+
+        assertEquals((long) (1024 * 1024L * BandwidthCeiling.HEADROOM), split.torrentBytesPerSecond());
+        assertEquals(CEILING, split.directBytesPerSecond() + split.torrentBytesPerSecond());
+    }
+
+    @Test
+    void bothSaturatedConvergeTowardsAnEvenSplit() {
+        BandwidthCeiling ceiling = new BandwidthCeiling();
+        BandwidthCeiling.Split split = ceiling.rebalance(CEILING, 0, false, 1, true);
+        for (int round = 0; round < 30; round++) {
+            split = ceiling.rebalance(CEILING, split.directBytesPerSecond(), true,
+                    split.torrentBytesPerSecond(), true);
+            assertEquals(CEILING, split.directBytesPerSecond() + split.torrentBytesPerSecond());
+        }
+
+        long difference = Math.abs(split.directBytesPerSecond() - split.torrentBytesPerSecond());
+        assertTrue(difference < CEILING / 100, () -> "Reparto desequilibrado: " + difference);
+    }
+
+    @Test
+    void capsRoundTripThroughConfigJson() {
+        BandwidthCaps caps = new BandwidthCaps(8000, Map.of("Streamtape 2", 500, "powvideo", 0));
+        BandwidthCaps restored = BandwidthCaps.fromJson(caps.toJson());
+
+        assertEquals(8000, restored.getTotalCeilingKiB());
+        assertEquals(500, restored.getServerLimitKiB("streamtape"));
+        assertEquals(0, restored.getServerLimitKiB("powvideo"));
+        assertEquals(0, BandwidthCaps.fromJson("no es un objeto").getTotalCeilingKiB());
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthLimiterTest {
+
+    @Test
+    void serverCapThrottlesItsDownloads() throws Exception {
+        BandwidthLimiter server = BandwidthLimiter.forServer("lento");
+        server.setRateLimit(512 * 1024L);
+        try {
+            BandwidthLimiter download = BandwidthLimiter.forDownload("lento-1", "Lento 2");
+            long start = System.nanoTime();
+            // The first 128 KiB are the burst; the remaining 256 KiB need half a second.
+            for (int i = 0; i < 24; i++) {
+                download.acquire(16 * 1024);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+            assertTrue(elapsedMillis >= 400, () -> "El límite del servidor no frenó la descarga: " + elapsedMillis + " ms");
+            assertEquals(384 * 1024L, download.getTransferredBytes());
+        } finally {
+            server.setRateLimit(0);
+            BandwidthLimiter.releaseDownload("lento-1");
+        }
+    }
+
+    @Test
+    void bytesAreCountedAtEveryLevel() throws Exception {
+        long globalBefore = BandwidthLimiter.directDownloads().getTransferredBytes();
+        BandwidthLimiter server = BandwidthLimiter.forServer("contado");
+        long serverBefore = server.getTransferredBytes();
+        BandwidthLimiter download = BandwidthLimiter.forDownload("contado-1", "contado");
+        try {
+            download.acquire(1000);
+            download.acquire(500);
+
+            assertEquals(1500, server.getTransferredBytes() - serverBefore);
+            assertTrue(BandwidthLimiter.directDownloads().getTransferredBytes() - globalBefore >= 1500);
+        } finally {
+            BandwidthLimiter.releaseDownload("contado-1");
+        }
+    }
+
+    @Test
+    void downloadCapSurvivesRestartsUntilReleased() {
+        BandwidthLimiter first = BandwidthLimiter.forDownload("propia-1", "mixdrop");
+        first.setRateLimit(100 * 1024L);
+
+        assertSame(first, BandwidthLimiter.forDownload("propia-1", "Mixdrop 3"));
+        // A different server keeps the cap under the new parent.
+        BandwidthLimiter moved = BandwidthLimiter.forDownload("propia-1", "streamtape");
+        assertNotSame(first, moved);
+        assertEquals(100 * 1024L, moved.getRateLimit());
+
+        BandwidthLimiter.releaseDownload("propia-1");
+        assertEquals(0L, BandwidthLimiter.forDownload("propia-1", "streamtape").getRateLimit());
+        BandwidthLimiter.releaseDownload("propia-1");
+    }
+
+    @Test
+    void serversAreMatchedByTheirBaseName() {
+        assertSame(BandwidthLimiter.forServer("streamplay"), BandwidthLimiter.forServer(" Streamplay 2 "));
+        assertSame(BandwidthLimiter.directDownloads(), BandwidthLimiter.forServer(null));
+        assertEquals("powvideo", BandwidthLimiter.normalize("Powvideo 10"));
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BrowserSessionPoolTest {
+
+    /** Records what the pool does with one browser. */
+    private static final class FakeBrowser {
+        final List<String> calls = new ArrayList<>();
+        final Set<String> windows = new LinkedHashSet<>(List.of("main"));
+        boolean crashed;
+        boolean quit;
+        WebDriver driver;
+    }
+
+    private final List<FakeBrowser> launched = new ArrayList<>();
+
+    private BrowserSessionPool newPool(int warmSessions, int maxUses) {
+        return new BrowserSessionPool(warmSessions, maxUses, options -> launch(), Runnable::run);
+    }
+
+    private static BrowserSessionPool.Profile profile(boolean headless) {
+        return new BrowserSessionPool.Profile("Prueba", headless, true, ChromeOptions::new);
+    }
+
+    @Test
+    void returnedSessionsAreResetAndHandedOutAgain() {
+        BrowserSessionPool pool = newPool(1, 5);
+
+        BrowserSessionPool.Lease first = pool.lease(profile(true));
+        assertEquals(2, launched.size(), "La primera sesión más una de reserva");
+        FakeBrowser used = browserOf(first.driver());
+        used.windows.add("popup");
+        first.close();
+
+        assertEquals(List.of("switchTo:popup", "close", "switchTo:main", "deleteAllCookies", "get:about:blank"), used.calls,
+                "Las cookies se borran antes de salir de la página que las dejó");
+        assertTrue(launched.get(1).quit, "Sobra la de reserva más antigua");
+
+        BrowserSessionPool.Lease second = pool.lease(profile(true));
+        assertSame(used.driver, second.driver(), "Se entrega la última devuelta");
+        second.close();
+
+        BrowserSessionPool.Stats stats = pool.stats();
+        assertEquals(1, stats.idle());
+        assertEquals(0, stats.leased());
+        assertEquals(1, stats.reused());
+        assertEquals(3, stats.launched());
+    }
+
+    @Test
+    void sessionsAreRecycledAfterTheirUsesAndReplacedWhenTheyCrash() {
+        BrowserSessionPool pool = newPool(1, 2);
+
+        BrowserSessionPool.Lease lease = pool.lease(profile(true));
+        FakeBrowser first = browserOf(lease.driver());
+        lease.close();
+        lease = pool.lease(profile(true));
+        assertSame(first.driver, lease.driver());
+        lease.close();
+        assertTrue(first.quit, "Dos usos: se cierra en vez de volver a la reserva");
+        assertEquals(1, pool.stats().recycled());
+
+        FakeBrowser spare = launched.get(launched.size() - 1);
+        spare.crashed = true;
+        lease = pool.lease(profile(true));
+        assertNotSame(spare.driver, lease.driver(), "Una sesión caída no se entrega");
+        assertTrue(spare.quit);
+        assertEquals(1, pool.stats().crashed());
+        lease.close();
+    }
+
+    @Test
+    void visibleSessionsAreNeverKept() {
+        BrowserSessionPool pool = newPool(2, 5);
+
+        BrowserSessionPool.Lease lease = pool.lease(profile(false));
+        FakeBrowser visible = browserOf(lease.driver());
+        lease.close();
+
+        assertEquals(1, launched.size(), "Sin sesiones de reserva para el modo visible");
+        assertTrue(visible.quit);
+        assertEquals(0, pool.stats().idle());
+
+        pool.lease(profile(true)).close();
+        pool.shutdown();
+        assertTrue(launched.stream().allMatch(browser -> browser.quit), "Al detenerse se cierran las de reserva");
+    }
+
+    private WebDriver launch() {
+        FakeBrowser browser = new FakeBrowser();
+        WebDriver.Options options = (WebDriver.Options) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.Options.class}, (proxy, method, args) -> {
+                    browser.calls.add(method.getName());
+                    return null;
+                });
+        WebDriver.TargetLocator locator = (WebDriver.TargetLocator) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.TargetLocator.class}, (proxy, method, args) -> {
+                    browser.calls.add("switchTo:" + args[0]);
+                    return browser.driver;
+                });
+        browser.driver = (WebDriver) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebDriver.class}, (proxy, method, args) -> {
+                    if (browser.crashed && !"quit".equals(method.getName())) {
+                        throw new WebDriverException("chrome not reachable");
+                    }
+                    switch (method.getName()) {
+                        case "getWindowHandles":
+                            return new LinkedHashSet<>(browser.windows);
+                        case "switchTo":
+                            return locator;
+                        case "manage":
+                            return options;
+                        case "get":
+                            browser.calls.add("get:" + args[0]);
+                            return null;
+                        case "close":
+                            browser.calls.add("close");
+                            browser.windows.remove("popup");
+                            return null;
+                        case "quit":
+                            browser.quit = true;
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+        launched.add(browser);
+        return browser.driver;
+    }
+
+    private FakeBrowser browserOf(WebDriver driver) {
+        return launched.stream().filter(browser -> browser.driver == driver).findFirst().orElseThrow();
+    }
+}
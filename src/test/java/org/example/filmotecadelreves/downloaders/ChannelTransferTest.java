@@ -0,0 +1,115 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ChannelTransferTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("channel-transfer-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void writesAtTheRequestedOffsetsOfAPreallocatedFile() throws IOException {
+        byte[] body = random(300_000);
+        DirectBufferPool pool = new DirectBufferPool(64 * 1024, 2);
+        Path target = directory.resolve("video.part");
+        try (FileChannel channel = open(target);
+             ChannelTransfer transfer = new ChannelTransfer(new ByteArrayInputStream(body, 100_000, 200_000), channel, pool)) {
+            ChannelTransfer.preallocate(channel, body.length);
+            assertEquals(body.length, channel.size());
+            long position = 100_000;
+            int written;
+            while ((written = transfer.transfer(position, transfer.batchSize())) != -1) {
+                position += written;
+            }
+            assertEquals(body.length, position);
+        }
+        byte[] stored = Files.readAllBytes(target);
+        assertArrayEquals(new byte[100_000], Arrays.copyOf(stored, 100_000));
+        assertArrayEquals(Arrays.copyOfRange(body, 100_000, body.length), Arrays.copyOfRange(stored, 100_000, body.length));
+        assertEquals(1, pool.pooled());
+    }
+
+    @Test
+    void neverWritesMoreThanTheLimit() throws IOException {
+        byte[] body = random(10_000);
+        Path target = directory.resolve("range.part");
+        try (FileChannel channel = open(target);
+             ChannelTransfer transfer = new ChannelTransfer(new ByteArrayInputStream(body), channel,
+                     new DirectBufferPool(4096, 1))) {
+            assertEquals(1000, transfer.transfer(0, 1000));
+            assertEquals(4096, transfer.transfer(1000, 50_000));
+            assertEquals(5096, channel.size());
+        }
+    }
+
+    @Test
+    void fileSourcesAreCopiedChannelToChannel() throws IOException {
+        byte[] body = random(200_000);
+        Path source = Files.write(directory.resolve("source.bin"), body);
+        Path target = directory.resolve("copy.part");
+        try (InputStream input = new FileInputStream(source.toFile());
+             FileChannel channel = open(target);
+             ChannelTransfer transfer = new ChannelTransfer(input, channel)) {
+            long position = 0;
+            int written;
+            while ((written = transfer.transfer(position, 65_536)) != -1) {
+                position += written;
+            }
+        }
+        assertArrayEquals(body, Files.readAllBytes(target));
+    }
+
+    @Test
+    void poolHandsBackReleasedBuffers() {
+        DirectBufferPool pool = new DirectBufferPool(1024, 1);
+        ByteBuffer first = pool.acquire();
+        first.put((byte) 1);
+        pool.release(first);
+        ByteBuffer again = pool.acquire();
+        assertSame(first, again);
+        assertEquals(0, again.position());
+        pool.release(ByteBuffer.allocate(1024));
+        assertEquals(0, pool.pooled());
+    }
+
+    private static FileChannel open(Path target) throws IOException {
+        return FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectDownloadEngineTest {
+
+    @Test
+    void runsAtMostTheConfiguredNumberOfTransfers() throws Exception {
+        DirectDownloadEngine engine = new DirectDownloadEngine(3, 10);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(12);
+        try {
+            for (int i = 0; i < 12; i++) {
+                engine.submit("d" + i, "descarga " + i, "https://host" + i + ".example/v.mp4", ticket -> {
+                    try {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(30);
+                    } finally {
+                        running.decrementAndGet();
+                        finished.countDown();
+                    }
+                });
+            }
+
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            assertEquals(3, maxRunning.get());
+        } finally {
+            engine.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void busyHostDoesNotHoldBackOtherHosts() throws Exception {
+        DirectDownloadEngine engine = new DirectDownloadEngine(3, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch otherHostStarted = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        try {
+            engine.submit("a1", "a1", "https://lento.example/1", ticket -> {
+                started.add("a1");
+                firstStarted.countDown();
+                release.await();
+            });
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            engine.submit("a2", "a2", "https://lento.example/2", ticket -> started.add("a2"));
+            engine.submit("b1", "b1", "https://rapido.example/1", ticket -> {
+                started.add("b1");
+                otherHostStarted.countDown();
+                release.await();
+            });
+
+            assertTrue(otherHostStarted.await(5, TimeUnit.SECONDS));
+            DirectDownloadEngine.Snapshot snapshot = awaitSnapshot(engine, 2, 1);
+            assertEquals("a2", snapshot.blocked().get(0).id());
+            assertEquals(DirectDownloadEngine.State.BLOCKED, snapshot.blocked().get(0).state());
+            assertEquals(List.of("a1", "b1"), started);
+        } finally {
+            release.countDown();
+            engine.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void suspendedTransferLendsItsSlot() throws Exception {
+        DirectDownloadEngine engine = new DirectDownloadEngine(1, 1);
+        CountDownLatch suspended = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        CountDownLatch firstResumed = new CountDownLatch(1);
+        try {
+            engine.submit("pausada", "pausada", "https://a.example/1", ticket -> {
+                ticket.suspend("Pausada");
+                suspended.countDown();
+                assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+                ticket.resume();
+                firstResumed.countDown();
+            });
+            assertTrue(suspended.await(5, TimeUnit.SECONDS));
+            engine.submit("siguiente", "siguiente", "https://b.example/1", ticket -> secondDone.countDown());
+
+            assertTrue(firstResumed.await(5, TimeUnit.SECONDS));
+        } finally {
+            engine.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void shutdownSkipsQueuedTransfersAndStopsRunningOnes() throws Exception {
+        DirectDownloadEngine engine = new DirectDownloadEngine(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger interrupted = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        engine.submit("larga", "larga", "https://a.example/1", ticket -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        engine.submit("en-cola", "en-cola", "https://b.example/1", new DirectDownloadEngine.Job() {
+            @Override
+            public void run(DirectDownloadEngine.Ticket ticket) {
+                throw new AssertionError("No debería ejecutarse");
+            }
+
+            @Override
+            public void skipped() {
+                skipped.incrementAndGet();
+            }
+        });
+
+        assertTrue(engine.shutdown(Duration.ofSeconds(5)));
+        assertEquals(1, interrupted.get());
+        assertEquals(1, skipped.get());
+        assertTrue(engine.snapshot().running().isEmpty());
+    }
+
+    private static DirectDownloadEngine.Snapshot awaitSnapshot(DirectDownloadEngine engine,
+                                                               int running,
+                                                               int blocked) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        DirectDownloadEngine.Snapshot snapshot = engine.snapshot();
+        while ((snapshot.running().size() != running || snapshot.blocked().size() != blocked)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            snapshot = engine.snapshot();
+        }
+        return snapshot;
+    }
+}
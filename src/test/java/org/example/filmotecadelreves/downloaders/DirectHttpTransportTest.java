@@ -0,0 +1,114 @@
+package org.example.filmotecadelreves.downloaders;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectHttpTransportTest {
+
+    private static final byte[] BODY = new byte[256 * 1024];
+
+    private HttpServer server;
+    private String base;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/video.mp4", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Referer-Seen", String.valueOf(exchange.getRequestHeaders().getFirst("Referer")));
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(BODY.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, BODY.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(BODY);
+                } catch (IOException ignored) {
+                    // the client gave up on the body
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/video.mp4";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void sequentialRequestsReuseOneConnection() throws Exception {
+        DirectHttpTransport transport = new DirectHttpTransport(4, Duration.ofSeconds(10));
+        DirectHttpTransport.RequestCustomizer referer = request -> request.setHeader("Referer", "https://host/");
+        assertEquals(200, transport.headStatus(base, referer, Duration.ofSeconds(5)));
+        clientPorts.clear();
+        for (int i = 0; i < 10; i++) {
+            try (DirectHttpTransport.Exchange exchange = transport.send(transport.request(base, referer).build())) {
+                assertEquals("https://host/", exchange.header("Referer-Seen"));
+                assertEquals(BODY.length, drain(exchange.body()));
+            }
+        }
+        assertEquals(11, requests.get());
+        assertEquals(1, clientPorts.size(), "Cada petición abrió una conexión nueva: " + clientPorts);
+    }
+
+    @Test
+    void waitsForAFreeSlotOnTheSameHost() throws Exception {
+        DirectHttpTransport transport = new DirectHttpTransport(2, Duration.ofSeconds(10));
+        DirectHttpTransport.Exchange first = transport.send(transport.request(base, null).build());
+        DirectHttpTransport.Exchange second = transport.send(transport.request(base, null).build());
+        assertEquals(0, transport.availableSlots("127.0.0.1"));
+
+        CountDownLatch third = new CountDownLatch(1);
+        Thread waiting = new Thread(() -> {
+            try (DirectHttpTransport.Exchange exchange = transport.send(transport.request(base, null).build())) {
+                third.countDown();
+            } catch (Exception ignored) {
+            }
+        });
+        waiting.start();
+        assertFalse(third.await(300, TimeUnit.MILLISECONDS), "La tercera petición no debería haber salido");
+        assertEquals(2, requests.get());
+
+        first.close();
+        assertTrue(third.await(5, TimeUnit.SECONDS));
+        second.close();
+        waiting.join(5000);
+        assertEquals(2, transport.availableSlots("127.0.0.1"));
+    }
+
+    private static long drain(ResponseBodyChannel body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long total = 0;
+        int read;
+        while ((read = body.read(buffer.clear())) != -1) {
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.filmotecadelreves.downloaders;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the old write loop of {@link ResumableHttpDownloadTask} (8 KB heap
+ * reads, one {@code RandomAccessFile.write} each) with {@link ChannelTransfer},
+ * fed either by an {@code HttpURLConnection} stream or by the shared
+ * {@link DirectHttpTransport}, against a loopback HTTP server, and logs the
+ * throughput of each at {@code FINE}.  Tagged {@code benchmark}: it moves
+ * hundreds of MiB through loopback, so it only runs with {@code -Pbenchmarks}.
+ */
+@Tag("benchmark")
+class DirectWriteBenchmarkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectWriteBenchmarkTest.class.getName());
+    private static final int MIB = 1024 * 1024;
+    private static final byte[] PAYLOAD = new byte[64 * MIB];
+    private static final int ROUNDS = 3;
+
+    private record Result(String strategy, long bestNanos, long writes) {
+        double mibPerSecond() {
+            return PAYLOAD.length / (double) MIB / (bestNanos / 1e9);
+        }
+    }
+
+    private interface Strategy {
+        long copy(InputStream input, Path target) throws IOException;
+    }
+
+    private interface TransportStrategy {
+        long copy(DirectHttpTransport.Exchange exchange, Path target) throws IOException;
+    }
+
+    private static final List<Result> RESULTS = new ArrayList<>();
+    private static HttpServer server;
+    private static Path directory;
+    private static String url;
+
+    @BeforeAll
+    static void runBenchmarks() throws IOException {
+        new Random(11).nextBytes(PAYLOAD);
+        directory = Files.createTempDirectory("direct-write-bench");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/video.mp4", exchange -> {
+            exchange.sendResponseHeaders(200, PAYLOAD.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAYLOAD);
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/video.mp4";
+
+        RESULTS.add(measure("byte[8K]+RAF", DirectWriteBenchmarkTest::legacyCopy));
+        RESULTS.add(measure("direct+channel", DirectWriteBenchmarkTest::channelCopy));
+        RESULTS.add(measureTransport("client+channel", DirectWriteBenchmarkTest::transportCopy));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-16s %12s %10s",
+                    "strategy", "MiB/s", "writes"));
+            for (Result result : RESULTS) {
+                table.append(String.format(Locale.ROOT, "%n%-16s %12.1f %10d",
+                        result.strategy(), result.mibPerSecond(), result.writes()));
+            }
+            LOGGER.fine(table.toString());
+        }
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (directory != null) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void bothStrategiesWriteTheWholeBody() throws IOException {
+        for (Result result : RESULTS) {
+            Path file = directory.resolve(result.strategy() + ".part");
+            assertArrayEquals(PAYLOAD, Files.readAllBytes(file), "Contenido distinto con " + result.strategy());
+        }
+    }
+
+    @Test
+    void channelTransferBatchesWrites() throws IOException {
+        int batchSize;
+        try (FileChannel channel = FileChannel.open(directory.resolve("batch.part"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+             ChannelTransfer transfer = new ChannelTransfer(InputStream.nullInputStream(), channel)) {
+            batchSize = transfer.batchSize();
+        }
+        // How many writes a copy takes depends on how the socket splits the body; the batch size does not.
+        assertTrue(batchSize >= 4 * 8192, "Cada escritura debería poder agrupar varias lecturas: " + batchSize);
+        assertTrue(find("byte[8K]+RAF").writes() >= PAYLOAD.length / 8192);
+        for (String strategy : new String[]{"direct+channel", "client+channel"}) {
+            assertTrue(find(strategy).writes() >= PAYLOAD.length / batchSize, strategy);
+        }
+    }
+
+    private static Result measure(String name, Strategy strategy) throws IOException {
+        long best = Long.MAX_VALUE;
+        long writes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Path target = directory.resolve(name + ".part");
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            long start = System.nanoTime();
+            try (InputStream input = connection.getInputStream()) {
+                writes = strategy.copy(input, target);
+            } finally {
+                connection.disconnect();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return new Result(name, best, writes);
+    }
+
+    private static Result measureTransport(String name, TransportStrategy strategy) throws IOException {
+        DirectHttpTransport transport = new DirectHttpTransport(4, Duration.ofSeconds(30));
+        long best = Long.MAX_VALUE;
+        long writes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Path target = directory.resolve(name + ".part");
+            long start = System.nanoTime();
+            try (DirectHttpTransport.Exchange exchange = transport.send(transport.request(url, null).build())) {
+                writes = strategy.copy(exchange, target);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return new Result(name, best, writes);
+    }
+
+    private static long legacyCopy(InputStream input, Path target) throws IOException {
+        long writes = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(target.toFile(), "rw")) {
+            raf.setLength(0);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                raf.write(buffer, 0, read);
+                writes++;
+            }
+        }
+        return writes;
+    }
+
+    private static long channelCopy(InputStream input, Path target) throws IOException {
+        long writes = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelTransfer transfer = new ChannelTransfer(input, channel)) {
+            ChannelTransfer.preallocate(channel, PAYLOAD.length);
+            long position = 0;
+            int written;
+            while ((written = transfer.transfer(position, transfer.batchSize())) != -1) {
+                position += written;
+                writes++;
+            }
+        }
+        return writes;
+    }
+
+    private static long transportCopy(DirectHttpTransport.Exchange exchange, Path target) throws IOException {
+        long writes = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelTransfer transfer = new ChannelTransfer(exchange.body(), channel)) {
+            long position = 0;
+            int written;
+            while ((written = transfer.transfer(position, transfer.batchSize())) != -1) {
+                position += written;
+                writes++;
+            }
+        }
+        return writes;
+    }
+
+    private static Result find(String strategy) {
+        return RESULTS.stream()
+                .filter(result -> result.strategy().equals(strategy))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Sin resultado para " + strategy + " en " + Arrays.toString(RESULTS.toArray())));
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskReservationLedgerTest {
+
+    private static final long GB = 1024L * 1024L * 1024L;
+    private static final Path DISK = Path.of("/descargas");
+
+    private final AtomicLong usable = new AtomicLong(10 * GB);
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private DiskReservationLedger newLedger() {
+        return new DiskReservationLedger(GB, Duration.ofMinutes(15), new DiskReservationLedger.SpaceProbe() {
+            @Override
+            public Object volumeOf(Path path) {
+                return "disco";
+            }
+
+            @Override
+            public long usableSpace(Path path) {
+                return usable.get();
+            }
+        }, clock::get);
+    }
+
+    @Test
+    void defersStartsThatWouldOvercommitTheVolume() {
+        DiskReservationLedger ledger = newLedger();
+
+        assertEquals(DiskReservationLedger.Decision.GRANTED, ledger.tryReserve("a", DISK, 4 * GB));
+        assertEquals(DiskReservationLedger.Decision.GRANTED, ledger.tryReserve("b", DISK, 4 * GB));
+        // Each of these would fit on its own, but not next to "a" and "b".
+        assertEquals(DiskReservationLedger.Decision.DEFERRED, ledger.tryReserve("c", DISK, 4 * GB));
+        assertEquals(DiskReservationLedger.Decision.REFUSED, ledger.tryReserve("d", DISK, 12 * GB));
+        assertFalse(ledger.isReserved("c"));
+
+        ledger.release("b");
+        assertEquals(DiskReservationLedger.Decision.GRANTED, ledger.tryReserve("c", DISK, 4 * GB));
+        assertTrue(ledger.isReserved("c"));
+    }
+
+    @Test
+    void progressShrinksReservationsAsBytesAreWritten() {
+        DiskReservationLedger ledger = newLedger();
+        assertEquals(DiskReservationLedger.Decision.GRANTED, ledger.tryReserve("a", DISK, 8 * GB));
+        assertEquals(DiskReservationLedger.Decision.DEFERRED, ledger.tryReserve("b", DISK, 2 * GB));
+
+        // "a" wrote 6 GB: the disk has 4 GB free and "a" still needs 2 GB.
+        usable.set(4 * GB);
+        ledger.update("a", 2 * GB);
+
+        assertEquals(DiskReservationLedger.Decision.DEFERRED, ledger.tryReserve("b", DISK, 2 * GB));
+        usable.set(5 * GB);
+        assertEquals(DiskReservationLedger.Decision.GRANTED, ledger.tryReserve("b", DISK, 2 * GB));
+    }
+
+    @Test
+    void warnsOnceWhenQueuedDemandWillNotFit() {
+        DiskReservationLedger ledger = newLedger();
+        List<DiskReservationLedger.VolumeForecast> warnings = new ArrayList<>();
+        ledger.addListener(warnings::add);
+
+        ledger.tryReserve("a", DISK, 5 * GB);
+        assertTrue(warnings.isEmpty());
+
+        ledger.declareQueued("b", DISK, 5 * GB);
+        clock.addAndGet(10_000L);
+        ledger.update("a", 5 * GB);
+        assertEquals(1, warnings.size());
+        DiskReservationLedger.VolumeForecast forecast = warnings.get(0);
+        assertEquals(5 * GB, forecast.committedBytes());
+        assertEquals(5 * GB, forecast.queuedBytes());
+        assertFalse(forecast.overcommitted());
+        assertTrue(forecast.projectedFreeBytes() < GB);
+
+        clock.addAndGet(10_000L);
+        ledger.update("a", 4 * GB);
+        assertEquals(1, warnings.size(), "El aviso no debe repetirse mientras persista la situación");
+
+        ledger.release("b");
+        ledger.forecast();
+        ledger.declareQueued("b", DISK, 6 * GB);
+        ledger.forecast();
+        assertEquals(2, warnings.size());
+    }
+
+    @Test
+    void predictsExhaustionFromTheObservedWriteRate() {
+        DiskReservationLedger ledger = newLedger();
+        List<DiskReservationLedger.VolumeForecast> warnings = new ArrayList<>();
+        ledger.addListener(warnings::add);
+        ledger.tryReserve("a", DISK, 2 * GB);
+
+        // Something else fills the disk at 5 MB/s: 1 GB above the reserve is about 3.4 minutes away.
+        usable.set(2 * GB);
+        ledger.forecast();
+        clock.addAndGet(100_000L);
+        usable.set(2 * GB - 500L * 1024L * 1024L);
+        List<DiskReservationLedger.VolumeForecast> forecasts = ledger.forecast();
+
+        assertEquals(1, forecasts.size());
+        assertTrue(forecasts.get(0).secondsUntilReserve() > 0);
+        assertTrue(forecasts.get(0).secondsUntilReserve() < Duration.ofMinutes(15).toSeconds());
+        assertFalse(warnings.isEmpty());
+    }
+}
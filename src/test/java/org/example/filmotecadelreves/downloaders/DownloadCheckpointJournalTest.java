@@ -0,0 +1,149 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.downloaders.DownloadCheckpointJournal.Checkpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadCheckpointJournalTest {
+
+    private Path tempDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("checkpoint-journal-test");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void recoversTheLastCheckpointWithSegments() {
+        Path file = tempDirectory.resolve("v.mp4.journal");
+        try (DownloadCheckpointJournal journal = new DownloadCheckpointJournal(file)) {
+            assertNull(journal.recover());
+            for (int i = 1; i <= 10; i++) {
+                assertTrue(journal.append(checkpoint(i * 100L, new long[]{0, i * 50L, 500, 500, 500 + i * 50L, 1000})));
+            }
+        }
+
+        Checkpoint recovered = new DownloadCheckpointJournal(file).recover();
+        assertNotNull(recovered);
+        assertEquals("https://example.com/v.mp4", recovered.url);
+        assertEquals("\"etag\"", recovered.etag);
+        assertNull(recovered.lastModified);
+        assertEquals(1000L, recovered.totalLength);
+        assertEquals(1000L, recovered.downloadedBytes);
+        assertTrue(recovered.preallocated);
+        assertArrayEquals(new long[]{0, 500, 500, 500, 1000, 1000}, recovered.segments);
+        assertArrayEquals(new long[]{DownloadIntegrity.pack(3, 0xCAFEL)}, recovered.tailChecksums);
+    }
+
+    @Test
+    void tornTailFallsBackToThePreviousCheckpoint() throws IOException {
+        Path file = tempDirectory.resolve("v.mp4.journal");
+        try (DownloadCheckpointJournal journal = new DownloadCheckpointJournal(file)) {
+            journal.append(checkpoint(100L, null));
+            journal.append(checkpoint(200L, null));
+            journal.append(checkpoint(300L, null));
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - DownloadCheckpointJournal.RECORD_BYTES / 2);
+        }
+
+        DownloadCheckpointJournal reopened = new DownloadCheckpointJournal(file);
+        Checkpoint recovered = reopened.recover();
+        assertEquals(200L, recovered.downloadedBytes);
+        assertNull(recovered.segments);
+
+        assertTrue(reopened.append(checkpoint(250L, null)));
+        reopened.close();
+        assertEquals(250L, new DownloadCheckpointJournal(file).recover().downloadedBytes);
+    }
+
+    @Test
+    void corruptedRecordStopsRecovery() throws IOException {
+        Path file = tempDirectory.resolve("v.mp4.journal");
+        try (DownloadCheckpointJournal journal = new DownloadCheckpointJournal(file)) {
+            journal.append(checkpoint(100L, null));
+            journal.append(checkpoint(200L, null));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - DownloadCheckpointJournal.RECORD_BYTES + 20] ^= 0x7F;
+        Files.write(file, bytes);
+
+        assertEquals(100L, new DownloadCheckpointJournal(file).recover().downloadedBytes);
+
+        bytes[3] ^= 0x7F;
+        Files.write(file, bytes);
+        assertNull(new DownloadCheckpointJournal(file).recover());
+    }
+
+    @Test
+    void compactsAndRewritesWhenTheIdentityChanges() throws IOException {
+        Path file = tempDirectory.resolve("v.mp4.journal");
+        DownloadCheckpointJournal journal = new DownloadCheckpointJournal(file);
+        for (int i = 0; i < DownloadCheckpointJournal.COMPACT_RECORDS + 10; i++) {
+            journal.append(checkpoint(i, null));
+        }
+        long compacted = Files.size(file);
+        assertTrue(compacted < (long) DownloadCheckpointJournal.COMPACT_RECORDS * DownloadCheckpointJournal.RECORD_BYTES);
+
+        Checkpoint changed = checkpoint(5L, null);
+        changed.etag = "\"otro\"";
+        journal.append(changed);
+        journal.close();
+        Checkpoint recovered = new DownloadCheckpointJournal(file).recover();
+        assertEquals("\"otro\"", recovered.etag);
+        assertEquals(5L, recovered.downloadedBytes);
+
+        journal.discard();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void fitMergesFinishedSegmentsFirstAndNeverOverstatesProgress() {
+        long[] offsets = {0, 100, 100, 100, 150, 200, 200, 300, 300, 300, 310, 400};
+
+        assertArrayEquals(new long[]{0, 150, 200, 200, 300, 300, 300, 310, 400},
+                DownloadCheckpointJournal.fit(offsets, 3));
+        assertArrayEquals(new long[]{0, 150, 200, 200, 310, 400},
+                DownloadCheckpointJournal.fit(offsets, 2));
+        assertArrayEquals(new long[]{0, 150, 400}, DownloadCheckpointJournal.fit(offsets, 1));
+        assertArrayEquals(offsets, DownloadCheckpointJournal.fit(offsets, 16));
+    }
+
+    private static Checkpoint checkpoint(long downloadedBytes, long[] segments) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.url = "https://example.com/v.mp4";
+        checkpoint.etag = "\"etag\"";
+        checkpoint.totalLength = 1000L;
+        checkpoint.downloadedBytes = downloadedBytes;
+        checkpoint.updatedAt = downloadedBytes;
+        checkpoint.segments = segments;
+        checkpoint.preallocated = segments != null;
+        checkpoint.tailChecksums = segments != null ? new long[]{DownloadIntegrity.pack(3, 0xCAFEL)} : null;
+        return checkpoint;
+    }
+}
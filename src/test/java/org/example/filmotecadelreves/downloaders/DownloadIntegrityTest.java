@@ -0,0 +1,195 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadIntegrityTest {
+
+    private static final int BLOCK = DownloadIntegrity.BLOCK_BYTES;
+
+    private Path tempDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("download-integrity-test");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void tailChecksumOnlyReportsCommittedBlocks() {
+        byte[] data = randomBytes(3 * BLOCK + 100);
+        DownloadIntegrity.TailChecksum tail = new DownloadIntegrity.TailChecksum(0L);
+        int position = 0;
+        while (position < data.length) {
+            int length = Math.min(70_001, data.length - position);
+            tail.update(position, ByteBuffer.wrap(data, position, length));
+            position += length;
+        }
+        assertEquals(DownloadIntegrity.NO_ENTRY, tail.entry());
+
+        tail.commit(2L * BLOCK + 5);
+        assertEquals(DownloadIntegrity.pack(1, crc(data, BLOCK, BLOCK)), tail.entry());
+
+        tail.commit(data.length);
+        assertEquals(DownloadIntegrity.pack(2, crc(data, 2 * BLOCK, BLOCK)), tail.entry());
+    }
+
+    @Test
+    void writerStartingMidBlockSkipsThatBlock() {
+        byte[] data = randomBytes(2 * BLOCK);
+        DownloadIntegrity.TailChecksum tail = new DownloadIntegrity.TailChecksum(100L);
+        tail.update(100L, ByteBuffer.wrap(data, 100, BLOCK - 100));
+        tail.commit(BLOCK);
+        assertEquals(DownloadIntegrity.NO_ENTRY, tail.entry());
+
+        tail.update(BLOCK, ByteBuffer.wrap(data, BLOCK, BLOCK));
+        tail.commit(2L * BLOCK);
+        assertEquals(DownloadIntegrity.pack(1, crc(data, BLOCK, BLOCK)), tail.entry());
+    }
+
+    @Test
+    void mismatchedBlocksFindsDataThatChangedOnDisk() throws IOException {
+        byte[] data = randomBytes(3 * BLOCK);
+        Path file = tempDirectory.resolve("v.mp4.part");
+        Files.write(file, data);
+        long[] entries = {
+                DownloadIntegrity.pack(0, crc(data, 0, BLOCK)),
+                DownloadIntegrity.pack(2, crc(data, 2 * BLOCK, BLOCK))
+        };
+        assertEquals(0, DownloadIntegrity.mismatchedBlocks(file, entries).length);
+
+        data[2 * BLOCK + 7] ^= 1;
+        Files.write(file, data);
+        assertArrayEquals(new long[]{2L * BLOCK}, DownloadIntegrity.mismatchedBlocks(file, entries));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(BLOCK / 2);
+        }
+        assertArrayEquals(new long[]{0L, 2L * BLOCK}, DownloadIntegrity.mismatchedBlocks(file, entries));
+    }
+
+    @Test
+    void refetchReopensOnlyTheWindowAfterTheBadOffset() {
+        long[] offsets = {0, 400, 400, 400, 900, 1000};
+
+        assertArrayEquals(new long[]{0, 100, 150, 150, 400, 400, 400, 900, 1000},
+                DownloadIntegrity.refetch(offsets, 100, 50));
+        assertArrayEquals(new long[]{0, 400, 400, 400, 500, 1000},
+                DownloadIntegrity.refetch(offsets, 500, Long.MAX_VALUE));
+        assertArrayEquals(offsets, DownloadIntegrity.refetch(offsets, 950, 10));
+        assertEquals(850L, DownloadIntegrity.downloadedBytes(DownloadIntegrity.refetch(offsets, 500, 50)));
+    }
+
+    @Test
+    void mp4LayoutIsChecked() throws IOException {
+        byte[] valid = concat(box("ftyp", 16), box("mdat", 4000), box("moov", 300));
+        assertTrue(check(valid).valid());
+        assertTrue(check(concat(valid, new byte[3])).valid());
+
+        DownloadIntegrity.Result noMoov = check(concat(box("ftyp", 16), box("mdat", 4000)));
+        assertFalse(noMoov.valid());
+        assertEquals(-1L, noMoov.offset());
+
+        byte[] damaged = valid.clone();
+        Arrays.fill(damaged, 4032, 4040, (byte) 0);
+        assertEquals(4032L, check(damaged).offset());
+
+        byte[] truncated = Arrays.copyOf(valid, valid.length - 10);
+        assertEquals(4032L, check(truncated).offset());
+
+        assertEquals(0L, check("<!DOCTYPE html><html>Error 404</html>".getBytes()).offset());
+        assertTrue(check(randomBytes(2048)).valid());
+    }
+
+    @Test
+    void matroskaLayoutIsChecked() throws IOException {
+        byte[] ebmlHeader = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x84, 0x42, (byte) 0x86, (byte) 0x81, 0x01};
+        byte[] info = element(new byte[]{0x15, 0x49, (byte) 0xA9, 0x66}, 20);
+        byte[] cluster = element(new byte[]{0x1F, 0x43, (byte) 0xB6, 0x75}, 1000);
+        byte[] body = concat(info, cluster);
+        byte[] segment = concat(segmentHeader(body.length), body);
+        assertTrue(check(concat(ebmlHeader, segment)).valid());
+
+        DownloadIntegrity.Result tooLong = check(concat(ebmlHeader, segmentHeader(body.length + 50), body));
+        assertFalse(tooLong.valid());
+
+        byte[] damaged = concat(ebmlHeader, segment);
+        int clusterOffset = ebmlHeader.length + 12 + info.length;
+        Arrays.fill(damaged, clusterOffset, clusterOffset + 4, (byte) 0);
+        assertEquals(clusterOffset, check(damaged).offset());
+    }
+
+    private DownloadIntegrity.Result check(byte[] content) throws IOException {
+        Path file = tempDirectory.resolve("check.part");
+        Files.write(file, content);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return DownloadIntegrity.checkContainer(channel, channel.size());
+        }
+    }
+
+    private static byte[] box(String type, int payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload);
+        buffer.putInt(8 + payload).put(type.getBytes());
+        return buffer.array();
+    }
+
+    private static byte[] element(byte[] id, int payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(id.length + 8 + payload);
+        buffer.put(id).put((byte) 0x01).put(new byte[3]).putInt(payload);
+        return buffer.array();
+    }
+
+    private static byte[] segmentHeader(long size) {
+        return ByteBuffer.allocate(12).put(new byte[]{0x18, 0x53, (byte) 0x80, 0x67})
+                .putLong(size | 0x0100000000000000L).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            buffer.put(part);
+        }
+        return buffer.array();
+    }
+
+    private static long crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return crc.getValue();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(11).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.downloaders.DownloadRetryPolicy.Failure;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.NoSuchFileException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadRetryPolicyTest {
+
+    @Test
+    void classifiesStatusCodesAndIoFailures() {
+        assertEquals(Failure.EXPIRED_LINK, DownloadRetryPolicy.classify(403));
+        assertEquals(Failure.EXPIRED_LINK, DownloadRetryPolicy.classify(410));
+        assertEquals(Failure.THROTTLED, DownloadRetryPolicy.classify(429));
+        assertEquals(Failure.THROTTLED, DownloadRetryPolicy.classify(503));
+        assertEquals(Failure.SERVER_ERROR, DownloadRetryPolicy.classify(502));
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(408));
+        assertEquals(Failure.FATAL, DownloadRetryPolicy.classify(404));
+
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(new ConnectException("refused")));
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(new HttpTimeoutException("timeout")));
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(new EOFException("closed")));
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(new IOException("connection reset")));
+        assertEquals(Failure.NETWORK, DownloadRetryPolicy.classify(new IOException("wrapped", new EOFException())));
+        assertEquals(Failure.FATAL, DownloadRetryPolicy.classify(new NoSuchFileException("v.mp4.part")));
+    }
+
+    @Test
+    void backoffGrowsWithJitterUntilTheBudgetIsSpent() {
+        DownloadRetryPolicy lowest = new DownloadRetryPolicy(() -> 0.0);
+        DownloadRetryPolicy highest = new DownloadRetryPolicy(() -> 0.999999);
+        long[] expectedCeilings = {1_000, 2_000, 4_000, 8_000, 16_000, 30_000, 30_000, 30_000};
+        for (long ceiling : expectedCeilings) {
+            assertEquals(ceiling / 2, lowest.nextDelay(Failure.NETWORK, -1L));
+            long high = highest.nextDelay(Failure.NETWORK, -1L);
+            assertTrue(high > ceiling * 9 / 10 && high <= ceiling, "delay " + high);
+        }
+        assertEquals(-1L, lowest.nextDelay(Failure.NETWORK, -1L));
+        assertEquals(1_000L, lowest.nextDelay(Failure.SERVER_ERROR, -1L));
+        assertEquals(-1L, lowest.nextDelay(Failure.FATAL, -1L));
+
+        lowest.reset();
+        assertEquals(0, lowest.attempts(Failure.NETWORK));
+        assertEquals(500L, lowest.nextDelay(Failure.NETWORK, -1L));
+    }
+
+    @Test
+    void retryAfterIsHonouredUpToTheCap() {
+        DownloadRetryPolicy policy = new DownloadRetryPolicy(() -> 0.0);
+        assertEquals(30_000L, policy.nextDelay(Failure.THROTTLED, 30_000L));
+        assertEquals(DownloadRetryPolicy.MAX_RETRY_AFTER_MS, policy.nextDelay(Failure.THROTTLED, Long.MAX_VALUE));
+        assertEquals(1_000L, policy.nextDelay(Failure.THROTTLED, 1_000L));
+        assertEquals(20_000L, policy.nextDelay(Failure.THROTTLED, -1L));
+
+        long now = 1_700_000_000_000L;
+        assertEquals(120_000L, DownloadRetryPolicy.parseRetryAfter(" 120 ", now));
+        assertEquals(DownloadRetryPolicy.MAX_RETRY_AFTER_MS, DownloadRetryPolicy.parseRetryAfter("86400", now));
+        assertEquals(-1L, DownloadRetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(-1L, DownloadRetryPolicy.parseRetryAfter(null, now));
+        // 1_700_000_000_000 ms is Tue, 14 Nov 2023 22:13:20 GMT.
+        assertEquals(40_000L, DownloadRetryPolicy.parseRetryAfter("Tue, 14 Nov 2023 22:14:00 GMT", now));
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.TimeoutException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MediaRequestCaptureTest {
+
+    private static final Pattern MP4 = Pattern.compile("(https?://[^\"'\\s>]+?\\.mp4(?:\\?[^\"'\\s>]*)?)",
+            Pattern.CASE_INSENSITIVE);
+    private static final String PLAYER = "https://www.streamplay.example/e/abc123";
+
+    @Test
+    void takesTheFirstRequestThatMatchesThePattern() {
+        MediaRequestCapture capture = new MediaRequestCapture(MP4, PLAYER);
+        capture.onRequest(request("https://streamplay.example/player.js"));
+        assertEquals(Optional.empty(), capture.current());
+
+        capture.onRequest(request("https://cdn.example/v.mp4?token=1"));
+        capture.onRequest(request("https://cdn.example/otro.mp4"));
+
+        assertEquals("https://cdn.example/v.mp4?token=1", capture.await(Duration.ofMillis(10)));
+    }
+
+    @Test
+    void acceptsResponsesServedAsMp4ByThePlayer() {
+        MediaRequestCapture capture = new MediaRequestCapture(MP4, PLAYER);
+        capture.onResponse(response("https://cdn.streamplay.example/stream/abc", "text/html"));
+        capture.onResponse(response("https://cdn.streamplay.example/stream/abc", null));
+        assertEquals(Optional.empty(), capture.current());
+
+        capture.onResponse(response("https://cdn.streamplay.example/stream/abc", "Video/MP4; charset=binary"));
+
+        assertEquals(Optional.of("https://cdn.streamplay.example/stream/abc"), capture.current());
+    }
+
+    @Test
+    void ignoresMp4sServedByOtherSitesInThePage() {
+        MediaRequestCapture capture = new MediaRequestCapture(MP4, PLAYER);
+        capture.onResponse(response("https://ads.example/creative/preroll", "video/mp4"));
+        capture.onResponse(response("https://notstreamplay.example/stream/abc", "video/mp4"));
+        assertEquals(Optional.empty(), capture.current(), "Un anuncio no se toma por el vídeo");
+
+        capture.onResponse(response("https://cdn.example/v.mp4?token=1", "video/mp4"));
+
+        assertEquals(Optional.of("https://cdn.example/v.mp4?token=1"), capture.current());
+    }
+
+    @Test
+    void skipsUrlsThatOnlyExistInsideThePage() {
+        MediaRequestCapture capture = new MediaRequestCapture(MP4, PLAYER);
+        capture.onResponse(response("blob:https://streamplay.example/5f2c", "video/mp4"));
+        capture.onResponse(response("data:video/mp4;base64,AAAA", "video/mp4"));
+        capture.onRequest(Map.of("request", "no es un objeto"));
+        capture.onRequest(Map.of());
+
+        assertThrows(TimeoutException.class, () -> capture.await(Duration.ofMillis(20)));
+        capture.close();
+    }
+
+    private static Map<String, Object> request(String url) {
+        return Map.of("requestId", "1", "request", Map.of("url", url, "method", "GET"));
+    }
+
+    private static Map<String, Object> response(String url, String mimeType) {
+        return Map.of("requestId", "1", "response",
+                mimeType != null ? Map.of("url", url, "mimeType", mimeType) : Map.of("url", url));
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.filmotecadelreves.downloaders;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MirrorProbeTest {
+
+    private static final byte[] VIDEO = randomBytes(2 * 1024 * 1024, 1);
+    private static final byte[] OTHER_ENCODE = randomBytes(VIDEO.length, 2);
+
+    private HttpServer server;
+    private String base;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/fast.mp4", exchange -> serve(exchange, VIDEO, true, 0));
+        server.createContext("/slow.mp4", exchange -> serve(exchange, VIDEO, true, 40));
+        server.createContext("/other.mp4", exchange -> serve(exchange, OTHER_ENCODE, true, 0));
+        server.createContext("/noranges.mp4", exchange -> serve(exchange, VIDEO, false, 0));
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void probeRanksMirrorsAndRecognisesTheSameFile() throws Exception {
+        DirectHttpTransport transport = new DirectHttpTransport(4, Duration.ofSeconds(10));
+        MirrorProbe.Sample fast = MirrorProbe.probe(transport, new DirectLink(base + "/fast.mp4", null));
+        MirrorProbe.Sample slow = MirrorProbe.probe(transport, new DirectLink(base + "/slow.mp4", null));
+        MirrorProbe.Sample other = MirrorProbe.probe(transport, new DirectLink(base + "/other.mp4", null));
+        MirrorProbe.Sample noRanges = MirrorProbe.probe(transport, new DirectLink(base + "/noranges.mp4", null));
+
+        assertEquals(VIDEO.length, fast.totalLength());
+        assertEquals(VIDEO.length, noRanges.totalLength());
+        assertTrue(fast.bytesPerSecond() > 2 * slow.bytesPerSecond(),
+                fast.bytesPerSecond() + " frente a " + slow.bytesPerSecond());
+        assertTrue(fast.estimatedMillis(VIDEO.length) < slow.estimatedMillis(VIDEO.length));
+
+        assertTrue(fast.continues(slow));
+        assertTrue(slow.continues(fast));
+        assertFalse(other.continues(fast), "Mismo tamaño pero otro contenido");
+        assertFalse(noRanges.continues(fast), "Sin rangos no se puede seguir desde un offset");
+    }
+
+    @Test
+    void switchingNeedsAClearGain() {
+        long mb = 1024 * 1024;
+        MirrorProbe.Sample mirror = new MirrorProbe.Sample(200, 4.0 * mb, 400 * mb, 7L, true);
+
+        // 100 MB left at 1 MB/s: 100 s here against ~25 s there.
+        assertTrue(mirror.beats(100 * mb, 1.0 * mb, true));
+        // Same gap, but starting over means 400 MB there: ~100 s, not worth it.
+        assertFalse(mirror.beats(100 * mb, 1.0 * mb, false));
+        // 3 MB/s here against 4 MB/s there is within the margin.
+        assertFalse(mirror.beats(100 * mb, 3.0 * mb, true));
+        // A failing server is left for any mirror that answers.
+        assertTrue(mirror.beats(100 * mb, 0.0, false));
+        assertFalse(new MirrorProbe.Sample(200, 0.0, 400 * mb, 7L, true).beats(100 * mb, 0.0, true));
+    }
+
+    private static void serve(HttpExchange exchange, byte[] content, boolean ranges, long pauseMillis) throws IOException {
+        int from = 0;
+        int to = content.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (ranges && range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-");
+            from = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty()) {
+                to = Math.min(to, Integer.parseInt(bounds[1]));
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+            exchange.sendResponseHeaders(206, to - from + 1);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = from; offset <= to; offset += 32 * 1024) {
+                out.write(content, offset, Math.min(32 * 1024, to - offset + 1));
+                out.flush();
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // the probe stops reading after its sample
+        }
+        exchange.close();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
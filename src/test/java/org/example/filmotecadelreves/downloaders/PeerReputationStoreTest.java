@@ -0,0 +1,82 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeerReputationStoreTest {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef01234567";
+
+    private Path tempDirectory;
+    private Path storeFile;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("peer-reputation-test");
+        storeFile = tempDirectory.resolve("peer_reputation.json");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void reputationSurvivesRestart() {
+        long now = System.currentTimeMillis();
+        PeerReputationStore store = new PeerReputationStore(storeFile);
+        store.recordThroughput("10.0.0.1:6881", HASH, 900 * 1024, now);
+        store.recordThroughput("10.0.0.2:6881", HASH, 200 * 1024, now);
+        store.recordThroughput("10.0.0.3:6881", "otro", 500 * 1024, now);
+        store.save();
+
+        PeerReputationStore reloaded = new PeerReputationStore(storeFile);
+        assertEquals(3, reloaded.size());
+        assertEquals(List.of("10.0.0.1:6881", "10.0.0.2:6881"), reloaded.knownFastPeers(HASH, 5, now));
+    }
+
+    @Test
+    void repeatedFailuresMarkPeerAsBad() {
+        long now = System.currentTimeMillis();
+        PeerReputationStore store = new PeerReputationStore(storeFile);
+        for (int i = 0; i < 3; i++) {
+            store.recordFailure("10.0.0.9:51413", HASH, now);
+        }
+        assertTrue(store.isKnownBad("10.0.0.9:51413", now));
+        assertFalse(store.isKnownBad("10.0.0.9:51413", now + 7L * 60 * 60 * 1000));
+
+        store.recordThroughput("10.0.0.9:51413", HASH, 64 * 1024, now);
+        assertFalse(store.isKnownBad("10.0.0.9:51413", now), "Un peer que vuelve a transferir deja de estar vetado");
+    }
+
+    @Test
+    void rankingPutsFastPeersFirstAndDropsBadOnes() {
+        long now = System.currentTimeMillis();
+        PeerReputationStore store = new PeerReputationStore(storeFile);
+        store.recordThroughput("10.0.0.1:1", HASH, 2 * 1024, now);
+        store.recordThroughput("10.0.0.2:2", HASH, 400 * 1024, now);
+        for (int i = 0; i < 3; i++) {
+            store.recordFailure("10.0.0.3:3", HASH, now);
+        }
+
+        List<String> ranked = store.rank(
+                List.of("10.0.0.1:1", "10.0.0.3:3", "10.0.0.4:4", "10.0.0.2:2"), Function.identity(), now);
+        assertEquals(List.of("10.0.0.2:2", "10.0.0.4:4", "10.0.0.1:1"), ranked);
+    }
+}
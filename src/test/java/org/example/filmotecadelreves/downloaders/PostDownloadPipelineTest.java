@@ -0,0 +1,163 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.library.LibraryEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostDownloadPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extractsMovesAndRegistersFinishedDownload() throws Exception {
+        Path source = tempDir.resolve("descargas");
+        Path target = tempDir.resolve("peliculas");
+        Path release = source.resolve("Pelicula.2024");
+        Files.createDirectories(release);
+        byte[] video = "contenido de video".getBytes(StandardCharsets.UTF_8);
+        Path archive = release.resolve("pelicula.zip");
+        try (OutputStream out = Files.newOutputStream(archive);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("Pelicula.2024.1080p.mkv"));
+            zip.write(video);
+            zip.closeEntry();
+        }
+        Files.writeString(release.resolve("info.nfo"), "nfo");
+
+        List<Path> registered = Collections.synchronizedList(new ArrayList<>());
+        List<PostDownloadPipeline.Stage> completedStages = Collections.synchronizedList(new ArrayList<>());
+        PostDownloadPipeline pipeline = new PostDownloadPipeline(1, 4, (type, files) -> {
+            assertEquals(LibraryEntry.LibraryType.MOVIES, type);
+            registered.addAll(files);
+            return files.size();
+        });
+        try {
+            PostDownloadPipeline.Job job = new PostDownloadPipeline.Job("hash-1", "Pelicula.2024", source,
+                    List.of(new PostDownloadPipeline.PayloadFile("Pelicula.2024/pelicula.zip", Files.size(archive)),
+                            new PostDownloadPipeline.PayloadFile("Pelicula.2024/info.nfo", 3)),
+                    LibraryEntry.LibraryType.MOVIES, target, true);
+            PostDownloadPipeline.Result result = pipeline.submit(job, new RecordingListener(completedStages))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertNotNull(result);
+            assertTrue(result.succeeded(), () -> "Fallo inesperado: " + result.error());
+            assertEquals(List.of(PostDownloadPipeline.Stage.values()), completedStages);
+            assertEquals(4, result.timings().size());
+            Path movedVideo = target.resolve("Pelicula.2024/Pelicula.2024.1080p.mkv");
+            assertArrayEquals(video, Files.readAllBytes(movedVideo));
+            assertTrue(Files.exists(target.resolve("Pelicula.2024/pelicula.zip")));
+            assertFalse(Files.exists(release), "La carpeta de origen vacía debe eliminarse");
+            assertEquals(List.of(movedVideo), registered);
+            assertEquals(1, result.registered());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void stopsAtVerificationWhenSizeDoesNotMatch() throws Exception {
+        Path source = tempDir.resolve("descargas");
+        Files.createDirectories(source);
+        Files.writeString(source.resolve("serie.S01E01.mkv"), "incompleto");
+        PostDownloadPipeline pipeline = new PostDownloadPipeline(1, 4, (type, files) -> {
+            throw new AssertionError("No debe registrarse nada");
+        });
+        try {
+            PostDownloadPipeline.Job job = new PostDownloadPipeline.Job("hash-2", "serie", source,
+                    List.of(new PostDownloadPipeline.PayloadFile("serie.S01E01.mkv", 1024)),
+                    LibraryEntry.LibraryType.SERIES, tempDir.resolve("series"), false);
+            PostDownloadPipeline.Result result = pipeline.submit(job, null).get(10, TimeUnit.SECONDS);
+
+            assertFalse(result.succeeded());
+            assertEquals(PostDownloadPipeline.Stage.VERIFY, result.failedStage());
+            assertTrue(Files.exists(source.resolve("serie.S01E01.mkv")));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void errorsThrownByAStageStillCompleteTheFuture() throws Exception {
+        Path source = tempDir.resolve("descargas");
+        Files.createDirectories(source);
+        Files.writeString(source.resolve("pelicula.mkv"), "video");
+        PostDownloadPipeline pipeline = new PostDownloadPipeline(1, 4, (type, files) -> {
+            throw new NoClassDefFoundError("org/ejemplo/Falta");
+        });
+        try {
+            PostDownloadPipeline.Job job = new PostDownloadPipeline.Job("hash-3", "pelicula", source,
+                    List.of(new PostDownloadPipeline.PayloadFile("pelicula.mkv", 5)),
+                    LibraryEntry.LibraryType.MOVIES, null, false);
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> pipeline.submit(job, null).get(10, TimeUnit.SECONDS));
+
+            assertInstanceOf(NoClassDefFoundError.class, failure.getCause());
+            assertThrows(ExecutionException.class, () -> pipeline.submit(job, null).get(10, TimeUnit.SECONDS),
+                    "El trabajo no queda marcado como en curso");
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void crossDeviceCopyReportsProgressAndReplacesAtomically() throws IOException {
+        Path from = tempDir.resolve("origen.bin");
+        Path to = tempDir.resolve("destino/origen.bin");
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        Files.write(from, data);
+        Files.createDirectories(to.getParent());
+        Files.writeString(to, "versión anterior");
+
+        List<Long> progress = new ArrayList<>();
+        PostDownloadPipeline.copyAcrossFileSystems(from, to, progress::add);
+
+        assertArrayEquals(data, Files.readAllBytes(to));
+        assertEquals((long) data.length, (long) progress.get(progress.size() - 1));
+        assertFalse(Files.exists(to.resolveSibling("origen.bin.moviendo")));
+    }
+
+    private record RecordingListener(List<PostDownloadPipeline.Stage> completedStages)
+            implements PostDownloadPipeline.Listener {
+        @Override
+        public void onProgress(PostDownloadPipeline.Job job, PostDownloadPipeline.Stage stage,
+                               double fraction, String message) {
+            assertTrue(fraction >= 0.0 && fraction <= 1.0);
+        }
+
+        @Override
+        public void onStageCompleted(PostDownloadPipeline.Job job, PostDownloadPipeline.Stage stage,
+                                     Duration elapsed, String summary) {
+            completedStages.add(stage);
+        }
+
+        @Override
+        public void onFinished(PostDownloadPipeline.Job job, PostDownloadPipeline.Result result) {
+        }
+    }
+}
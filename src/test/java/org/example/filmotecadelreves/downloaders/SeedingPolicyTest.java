@@ -0,0 +1,67 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeedingPolicyTest {
+
+    @Test
+    void goalIsReachedByRatioOrSeedTime() {
+        SeedingPolicy policy = new SeedingPolicy(1.5, Duration.ofHours(2), false,
+                SeedingPolicy.GoalAction.PAUSE, 50);
+
+        assertEquals(SeedingPolicy.Verdict.SEED, policy.evaluate(1.0, Duration.ofMinutes(30), false));
+        assertEquals(SeedingPolicy.Verdict.GOAL_REACHED, policy.evaluate(1.5, Duration.ofMinutes(30), false));
+        assertEquals(SeedingPolicy.Verdict.GOAL_REACHED, policy.evaluate(0.2, Duration.ofHours(2), true));
+    }
+
+    @Test
+    void idleOnlySeedingHoldsWhileDownloadsAreActive() {
+        SeedingPolicy policy = new SeedingPolicy(2.0, Duration.ZERO, true,
+                SeedingPolicy.GoalAction.REMOVE_KEEP_FILES, 50);
+
+        assertEquals(SeedingPolicy.Verdict.HOLD_WHILE_DOWNLOADING, policy.evaluate(0.5, Duration.ofDays(3), true));
+        assertEquals(SeedingPolicy.Verdict.SEED, policy.evaluate(0.5, Duration.ofDays(3), false));
+        // A met goal wins over holding: the torrent is done, not waiting.
+        assertEquals(SeedingPolicy.Verdict.GOAL_REACHED, policy.evaluate(2.0, Duration.ZERO, true));
+    }
+
+    @Test
+    void unlimitedPolicyNeverStopsSeedingButStillReservesUpload() {
+        SeedingPolicy policy = SeedingPolicy.unlimited();
+
+        assertFalse(policy.hasGoal());
+        assertEquals(SeedingPolicy.Verdict.SEED, policy.evaluate(100.0, Duration.ofDays(365), true));
+        assertEquals(50 * 1024, policy.downloadUploadReserve(100 * 1024));
+        assertEquals(0, policy.downloadUploadReserve(-1));
+    }
+
+    @Test
+    void ratioFallsBackToSizeWhenNothingWasDownloaded() {
+        assertEquals(2.0, SeedingPolicy.ratio(200, 100, 400), 1e-9);
+        assertEquals(0.5, SeedingPolicy.ratio(200, 0, 400), 1e-9);
+        assertEquals(0.0, SeedingPolicy.ratio(200, 0, 0), 1e-9);
+    }
+
+    @Test
+    void roundTripsThroughConfigJson() {
+        SeedingPolicy policy = new SeedingPolicy(1.25, Duration.ofMinutes(90), true,
+                SeedingPolicy.GoalAction.REMOVE_KEEP_FILES, 200);
+        JSONObject json = policy.toJson();
+        SeedingPolicy restored = SeedingPolicy.fromJson(json);
+
+        assertEquals(1.25, restored.getTargetRatio(), 1e-9);
+        assertEquals(Duration.ofMinutes(90), restored.getSeedTime());
+        assertTrue(restored.isSeedOnlyWhileIdle());
+        assertEquals(SeedingPolicy.GoalAction.REMOVE_KEEP_FILES, restored.getGoalAction());
+        assertEquals(90, restored.getDownloadUploadReservePercent());
+        assertEquals(SeedingPolicy.unlimited().getDownloadUploadReservePercent(),
+                SeedingPolicy.fromJson("no es un objeto").getDownloadUploadReservePercent());
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedDownloadPlanTest {
+
+    @Test
+    void splitsEvenlyAndRespectsTheMinimumSegmentSize() {
+        SegmentedDownloadPlan plan = SegmentedDownloadPlan.create(1000, 4, 100);
+        assertEquals(4, plan.segmentCount());
+        assertEquals("[[0,0,250],[250,250,500],[500,500,750],[750,750,1000]]", plan.toJson().toJSONString());
+
+        assertEquals(2, SegmentedDownloadPlan.create(250, 4, 100).segmentCount());
+        assertEquals(1, SegmentedDownloadPlan.create(50, 4, 100).segmentCount());
+    }
+
+    @Test
+    void idleConnectionStealsTheUpperHalfOfTheBusiestSegment() {
+        SegmentedDownloadPlan plan = SegmentedDownloadPlan.create(1000, 2, 100);
+        SegmentedDownloadPlan.Segment first = plan.acquire(10);
+        SegmentedDownloadPlan.Segment second = plan.acquire(10);
+        write(plan, second, 500);
+        assertEquals(0, plan.claim(second, 10));
+
+        // The first connection has claimed 100 bytes it is about to write: they are not stolen.
+        assertEquals(100, plan.claim(first, 100));
+        SegmentedDownloadPlan.Segment stolen = plan.acquire(10);
+        assertNotNull(stolen);
+        assertEquals(300, stolen.start());
+        assertEquals(500, stolen.end());
+        assertEquals(300, first.end());
+        plan.commit(first, 100);
+
+        assertEquals(200, plan.claim(first, 1000));
+        assertEquals("[[0,100,300],[300,300,500],[500,1000,1000]]", plan.toJson().toJSONString());
+    }
+
+    @Test
+    void persistedPlanResumesWhereItStopped() throws Exception {
+        SegmentedDownloadPlan plan = SegmentedDownloadPlan.create(1000, 4, 100);
+        SegmentedDownloadPlan.Segment segment = plan.acquire(10);
+        write(plan, segment, 120);
+        Object parsed = new JSONParser().parse(plan.toJson().toJSONString());
+
+        SegmentedDownloadPlan restored = SegmentedDownloadPlan.fromJson(parsed, 1000);
+        assertNotNull(restored);
+        assertEquals(120, restored.downloadedBytes());
+        assertFalse(restored.isComplete());
+        SegmentedDownloadPlan.Segment resumed = restored.acquire(10);
+        assertEquals(120, resumed.position());
+
+        assertNull(SegmentedDownloadPlan.fromJson(parsed, 2000));
+        JSONArray gap = (JSONArray) new JSONParser().parse("[[0,0,400],[500,500,1000]]");
+        assertNull(SegmentedDownloadPlan.fromJson(gap, 1000));
+        assertNull(SegmentedDownloadPlan.fromJson("[]", 1000));
+    }
+
+    @Test
+    void concurrentConnectionsWriteEveryByteExactlyOnce() throws Exception {
+        int length = 1 << 20;
+        SegmentedDownloadPlan plan = SegmentedDownloadPlan.create(length, 4, 64 * 1024);
+        AtomicIntegerArray writes = new AtomicIntegerArray(length);
+        List<Thread> connections = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            boolean slow = c == 0;
+            Thread thread = new Thread(() -> {
+                SegmentedDownloadPlan.Segment segment = plan.acquire(4096);
+                while (segment != null) {
+                    while (true) {
+                        int allowed = plan.claim(segment, 1024);
+                        if (allowed == 0) {
+                            break;
+                        }
+                        long position = segment.position();
+                        for (int i = 0; i < allowed; i++) {
+                            writes.incrementAndGet((int) position + i);
+                        }
+                        plan.commit(segment, allowed);
+                        if (slow) {
+                            Thread.onSpinWait();
+                            Thread.yield();
+                        }
+                    }
+                    segment = plan.acquire(4096);
+                }
+            });
+            connections.add(thread);
+            thread.start();
+        }
+        for (Thread thread : connections) {
+            thread.join();
+        }
+
+        assertTrue(plan.isComplete());
+        assertEquals(length, plan.downloadedBytes());
+        for (int i = 0; i < length; i++) {
+            assertEquals(1, writes.get(i), "byte " + i);
+        }
+    }
+
+    private static void write(SegmentedDownloadPlan plan, SegmentedDownloadPlan.Segment segment, int bytes) {
+        int left = bytes;
+        while (left > 0) {
+            int allowed = plan.claim(segment, left);
+            plan.commit(segment, allowed);
+            left -= allowed;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SwarmHealthScannerTest {
+
+    @Test
+    void ranksByExpectedCompletionWithDeadSwarmsLast() {
+        SwarmHealthScanner scanner = new SwarmHealthScanner();
+        TorrentState slow = state("lento");
+        TorrentState fast = state("rapido");
+        TorrentState dead = state("muerto");
+        TorrentState noRate = state("sin-velocidad");
+
+        SwarmHealthSummary summary = scanner.scan(List.of(
+                sample(slow, 3, 20, 4.0, 10_000, 10_000_000),
+                sample(dead, 0, 0, 0.0, 0, 5_000_000),
+                sample(fast, 8, 40, 9.0, 500_000, 10_000_000),
+                sample(noRate, 1, 2, 1.5, 0, 1_000)), false, 1L);
+
+        assertEquals(List.of(fast, slow, noRate, dead),
+                summary.entries().stream().map(SwarmHealthEntry::state).toList());
+        assertEquals(20L, summary.entries().get(0).etaSeconds());
+        assertEquals(-1L, summary.entries().get(2).etaSeconds());
+        assertEquals(1, summary.count(SwarmHealthEntry.Verdict.DEAD));
+        assertEquals(1, summary.count(SwarmHealthEntry.Verdict.STALLED));
+        assertEquals(510_000L, summary.downloadRate());
+        assertEquals(25_001_000L, summary.remainingBytes());
+    }
+
+    @Test
+    void flagsSwarmsWithoutSeedsOrAvailability() {
+        TorrentState state = state("t");
+        assertEquals(SwarmHealthEntry.Verdict.DEAD,
+                SwarmHealthScanner.classify(sample(state, 0, 4, 0.0, 0, 100)));
+        assertEquals(SwarmHealthEntry.Verdict.AT_RISK,
+                SwarmHealthScanner.classify(sample(state, 0, 4, 0.6, 50_000, 100)));
+        assertEquals(SwarmHealthEntry.Verdict.HEALTHY,
+                SwarmHealthScanner.classify(sample(state, 2, 4, 2.6, 50_000, 100)));
+        // Without metadata or peers there is nothing to wait for.
+        assertEquals(SwarmHealthEntry.Verdict.DEAD, SwarmHealthScanner.classify(
+                new SwarmHealthScanner.Sample(state, false, false, 0, 0, -1.0, 0, 0)));
+    }
+
+    @Test
+    void remediesEscalateAndRotateOnlyWhenOthersWait() {
+        SwarmHealthScanner scanner = new SwarmHealthScanner();
+        TorrentState dead = state("muerto");
+        List<SwarmHealthScanner.Sample> samples = List.of(sample(dead, 0, 0, 0.0, 0, 100));
+
+        assertEquals(SwarmHealthEntry.Remedy.TRACKER_REFRESH, remedy(scanner.scan(samples, true, 1L)));
+        assertEquals(SwarmHealthEntry.Remedy.DHT_ANNOUNCE, remedy(scanner.scan(samples, true, 2L)));
+        assertEquals(SwarmHealthEntry.Remedy.TRACKER_REFRESH, remedy(scanner.scan(samples, false, 3L)));
+        assertEquals(SwarmHealthEntry.Remedy.ROTATE_OUT, remedy(scanner.scan(samples, true, 4L)));
+        // Rotating resets the escalation.
+        assertEquals(SwarmHealthEntry.Remedy.TRACKER_REFRESH, remedy(scanner.scan(samples, true, 5L)));
+
+        SwarmHealthScanner.Sample recovered = sample(dead, 2, 5, 3.0, 80_000, 100);
+        assertEquals(SwarmHealthEntry.Remedy.NONE, remedy(scanner.scan(List.of(recovered), true, 6L)));
+        assertEquals(SwarmHealthEntry.Remedy.TRACKER_REFRESH, remedy(scanner.scan(samples, true, 7L)));
+    }
+
+    private static SwarmHealthEntry.Remedy remedy(SwarmHealthSummary summary) {
+        return summary.entries().get(0).remedy();
+    }
+
+    private static SwarmHealthScanner.Sample sample(TorrentState state, int seeds, int peers, double availability,
+                                                    long rate, long remaining) {
+        return new SwarmHealthScanner.Sample(state, true, false, seeds, peers, availability, rate, remaining);
+    }
+
+    private static TorrentState state(String name) {
+        return new TorrentState("magnet:?xt=urn:btih:" + name, "/tmp/destino", 0, 0, 0);
+    }
+}
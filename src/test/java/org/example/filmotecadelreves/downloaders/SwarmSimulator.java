@@ -0,0 +1,515 @@
+package org.example.filmotecadelreves.downloaders;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic, tick based model of a libtorrent session used to exercise a
+ * {@link SwarmTuningPolicy} offline.  Every tick represents one second of the
+ * status loop in {@link TorrentDownloader}: peers churn, the session spends
+ * its connection attempts, data flows through connected peers (seeds always
+ * upload, leechers reciprocate only when they hold one of our upload slots)
+ * and the policy is consulted with the same cadence as the real downloader.
+ * All randomness comes from the scenario seed, so a run is reproducible.
+ */
+final class SwarmSimulator {
+
+    private static final int TORRENT_TUNING_PERIOD = 5;
+    private static final int SESSION_TUNING_PERIOD = 15;
+    private static final int REBALANCE_PERIOD = 10;
+    private static final long THROUGHPUT_WINDOW_MILLIS = 30_000L;
+    private static final double CONNECT_SUCCESS_RATE = 0.5;
+    private static final double OPTIMISTIC_UNCHOKE_FRACTION = 0.2;
+    private static final int INITIAL_TORRENT_CONNECTIONS = 120;
+    private static final int INITIAL_SESSION_CONNECTIONS = 200;
+    private static final int INITIAL_CONNECTION_SPEED = 30;
+    private static final int MIN_AUTO_DOWNLOAD_LIMIT = 128 * 1024;
+    private static final int MOVING_AVERAGE_TICKS = 10;
+
+    private SwarmSimulator() {
+    }
+
+    /** Scripted swarm of one torrent. Rates are bytes per second. */
+    record TorrentScript(String name,
+                         long sizeBytes,
+                         int swarmSize,
+                         int minPeerRate,
+                         int maxPeerRate,
+                         double seedFraction,
+                         double churnPerTick,
+                         int startTick) {
+    }
+
+    record Scenario(String name,
+                    long seed,
+                    int durationTicks,
+                    int maxConcurrentDownloads,
+                    int downloadLimitKiB,
+                    List<TorrentScript> torrents) {
+    }
+
+    /**
+     * Outcome of a run.  {@code convergenceTick} is the first tick at which
+     * the moving average reaches 90% of the steady state (mean of the last
+     * quarter of the run), or -1 when the session never moved data.
+     */
+    record Result(String policy,
+                  String scenario,
+                  int convergenceTick,
+                  long averageThroughput,
+                  long steadyStateThroughput,
+                  long averageCeiling,
+                  long downloadedBytes,
+                  int completedTorrents,
+                  int lastCompletionTick,
+                  long maxSessionRate) {
+
+        double efficiency() {
+            return averageCeiling > 0 ? (double) averageThroughput / averageCeiling : 0.0;
+        }
+    }
+
+    static Result run(Scenario scenario, SwarmTuningPolicy policy) {
+        return new Run(scenario, policy).execute();
+    }
+
+    private static final class SimPeer {
+        private int capacity;
+        private float progress;
+        private boolean online;
+        private boolean connected;
+        private int lastRate;
+    }
+
+    private static final class SimTorrent {
+        private final TorrentScript script;
+        private final List<SimPeer> peers = new ArrayList<>();
+        private long downloaded;
+        private int completedTick = -1;
+        private int maxConnections = INITIAL_TORRENT_CONNECTIONS;
+        private int maxUploads = INITIAL_TORRENT_CONNECTIONS / 4;
+        private int downloadLimit = -1;
+        private long lastRate;
+
+        private SimTorrent(TorrentScript script) {
+            this.script = script;
+        }
+
+        private boolean isActive(int tick) {
+            return tick >= script.startTick() && completedTick < 0;
+        }
+
+        private int connectedCount() {
+            int count = 0;
+            for (SimPeer peer : peers) {
+                if (peer.connected) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int knownPeers() {
+            int count = 0;
+            for (SimPeer peer : peers) {
+                if (peer.online) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static final class Run {
+        private final Scenario scenario;
+        private final SwarmTuningPolicy policy;
+        private final Random random;
+        private final List<SimTorrent> torrents = new ArrayList<>();
+        private final SessionRateTracker rates = new SessionRateTracker(THROUGHPUT_WINDOW_MILLIS);
+        private int sessionConnections = INITIAL_SESSION_CONNECTIONS;
+        private int connectionSpeed = INITIAL_CONNECTION_SPEED;
+        private int lastSessionConnections = -1;
+
+        private Run(Scenario scenario, SwarmTuningPolicy policy) {
+            this.scenario = scenario;
+            this.policy = policy;
+            this.random = new Random(scenario.seed());
+            for (TorrentScript script : scenario.torrents()) {
+                SimTorrent torrent = new SimTorrent(script);
+                for (int i = 0; i < script.swarmSize(); i++) {
+                    SimPeer peer = new SimPeer();
+                    peer.capacity = drawCapacity(script);
+                    peer.progress = random.nextDouble() < script.seedFraction() ? 1.0f : random.nextFloat() * 0.99f;
+                    peer.online = random.nextDouble() < 0.8;
+                    torrent.peers.add(peer);
+                }
+                torrents.add(torrent);
+            }
+        }
+
+        private Result execute() {
+            long limitBytes = scenario.downloadLimitKiB() > 0 ? scenario.downloadLimitKiB() * 1024L : 0L;
+            long[] throughput = new long[scenario.durationTicks()];
+            long ceilingTotal = 0L;
+            long maxSessionRate = 0L;
+            int completed = 0;
+            int lastCompletion = -1;
+
+            for (int tick = 0; tick < scenario.durationTicks(); tick++) {
+                applyChurn(tick);
+                spendConnectionAttempts(tick);
+
+                long sessionRate = transfer(tick, limitBytes);
+                throughput[tick] = sessionRate;
+                maxSessionRate = Math.max(maxSessionRate, sessionRate);
+                ceilingTotal += ceiling(tick, limitBytes);
+
+                for (SimTorrent torrent : torrents) {
+                    if (torrent.completedTick < 0 && torrent.downloaded >= torrent.script.sizeBytes()) {
+                        torrent.completedTick = tick;
+                        for (SimPeer peer : torrent.peers) {
+                            peer.connected = false;
+                        }
+                        completed++;
+                        lastCompletion = tick;
+                    }
+                }
+
+                long nowMillis = tick * 1000L;
+                if (tick % TORRENT_TUNING_PERIOD == 0) {
+                    tuneTorrents(tick, nowMillis);
+                }
+                if (tick % SESSION_TUNING_PERIOD == 0) {
+                    tuneSession(sessionRate, nowMillis);
+                }
+                if (tick % REBALANCE_PERIOD == 0) {
+                    rebalance(tick);
+                }
+            }
+
+            long downloaded = 0L;
+            for (SimTorrent torrent : torrents) {
+                downloaded += Math.min(torrent.downloaded, torrent.script.sizeBytes());
+            }
+            long total = 0L;
+            for (long value : throughput) {
+                total += value;
+            }
+            int ticks = Math.max(1, scenario.durationTicks());
+            long steadyState = steadyState(throughput);
+            return new Result(policy.getName(),
+                    scenario.name(),
+                    convergenceTick(throughput, steadyState),
+                    total / ticks,
+                    steadyState,
+                    ceilingTotal / ticks,
+                    downloaded,
+                    completed,
+                    lastCompletion,
+                    maxSessionRate);
+        }
+
+        private int drawCapacity(TorrentScript script) {
+            int span = Math.max(1, script.maxPeerRate() - script.minPeerRate());
+            return script.minPeerRate() + random.nextInt(span);
+        }
+
+        private void applyChurn(int tick) {
+            for (SimTorrent torrent : torrents) {
+                if (tick < torrent.script.startTick()) {
+                    continue;
+                }
+                double churn = torrent.script.churnPerTick();
+                for (SimPeer peer : torrent.peers) {
+                    if (random.nextDouble() >= churn) {
+                        continue;
+                    }
+                    if (peer.online) {
+                        peer.online = false;
+                        peer.connected = false;
+                    } else {
+                        peer.online = true;
+                        peer.capacity = drawCapacity(torrent.script);
+                    }
+                }
+            }
+        }
+
+        private void spendConnectionAttempts(int tick) {
+            List<SimTorrent> candidates = new ArrayList<>();
+            for (SimTorrent torrent : torrents) {
+                if (torrent.isActive(tick)) {
+                    candidates.add(torrent);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+            int attempts = connectionSpeed;
+            int sessionConnected = 0;
+            for (SimTorrent torrent : torrents) {
+                sessionConnected += torrent.connectedCount();
+            }
+            int index = 0;
+            int idleRounds = 0;
+            while (attempts > 0 && idleRounds < candidates.size()) {
+                SimTorrent torrent = candidates.get(index % candidates.size());
+                index++;
+                SimPeer candidate = nextCandidate(torrent);
+                if (candidate == null || torrent.connectedCount() >= torrent.maxConnections
+                        || sessionConnected >= sessionConnections) {
+                    idleRounds++;
+                    continue;
+                }
+                idleRounds = 0;
+                attempts--;
+                if (random.nextDouble() < CONNECT_SUCCESS_RATE) {
+                    candidate.connected = true;
+                    sessionConnected++;
+                }
+            }
+        }
+
+        private SimPeer nextCandidate(SimTorrent torrent) {
+            List<SimPeer> available = new ArrayList<>();
+            for (SimPeer peer : torrent.peers) {
+                if (peer.online && !peer.connected) {
+                    available.add(peer);
+                }
+            }
+            if (available.isEmpty()) {
+                return null;
+            }
+            return available.get(random.nextInt(available.size()));
+        }
+
+        private long transfer(int tick, long limitBytes) {
+            long[] natural = new long[torrents.size()];
+            long sum = 0L;
+            for (int i = 0; i < torrents.size(); i++) {
+                SimTorrent torrent = torrents.get(i);
+                if (!torrent.isActive(tick)) {
+                    torrent.lastRate = 0L;
+                    continue;
+                }
+                List<SimPeer> leechers = new ArrayList<>();
+                long rate = 0L;
+                for (SimPeer peer : torrent.peers) {
+                    peer.lastRate = 0;
+                    if (!peer.connected) {
+                        continue;
+                    }
+                    if (peer.progress >= 0.999f) {
+                        peer.lastRate = peer.capacity;
+                        rate += peer.capacity;
+                    } else {
+                        leechers.add(peer);
+                    }
+                }
+                // Los leechers con mayor capacidad reciben nuestros slots de subida
+                // y corresponden; el resto solo aporta mediante unchoke optimista.
+                leechers.sort(Comparator.comparingInt((SimPeer peer) -> peer.capacity).reversed());
+                for (int p = 0; p < leechers.size(); p++) {
+                    SimPeer peer = leechers.get(p);
+                    int contribution = p < torrent.maxUploads
+                            ? peer.capacity
+                            : (int) (peer.capacity * OPTIMISTIC_UNCHOKE_FRACTION);
+                    peer.lastRate = contribution;
+                    rate += contribution;
+                }
+                if (torrent.downloadLimit > 0) {
+                    rate = Math.min(rate, torrent.downloadLimit);
+                }
+                natural[i] = rate;
+                sum += rate;
+            }
+            double scale = (limitBytes > 0 && sum > limitBytes) ? (double) limitBytes / sum : 1.0;
+            long sessionRate = 0L;
+            for (int i = 0; i < torrents.size(); i++) {
+                SimTorrent torrent = torrents.get(i);
+                long rate = (long) (natural[i] * scale);
+                torrent.lastRate = rate;
+                torrent.downloaded += rate;
+                sessionRate += rate;
+            }
+            return sessionRate;
+        }
+
+        private long ceiling(int tick, long limitBytes) {
+            long capacity = 0L;
+            for (SimTorrent torrent : torrents) {
+                if (!torrent.isActive(tick)) {
+                    continue;
+                }
+                for (SimPeer peer : torrent.peers) {
+                    if (peer.online) {
+                        capacity += peer.capacity;
+                    }
+                }
+            }
+            return limitBytes > 0 ? Math.min(limitBytes, capacity) : capacity;
+        }
+
+        private void tuneTorrents(int tick, long nowMillis) {
+            int active = 0;
+            for (SimTorrent torrent : torrents) {
+                if (torrent.isActive(tick)) {
+                    active++;
+                }
+            }
+            long limitBytes = scenario.downloadLimitKiB() > 0 ? scenario.downloadLimitKiB() * 1024L : 0L;
+            long expected = rates.expectedDownloadRate(limitBytes, nowMillis);
+            long smoothed = rates.smoothedDownloadRate(nowMillis);
+            int globalConnections = lastSessionConnections > 0
+                    ? lastSessionConnections
+                    : policy.baseConnectionsLimit(scenario.maxConcurrentDownloads(), scenario.downloadLimitKiB());
+            for (SimTorrent torrent : torrents) {
+                if (!torrent.isActive(tick)) {
+                    continue;
+                }
+                List<SwarmTuningPolicy.PeerRate> peerRates = new ArrayList<>();
+                for (SimPeer peer : torrent.peers) {
+                    if (peer.connected) {
+                        peerRates.add(new SwarmTuningPolicy.PeerRate(peer.lastRate, 0, peer.progress));
+                    }
+                }
+                long target = Math.max(expected, Math.max(torrent.lastRate, smoothed));
+                SwarmTuningPolicy.TorrentTuning tuning = policy.tuneTorrent(new SwarmTuningPolicy.TorrentSample(
+                        active,
+                        globalConnections,
+                        torrent.knownPeers(),
+                        torrent.connectedCount(),
+                        torrent.lastRate,
+                        target,
+                        peerRates));
+                if (tuning.maxConnections() > 0) {
+                    torrent.maxConnections = tuning.maxConnections();
+                    dropExcessConnections(torrent);
+                }
+                if (tuning.maxUploads() > 0) {
+                    torrent.maxUploads = tuning.maxUploads();
+                }
+            }
+        }
+
+        private void dropExcessConnections(SimTorrent torrent) {
+            int excess = torrent.connectedCount() - torrent.maxConnections;
+            if (excess <= 0) {
+                return;
+            }
+            List<SimPeer> connected = new ArrayList<>();
+            for (SimPeer peer : torrent.peers) {
+                if (peer.connected) {
+                    connected.add(peer);
+                }
+            }
+            connected.sort(Comparator.comparingInt(peer -> peer.lastRate));
+            for (int i = 0; i < excess && i < connected.size(); i++) {
+                connected.get(i).connected = false;
+            }
+        }
+
+        private void tuneSession(long sessionRate, long nowMillis) {
+            long limitBytes = scenario.downloadLimitKiB() > 0 ? scenario.downloadLimitKiB() * 1024L : 0L;
+            rates.observe(sessionRate);
+            long expected = rates.expectedDownloadRate(limitBytes, nowMillis);
+            rates.addSample(sessionRate, 0L, nowMillis);
+            long smoothedDownload = Math.max(sessionRate, rates.smoothedDownloadRate(nowMillis));
+            long smoothedUpload = rates.smoothedUploadRate(nowMillis);
+            SwarmTuningPolicy.SessionTuning tuning = policy.tuneSession(new SwarmTuningPolicy.SessionSample(
+                    expected, smoothedDownload, smoothedUpload,
+                    scenario.maxConcurrentDownloads(), scenario.downloadLimitKiB()));
+            if (tuning.connectionsLimit() > 0) {
+                sessionConnections = tuning.connectionsLimit();
+                lastSessionConnections = tuning.connectionsLimit();
+            }
+            if (tuning.connectionSpeed() > 0) {
+                connectionSpeed = tuning.connectionSpeed();
+            }
+        }
+
+        private void rebalance(int tick) {
+            if (scenario.downloadLimitKiB() <= 0) {
+                return;
+            }
+            List<SimTorrent> active = new ArrayList<>();
+            for (SimTorrent torrent : torrents) {
+                if (torrent.isActive(tick)) {
+                    active.add(torrent);
+                }
+            }
+            if (active.isEmpty()) {
+                return;
+            }
+            double[] demands = new double[active.size()];
+            for (int i = 0; i < demands.length; i++) {
+                SimTorrent torrent = active.get(i);
+                demands[i] = policy.downloadDemand(torrent.script.sizeBytes() - torrent.downloaded, torrent.lastRate);
+            }
+            int budget = scenario.downloadLimitKiB() * 1024;
+            int[] shares = policy.allocateShares(budget, demands, active.size(), MIN_AUTO_DOWNLOAD_LIMIT);
+            for (int i = 0; i < shares.length && i < active.size(); i++) {
+                active.get(i).downloadLimit = shares[i];
+            }
+        }
+
+        private long steadyState(long[] throughput) {
+            int from = throughput.length - Math.max(1, throughput.length / 4);
+            long total = 0L;
+            for (int i = from; i < throughput.length; i++) {
+                total += throughput[i];
+            }
+            return total / Math.max(1, throughput.length - from);
+        }
+
+        private int convergenceTick(long[] throughput, long steadyState) {
+            if (steadyState <= 0) {
+                return -1;
+            }
+            long threshold = (long) (steadyState * 0.9);
+            long window = 0L;
+            for (int tick = 0; tick < throughput.length; tick++) {
+                window += throughput[tick];
+                if (tick >= MOVING_AVERAGE_TICKS) {
+                    window -= throughput[tick - MOVING_AVERAGE_TICKS];
+                }
+                int samples = Math.min(tick + 1, MOVING_AVERAGE_TICKS);
+                if (tick + 1 >= MOVING_AVERAGE_TICKS && window / samples >= threshold) {
+                    return tick;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Fixed settings roughly matching stock libtorrent defaults, used as a baseline. */
+    static SwarmTuningPolicy staticBaseline() {
+        return new DefaultSwarmTuningPolicy() {
+            @Override
+            public String getName() {
+                return "static";
+            }
+
+            @Override
+            public SessionTuning tuneSession(SessionSample sample) {
+                return new SessionTuning(200, 30, 500);
+            }
+
+            @Override
+            public TorrentTuning tuneTorrent(TorrentSample sample) {
+                return new TorrentTuning(50, 8);
+            }
+
+            @Override
+            public int[] allocateShares(int budget, double[] demands, int participants, int minimumShare) {
+                int[] shares = new int[demands.length];
+                for (int i = 0; i < shares.length; i++) {
+                    shares[i] = budget / Math.max(1, participants);
+                }
+                return shares;
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SwarmTuningBenchmarkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(SwarmTuningBenchmarkTest.class.getName());
+    private static final int KIB = 1024;
+
+    private static final SwarmSimulator.Scenario LARGE_SWARM = new SwarmSimulator.Scenario(
+            "large-swarm", 42L, 600, 1, 0, List.of(
+            new SwarmSimulator.TorrentScript("big", 1L << 40, 600, 4 * KIB, 48 * KIB, 0.15, 0.002, 0)));
+
+    private static final SwarmSimulator.Scenario HIGH_CHURN = new SwarmSimulator.Scenario(
+            "high-churn", 7L, 600, 2, 0, List.of(
+            new SwarmSimulator.TorrentScript("a", 1L << 40, 300, 8 * KIB, 64 * KIB, 0.1, 0.02, 0),
+            new SwarmSimulator.TorrentScript("b", 1L << 40, 200, 8 * KIB, 64 * KIB, 0.1, 0.02, 30)));
+
+    private static final SwarmSimulator.Scenario CAPPED_LINE = new SwarmSimulator.Scenario(
+            "capped-line", 99L, 600, 3, 2048, List.of(
+            new SwarmSimulator.TorrentScript("x", 1L << 40, 200, 8 * KIB, 64 * KIB, 0.2, 0.005, 0),
+            new SwarmSimulator.TorrentScript("y", 1L << 40, 40, 4 * KIB, 16 * KIB, 0.2, 0.005, 0),
+            new SwarmSimulator.TorrentScript("z", 300L << 20, 150, 8 * KIB, 64 * KIB, 0.2, 0.005, 0)));
+
+    private static final List<SwarmSimulator.Scenario> SCENARIOS = List.of(LARGE_SWARM, HIGH_CHURN, CAPPED_LINE);
+
+    private static final List<SwarmTuningPolicy> POLICIES = List.of(
+            new DefaultSwarmTuningPolicy(),
+            SwarmSimulator.staticBaseline());
+
+    private static final List<SwarmSimulator.Result> RESULTS = new ArrayList<>();
+
+    @BeforeAll
+    static void runBenchmarks() {
+        for (SwarmSimulator.Scenario scenario : SCENARIOS) {
+            for (SwarmTuningPolicy policy : POLICIES) {
+                RESULTS.add(SwarmSimulator.run(scenario, policy));
+            }
+        }
+        if (!LOGGER.isLoggable(Level.FINE)) {
+            return;
+        }
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-12s %-8s %12s %14s %14s %10s",
+                "scenario", "policy", "convergence", "avg KiB/s", "ceiling KiB/s", "efficiency"));
+        for (SwarmSimulator.Result result : RESULTS) {
+            table.append(String.format(Locale.ROOT, "%n%-12s %-8s %11ds %14d %14d %9.1f%%",
+                    result.scenario(),
+                    result.policy(),
+                    result.convergenceTick(),
+                    result.averageThroughput() / KIB,
+                    result.averageCeiling() / KIB,
+                    result.efficiency() * 100.0));
+        }
+        LOGGER.fine(table.toString());
+    }
+
+    @Test
+    void simulationIsDeterministic() {
+        for (SwarmSimulator.Scenario scenario : SCENARIOS) {
+            SwarmSimulator.Result first = SwarmSimulator.run(scenario, new DefaultSwarmTuningPolicy());
+            SwarmSimulator.Result second = SwarmSimulator.run(scenario, new DefaultSwarmTuningPolicy());
+            assertEquals(first, second, "La simulación debe ser reproducible: " + scenario.name());
+        }
+    }
+
+    @Test
+    void defaultPolicyConvergesWithinOneMinute() {
+        for (SwarmSimulator.Result result : resultsFor("default")) {
+            assertTrue(result.convergenceTick() >= 0 && result.convergenceTick() <= 60,
+                    "Convergencia lenta en " + result.scenario() + ": " + result.convergenceTick() + "s");
+        }
+    }
+
+    @Test
+    void defaultPolicyOutperformsStaticBaselineOnOpenLines() {
+        for (SwarmSimulator.Scenario scenario : List.of(LARGE_SWARM, HIGH_CHURN)) {
+            SwarmSimulator.Result tuned = find(scenario.name(), "default");
+            SwarmSimulator.Result baseline = find(scenario.name(), "static");
+            assertTrue(tuned.averageThroughput() > baseline.averageThroughput() * 2,
+                    "El ajuste dinámico debería superar claramente la base en " + scenario.name());
+        }
+    }
+
+    @Test
+    void cappedSessionNeverExceedsConfiguredLimit() {
+        long limit = CAPPED_LINE.downloadLimitKiB() * (long) KIB;
+        for (SwarmSimulator.Result result : RESULTS) {
+            if (result.scenario().equals(CAPPED_LINE.name())) {
+                assertTrue(result.maxSessionRate() <= limit, "Límite superado por " + result.policy());
+                assertTrue(result.efficiency() >= 0.5,
+                        "Aprovechamiento insuficiente del límite por " + result.policy());
+            }
+        }
+    }
+
+    @Test
+    void allocatedSharesStayWithinBudget() {
+        SwarmTuningPolicy policy = new DefaultSwarmTuningPolicy();
+        int budget = 2048 * KIB;
+        double[] demands = {
+                policy.downloadDemand(4L << 30, 900 * KIB),
+                policy.downloadDemand(10L << 20, 20 * KIB),
+                policy.downloadDemand(0L, 0L)
+        };
+        int[] shares = policy.allocateShares(budget, demands, 3, 128 * KIB);
+        assertEquals(demands.length, shares.length);
+        for (int share : shares) {
+            assertTrue(share >= 128 * KIB && share <= budget);
+        }
+        assertTrue(shares[0] > shares[1], "Más demanda debe traducirse en mayor cuota");
+        assertEquals(0, policy.allocateShares(0, demands, 3, 128 * KIB).length);
+    }
+
+    private static List<SwarmSimulator.Result> resultsFor(String policy) {
+        List<SwarmSimulator.Result> matches = new ArrayList<>();
+        for (SwarmSimulator.Result result : RESULTS) {
+            if (result.policy().equals(policy)) {
+                matches.add(result);
+            }
+        }
+        return matches;
+    }
+
+    private static SwarmSimulator.Result find(String scenario, String policy) {
+        for (SwarmSimulator.Result result : RESULTS) {
+            if (result.scenario().equals(scenario) && result.policy().equals(policy)) {
+                return result;
+            }
+        }
+        throw new AssertionError("Sin resultado para " + scenario + "/" + policy);
+    }
+}
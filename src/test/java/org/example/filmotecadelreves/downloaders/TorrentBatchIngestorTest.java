@@ -0,0 +1,143 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.example.filmotecadelreves.moviesad.TorrentState;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TorrentBatchIngestorTest {
+
+    @Test
+    void resolvesWithBoundedWorkersAndQueuesInSubmissionOrder() throws Exception {
+        RecordingSink sink = new RecordingSink(Set.of());
+        TorrentBatchIngestor<String> ingestor = new TorrentBatchIngestor<>(2, sink);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<TorrentState> states = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            states.add(state("https://tracker/episodio-" + i + ".torrent", 0));
+        }
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        try {
+            TorrentBatchReport report = ingestor.submit(states, state -> {
+                        int now = running.incrementAndGet();
+                        maxRunning.accumulateAndGet(now, Math::max);
+                        try {
+                            // Later episodes resolve faster, so completion order differs from submission order.
+                            Thread.sleep(40 - states.indexOf(state) * 3L);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        return new TorrentBatchIngestor.Resolved<>("hash" + states.indexOf(state), state.getTorrentSource());
+                    }, (state, done, total) -> progress.add(done))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(maxRunning.get() <= 2, () -> "Demasiadas resoluciones simultáneas: " + maxRunning.get());
+            assertEquals(12, report.queued().size());
+            assertEquals(states, sink.accepted);
+            assertEquals(12, progress.size());
+            assertEquals(12, (int) progress.get(progress.size() - 1));
+        } finally {
+            ingestor.shutdown();
+        }
+    }
+
+    @Test
+    void discardsDuplicateHashesLinksAndKnownTorrents() throws Exception {
+        RecordingSink sink = new RecordingSink(Set.of("ya-en-cola"));
+        TorrentBatchIngestor<String> ingestor = new TorrentBatchIngestor<>(3, sink);
+        TorrentState first = state("magnet:?xt=urn:btih:a", 0);
+        TorrentState sameHash = state("https://mirror/a.torrent", 0);
+        TorrentState sameLink = state("magnet:?xt=urn:btih:a", 0);
+        TorrentState known = state("https://tracker/b.torrent", 0);
+        TorrentState broken = state("https://tracker/roto.torrent", 0);
+        try {
+            TorrentBatchReport report = ingestor.submit(List.of(first, sameHash, sameLink, known, broken), state -> {
+                if (state == broken) {
+                    throw new IOException("HTTP 404");
+                }
+                return new TorrentBatchIngestor.Resolved<>(state == known ? "YA-EN-COLA" : "AAAA", "payload");
+            }, null).get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of(first), report.queued());
+            assertEquals(List.of(sameHash, sameLink, known), report.duplicates());
+            assertEquals("HTTP 404", report.failures().get(broken));
+            assertEquals(List.of(first), sink.accepted);
+            assertEquals(List.of(broken), sink.rejected);
+        } finally {
+            ingestor.shutdown();
+        }
+    }
+
+    @Test
+    void higherPriorityItemsAreResolvedFirst() throws Exception {
+        RecordingSink sink = new RecordingSink(Set.of());
+        TorrentBatchIngestor<String> ingestor = new TorrentBatchIngestor<>(1, sink);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> resolved = Collections.synchronizedList(new ArrayList<>());
+        TorrentBatchIngestor.Resolver<String> resolver = state -> {
+            if (state.getTorrentSource().endsWith("bloqueo")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            resolved.add(state.getTorrentSource());
+            return new TorrentBatchIngestor.Resolved<>(null, state.getTorrentSource());
+        };
+        try {
+            ingestor.submit(List.of(state("file:bloqueo", 0)), resolver, null);
+            var low = ingestor.submit(List.of(state("file:baja-1", 0), state("file:baja-2", 0)), resolver, null);
+            var high = ingestor.submit(List.of(state("file:alta", 10)), resolver, null);
+            release.countDown();
+            low.get(10, TimeUnit.SECONDS);
+            high.get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of("file:bloqueo", "file:alta", "file:baja-1", "file:baja-2"), resolved);
+        } finally {
+            ingestor.shutdown();
+        }
+    }
+
+    private static TorrentState state(String source, int priority) {
+        TorrentState state = new TorrentState(source, "/tmp/destino", 0, 0, 0);
+        state.setPriority(priority);
+        return state;
+    }
+
+    private static final class RecordingSink implements TorrentBatchIngestor.Sink<String> {
+        private final Set<String> knownHashes;
+        private final List<TorrentState> accepted = Collections.synchronizedList(new ArrayList<>());
+        private final List<TorrentState> rejected = Collections.synchronizedList(new ArrayList<>());
+
+        private RecordingSink(Set<String> knownHashes) {
+            this.knownHashes = knownHashes;
+        }
+
+        @Override
+        public boolean isKnown(String infoHash, TorrentState state) {
+            return knownHashes.contains(infoHash);
+        }
+
+        @Override
+        public void accept(TorrentState state, String infoHash, String payload) {
+            accepted.add(state);
+        }
+
+        @Override
+        public void duplicate(TorrentState state, String infoHash) {
+        }
+
+        @Override
+        public void reject(TorrentState state, String reason) {
+            rejected.add(state);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TorrentLogArchiveTest {
+
+    private Path tempDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("torrent-log-test");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void historySurvivesReopeningAndIsPagedBackwards() {
+        TorrentLogArchive archive = new TorrentLogArchive(tempDirectory, 64 * 1024, 4);
+        for (int i = 0; i < 25; i++) {
+            archive.append("torrent-1", entry(i, "evento " + i));
+        }
+        archive.close();
+
+        TorrentLogArchive reopened = new TorrentLogArchive(tempDirectory, 64 * 1024, 4);
+        try {
+            TorrentLogPage newest = reopened.readPage("torrent-1", null, 10);
+            assertEquals(messages(15, 25), messages(newest.entries()));
+            assertTrue(newest.hasOlder());
+
+            TorrentLogPage middle = reopened.readPage("torrent-1", newest.olderCursor(), 10);
+            assertEquals(messages(5, 15), messages(middle.entries()));
+
+            TorrentLogPage oldest = reopened.readPage("torrent-1", middle.olderCursor(), 10);
+            assertEquals(messages(0, 5), messages(oldest.entries()));
+            assertNull(oldest.olderCursor());
+
+            assertTrue(reopened.readPage("otro", null, 10).entries().isEmpty());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void rotatesSegmentsBySizeAndPagesAcrossThem() throws IOException {
+        TorrentLogArchive archive = new TorrentLogArchive(tempDirectory, 1024, 3);
+        try {
+            for (int i = 0; i < 200; i++) {
+                archive.append("torrent-2", entry(i, "evento " + i));
+            }
+            assertTrue(archive.flush(5, TimeUnit.SECONDS));
+
+            Path torrentDirectory = tempDirectory.resolve("torrent-2");
+            try (Stream<Path> segments = Files.list(torrentDirectory)) {
+                List<Path> files = segments.toList();
+                assertEquals(3, files.size());
+                for (Path file : files) {
+                    assertTrue(Files.size(file) <= 1024, () -> file + " supera el tamaño de segmento");
+                }
+            }
+
+            List<String> all = new ArrayList<>();
+            TorrentLogPage.Cursor cursor = null;
+            do {
+                TorrentLogPage page = archive.readPage("torrent-2", cursor, 7);
+                assertFalse(page.entries().isEmpty());
+                all.addAll(0, messages(page.entries()));
+                cursor = page.olderCursor();
+            } while (cursor != null);
+            // Oldest segments were rotated away; what is left is the contiguous tail.
+            int first = 200 - all.size();
+            assertEquals(messages(first, 200), all);
+
+            archive.delete("torrent-2");
+            assertTrue(archive.flush(5, TimeUnit.SECONDS));
+            assertFalse(Files.exists(torrentDirectory));
+        } finally {
+            archive.close();
+        }
+    }
+
+    private static TorrentLogEntry entry(long timestamp, String message) {
+        return new TorrentLogEntry(timestamp, Level.WARNING, TorrentLogEntry.Step.TRACKER, message, timestamp % 2 == 0);
+    }
+
+    private static List<String> messages(List<TorrentLogEntry> entries) {
+        return entries.stream().map(TorrentLogEntry::getMessage).toList();
+    }
+
+    private static List<String> messages(int from, int to) {
+        List<String> expected = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            expected.add("evento " + i);
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TorrentLogBookTest {
+
+    @Test
+    void keepsTheNewestEntriesInOrder() {
+        TorrentLogBook book = new TorrentLogBook(3);
+        for (int i = 0; i < 5; i++) {
+            book.add(entry(i, "evento " + i));
+        }
+
+        List<TorrentLogEntry> snapshot = book.snapshot();
+        assertEquals(List.of("evento 2", "evento 3", "evento 4"), messages(snapshot));
+        assertEquals(5, book.appended());
+
+        book.clear();
+        assertTrue(book.snapshot().isEmpty());
+        book.add(entry(5, "evento 5"));
+        assertEquals(List.of("evento 5"), messages(book.snapshot()));
+    }
+
+    @Test
+    void concurrentWritersNeverLoseTheTail() throws Exception {
+        TorrentLogBook book = new TorrentLogBook(64);
+        int writers = 4;
+        int perWriter = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) {
+                    book.add(entry(i, writer + ":" + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals((long) writers * perWriter, book.appended());
+        assertEquals(64, book.snapshot().size());
+    }
+
+    @Test
+    void aWriterStalledForALapDropsItsStaleEntry() {
+        TorrentLogBook book = new TorrentLogBook(3);
+        long stalled = book.claimSequence();
+        for (int i = 1; i <= 3; i++) {
+            book.add(entry(i, "evento " + i));
+        }
+        // The stalled writer's slot now holds "evento 3", which is newer than its own entry.
+        book.publish(stalled, entry(0, "evento 0"));
+
+        assertEquals(List.of("evento 1", "evento 2", "evento 3"), messages(book.snapshot()));
+    }
+
+    @Test
+    void lappedWritersNeverReplaceNewerEntries() throws Exception {
+        // A small ring makes writers lap each other constantly; repeat to catch the interleaving.
+        for (int round = 0; round < 200; round++) {
+            TorrentLogBook book = new TorrentLogBook(8);
+            List<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        book.add(entry(i, "evento " + i));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(8, book.snapshot().size(), "Ronda " + round + ": falta alguna de las últimas entradas");
+        }
+    }
+
+    private static TorrentLogEntry entry(long timestamp, String message) {
+        return new TorrentLogEntry(timestamp, Level.INFO, TorrentLogEntry.Step.DOWNLOAD, message, false);
+    }
+
+    private static List<String> messages(List<TorrentLogEntry> entries) {
+        return entries.stream().map(TorrentLogEntry::getMessage).toList();
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TorrentMetadataCacheTest {
+
+    private static final String HASH_A = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+    private static final String HASH_B = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+    private static final String HASH_C = "cccccccccccccccccccccccccccccccccccccccc";
+
+    private Path tempDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("torrent-cache-test");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void storesAndResolvesByHashAndUrl() {
+        TorrentMetadataCache cache = new TorrentMetadataCache(tempDirectory, 1024);
+        byte[] data = {1, 2, 3, 4};
+        cache.put(HASH_A.toUpperCase(), data);
+        cache.rememberUrl("https://example.org/a.torrent", HASH_A);
+
+        TorrentMetadataCache reopened = new TorrentMetadataCache(tempDirectory, 1024);
+        assertArrayEquals(data, reopened.get(HASH_A));
+        assertEquals(HASH_A, reopened.hashForUrl("https://example.org/a.torrent"));
+        assertNull(reopened.hashForUrl("https://example.org/otro.torrent"));
+        assertNull(reopened.get("no-es-un-hash"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesOverBudget() throws IOException {
+        TorrentMetadataCache cache = new TorrentMetadataCache(tempDirectory, 200);
+        cache.put(HASH_A, new byte[80]);
+        cache.put(HASH_B, new byte[80]);
+        cache.rememberUrl("https://example.org/a.torrent", HASH_A);
+        Files.setLastModifiedTime(tempDirectory.resolve(HASH_A + ".torrent"), FileTime.fromMillis(1_000L));
+        Files.setLastModifiedTime(tempDirectory.resolve(HASH_B + ".torrent"), FileTime.fromMillis(2_000L));
+
+        cache.put(HASH_C, new byte[80]);
+
+        assertFalse(cache.contains(HASH_A));
+        assertTrue(cache.contains(HASH_B));
+        assertTrue(cache.contains(HASH_C));
+        assertNull(cache.hashForUrl("https://example.org/a.torrent"));
+    }
+
+    @Test
+    void extractsInfoHashFromMagnetLinks() {
+        assertEquals("c12fe1c06bba254a9dc9f519b335aa7c1367a88a",
+                TorrentMetadataCache.infoHashFromMagnet(
+                        "magnet:?xt=urn:btih:C12FE1C06BBA254A9DC9F519B335AA7C1367A88A&dn=prueba"));
+        assertEquals("c12fe1c06bba254a9dc9f519b335aa7c1367a88a",
+                TorrentMetadataCache.infoHashFromMagnet(
+                        "magnet:?dn=prueba&xt=urn%3Abtih%3AYEX6DQDLXISUVHOJ6UM3GNNKPQJWPKEK"));
+        assertNull(TorrentMetadataCache.infoHashFromMagnet("magnet:?dn=sin-hash"));
+        assertNull(TorrentMetadataCache.infoHashFromMagnet("https://example.org/a.torrent"));
+    }
+}
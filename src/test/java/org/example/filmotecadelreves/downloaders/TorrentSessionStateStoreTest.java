@@ -0,0 +1,74 @@
+package org.example.filmotecadelreves.downloaders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TorrentSessionStateStoreTest {
+
+    private Path tempDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        tempDirectory = Files.createTempDirectory("torrent-session-test");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.walk(tempDirectory)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void roundTripsAndSkipsUnchangedStates() throws IOException {
+        Path file = tempDirectory.resolve("DB").resolve("torrent_session.state");
+        TorrentSessionStateStore store = new TorrentSessionStateStore(file);
+        byte[] state = "d3:dhtd5:nodes6:abcdefee".getBytes();
+
+        assertFalse(store.exists());
+        assertNull(store.load());
+        assertTrue(store.save(state));
+        assertArrayEquals(state, new TorrentSessionStateStore(file).load());
+
+        FileTime old = FileTime.fromMillis(1_000L);
+        Files.setLastModifiedTime(file, old);
+        assertTrue(store.save(state.clone()));
+        assertEquals(old, Files.getLastModifiedTime(file));
+
+        byte[] updated = "d3:dhtd5:nodes6:zyxwvuee".getBytes();
+        assertTrue(store.save(updated));
+        assertArrayEquals(updated, new TorrentSessionStateStore(file).load());
+        assertFalse(Files.exists(file.resolveSibling("torrent_session.state.tmp")));
+    }
+
+    @Test
+    void damagedFilesAreIgnored() throws IOException {
+        Path file = tempDirectory.resolve("torrent_session.state");
+        TorrentSessionStateStore store = new TorrentSessionStateStore(file);
+        assertTrue(store.save(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+
+        byte[] raw = Files.readAllBytes(file);
+        raw[raw.length - 1] ^= 0x7F;
+        Files.write(file, raw);
+        assertNull(new TorrentSessionStateStore(file).load());
+
+        Files.write(file, "{\"torrentSessionState\":\"\"}".getBytes());
+        assertNull(new TorrentSessionStateStore(file).load());
+        assertFalse(store.save(new byte[0]));
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.filmotecadelreves.headless;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the headless mode exactly as {@link HeadlessLauncher#main} does (minus
+ * the torrent engine, which needs native libraries) and drives it through the
+ * HTTP API.  Surefire runs it with {@code java.awt.headless=true} and no
+ * {@code DISPLAY}.
+ */
+class HeadlessApiServerTest {
+
+    private static final byte[] PAYLOAD = new byte[512 * 1024];
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    private static Path tempDirectory;
+    private static Path downloadDirectory;
+    private static HttpServer fileServer;
+    private static HeadlessLauncher launcher;
+    private static Path tokenFile;
+    private static String apiBase;
+
+    @BeforeAll
+    static void startHeadlessMode() throws IOException {
+        tempDirectory = Files.createTempDirectory("headless-test");
+        downloadDirectory = tempDirectory.resolve("descargas");
+        System.setProperty("filmoteca.download.db.path", tempDirectory.resolve("download_state.db").toString());
+        new Random(7).nextBytes(PAYLOAD);
+
+        fileServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        fileServer.createContext("/video.mp4", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "video/mp4");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(PAYLOAD.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, PAYLOAD.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(PAYLOAD);
+                }
+            }
+            exchange.close();
+        });
+        fileServer.start();
+
+        tokenFile = tempDirectory.resolve("api.token");
+        launcher = new HeadlessLauncher(new JSONObject(), 0, downloadDirectory, false, Duration.ofMillis(100), tokenFile);
+        launcher.start();
+        apiBase = "http://127.0.0.1:" + launcher.getPort() + "/api/";
+    }
+
+    @AfterAll
+    static void stopHeadlessMode() throws IOException {
+        try {
+            if (launcher != null) {
+                launcher.stop();
+            }
+            if (fileServer != null) {
+                fileServer.stop(0);
+            }
+            Files.walk(tempDirectory)
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } finally {
+            System.clearProperty("filmoteca.download.db.path");
+        }
+    }
+
+    @Test
+    void runsWithoutDisplay() {
+        assertTrue(GraphicsEnvironment.isHeadless(), "La prueba debe ejecutarse sin pantalla");
+    }
+
+    @Test
+    void directDownloadCompletesAndStreamsProgress() throws Exception {
+        JSONObject request = new JSONObject();
+        request.put("url", "http://127.0.0.1:" + fileServer.getAddress().getPort() + "/video.mp4");
+        request.put("name", "pelicula.mp4");
+        Response created = call("POST", "direct", request.toJSONString(), null);
+        assertEquals(201, created.status);
+        String id = (String) created.json().get("id");
+        assertNotNull(id);
+
+        assertTrue(awaitCompletedEvent(id, Duration.ofSeconds(30)), "No llegó el evento de descarga completada");
+        assertArrayEquals(PAYLOAD, Files.readAllBytes(downloadDirectory.resolve("pelicula.mp4")));
+
+        JSONArray downloads = (JSONArray) call("GET", "downloads", null, null).json().get("downloads");
+        assertTrue(downloads.stream().anyMatch(item -> id.equals(((JSONObject) item).get("id"))));
+
+        JSONObject stats = call("GET", "stats", null, null).json();
+        assertEquals(Boolean.FALSE, stats.get("torrentEngine"));
+        assertTrue(((Number) stats.get("directDownloads")).intValue() >= 1);
+
+        assertEquals(200, call("DELETE", "downloads/" + id, null, null).status);
+        assertEquals(404, call("GET", "downloads/" + id, null, null).status);
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws Exception {
+        assertEquals(503, call("POST", "torrents", "{\"source\":\"magnet:?xt=urn:btih:abc\"}", null).status);
+        assertEquals(400, call("POST", "direct", "{\"url\":\"ftp://example.org/a\"}", null).status);
+        assertEquals(400, call("POST", "direct", "{no es json", null).status);
+        assertEquals(404, call("POST", "downloads/desconocida/pause", null, null).status);
+        assertEquals(403, call("GET", "stats", null, "http://pagina-maliciosa.example").status);
+        assertEquals(404, call("GET", "otra-cosa", null, null).status);
+    }
+
+    @Test
+    void requiresTheTokenAndALoopbackHost() throws Exception {
+        if (tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile));
+        }
+        HttpRequest anonymous = HttpRequest.newBuilder(URI.create(apiBase + "downloads")).GET().build();
+        assertEquals(401, HTTP.send(anonymous, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest wrongToken = HttpRequest.newBuilder(URI.create(apiBase + "downloads"))
+                .header("Authorization", "Bearer otro").GET().build();
+        assertEquals(401, HTTP.send(wrongToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // A page behind a rebound DNS name reaches the same socket but sends its own Host.
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), launcher.getPort())) {
+            String request = "GET /api/downloads HTTP/1.1\r\nHost: pagina-maliciosa.example:" + launcher.getPort()
+                    + "\r\nAuthorization: Bearer " + Files.readString(tokenFile) + "\r\nConnection: close\r\n\r\n";
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII)).readLine();
+            assertTrue(statusLine.contains(" 403 "), statusLine);
+        }
+    }
+
+    private static boolean awaitCompletedEvent(String id, Duration timeout) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(apiBase + "events"))
+                .header("Authorization", "Bearer " + Files.readString(tokenFile))
+                .GET().build();
+        HttpResponse<Stream<String>> response = HTTP.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            String event = null;
+            while (System.currentTimeMillis() < deadline && iterator.hasNext()) {
+                String line = iterator.next();
+                if (line.startsWith("event: ")) {
+                    event = line.substring("event: ".length());
+                } else if (line.startsWith("data: ") && "progress".equals(event)) {
+                    JSONObject data = (JSONObject) new JSONParser().parse(line.substring("data: ".length()));
+                    if (id.equals(data.get("id")) && "Completed".equals(data.get("status"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static Response call(String method, String path, String body, String origin) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(apiBase + path))
+                .timeout(Duration.ofSeconds(10))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+        builder.header("Authorization", "Bearer " + Files.readString(tokenFile));
+        if (body != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        if (origin != null) {
+            builder.header("Origin", origin);
+        }
+        HttpResponse<String> response = HTTP.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        return new Response(response.statusCode(), response.body());
+    }
+
+    private record Response(int status, String body) {
+        JSONObject json() throws ParseException {
+            return (JSONObject) new JSONParser().parse(body);
+        }
+    }
+}
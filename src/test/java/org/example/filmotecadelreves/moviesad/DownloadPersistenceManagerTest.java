@@ -44,6 +44,8 @@ class DownloadPersistenceManagerTest {
     @BeforeEach
     void cleanTables() {
         DownloadPersistenceManager manager = DownloadPersistenceManager.getInstance();
+        // TorrentState setters queue their writes: let them land before wiping the tables.
+        manager.close();
         manager.clearAllData();
     }
 
@@ -151,4 +153,20 @@ class DownloadPersistenceManagerTest {
         manager.deleteTorrent("torrent-1");
         assertTrue(manager.loadTorrentDownloads().isEmpty());
     }
+
+    @Test
+    void torrentBatchIsStoredInOneTransaction() {
+        DownloadPersistenceManager manager = DownloadPersistenceManager.getInstance();
+        TorrentState first = new TorrentState("lote-1", "https://tracker/ep1.torrent", "/tmp/serie", 0, 0, 0);
+        TorrentState second = new TorrentState("lote-2", "https://tracker/ep2.torrent", "/tmp/serie", 0, 0, 0);
+        first.setName("Serie 1x01");
+        second.setName("Serie 1x02");
+
+        assertTrue(manager.upsertTorrents(List.of(first, second)));
+
+        List<DownloadPersistenceManager.TorrentDownloadRecord> records = manager.loadTorrentDownloads();
+        assertEquals(2, records.size());
+        assertTrue(records.stream().anyMatch(record -> "Serie 1x02".equals(record.getName())
+                && "https://tracker/ep2.torrent".equals(record.getSource())));
+    }
 }